@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+
+import io.yope.payment.filters.AuthenticationFilter;
+
+/**
+ * the filter in front of every authenticated request: the token lookup is a stub, so that what is measured
+ * is the filter itself, the SHA-1 of the token put in the logging context included.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthenticationFilterBenchmark {
+
+    private static final String TOKEN = "4b3a1f6e-0c2d-4e8f-9a7b-5d6c3e2f1a0b";
+
+    private static final FilterChain CHAIN = (request, response) -> { };
+
+    private AuthenticationFilter filter;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        final PreAuthenticatedAuthenticationToken authenticated = new PreAuthenticatedAuthenticationToken(
+                "seller@yope.io", null, AuthorityUtils.createAuthorityList("ROLE_SELLER"));
+        authenticated.setDetails(TOKEN);
+        final AuthenticationManager manager = authentication -> authenticated;
+        this.filter = new AuthenticationFilter(manager);
+        this.request = new MockHttpServletRequest("GET", "/transactions");
+        this.request.addHeader("Authorization", TOKEN);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilter() throws IOException, ServletException {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            this.filter.doFilter(this.request, response, CHAIN);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * runs the benchmarks and compares them with a baseline, a previous run kept as JMH json, e.g.
+ * <pre>
+ * java -jar target/benchmarks.jar --update-baseline            # on the version to compare with
+ * java -jar target/benchmarks.jar --tolerance=10 Transaction   # on the change, only the matching benchmarks
+ * </pre>
+ * The options not listed here are the ones of JMH. A score worse than the baseline by more than the
+ * tolerance is a regression, and the exit status is 1; the baseline is only meaningful on the same machine.
+ * @author massi
+ *
+ */
+public class BenchmarkRunner {
+
+    private static final String BASELINE = "--baseline=";
+
+    private static final String RESULT = "--result=";
+
+    private static final String TOLERANCE = "--tolerance=";
+
+    private static final String UPDATE_BASELINE = "--update-baseline";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private File baseline = new File("baseline.json");
+
+    private File result = new File("target/benchmarks.json");
+
+    /**
+     * percent.
+     */
+    private double tolerance = 5;
+
+    private boolean updateBaseline;
+
+    public static void main(final String[] args) throws Exception {
+        final BenchmarkRunner runner = new BenchmarkRunner();
+        final List<String> jmhArgs = Lists.newArrayList();
+        for (final String arg : args) {
+            if (arg.startsWith(BASELINE)) {
+                runner.baseline = new File(arg.substring(BASELINE.length()));
+            } else if (arg.startsWith(RESULT)) {
+                runner.result = new File(arg.substring(RESULT.length()));
+            } else if (arg.startsWith(TOLERANCE)) {
+                runner.tolerance = Double.parseDouble(arg.substring(TOLERANCE.length()));
+            } else if (UPDATE_BASELINE.equals(arg)) {
+                runner.updateBaseline = true;
+            } else {
+                jmhArgs.add(arg);
+            }
+        }
+        System.exit(runner.run(jmhArgs.toArray(new String[jmhArgs.size()])));
+    }
+
+    /**
+     * @return the exit status
+     */
+    public int run(final String[] jmhArgs) throws Exception {
+        final File folder = this.result.getAbsoluteFile().getParentFile();
+        if (folder != null) {
+            folder.mkdirs();
+        }
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs))
+                .resultFormat(ResultFormatType.JSON)
+                .result(this.result.getPath())
+                .build()).run();
+        if (this.updateBaseline) {
+            Files.copy(this.result.toPath(), this.baseline.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("baseline written to " + this.baseline);
+            return 0;
+        }
+        if (!this.baseline.exists()) {
+            System.out.println("no baseline in " + this.baseline + ", run with " + UPDATE_BASELINE + " to keep this one");
+            return 0;
+        }
+        return compare(read(this.baseline), read(this.result), this.tolerance, System.out) ? 1 : 0;
+    }
+
+    /**
+     * prints the change of every benchmark run in both.
+     * @return true if a benchmark regressed beyond the tolerance
+     */
+    static boolean compare(final Map<String, JsonNode> baseline, final Map<String, JsonNode> current, final double tolerance, final PrintStream out) {
+        boolean regressed = false;
+        out.printf("%-80s %12s %12s %8s%n", "benchmark", "baseline", "current", "change");
+        for (final Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            final JsonNode before = baseline.get(entry.getKey());
+            final JsonNode metric = entry.getValue().path("primaryMetric");
+            if (before == null) {
+                out.printf("%-80s %12s %12.3f %8s  %s%n", entry.getKey(), "-", metric.path("score").asDouble(), "-", metric.path("scoreUnit").asText());
+                continue;
+            }
+            final double was = before.path("primaryMetric").path("score").asDouble();
+            final double is = metric.path("score").asDouble();
+            final double change = was == 0 ? 0 : (is - was) * 100 / was;
+            // throughputs are better higher, times lower
+            final double worse = "thrpt".equals(entry.getValue().path("mode").asText()) ? -change : change;
+            final boolean regression = worse > tolerance;
+            regressed |= regression;
+            out.printf("%-80s %12.3f %12.3f %+7.1f%%  %s%s%n", entry.getKey(), was, is, change,
+                    metric.path("scoreUnit").asText(), regression ? "  REGRESSION" : "");
+        }
+        return regressed;
+    }
+
+    /**
+     * @return the results of a JMH json file by benchmark, mode and parameters
+     */
+    static Map<String, JsonNode> read(final File file) throws IOException {
+        final Map<String, JsonNode> results = Maps.newLinkedHashMap();
+        for (final JsonNode node : MAPPER.readTree(file)) {
+            final StringBuilder key = new StringBuilder(node.path("benchmark").asText())
+                    .append(" ").append(node.path("mode").asText());
+            node.path("params").fields().forEachRemaining(p -> key.append(" ").append(p.getKey()).append("=").append(p.getValue().asText()));
+            results.put(key.toString(), node);
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+
+/**
+ * the data the benchmarks run on, shaped as the one of a seller.
+ * @author massi
+ *
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static Wallet wallet(final Long id, final String name) {
+        return Wallet.builder()
+                .id(id)
+                .name(name)
+                .walletHash("1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN" + id)
+                .description("benchmark wallet")
+                .balance(new BigDecimal("1000000"))
+                .availableBalance(new BigDecimal("1000000"))
+                .status(Wallet.Status.ACTIVE)
+                .type(Wallet.Type.INTERNAL)
+                .creationDate(System.currentTimeMillis())
+                .modificationDate(System.currentTimeMillis())
+                .build();
+    }
+
+    public static Transaction transaction(final Long id, final Wallet source, final Wallet destination) {
+        return Transaction.builder()
+                .id(id)
+                .type(Transaction.Type.TRANSFER)
+                .status(Transaction.Status.PENDING)
+                .reference("order-" + id)
+                .description("benchmark transaction")
+                .source(source)
+                .destination(destination)
+                .amount(new BigDecimal("12.34567"))
+                .balance(new BigDecimal("12.34567"))
+                .blockchainFees(BigDecimal.ZERO)
+                .fees(new BigDecimal("0.01"))
+                .senderHash("1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN" + id)
+                .receiverHash("3J98t1WpEZ73CNmQviecrnyiWrnqRhWNLy" + id)
+                .creationDate(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * @return a page of transactions, as returned by the history of a wallet
+     */
+    public static List<Transaction> transactions(final int size) {
+        final Wallet source = wallet(1L, "spend");
+        final Wallet destination = wallet(2L, "save");
+        final List<Transaction> transactions = Lists.newArrayListWithCapacity(size);
+        for (long i = 0; i < size; i++) {
+            transactions.add(transaction(100 + i, source, destination));
+        }
+        return transactions;
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.neo4j.domain.Neo4JTransaction;
+
+/**
+ * the mapping between the domain and the graph, done on every read and write of a transaction.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Neo4JTransactionBenchmark {
+
+    private Transaction transaction;
+
+    private Neo4JTransaction neo4jTransaction;
+
+    @Setup
+    public void setUp() {
+        this.transaction = Fixtures.transaction(1L, Fixtures.wallet(1L, "spend"), Fixtures.wallet(2L, "save"));
+        this.neo4jTransaction = Neo4JTransaction.from(this.transaction).build();
+    }
+
+    @Benchmark
+    public Neo4JTransaction from() {
+        return Neo4JTransaction.from(this.transaction).build();
+    }
+
+    @Benchmark
+    public Transaction toTransaction() {
+        return this.neo4jTransaction.toTransaction();
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.rest.resources.PaymentResponse;
+import io.yope.payment.rest.resources.ResponseHeader;
+
+/**
+ * the body of the transaction histories, written by the message converter with a shared mapper.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PaymentResponseBenchmark {
+
+    /**
+     * the transactions in the page.
+     */
+    @Param({"1", "20", "100"})
+    private int size;
+
+    private ObjectMapper mapper;
+
+    private PaymentResponse<List<Transaction>> response;
+
+    @Setup
+    public void setUp() {
+        this.mapper = new ObjectMapper();
+        this.response = new PaymentResponse<>(new ResponseHeader(true, 200), Fixtures.transactions(this.size));
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return this.mapper.writeValueAsBytes(this.response);
+    }
+
+}
@@ -0,0 +1,148 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.configuration.YopeJdbcConfiguration;
+import io.yope.payment.configuration.YopeNeo4jConfiguration;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+
+/**
+ * transaction creation, the PENDING -> ACCEPTED write and the account history, on each store.
+ * EMBEDDED runs on a temporary graph and JDBC on H2 in memory; REST needs a server, e.g.
+ * <pre>
+ * java -jar target/benchmarks.jar Persistence -p store=REST -jvmArgsAppend "-Dneo4j.neo4jUrl=http://localhost:7474/db/data/ -Dneo4j.neo4jPassword=secret"
+ * </pre>
+ * and any other database goes through -Djdbc.url, -Djdbc.username and -Djdbc.password the same way.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersistenceBenchmark {
+
+    /**
+     * the transactions of the account the history reads.
+     */
+    private static final int HISTORY = 100;
+
+    @Param({"EMBEDDED", "JDBC"})
+    private String store;
+
+    private File graph;
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionDbService transactionService;
+
+    private Account account;
+
+    private Wallet source;
+
+    private Wallet destination;
+
+    private Collection<Wallet> moved;
+
+    private Transaction accepted;
+
+    @Setup
+    public void setUp() throws IOException, ObjectNotFoundException {
+        this.context = new SpringApplicationBuilder(this.configuration()).web(false).run(this.arguments());
+        this.transactionService = this.context.getBean(TransactionDbService.class);
+        this.account = this.context.getBean(AccountDbService.class).create(Account.builder()
+                .email("benchmark-" + System.nanoTime() + "@yope.io")
+                .firstName("benchmark").lastName("benchmark")
+                .type(Account.Type.SELLER).status(Account.Status.ACTIVE)
+                .wallets(Lists.newArrayList()).build(),
+                unsaved(Fixtures.wallet(1L, "spend")), unsaved(Fixtures.wallet(2L, "save")));
+        this.source = this.account.getWallets().get(0);
+        this.destination = this.account.getWallets().get(1);
+        Transaction pending = null;
+        for (int i = 0; i < HISTORY; i++) {
+            pending = this.create();
+        }
+        // what TransactionStateService writes on PENDING -> ACCEPTED: both wallets and the transaction
+        this.moved = Arrays.asList(
+                this.source.toBuilder().balance(this.source.getBalance().subtract(pending.getAmount())).build(),
+                this.destination.toBuilder().balance(this.destination.getBalance().add(pending.getAmount())).build());
+        this.accepted = pending.withStatus(Transaction.Status.ACCEPTED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.context.close();
+        FileUtils.deleteQuietly(this.graph);
+    }
+
+    @Benchmark
+    public Transaction create() throws ObjectNotFoundException {
+        return this.transactionService.create(Fixtures.transaction(null, this.source, this.destination));
+    }
+
+    @Benchmark
+    public List<Transaction> transition() throws ObjectNotFoundException {
+        return this.transactionService.applyBatch(this.moved, Arrays.asList(this.accepted));
+    }
+
+    @Benchmark
+    public List<Transaction> history() throws ObjectNotFoundException {
+        return this.transactionService.getForAccount(this.account.getId(), null, Transaction.Direction.BOTH, null, null);
+    }
+
+    private static Wallet unsaved(final Wallet wallet) {
+        return wallet.toBuilder().id(null).build();
+    }
+
+    private Class<?> configuration() {
+        return "JDBC".equals(this.store) ? YopeJdbcConfiguration.class : YopeNeo4jConfiguration.class;
+    }
+
+    private String[] arguments() throws IOException {
+        switch (this.store) {
+            case "JDBC":
+                return new String[] {"--jdbc.enabled=true",
+                        "--jdbc.url=" + System.getProperty("jdbc.url", "jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")};
+            case "EMBEDDED":
+                this.graph = Files.createTempDirectory("graph").toFile();
+                return new String[] {"--neo4j.mode=EMBEDDED", "--neo4j.storeDir=" + this.graph.getAbsolutePath()};
+            default:
+                return new String[] {"--neo4j.mode=REST"};
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.yope.payment.blockchain.BlockchainException;
+import io.yope.payment.configuration.ServerConfiguration;
+import io.yope.payment.domain.QRImage;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.qr.QRHelper;
+
+/**
+ * the QR code of a deposit: encoding, drawing and writing the png, which the deposit waits for.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QRHelperBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("12.34567");
+
+    private static final String HASH = "3J98t1WpEZ73CNmQviecrnyiWrnqRhWNLy";
+
+    private QRHelper helper;
+
+    @Setup
+    public void setUp() {
+        final ServerConfiguration configuration = new ServerConfiguration();
+        configuration.setUrl("http://localhost:8080");
+        configuration.setImagePath("images");
+        configuration.setImageFolder("target/benchmarks/images");
+        this.helper = new QRHelper(configuration);
+    }
+
+    @Benchmark
+    public QRImage getQRImage() throws ObjectNotFoundException, BlockchainException {
+        return this.helper.getQRImage(AMOUNT, HASH);
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.services.TransactionHashes;
+
+/**
+ * the SHA-1 of the internal transfers and withdrawals.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransactionHashBenchmark {
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        this.transaction = Fixtures.transaction(1L, Fixtures.wallet(1L, "spend"), Fixtures.wallet(2L, "save"));
+    }
+
+    @Benchmark
+    public String internalTransactionHash() {
+        return TransactionHashes.internal(this.transaction);
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package io.yope.payment.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.IllegalTransactionStateException;
+import io.yope.payment.exceptions.InsufficientFundsException;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.memory.services.MemoryTransactionService;
+import io.yope.payment.memory.store.MemoryStore;
+import io.yope.payment.metrics.LifecycleLatencies;
+import io.yope.payment.metrics.TimerSettings;
+import io.yope.payment.metrics.Timers;
+import io.yope.payment.transaction.services.OutstandingTransactionIndex;
+import io.yope.payment.transaction.services.TransactionStateService;
+
+/**
+ * the state machine of the transactions, through save, on the in-memory db services so that the database
+ * does not hide its cost. accept stores the PENDING transaction again before accepting it, the transition
+ * being possible only once; update saves without a transition.
+ * @author massi
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransactionStateBenchmark {
+
+    private MemoryStore store;
+
+    private TransactionStateService service;
+
+    private Transaction pending;
+
+    private Transaction accepted;
+
+    @Setup
+    public void setUp() {
+        this.store = new MemoryStore();
+        final MemoryTransactionService transactionService = new MemoryTransactionService();
+        ReflectionTestUtils.setField(transactionService, "store", this.store);
+        final Timers timers = new Timers(new TimerSettings());
+        this.service = new TransactionStateService(transactionService, new OutstandingTransactionIndex(transactionService),
+                timers, new LifecycleLatencies(timers));
+
+        final Wallet source = this.store.putWallet(Fixtures.wallet(1L, "spend"));
+        final Wallet destination = this.store.putWallet(Fixtures.wallet(2L, "save"));
+        this.pending = this.store.putTransaction(Fixtures.transaction(3L, source, destination));
+        this.accepted = this.pending.withStatus(Status.ACCEPTED);
+    }
+
+    @Benchmark
+    public Transaction accept() throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
+        this.store.putTransaction(this.pending);
+        return this.service.save(this.pending.getId(), this.accepted);
+    }
+
+    @Benchmark
+    public Transaction update() throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
+        return this.service.save(this.pending.getId(), this.store.getTransaction(this.pending.getId()));
+    }
+
+}
@@ -1,9 +1,9 @@
 package io.yope.payment.blockchain.bitcoinj;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -23,6 +23,7 @@ import org.bitcoinj.core.InsufficientMoneyException;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.PeerGroup;
 import org.bitcoinj.core.Wallet.BalanceType;
+import org.bitcoinj.core.Wallet.SendRequest;
 import org.bitcoinj.core.Wallet.SendResult;
 import org.bitcoinj.crypto.DeterministicKey;
 import org.bitcoinj.net.discovery.DnsDiscovery;
@@ -38,6 +39,8 @@ import io.yope.payment.db.services.WalletDbService;
 import io.yope.payment.domain.Account;
 import io.yope.payment.domain.Transaction;
 import io.yope.payment.domain.Wallet;
+import io.yope.payment.tracing.Span;
+import io.yope.payment.tracing.Tracer;
 import io.yope.payment.transaction.services.TransactionStateService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -63,6 +66,17 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
 
     private final BlockchainSettings settings;
 
+    private final WalletBlobStore blobStore;
+
+    private final WalletEventDispatcher dispatcher;
+
+    private final ChainSyncMonitor syncMonitor;
+
+    /**
+     * the spans of the wallet operations, within the one of the call.
+     */
+    private final Tracer tracer;
+
     public void init() {
         final ExecutorService executorService = Executors
                 .newSingleThreadExecutor();
@@ -76,16 +90,16 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
                 }
                 final Wallet central = this.getCentralWallet();
                 log.info("central wallet hash: {}", central.getWalletHash());
-                this.registerInBlockchain(org.bitcoinj.core.Wallet
-                        .loadFromFileStream(new ByteArrayInputStream(
-                                DatatypeConverter.parseBase64Binary(
-                                        central.getContent()))));
+                this.registerInBlockchain(this.load(central));
                 this.peerGroup.startAsync();
-                this.peerGroup.downloadBlockChain();
+                this.peerGroup.startBlockChainDownload(this.syncMonitor);
+                this.syncMonitor.await();
             } catch (final UnreadableWalletException e) {
                 log.error("wallet cannot be registered to the chain", e);
             } catch (final IOException e) {
                 log.error("Error", e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         });
     }
@@ -126,14 +140,31 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
         if (wallet == null) {
             return null;
         }
+        final Wallet central = this.toCentralWallet(wallet, blockchainWallet);
+        final Wallet saved;
+        try (Span span = this.tracer.startSpan("wallet.save")) {
+            try {
+                saved = this.walletService.create(central);
+            } catch (final RuntimeException e) {
+                span.error(e);
+                this.blobStore.discard(central.getContent());
+                throw e;
+            }
+        }
+        // the old versions go only once the graph references the new one
+        this.blobStore.prune(central.getContent());
+        return saved;
+    }
+
+    private Wallet toCentralWallet(final Wallet wallet,
+            final org.bitcoinj.core.Wallet blockchainWallet)
+                    throws IOException {
         final DeterministicKey freshKey = blockchainWallet.freshReceiveKey();
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        blockchainWallet.saveToFileStream(outputStream);
         final String walletHash = freshKey.toAddress(this.params).toString();
         final String privatekey = freshKey.getPrivateKeyEncoded(this.params)
                 .toString();
-        final String content = DatatypeConverter
-                .printBase64Binary(outputStream.toByteArray());
+        final String content = this.blobStore.write(this.settings.getWalletName(),
+                blockchainWallet::saveToFileStream);
         final BigDecimal balance = new BigDecimal(
                 blockchainWallet.getBalance(BalanceType.ESTIMATED).value)
                         .divide(Constants.MILLI_TO_SATOSHI);
@@ -148,7 +179,7 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
                 .description(FilenameUtils.concat(this.settings.getWalletFolder(), this.settings.getWalletName()))
                 .balance(balance).availableBalance(availableBalance).build();
         this.saveToFile(blockchainWallet);
-        return this.walletService.create(central);
+        return central;
     }
 
     private org.bitcoinj.core.Wallet getOrRegister() throws IOException {
@@ -221,10 +252,43 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
             sender.allowSpendingUnconfirmedTransactions();
             final Address receiver = new Address(this.params,
                     transaction.getDestination().getWalletHash());
-            final SendResult result = sender.sendCoins(this.peerGroup, receiver,
-                    value);
-            result.broadcastComplete.get();
-            return result.tx.getHashAsString();
+            try (Span span = this.tracer.startSpan("wallet.broadcast")) {
+                final SendResult result = sender.sendCoins(this.peerGroup, receiver,
+                        value);
+                result.broadcastComplete.get();
+                return result.tx.getHashAsString();
+            }
+        } catch (final UnreadableWalletException e) {
+            throw new BlockchainException(e);
+        } catch (final InsufficientMoneyException e) {
+            throw new BlockchainException(e);
+        } catch (final AddressFormatException e) {
+            throw new BlockchainException(e);
+        } catch (final InterruptedException e) {
+            throw new BlockchainException(e);
+        } catch (final ExecutionException e) {
+            throw new BlockchainException(e);
+        }
+    }
+
+    @Override
+    public String send(final List<Transaction> transactions)
+            throws BlockchainException {
+        try {
+            final org.bitcoinj.core.Transaction tx = new org.bitcoinj.core.Transaction(this.params);
+            for (final Transaction transaction : transactions) {
+                final long satoshi = transaction.getAmount()
+                        .multiply(Constants.MILLI_TO_SATOSHI).longValue();
+                tx.addOutput(Coin.valueOf(satoshi), new Address(this.params,
+                        transaction.getDestination().getWalletHash()));
+            }
+            final org.bitcoinj.core.Wallet sender = this.centralWallet();
+            sender.allowSpendingUnconfirmedTransactions();
+            try (Span span = this.tracer.startSpan("wallet.broadcast")) {
+                final SendResult result = sender.sendCoins(this.peerGroup, SendRequest.forTx(tx));
+                result.broadcastComplete.get();
+                return result.tx.getHashAsString();
+            }
         } catch (final UnreadableWalletException e) {
             throw new BlockchainException(e);
         } catch (final InsufficientMoneyException e) {
@@ -242,9 +306,12 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
         this.chain.addWallet(wallet);
         this.peerGroup.addWallet(wallet);
         final WalletEventListener walletEventListener = new WalletEventListener(
-                this.peerGroup, this.params, this.transactionService, this.settings,
-                this);
+                this.peerGroup, this.params, this.transactionService,
+                this, this.dispatcher);
         wallet.addEventListener(walletEventListener);
+        // the ACCEPTED transactions are completed block by block, see ConfirmationTracker
+        this.chain.addListener(new ConfirmationTracker(wallet, this.transactionService, this.settings.getConfirmations()),
+                this.dispatcher.lane(ConfirmationTracker.class.getName()));
     }
 
     @Override
@@ -270,8 +337,10 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
 
     private String getFreshHash(final String previous, final org.bitcoinj.core.Wallet receiver)
             throws UnreadableWalletException, BlockchainException, IOException {
-        final DeterministicKey freshKey = receiver.freshReceiveKey();
-        final String hash = freshKey.toAddress(this.params).toString();
+        final String hash;
+        try (Span span = this.tracer.startSpan("wallet.deriveKey")) {
+            hash = receiver.freshReceiveKey().toAddress(this.params).toString();
+        }
         if (hash.equals(previous)) {
             throw new BlockchainException("cannot generate new hash");
         }
@@ -280,10 +349,28 @@ public class BitcoinjBlockchainServiceImpl implements BlockChainService {
 
     private org.bitcoinj.core.Wallet centralWallet()
             throws UnreadableWalletException {
-        final Wallet centralWallet = this.getWallet();
-        return org.bitcoinj.core.Wallet
-                .loadFromFileStream(new ByteArrayInputStream(DatatypeConverter
-                        .parseBase64Binary(centralWallet.getContent())));
+        try (Span span = this.tracer.startSpan("wallet.load")) {
+            return this.load(this.getWallet());
+        }
+    }
+
+    /**
+     * reads the blockchain wallet from the blob store, or from the content itself
+     * when it still holds the Base64 protobuf; the next save moves it to the store.
+     */
+    private org.bitcoinj.core.Wallet load(final Wallet centralWallet)
+            throws UnreadableWalletException {
+        final String content = centralWallet.getContent();
+        if (!WalletBlobStore.isReference(content)) {
+            return org.bitcoinj.core.Wallet
+                    .loadFromFileStream(new ByteArrayInputStream(DatatypeConverter
+                            .parseBase64Binary(content)));
+        }
+        try (InputStream input = this.blobStore.open(content)) {
+            return org.bitcoinj.core.Wallet.loadFromFileStream(input);
+        } catch (final IOException e) {
+            throw new UnreadableWalletException("cannot read wallet blob " + content, e);
+        }
     }
 
 }
@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import org.bitcoinj.core.BlockChain;
+import org.bitcoinj.core.DownloadProgressTracker;
+import org.bitcoinj.core.PeerGroup;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * follows the download of the block chain: the node is reported out of service
+ * until it has caught up with its peers, as payments cannot be confirmed before.
+ * @author massi
+ *
+ */
+@Slf4j
+public class ChainSyncMonitor extends DownloadProgressTracker implements HealthIndicator, PublicMetrics {
+
+    private final BlockChain chain;
+
+    private final PeerGroup peerGroup;
+
+    private volatile double percent;
+
+    private volatile int blocksLeft = -1;
+
+    private volatile boolean synced;
+
+    public ChainSyncMonitor(final BlockChain chain, final PeerGroup peerGroup) {
+        this.chain = chain;
+        this.peerGroup = peerGroup;
+    }
+
+    @Override
+    protected void startDownload(final int blocks) {
+        log.info("downloading {} blocks from height {}", blocks, this.chain.getBestChainHeight());
+        this.blocksLeft = blocks;
+    }
+
+    @Override
+    protected void progress(final double pct, final int blocks, final Date date) {
+        log.info("chain download {}% done, {} blocks left, at {}", (int) pct, blocks, date);
+        this.percent = pct;
+        this.blocksLeft = blocks;
+    }
+
+    @Override
+    protected void doneDownload() {
+        log.info("chain downloaded, height {}", this.chain.getBestChainHeight());
+        this.percent = 100;
+        this.blocksLeft = 0;
+        this.synced = true;
+    }
+
+    public boolean isSynced() {
+        return this.synced;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.boot.actuate.health.HealthIndicator#health()
+     */
+    @Override
+    public Health health() {
+        final Health.Builder health = this.synced ? Health.up() : Health.outOfService();
+        return health.withDetail("height", this.chain.getBestChainHeight())
+                .withDetail("peersHeight", this.peerGroup.getMostCommonChainHeight())
+                .withDetail("blocksLeft", this.blocksLeft)
+                .build();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<Integer>("blockchain.sync.height", this.chain.getBestChainHeight()),
+                new Metric<Integer>("blockchain.sync.peersHeight", this.peerGroup.getMostCommonChainHeight()),
+                new Metric<Integer>("blockchain.sync.blocksLeft", this.blocksLeft),
+                new Metric<Double>("blockchain.sync.percent", this.percent));
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.bitcoinj.core.AbstractBlockChainListener;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.core.TransactionConfidence;
+import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.transaction.services.TransactionStateService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * completes the ACCEPTED transactions once their blockchain transaction has enough confirmations.
+ * At every new best block the blockchain transactions awaited, taken from the outstanding index,
+ * are placed by the height of the block including them; the ones deep enough are completed together, in one batch.
+ * The depth is checked again before completing, a reorganization moving a transaction back to its new height.
+ * A transaction not completed is tried again at the next blocks, up to {@link #ATTEMPTS} times; it is then
+ * left ACCEPTED, to be reconciled by hand.
+ * Not thread safe: the chain notifies it through a single threaded executor.
+ * @author massi
+ *
+ */
+@Slf4j
+public class ConfirmationTracker extends AbstractBlockChainListener {
+
+    /**
+     * the blocks at which the completion of a blockchain transaction is tried.
+     */
+    static final int ATTEMPTS = 6;
+
+    private final org.bitcoinj.core.Wallet wallet;
+
+    private final TransactionStateService transactionService;
+
+    private final int confirmations;
+
+    private final Map<String, org.bitcoinj.core.Transaction> tracked = Maps.newHashMap();
+
+    /**
+     * the transactions in a block, by the height of the block.
+     */
+    private final NavigableMap<Integer, Set<String>> heights = new TreeMap<>();
+
+    /**
+     * the transactions not in a block yet.
+     */
+    private final Set<String> unconfirmed = Sets.newHashSet();
+
+    /**
+     * the failed completions, by blockchain transaction.
+     */
+    private final Map<String, Integer> failures = Maps.newHashMap();
+
+    /**
+     * the transactions given up, no longer tracked while ACCEPTED.
+     */
+    private final Set<String> abandoned = Sets.newHashSet();
+
+    public ConfirmationTracker(final org.bitcoinj.core.Wallet wallet, final TransactionStateService transactionService,
+            final int confirmations) {
+        this.wallet = wallet;
+        this.transactionService = transactionService;
+        this.confirmations = Math.max(confirmations, 1);
+    }
+
+    @Override
+    public void notifyNewBestBlock(final StoredBlock block) {
+        this.track();
+        for (final String hash : Lists.newArrayList(this.unconfirmed)) {
+            this.place(hash);
+        }
+        // a transaction at height h has best - h + 1 confirmations
+        final NavigableMap<Integer, Set<String>> due = this.heights.headMap(block.getHeight() - this.confirmations + 1, true);
+        if (due.isEmpty()) {
+            return;
+        }
+        final List<String> deep = Lists.newArrayList();
+        for (final Set<String> hashes : Lists.newArrayList(due.values())) {
+            deep.addAll(hashes);
+        }
+        due.clear();
+        this.complete(block, deep);
+    }
+
+    /**
+     * adds the blockchain transactions of the ACCEPTED transactions not tracked yet,
+     * and drops the ones no longer awaited.
+     */
+    private void track() {
+        final Set<String> awaited = this.transactionService.getAwaitingConfirmation();
+        this.tracked.keySet().retainAll(awaited);
+        this.unconfirmed.retainAll(awaited);
+        this.failures.keySet().retainAll(awaited);
+        this.abandoned.retainAll(awaited);
+        for (final String hash : awaited) {
+            if (this.tracked.containsKey(hash) || this.abandoned.contains(hash)) {
+                continue;
+            }
+            final org.bitcoinj.core.Transaction tx;
+            try {
+                tx = this.wallet.getTransaction(Sha256Hash.wrap(hash));
+            } catch (final IllegalArgumentException e) {
+                continue;
+            }
+            if (tx != null) {
+                this.tracked.put(hash, tx);
+                this.unconfirmed.add(hash);
+            }
+        }
+    }
+
+    /**
+     * files a tracked transaction under the height of its block, if in a block.
+     */
+    private void place(final String hash) {
+        final TransactionConfidence confidence = this.tracked.get(hash).getConfidence();
+        if (ConfidenceType.BUILDING.equals(confidence.getConfidenceType())) {
+            this.unconfirmed.remove(hash);
+            this.heights.computeIfAbsent(confidence.getAppearedAtChainHeight(), height -> Sets.newHashSet()).add(hash);
+        } else if (ConfidenceType.DEAD.equals(confidence.getConfidenceType())) {
+            log.warn("-----> Transaction {} is dead", hash);
+            this.unconfirmed.remove(hash);
+            this.tracked.remove(hash);
+        } else {
+            this.unconfirmed.add(hash);
+        }
+    }
+
+    private void complete(final StoredBlock block, final List<String> deep) {
+        // withdrawals sent together share the blockchain transaction
+        final Map<String, List<Transaction>> due = Maps.newLinkedHashMap();
+        for (final String hash : deep) {
+            if (!this.tracked.containsKey(hash)) {
+                continue;
+            }
+            final TransactionConfidence confidence = this.tracked.get(hash).getConfidence();
+            if (!ConfidenceType.BUILDING.equals(confidence.getConfidenceType()) || confidence.getDepthInBlocks() < this.confirmations) {
+                this.place(hash);
+                continue;
+            }
+            due.put(hash, this.transactionService.getAcceptedByTransactionHash(hash));
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        final Set<Long> completed = Sets.newHashSet();
+        try {
+            this.transactionService.complete(due.values().stream().flatMap(List::stream).collect(Collectors.toList()))
+                    .forEach(t -> completed.add(t.getId()));
+        } catch (final ObjectNotFoundException e) {
+            log.error("transactions not completed", e);
+        } catch (final RuntimeException e) {
+            log.error("Unexpected error", e);
+        }
+        for (final Map.Entry<String, List<Transaction>> entry : due.entrySet()) {
+            final String hash = entry.getKey();
+            if (entry.getValue().stream().allMatch(t -> completed.contains(t.getId()))) {
+                log.info("-----> Transaction {} completed", hash);
+                this.tracked.remove(hash);
+                this.failures.remove(hash);
+            } else if (this.failures.merge(hash, 1, Integer::sum) >= ATTEMPTS) {
+                log.error("-----> Transaction {} not completed after {} attempts, left ACCEPTED", hash, ATTEMPTS);
+                this.tracked.remove(hash);
+                this.failures.remove(hash);
+                this.abandoned.add(hash);
+            } else {
+                // tried again at the next block
+                this.heights.computeIfAbsent(this.tracked.get(hash).getConfidence().getAppearedAtChainHeight(), height -> Sets.newHashSet()).add(hash);
+            }
+        }
+        log.info("block {}: {} transactions completed, {} awaiting confirmations", block.getHeight(), completed.size(), this.tracked.size());
+    }
+
+}
@@ -0,0 +1,191 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * versioned file store for the serialized blockchain wallets, so that the graph
+ * keeps a short reference (see {@link #isReference(String)}) in Wallet.content in place of the whole protobuf.
+ * Every write goes to a new file, {@code <name>.<version>.blob}, moved into place once synced;
+ * reads map the file. Once the graph references a version, {@link #prune(String)} keeps it
+ * and the last {@code retained} versions of the name, and deletes the others not being written.
+ * The blobs are on the local disk, so the store serves a single node: the nodes sharing a graph
+ * would need the folder on shared storage.
+ * @author massi
+ *
+ */
+@Slf4j
+public class WalletBlobStore {
+
+    public static final String PREFIX = "blob:";
+
+    private static final String EXTENSION = ".blob";
+
+    private static final String TEMP = ".tmp";
+
+    /**
+     * writes the content of a blob.
+     */
+    public interface BlobWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final File folder;
+
+    private final int retained;
+
+    private final AtomicLong version;
+
+    /**
+     * the versions written and not yet referenced by the graph, nor discarded.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public WalletBlobStore(final File folder, final int retained) throws IOException {
+        FileUtils.forceMkdir(folder);
+        // the writes interrupted by a crash never reached the graph
+        for (final File temp : folder.listFiles((dir, file) -> file.endsWith(EXTENSION + TEMP))) {
+            FileUtils.deleteQuietly(temp);
+        }
+        this.folder = folder;
+        this.retained = Math.max(1, retained);
+        this.version = new AtomicLong(Arrays.stream(folder.listFiles((dir, file) -> file.endsWith(EXTENSION)))
+                .mapToLong(file -> version(file.getName())).max().orElse(0));
+    }
+
+    /**
+     * @param content the content of a wallet
+     * @return true if the content is a reference to this store rather than the legacy Base64 protobuf.
+     */
+    public static boolean isReference(final String content) {
+        return content != null && content.startsWith(PREFIX);
+    }
+
+    /**
+     * writes a new version of the blob; it is kept until {@link #prune(String)} or {@link #discard(String)}.
+     * @param name the name of the blob
+     * @param writer writes the content
+     * @return the reference to the new version
+     * @throws IOException if the blob can't be written; nothing is left behind
+     */
+    public String write(final String name, final BlobWriter writer) throws IOException {
+        final String fileName = name + "." + this.version.incrementAndGet() + EXTENSION;
+        final File temp = new File(this.folder, fileName + TEMP);
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                writer.writeTo(out);
+                out.getChannel().force(true);
+            }
+            this.pending.add(fileName);
+            Files.move(temp.toPath(), new File(this.folder, fileName).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException | RuntimeException e) {
+            this.pending.remove(fileName);
+            FileUtils.deleteQuietly(temp);
+            throw e;
+        }
+        return PREFIX + fileName;
+    }
+
+    /**
+     * deletes the old versions of a blob, once the graph references one of them.
+     * @param reference the version the graph references, which is kept
+     */
+    public void prune(final String reference) {
+        final String fileName = reference.substring(PREFIX.length());
+        this.pending.remove(fileName);
+        final String name = fileName.substring(0, fileName.length() - EXTENSION.length());
+        this.delete(name.substring(0, name.lastIndexOf('.')), fileName);
+    }
+
+    /**
+     * deletes a version the graph will not reference, e.g. because saving the wallet failed.
+     * @param reference a reference returned by {@link #write(String, BlobWriter)}
+     */
+    public void discard(final String reference) {
+        final String fileName = reference.substring(PREFIX.length());
+        this.pending.remove(fileName);
+        FileUtils.deleteQuietly(new File(this.folder, fileName));
+    }
+
+    /**
+     * @param reference a reference returned by {@link #write(String, BlobWriter)}
+     * @return the content of the blob, mapped read only
+     * @throws IOException if the blob does not exist
+     */
+    public ByteBuffer read(final String reference) throws IOException {
+        final File file = new File(this.folder, reference.substring(PREFIX.length()));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @param reference a reference returned by {@link #write(String, BlobWriter)}
+     * @return a stream over the mapped content of the blob
+     * @throws IOException if the blob does not exist
+     */
+    public InputStream open(final String reference) throws IOException {
+        final ByteBuffer buffer = this.read(reference);
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(final byte[] bytes, final int offset, final int length) {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                final int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    private synchronized void delete(final String name, final String referenced) {
+        final File[] versions = this.folder.listFiles((dir, file) -> file.startsWith(name + ".") && file.endsWith(EXTENSION));
+        Arrays.sort(versions, (a, b) -> Long.compare(version(b.getName()), version(a.getName())));
+        for (int i = this.retained; i < versions.length; i++) {
+            final String fileName = versions[i].getName();
+            if (!fileName.equals(referenced) && !this.pending.contains(fileName) && !versions[i].delete()) {
+                log.warn("cannot delete old wallet blob {}", versions[i]);
+            }
+        }
+    }
+
+    private static long version(final String fileName) {
+        final String base = fileName.substring(0, fileName.length() - EXTENSION.length());
+        try {
+            return Long.parseLong(base.substring(base.lastIndexOf('.') + 1));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * runs the database work of the wallet and confidence events away from the bitcoinj user thread.
+ * The events of a blockchain transaction always go to the same lane, a single thread with a bounded queue,
+ * so they are handled in order; a full lane blocks the caller instead of dropping a payment.
+ * The central wallet saves are coalesced: a save requested while another is waiting adds nothing.
+ * @author massi
+ *
+ */
+@Slf4j
+public class WalletEventDispatcher implements PublicMetrics {
+
+    /**
+     * an event and the time it was queued.
+     */
+    private class Event implements Runnable {
+        private final long queued = System.nanoTime();
+        private final Runnable work;
+
+        Event(final Runnable work) {
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.work.run();
+                WalletEventDispatcher.this.processed.incrementAndGet();
+            } catch (final RuntimeException e) {
+                WalletEventDispatcher.this.failed.incrementAndGet();
+                log.error("wallet event failed", e);
+            }
+        }
+    }
+
+    private final List<ThreadPoolExecutor> lanes;
+
+    private final AtomicBoolean savePending = new AtomicBoolean();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param workers the number of lanes
+     * @param capacity the events each lane can queue
+     */
+    public WalletEventDispatcher(final int workers, final int capacity) {
+        this.lanes = Lists.newArrayListWithCapacity(workers + 1);
+        // the last lane saves the central wallet
+        for (int i = 0; i <= workers; i++) {
+            final ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(capacity),
+                    new ThreadFactoryBuilder().setNameFormat("wallet-events-" + i).setDaemon(true).build(),
+                    (event, executor) -> {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("wallet events stopped");
+                        }
+                        try {
+                            executor.getQueue().put(event);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException(e);
+                        }
+                    });
+            this.lanes.add(lane);
+        }
+    }
+
+    /**
+     * @param transactionHash the blockchain transaction
+     * @return the executor of the events of the transaction
+     */
+    public Executor lane(final String transactionHash) {
+        final ThreadPoolExecutor lane = this.lanes.get(Math.floorMod(transactionHash.hashCode(), this.lanes.size() - 1));
+        return work -> lane.execute(new Event(work));
+    }
+
+    /**
+     * queues a save of the central wallet, unless one is already waiting to start.
+     */
+    public void saveWallet(final Runnable save) {
+        if (this.savePending.compareAndSet(false, true)) {
+            this.lanes.get(this.lanes.size() - 1).execute(new Event(() -> {
+                this.savePending.set(false);
+                save.run();
+            }));
+        }
+    }
+
+    public void shutdown() throws InterruptedException {
+        this.lanes.forEach(ThreadPoolExecutor::shutdown);
+        for (final ThreadPoolExecutor lane : this.lanes) {
+            if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("{} wallet events left unprocessed", lane.shutdownNow().size());
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long queued = 0;
+        long lag = 0;
+        final long now = System.nanoTime();
+        for (final ThreadPoolExecutor lane : this.lanes) {
+            final BlockingQueue<Runnable> queue = lane.getQueue();
+            queued += queue.size();
+            final Event oldest = (Event) queue.peek();
+            if (oldest != null) {
+                lag = Math.max(lag, TimeUnit.NANOSECONDS.toMillis(now - oldest.queued));
+            }
+        }
+        return Arrays.<Metric<?>>asList(
+                new Metric<Long>("blockchain.events.queued", queued),
+                new Metric<Long>("blockchain.events.lag", lag),
+                new Metric<Long>("blockchain.events.processed", this.processed.get()),
+                new Metric<Long>("blockchain.events.failed", this.failed.get()));
+    }
+
+}
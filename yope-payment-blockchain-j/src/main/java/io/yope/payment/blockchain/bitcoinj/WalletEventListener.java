@@ -9,7 +9,6 @@ import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.PeerGroup;
 import org.bitcoinj.core.TransactionOutput;
 
-import io.yope.payment.blockchain.BlockchainSettings;
 import io.yope.payment.domain.Transaction;
 import io.yope.payment.domain.Wallet;
 import io.yope.payment.exceptions.IllegalTransactionStateException;
@@ -26,8 +25,12 @@ public class WalletEventListener extends AbstractWalletEventListener {
     private final PeerGroup peerGroup;
     private final NetworkParameters params;
     private final TransactionStateService transactionService;
-    private final BlockchainSettings settings;
     private final BitcoinjBlockchainServiceImpl blockChainService;
+    private final WalletEventDispatcher dispatcher;
+
+    /*
+     * the events come on the bitcoinj user thread, which only queues them to the dispatcher
+     */
 
     @Override
     public void onCoinsReceived(final org.bitcoinj.core.Wallet wallet,
@@ -35,8 +38,8 @@ public class WalletEventListener extends AbstractWalletEventListener {
             final Coin newBalance) {
         super.onCoinsReceived(wallet, tx, prevBalance, newBalance);
         log.info("Received coins tx: {}", tx.getHashAsString());
-        this.saveWallet(wallet);
-        this.initializeTransaction(tx, wallet);
+        this.dispatcher.saveWallet(() -> this.saveWallet(wallet));
+        this.dispatcher.lane(tx.getHashAsString()).execute(() -> this.initializeTransaction(tx, wallet));
     }
 
     private void initializeTransaction(final org.bitcoinj.core.Transaction tx,
@@ -46,7 +49,6 @@ public class WalletEventListener extends AbstractWalletEventListener {
             if (pending == null || !Transaction.Status.PENDING.equals(pending.getStatus())) {
                 return;
             }
-            tx.getConfidence().addEventListener(new ConfidenceListener(this.transactionService, this.settings));
             final String senderHash = this.getSenderHash(tx.getOutputs(), wallet);
             final Coin valueSentToMe = tx.getValueSentToMe(wallet);
             final Coin valueSentFromMe = tx.getValueSentFromMe(wallet);
@@ -112,7 +114,7 @@ public class WalletEventListener extends AbstractWalletEventListener {
                 continue;
             }
             final String hash = o.getScriptPubKey().getToAddress(this.params).toString();
-            final Transaction transaction = this.transactionService.getByReceiverHash(hash);
+            final Transaction transaction = this.transactionService.getPendingByReceiverHash(hash);
             if (transaction != null) {
                 return transaction;
             }
@@ -126,8 +128,7 @@ public class WalletEventListener extends AbstractWalletEventListener {
             final Coin newBalance) {
         super.onCoinsSent(wallet, tx, prevBalance, newBalance);
         log.info("Sent coins tx: {}", tx.getHashAsString());
-        tx.getConfidence().addEventListener(new ConfidenceListener(this.transactionService, this.settings));
-        this.saveWallet(wallet);
+        this.dispatcher.saveWallet(() -> this.saveWallet(wallet));
     }
 
 }
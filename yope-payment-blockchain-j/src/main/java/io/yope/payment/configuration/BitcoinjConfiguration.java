@@ -1,17 +1,29 @@
 package io.yope.payment.configuration;
 
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import javax.annotation.PostConstruct;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.bitcoinj.core.BlockChain;
+import org.bitcoinj.core.CheckpointManager;
 import org.bitcoinj.core.Context;
 import org.bitcoinj.core.NetworkParameters;
 import org.bitcoinj.core.PeerGroup;
+import org.bitcoinj.core.Wallet;
 import org.bitcoinj.params.TestNet3Params;
 import org.bitcoinj.store.BlockStoreException;
 import org.bitcoinj.store.SPVBlockStore;
+import org.bitcoinj.store.UnreadableWalletException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,14 +31,19 @@ import org.springframework.context.annotation.Configuration;
 import io.yope.payment.blockchain.BlockChainService;
 import io.yope.payment.blockchain.BlockchainSettings;
 import io.yope.payment.blockchain.bitcoinj.BitcoinjBlockchainServiceImpl;
+import io.yope.payment.blockchain.bitcoinj.ChainSyncMonitor;
+import io.yope.payment.blockchain.bitcoinj.WalletBlobStore;
+import io.yope.payment.blockchain.bitcoinj.WalletEventDispatcher;
 import io.yope.payment.db.services.AccountDbService;
 import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.tracing.Tracer;
 import io.yope.payment.transaction.services.TransactionStateService;
 import lombok.extern.slf4j.Slf4j;
 
 
 @Configuration
 @Slf4j
+@ConditionalOnProperty(prefix = "blockchain.simulation", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class BitcoinjConfiguration {
 
     @PostConstruct
@@ -55,12 +72,65 @@ public class BitcoinjConfiguration {
     }
 
     @Bean
-    public SPVBlockStore getBlockStore(final NetworkParameters params)
-            throws BlockStoreException {
-        final String blockstore = params instanceof TestNet3Params ? "tbtc_blockstore" : "main_blockstore";
+    public SPVBlockStore getBlockStore(final NetworkParameters params, final BlockchainSettings settings)
+            throws BlockStoreException, IOException {
+        final String blockstore = settings.getBlockStore() != null ? settings.getBlockStore()
+                : params instanceof TestNet3Params ? "tbtc_blockstore" : "main_blockstore";
+        final File file = new File(blockstore);
+        boolean fresh = !file.exists();
+        if (fresh && settings.getBlockStoreSnapshot() != null) {
+            log.info("seeding block store {} from {}", file, settings.getBlockStoreSnapshot());
+            final File temp = new File(file.getPath() + ".tmp");
+            FileUtils.copyFile(new File(settings.getBlockStoreSnapshot()), temp);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            fresh = false;
+        }
+        final SPVBlockStore store = new SPVBlockStore(params, file);
+        if (fresh && settings.isCheckpoints()) {
+            this.checkpoint(params, store, settings);
+        }
+        return store;
+    }
+
+    /**
+     * moves the head of a new block store to the last checkpoint a week before the oldest wallet key,
+     * so that the headers before are not downloaded; bitcoinj takes the week off.
+     */
+    private void checkpoint(final NetworkParameters params, final SPVBlockStore store, final BlockchainSettings settings)
+            throws IOException, BlockStoreException {
+        final long time = this.getCheckpointTime(settings);
+        if (time <= 0) {
+            return;
+        }
+        try (InputStream checkpoints = settings.getCheckpointFile() != null
+                ? new FileInputStream(settings.getCheckpointFile())
+                : BitcoinjConfiguration.class.getResourceAsStream("/" + params.getId() + ".checkpoints")) {
+            if (checkpoints == null) {
+                log.warn("no checkpoints for {}", params.getId());
+                return;
+            }
+            CheckpointManager.checkpoint(params, new BufferedInputStream(checkpoints), store, time);
+            log.info("block store starting at height {}", store.getChainHead().getHeight());
+        }
+    }
 
-        return new SPVBlockStore(params,
-                new File(blockstore));
+    /**
+     * @return the creation of the oldest wallet key in seconds, now for a new wallet, 0 if unknown
+     */
+    private long getCheckpointTime(final BlockchainSettings settings) {
+        if (settings.getCheckpointTime() > 0) {
+            return settings.getCheckpointTime();
+        }
+        final File walletFile = new File(settings.getWalletFolder(), settings.getWalletName());
+        if (!walletFile.exists()) {
+            return System.currentTimeMillis() / 1000;
+        }
+        try {
+            return Wallet.loadFromFile(walletFile).getEarliestKeyCreationTime();
+        } catch (final UnreadableWalletException e) {
+            log.error("wallet {} unreadable, block store not checkpointed", walletFile, e);
+            return 0;
+        }
     }
 
 
@@ -70,6 +140,23 @@ public class BitcoinjConfiguration {
     }
 
 
+    @Bean
+    public WalletBlobStore getWalletBlobStore(final BlockchainSettings settings) throws IOException {
+        final String folder = settings.getWalletBlobFolder() != null ? settings.getWalletBlobFolder()
+                : FilenameUtils.concat(settings.getWalletFolder(), "blobs");
+        return new WalletBlobStore(new File(folder), settings.getWalletBlobVersions());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WalletEventDispatcher getWalletEventDispatcher(final BlockchainSettings settings) {
+        return new WalletEventDispatcher(settings.getEventWorkers(), settings.getEventQueueCapacity());
+    }
+
+    @Bean
+    public ChainSyncMonitor getChainSyncMonitor(final BlockChain chain, final PeerGroup peerGroup) {
+        return new ChainSyncMonitor(chain, peerGroup);
+    }
+
     @Bean
     public BlockChainService getBlockchainService(final NetworkParameters params,
                                                   final BlockChain blockChain,
@@ -77,11 +164,15 @@ public class BitcoinjConfiguration {
                                                   final TransactionStateService transactionService,
                                                   final WalletDbService walletService,
                                                   final AccountDbService accountService,
-                                                  final BlockchainSettings settings
+                                                  final BlockchainSettings settings,
+                                                  final WalletBlobStore blobStore,
+                                                  final WalletEventDispatcher dispatcher,
+                                                  final ChainSyncMonitor syncMonitor,
+                                                  final Tracer tracer
                                                   ){
 
         final BitcoinjBlockchainServiceImpl blockChainService =
-                new BitcoinjBlockchainServiceImpl(params, blockChain, peerGroup, transactionService, walletService, accountService, settings);
+                new BitcoinjBlockchainServiceImpl(params, blockChain, peerGroup, transactionService, walletService, accountService, settings, blobStore, dispatcher, syncMonitor, tracer);
 
         blockChainService.init();
         return blockChainService;
@@ -39,6 +39,8 @@ import io.yope.payment.db.services.WalletDbService;
 import io.yope.payment.domain.Account;
 import io.yope.payment.domain.Transaction;
 import io.yope.payment.domain.Wallet;
+import io.yope.payment.tracing.Tracer;
+import io.yope.payment.tracing.TracingSettings;
 import io.yope.payment.transaction.services.TransactionStateService;
 
 /**
@@ -83,8 +85,21 @@ public class BitcoinjBlockchainServiceImplTest {
         final BlockChain chain = new BlockChain(new Context(this.params), this.blockStore);
 
         final PeerGroup peerGroup = new PeerGroup(this.params, chain);
-        final BlockchainSettings settings = new BlockchainSettings(1, BigDecimal.ZERO, BigDecimal.TEN, "target", "central.wallet", "admin", "password");
-        this.service = new BitcoinjBlockchainServiceImpl(this.params, chain, peerGroup, this.transactionService, this.walletService, this.accountService, settings);
+        final BlockchainSettings settings = new BlockchainSettings();
+        settings.setConfirmations(1);
+        settings.setFees(BigDecimal.ZERO);
+        settings.setFeesThreshold(BigDecimal.TEN);
+        settings.setWalletFolder("target");
+        settings.setWalletName("central.wallet");
+        settings.setAdminUsername("admin");
+        settings.setAdminPassword("password");
+        settings.setWalletBlobFolder("target/blobs");
+        settings.setEventWorkers(1);
+        settings.setEventQueueCapacity(100);
+        settings.setCheckpoints(false);
+        final WalletBlobStore blobStore = new WalletBlobStore(new File(settings.getWalletBlobFolder()), settings.getWalletBlobVersions());
+        this.service = new BitcoinjBlockchainServiceImpl(this.params, chain, peerGroup, this.transactionService, this.walletService, this.accountService, settings, blobStore,
+                new WalletEventDispatcher(settings.getEventWorkers(), settings.getEventQueueCapacity()), new ChainSyncMonitor(chain, peerGroup), new Tracer(new TracingSettings(), null));
         this.service.init();
 
         this.wallets.add(this.wallet);
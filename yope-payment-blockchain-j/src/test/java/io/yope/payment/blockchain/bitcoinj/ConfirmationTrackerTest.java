@@ -0,0 +1,164 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.StoredBlock;
+import org.bitcoinj.core.TransactionConfidence;
+import org.bitcoinj.core.TransactionConfidence.ConfidenceType;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.transaction.services.TransactionStateService;
+
+/**
+ * @author massi
+ *
+ */
+public class ConfirmationTrackerTest {
+
+    private static final String HASH = "4a5e1e4baab89f3a32518a88c31bc87f618f76673e2cc77ab2127b7afdeda33b";
+
+    private final org.bitcoinj.core.Wallet wallet = mock(org.bitcoinj.core.Wallet.class);
+
+    private final TransactionStateService transactionService = mock(TransactionStateService.class);
+
+    private final TransactionConfidence confidence = mock(TransactionConfidence.class);
+
+    private final ConfirmationTracker tracker = new ConfirmationTracker(this.wallet, this.transactionService, 3);
+
+    private final Transaction accepted = Transaction.builder().id(1L).status(Status.ACCEPTED).transactionHash(HASH).build();
+
+    @Before
+    public void setUp() {
+        final org.bitcoinj.core.Transaction tx = mock(org.bitcoinj.core.Transaction.class);
+        when(tx.getConfidence()).thenReturn(this.confidence);
+        when(this.wallet.getTransaction(Sha256Hash.wrap(HASH))).thenReturn(tx);
+        when(this.transactionService.getAwaitingConfirmation()).thenReturn(Collections.singleton(HASH));
+        when(this.transactionService.getAcceptedByTransactionHash(HASH)).thenReturn(Arrays.asList(this.accepted));
+        when(this.confidence.getConfidenceType()).thenReturn(ConfidenceType.BUILDING);
+    }
+
+    /**
+     * a completed transaction leaves the index, so its blockchain transaction is no longer awaited.
+     */
+    private List<Transaction> completed() {
+        when(this.transactionService.getAwaitingConfirmation()).thenReturn(Collections.emptySet());
+        return Arrays.asList(this.accepted.withStatus(Status.COMPLETED));
+    }
+
+    @Test
+    public void testCompletedOnceDeepEnough() throws Exception {
+        when(this.transactionService.complete(anyListOf(Transaction.class))).thenAnswer(invocation -> this.completed());
+        this.inBlock(100, 1);
+        this.tracker.notifyNewBestBlock(block(100));
+        this.inBlock(100, 2);
+        this.tracker.notifyNewBestBlock(block(101));
+        verify(this.transactionService, never()).complete(anyListOf(Transaction.class));
+
+        this.inBlock(100, 3);
+        this.tracker.notifyNewBestBlock(block(102));
+        verify(this.transactionService).complete(Arrays.asList(this.accepted));
+
+        // completed, no longer tracked
+        this.tracker.notifyNewBestBlock(block(103));
+        verify(this.transactionService).complete(Arrays.asList(this.accepted));
+    }
+
+    @Test
+    public void testDepthCheckedAgainAfterAReorganization() throws Exception {
+        when(this.transactionService.complete(anyListOf(Transaction.class))).thenAnswer(invocation -> this.completed());
+        this.inBlock(100, 1);
+        this.tracker.notifyNewBestBlock(block(100));
+        // the transaction moved to block 101: at 102 its height says deep enough, its depth does not
+        this.inBlock(101, 2);
+        this.tracker.notifyNewBestBlock(block(102));
+        verify(this.transactionService, never()).complete(anyListOf(Transaction.class));
+
+        this.inBlock(101, 3);
+        this.tracker.notifyNewBestBlock(block(103));
+        verify(this.transactionService).complete(Arrays.asList(this.accepted));
+    }
+
+    @Test
+    public void testFailedCompletionRetriedAtTheNextBlock() throws Exception {
+        when(this.transactionService.complete(anyListOf(Transaction.class)))
+                .thenReturn(Collections.emptyList()).thenAnswer(invocation -> this.completed());
+        this.inBlock(100, 1);
+        this.tracker.notifyNewBestBlock(block(100));
+        this.inBlock(100, 3);
+        this.tracker.notifyNewBestBlock(block(102));
+        verify(this.transactionService).complete(Arrays.asList(this.accepted));
+
+        this.inBlock(100, 4);
+        this.tracker.notifyNewBestBlock(block(103));
+        verify(this.transactionService, times(2)).complete(Arrays.asList(this.accepted));
+
+        this.tracker.notifyNewBestBlock(block(104));
+        verify(this.transactionService, times(2)).complete(Arrays.asList(this.accepted));
+    }
+
+    @Test
+    public void testFailingCompletionGivenUp() throws Exception {
+        when(this.transactionService.complete(anyListOf(Transaction.class))).thenThrow(new ObjectNotFoundException(2L, Transaction.class));
+        this.inBlock(100, 3);
+        for (int height = 102; height < 102 + ConfirmationTracker.ATTEMPTS + 3; height++) {
+            this.tracker.notifyNewBestBlock(block(height));
+        }
+        // still ACCEPTED, and awaited, but no longer tried
+        verify(this.transactionService, times(ConfirmationTracker.ATTEMPTS)).complete(Arrays.asList(this.accepted));
+    }
+
+    @Test
+    public void testDueTransactionsCompletedInOneBatch() throws Exception {
+        final Transaction withdrawal = Transaction.builder().id(2L).status(Status.ACCEPTED).transactionHash(HASH).build();
+        when(this.transactionService.getAcceptedByTransactionHash(HASH)).thenReturn(Arrays.asList(this.accepted, withdrawal));
+        when(this.transactionService.complete(anyListOf(Transaction.class))).thenAnswer(invocation -> {
+            when(this.transactionService.getAwaitingConfirmation()).thenReturn(Collections.emptySet());
+            return Arrays.asList(this.accepted.withStatus(Status.COMPLETED), withdrawal.withStatus(Status.COMPLETED));
+        });
+        this.inBlock(100, 3);
+        this.tracker.notifyNewBestBlock(block(102));
+        this.tracker.notifyNewBestBlock(block(103));
+        verify(this.transactionService).complete(anyListOf(Transaction.class));
+        verify(this.transactionService).complete(Arrays.asList(this.accepted, withdrawal));
+        assertEquals(Status.ACCEPTED, withdrawal.getStatus());
+    }
+
+    @Test
+    public void testDeadTransactionDropped() throws Exception {
+        when(this.confidence.getConfidenceType()).thenReturn(ConfidenceType.DEAD);
+        this.tracker.notifyNewBestBlock(block(100));
+        when(this.transactionService.getAwaitingConfirmation()).thenReturn(Collections.emptySet());
+        this.tracker.notifyNewBestBlock(block(110));
+        verify(this.transactionService, never()).complete(anyListOf(Transaction.class));
+    }
+
+    private void inBlock(final int height, final int depth) {
+        when(this.confidence.getAppearedAtChainHeight()).thenReturn(height);
+        when(this.confidence.getDepthInBlocks()).thenReturn(depth);
+    }
+
+    private static StoredBlock block(final int height) {
+        final StoredBlock block = mock(StoredBlock.class);
+        when(block.getHeight()).thenReturn(height);
+        return block;
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author massi
+ *
+ */
+public class WalletBlobStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEveryWriteIsANewVersion() throws Exception {
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 2);
+        final String first = write(store, "one");
+        final String second = write(store, "two");
+        assertTrue(WalletBlobStore.isReference(first));
+        assertFalse(WalletBlobStore.isReference("Base64protobuf"));
+        assertNotEquals(first, second);
+        assertEquals("one", content(store, first));
+        assertEquals("two", content(store, second));
+
+        // a restarted store goes on from the last version
+        final String third = write(new WalletBlobStore(this.folder.getRoot(), 2), "three");
+        assertTrue(version(third) > version(second));
+    }
+
+    @Test
+    public void testReadMapsTheBlob() throws Exception {
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 1);
+        final String reference = write(store, "mapped");
+        final ByteBuffer buffer = store.read(reference);
+        assertTrue(buffer instanceof MappedByteBuffer);
+        assertTrue(buffer.isReadOnly());
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertArrayEquals("mapped".getBytes(StandardCharsets.UTF_8), bytes);
+    }
+
+    @Test
+    public void testBlobAppearsOnlyOnceWrittenAndSynced() throws Exception {
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 1);
+        final String reference = store.write("central", out -> {
+            // the content goes to a file channel that is forced to disk, under a temporary name
+            assertTrue(out instanceof FileOutputStream);
+            out.write("partial".getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, this.folder.getRoot().list((dir, name) -> name.endsWith(".blob.tmp")).length);
+            assertEquals(0, this.folder.getRoot().list((dir, name) -> name.endsWith(".blob")).length);
+        });
+        assertEquals("partial", content(store, reference));
+        assertEquals(0, this.folder.getRoot().list((dir, name) -> name.endsWith(".tmp")).length);
+    }
+
+    @Test
+    public void testFailedWriteLeavesNothing() throws Exception {
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 1);
+        try {
+            store.write("central", out -> {
+                out.write(1);
+                throw new IOException("disk full");
+            });
+        } catch (final IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertEquals(0, this.folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testCrashLeftoversAreRemoved() throws Exception {
+        assertTrue(new File(this.folder.getRoot(), "central.7.blob.tmp").createNewFile());
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 1);
+        assertEquals(0, this.folder.getRoot().list().length);
+        assertEquals(1, version(write(store, "after")));
+    }
+
+    @Test
+    public void testPruneKeepsTheReferencedAndPendingVersions() throws Exception {
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 1);
+        final String first = write(store, "one");
+        store.prune(first);
+        final String second = write(store, "two");
+        final String third = write(store, "three");
+        // the graph took the third, while the second is still being saved
+        store.prune(third);
+        assertEquals("two", content(store, second));
+        // the graph ended up with the second: it is kept, as the newest is
+        store.prune(second);
+        assertEquals("two", content(store, second));
+        assertEquals("three", content(store, third));
+        assertFalse(exists(first));
+
+        final String fourth = write(store, "four");
+        store.prune(fourth);
+        assertFalse(exists(second));
+        assertFalse(exists(third));
+        assertEquals("four", content(store, fourth));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        final WalletBlobStore store = new WalletBlobStore(this.folder.getRoot(), 3);
+        final String kept = write(store, "kept");
+        store.prune(kept);
+        final String failed = write(store, "failed");
+        store.discard(failed);
+        assertFalse(exists(failed));
+        assertTrue(exists(kept));
+    }
+
+    private boolean exists(final String reference) {
+        return new File(this.folder.getRoot(), reference.substring(WalletBlobStore.PREFIX.length())).exists();
+    }
+
+    private static String write(final WalletBlobStore store, final String content) throws IOException {
+        return store.write("central", out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String content(final WalletBlobStore store, final String reference) throws IOException {
+        try (InputStream in = store.open(reference)) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long version(final String reference) {
+        final String[] parts = reference.split("\\.");
+        return Long.parseLong(parts[parts.length - 2]);
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.bitcoinj;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * @author massi
+ *
+ */
+public class WalletEventDispatcherTest {
+
+    private final WalletEventDispatcher dispatcher = new WalletEventDispatcher(2, 2);
+
+    @After
+    public void after() throws InterruptedException {
+        this.dispatcher.shutdown();
+    }
+
+    @Test
+    public void testEventsOfATransactionInOrder() throws Exception {
+        final List<Integer> handled = new CopyOnWriteArrayList<>();
+        final Executor lane = this.dispatcher.lane("tx");
+        for (int i = 0; i < 50; i++) {
+            final int event = i;
+            // a full lane blocks here instead of rejecting
+            lane.execute(() -> handled.add(event));
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        lane.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(50, handled.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, handled.get(i).intValue());
+        }
+        this.dispatcher.shutdown();
+        assertEquals(51L, this.metric("blockchain.events.processed"));
+    }
+
+    @Test
+    public void testWalletSavesCoalesced() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger saves = new AtomicInteger();
+        this.dispatcher.saveWallet(() -> {
+            started.countDown();
+            await(release);
+            saves.incrementAndGet();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            this.dispatcher.saveWallet(saves::incrementAndGet);
+        }
+        assertEquals(1L, this.metric("blockchain.events.queued"));
+        release.countDown();
+        this.dispatcher.shutdown();
+        assertEquals(2, saves.get());
+    }
+
+    private long metric(final String name) {
+        for (final Metric<?> metric : this.dispatcher.metrics()) {
+            if (metric.getName().equals(name)) {
+                return metric.getValue().longValue();
+            }
+        }
+        throw new AssertionError("no metric " + name);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.simulated;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.blockchain.BlockChainService;
+import io.yope.payment.blockchain.BlockchainException;
+import io.yope.payment.blockchain.BlockchainSettings;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.IllegalTransactionStateException;
+import io.yope.payment.exceptions.InsufficientFundsException;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.transaction.services.TransactionStateService;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Blockchain service on the simulated chain, driving the transactions as the bitcoinj one does:
+ * a deposit is ACCEPTED when its payment enters the mempool and COMPLETED, as the withdrawals,
+ * once the payment has the configured confirmations.
+ * For performance tests on a single machine, with no peer.
+ * @author massi
+ *
+ */
+@Slf4j
+@AllArgsConstructor
+public class SimulatedBlockchainServiceImpl implements BlockChainService, SimulatedChain.Listener {
+
+    /**
+     * a deposit is created after its address, an auto payment finding none tries again.
+     */
+    private static final int AUTO_PAY_ATTEMPTS = 3;
+
+    private final SimulatedChain chain;
+
+    private final TransactionStateService transactionService;
+
+    private final WalletDbService walletService;
+
+    private final AccountDbService accountService;
+
+    private final BlockchainSettings settings;
+
+    private final SimulationSettings simulation;
+
+    public void init() {
+        if (this.accountService.getByEmail(this.settings.getAdminUsername()) == null) {
+            final Wallet central = this.walletService.create(Wallet.builder()
+                    .walletHash(this.chain.newAddress())
+                    .type(Wallet.Type.EXTERNAL).status(Wallet.Status.ACTIVE)
+                    .name(this.settings.getWalletName()).description("simulated")
+                    .balance(BigDecimal.ZERO).availableBalance(BigDecimal.ZERO).build());
+            this.accountService.create(Account.builder()
+                    .email(this.settings.getAdminUsername()).firstName("admin")
+                    .lastName("admin").type(Account.Type.ADMIN)
+                    .wallets(Lists.newArrayList(central)).build());
+        }
+        this.chain.addListener(this);
+        log.info("simulated chain started, a block every {} ms", this.simulation.getBlockIntervalMillis());
+    }
+
+    @Override
+    public String send(final Transaction transaction) throws BlockchainException {
+        return this.send(Collections.singletonList(transaction));
+    }
+
+    @Override
+    public String send(final List<Transaction> transactions) throws BlockchainException {
+        if (this.chain.failSend()) {
+            throw new BlockchainException("simulated send failure");
+        }
+        final BigDecimal amount = transactions.stream().map(Transaction::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        return this.chain.send(amount);
+    }
+
+    @Override
+    public String generateCentralWalletHash() throws BlockchainException {
+        final String address = this.chain.newAddress();
+        if (this.simulation.getAutoPayDelayMillis() > 0) {
+            this.autoPay(address, AUTO_PAY_ATTEMPTS);
+        }
+        return address;
+    }
+
+    private void autoPay(final String address, final int attempts) {
+        this.chain.schedule(() -> {
+            final Transaction pending = this.transactionService.getPendingByReceiverHash(address);
+            if (pending != null) {
+                this.chain.pay(address, pending.getAmount(), this.chain.newAddress());
+            } else if (attempts > 1) {
+                this.autoPay(address, attempts - 1);
+            }
+        }, this.simulation.getAutoPayDelayMillis());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.blockchain.simulated.SimulatedChain.Listener#received(io.yope.payment.blockchain.simulated.SimulatedTransaction)
+     */
+    @Override
+    public void received(final SimulatedTransaction tx) {
+        final Transaction pending = this.transactionService.getPendingByReceiverHash(tx.getReceiverHash());
+        if (pending == null) {
+            return;
+        }
+        final Transaction transaction = pending.toBuilder()
+                .transactionHash(tx.getHash())
+                .balance(tx.getAmount())
+                .blockchainFees(BigDecimal.ZERO)
+                .receiverHash(null)
+                .senderHash(tx.getSenderHash())
+                .QR(null)
+                .status(Transaction.Status.ACCEPTED)
+                .build();
+        this.save(transaction);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.blockchain.simulated.SimulatedChain.Listener#newBlock(int)
+     */
+    @Override
+    public void newBlock(final int height) {
+        for (final String hash : this.transactionService.getAwaitingConfirmation()) {
+            if (this.chain.getDepth(hash) < Math.max(this.settings.getConfirmations(), 1)) {
+                continue;
+            }
+            for (final Transaction accepted : this.transactionService.getAcceptedByTransactionHash(hash)) {
+                this.save(accepted.toBuilder().status(Transaction.Status.COMPLETED).build());
+            }
+        }
+    }
+
+    private void save(final Transaction transaction) {
+        try {
+            this.transactionService.save(transaction.getId(), transaction);
+            log.debug("transaction {} {}", transaction.getId(), transaction.getStatus());
+        } catch (final ObjectNotFoundException e) {
+            log.error("transaction not found", e);
+        } catch (final IllegalTransactionStateException e) {
+            log.error("illegal transaction state", e);
+        } catch (final InsufficientFundsException e) {
+            log.error("insufficient funds", e);
+        }
+    }
+
+}
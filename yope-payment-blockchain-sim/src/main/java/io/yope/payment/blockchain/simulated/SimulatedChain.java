@@ -0,0 +1,211 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.simulated;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * an in-process chain: the transactions wait in the mempool and are mined at every block interval,
+ * a dropped transaction never is. Everything happens on the single chain thread,
+ * the listeners included, so a run with a seed and manual mining is repeatable.
+ * @author massi
+ *
+ */
+@Slf4j
+public class SimulatedChain {
+
+    /**
+     * notified on the chain thread.
+     */
+    public interface Listener {
+
+        /**
+         * a transaction paying a generated address entered the mempool.
+         */
+        void received(SimulatedTransaction transaction);
+
+        /**
+         * a block was mined.
+         */
+        void newBlock(int height);
+    }
+
+    /**
+     * the mined transactions are forgotten at this depth.
+     */
+    private static final int KEEP_DEPTH = 100;
+
+    private final SimulationSettings settings;
+
+    private final Random random;
+
+    private final AtomicLong addresses = new AtomicLong();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("simulated-chain").setDaemon(true).build());
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Map<String, SimulatedTransaction> transactions = Maps.newHashMap();
+
+    private final List<SimulatedTransaction> mempool = Lists.newLinkedList();
+
+    private volatile int height;
+
+    public SimulatedChain(final SimulationSettings settings) {
+        this.settings = settings;
+        this.random = settings.getSeed() != 0 ? new Random(settings.getSeed()) : new Random();
+        final long interval = settings.getBlockIntervalMillis();
+        if (interval > 0) {
+            this.executor.scheduleWithFixedDelay(() -> this.run(this::mineBlock), interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void addListener(final Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @return a new address of the central wallet
+     */
+    public String newAddress() {
+        return String.format("sim%031x", this.addresses.incrementAndGet());
+    }
+
+    /**
+     * pays an address of the central wallet.
+     * @return the hash of the transaction
+     */
+    public String pay(final String receiverHash, final BigDecimal amount, final String senderHash) {
+        return this.submit(new SimulatedTransaction(this.newHash(), receiverHash, senderHash, amount));
+    }
+
+    /**
+     * sends from the central wallet.
+     * @return the hash of the transaction
+     */
+    public String send(final BigDecimal amount) {
+        return this.submit(new SimulatedTransaction(this.newHash(), null, null, amount));
+    }
+
+    /**
+     * @return true if the next send should fail
+     */
+    public boolean failSend() {
+        return this.random.nextDouble() < this.settings.getSendFailureRate();
+    }
+
+    /**
+     * runs a task on the chain thread after a delay.
+     */
+    public void schedule(final Runnable task, final long delayMillis) {
+        this.executor.schedule(() -> this.run(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * mines blocks at once, after the transactions submitted so far.
+     */
+    public void mine(final int blocks) throws InterruptedException {
+        try {
+            this.executor.submit(() -> {
+                for (int i = 0; i < blocks; i++) {
+                    this.mineBlock();
+                }
+            }).get();
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * to be called on the chain thread, from a listener.
+     * @return the confirmations of the transaction, 0 in the mempool, -1 if unknown or dropped
+     */
+    public int getDepth(final String hash) {
+        final SimulatedTransaction transaction = this.transactions.get(hash);
+        if (transaction == null) {
+            return -1;
+        }
+        return transaction.getHeight() == 0 ? 0 : this.height - transaction.getHeight() + 1;
+    }
+
+    public void shutdown() throws InterruptedException {
+        this.executor.shutdownNow();
+        this.executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private String submit(final SimulatedTransaction transaction) {
+        final boolean dropped = this.random.nextDouble() < this.settings.getDropRate();
+        this.executor.execute(() -> {
+            if (dropped) {
+                log.info("transaction {} dropped", transaction.getHash());
+            } else {
+                this.transactions.put(transaction.getHash(), transaction);
+                this.mempool.add(transaction);
+            }
+            if (transaction.getReceiverHash() != null) {
+                this.listeners.forEach(listener -> this.run(() -> listener.received(transaction)));
+            }
+        });
+        return transaction.getHash();
+    }
+
+    private void mineBlock() {
+        final int block = this.height + 1;
+        final long included = System.currentTimeMillis() - this.settings.getInclusionDelayMillis();
+        int mined = 0;
+        for (final Iterator<SimulatedTransaction> pending = this.mempool.iterator(); pending.hasNext();) {
+            final SimulatedTransaction transaction = pending.next();
+            if (transaction.getSubmitted() <= included) {
+                transaction.mined(block);
+                pending.remove();
+                mined++;
+            }
+        }
+        this.transactions.values().removeIf(t -> t.getHeight() > 0 && block - t.getHeight() >= KEEP_DEPTH);
+        this.height = block;
+        log.debug("block {} mined with {} transactions", block, mined);
+        this.listeners.forEach(listener -> this.run(() -> listener.newBlock(block)));
+    }
+
+    /**
+     * a failing task must not stop the blocks.
+     */
+    private void run(final Runnable task) {
+        try {
+            task.run();
+        } catch (final RuntimeException e) {
+            log.error("simulated chain task failed", e);
+        }
+    }
+
+    private String newHash() {
+        final StringBuilder hash = new StringBuilder(64);
+        for (int i = 0; i < 4; i++) {
+            hash.append(String.format("%016x", this.random.nextLong()));
+        }
+        return hash.toString();
+    }
+
+}
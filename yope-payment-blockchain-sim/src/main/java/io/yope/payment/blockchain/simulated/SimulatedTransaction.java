@@ -0,0 +1,47 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.simulated;
+
+import java.math.BigDecimal;
+
+import lombok.Getter;
+
+/**
+ * a transaction of the simulated chain.
+ * @author massi
+ *
+ */
+@Getter
+public class SimulatedTransaction {
+
+    private final String hash;
+
+    /**
+     * the address paid, null for the transactions sent by the central wallet.
+     */
+    private final String receiverHash;
+
+    private final String senderHash;
+
+    private final BigDecimal amount;
+
+    private final long submitted = System.currentTimeMillis();
+
+    /**
+     * the height of the block including it, 0 while in the mempool.
+     */
+    private int height;
+
+    SimulatedTransaction(final String hash, final String receiverHash, final String senderHash, final BigDecimal amount) {
+        this.hash = hash;
+        this.receiverHash = receiverHash;
+        this.senderHash = senderHash;
+        this.amount = amount;
+    }
+
+    void mined(final int blockHeight) {
+        this.height = blockHeight;
+    }
+
+}
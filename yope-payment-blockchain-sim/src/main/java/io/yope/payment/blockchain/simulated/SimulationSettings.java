@@ -0,0 +1,53 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.simulated;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * the simulated chain, under blockchain.simulation.
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class SimulationSettings {
+
+    /**
+     * replaces the bitcoinj service with the simulated chain.
+     */
+    private boolean enabled;
+
+    /**
+     * the time between two blocks; with 0 the blocks are only mined by {@link SimulatedChain#mine(int)}.
+     */
+    private long blockIntervalMillis = 1000;
+
+    /**
+     * the time a transaction stays in the mempool before it can be mined.
+     */
+    private long inclusionDelayMillis;
+
+    /**
+     * pays the deposits by itself, this long after their address was generated; never when 0.
+     */
+    private long autoPayDelayMillis;
+
+    /**
+     * the probability that a send fails.
+     */
+    private double sendFailureRate;
+
+    /**
+     * the probability that a transaction is never mined.
+     */
+    private double dropRate;
+
+    /**
+     * makes the generated hashes and the injected failures repeatable; random when 0.
+     */
+    private long seed;
+
+}
@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.yope.payment.blockchain.BlockChainService;
+import io.yope.payment.blockchain.BlockchainSettings;
+import io.yope.payment.blockchain.simulated.SimulatedBlockchainServiceImpl;
+import io.yope.payment.blockchain.simulated.SimulatedChain;
+import io.yope.payment.blockchain.simulated.SimulationSettings;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.transaction.services.TransactionStateService;
+
+/**
+ * simulated blockchain, enabled by blockchain.simulation.enabled=true
+ * in place of the bitcoinj one.
+ * @author massi
+ *
+ */
+@Configuration
+@EnableConfigurationProperties
+@ConditionalOnProperty(prefix = "blockchain.simulation", name = "enabled")
+public class SimulatedBlockchainConfiguration {
+
+    @ConfigurationProperties(prefix = "blockchain")
+    @Bean
+    public BlockchainSettings blockchainSettings() {
+        return new BlockchainSettings();
+    }
+
+    @ConfigurationProperties(prefix = "blockchain.simulation")
+    @Bean
+    public SimulationSettings simulationSettings() {
+        return new SimulationSettings();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public SimulatedChain simulatedChain(final SimulationSettings simulation) {
+        return new SimulatedChain(simulation);
+    }
+
+    @Bean
+    public BlockChainService getBlockchainService(final SimulatedChain chain,
+                                                  final TransactionStateService transactionService,
+                                                  final WalletDbService walletService,
+                                                  final AccountDbService accountService,
+                                                  final BlockchainSettings settings,
+                                                  final SimulationSettings simulation) {
+        final SimulatedBlockchainServiceImpl blockChainService =
+                new SimulatedBlockchainServiceImpl(chain, transactionService, walletService, accountService, settings, simulation);
+        blockChainService.init();
+        return blockChainService;
+    }
+
+}
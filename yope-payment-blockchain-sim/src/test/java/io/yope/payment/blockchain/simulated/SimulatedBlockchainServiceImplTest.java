@@ -0,0 +1,110 @@
+/**
+ *
+ */
+package io.yope.payment.blockchain.simulated;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.yope.payment.blockchain.BlockchainException;
+import io.yope.payment.blockchain.BlockchainSettings;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.transaction.services.TransactionStateService;
+
+/**
+ * @author massi
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SimulatedBlockchainServiceImplTest {
+
+    @Mock
+    private TransactionStateService transactionService;
+
+    @Mock
+    private WalletDbService walletService;
+
+    @Mock
+    private AccountDbService accountService;
+
+    private final SimulationSettings simulation = new SimulationSettings();
+
+    private SimulatedChain chain;
+
+    private SimulatedBlockchainServiceImpl service;
+
+    @Before
+    public void init() {
+        final BlockchainSettings settings = new BlockchainSettings();
+        settings.setConfirmations(2);
+        this.simulation.setBlockIntervalMillis(0);
+        this.simulation.setSeed(42);
+        this.chain = new SimulatedChain(this.simulation);
+        this.service = new SimulatedBlockchainServiceImpl(this.chain, this.transactionService, this.walletService,
+                this.accountService, settings, this.simulation);
+        this.service.init();
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        this.chain.shutdown();
+    }
+
+    @Test
+    public void testDepositAcceptedThenCompleted() throws Exception {
+        final String address = this.service.generateCentralWalletHash();
+        final Transaction pending = Transaction.builder().id(1L).amount(BigDecimal.TEN)
+                .receiverHash(address).status(Transaction.Status.PENDING).build();
+        when(this.transactionService.getPendingByReceiverHash(address)).thenReturn(pending);
+
+        final String hash = this.chain.pay(address, BigDecimal.TEN, "sender");
+        when(this.transactionService.getAwaitingConfirmation()).thenReturn(Collections.singleton(hash));
+        this.chain.mine(1);
+        final ArgumentCaptor<Transaction> saved = ArgumentCaptor.forClass(Transaction.class);
+        verify(this.transactionService).save(eq(1L), saved.capture());
+        Assert.assertEquals(Transaction.Status.ACCEPTED, saved.getValue().getStatus());
+        Assert.assertEquals(hash, saved.getValue().getTransactionHash());
+        verify(this.transactionService, never()).getAcceptedByTransactionHash(hash);
+
+        when(this.transactionService.getAcceptedByTransactionHash(hash)).thenReturn(Collections.singletonList(saved.getValue()));
+        this.chain.mine(1);
+        verify(this.transactionService, times(2)).save(eq(1L), saved.capture());
+        Assert.assertEquals(Transaction.Status.COMPLETED, saved.getValue().getStatus());
+    }
+
+    @Test
+    public void testDroppedTransactionNeverConfirmed() throws Exception {
+        this.simulation.setDropRate(1);
+        final String hash = this.service.send(Transaction.builder().id(2L).amount(BigDecimal.ONE).build());
+        when(this.transactionService.getAwaitingConfirmation()).thenReturn(Collections.singleton(hash));
+        this.chain.mine(10);
+        verify(this.transactionService, never()).getAcceptedByTransactionHash(hash);
+        verify(this.transactionService, never()).save(anyLong(), any(Transaction.class));
+    }
+
+    @Test(expected = BlockchainException.class)
+    public void testSendFailure() throws Exception {
+        this.simulation.setSendFailureRate(1);
+        this.service.send(Transaction.builder().id(3L).amount(BigDecimal.ONE).build());
+    }
+
+}
@@ -1,5 +1,7 @@
 package io.yope.payment.blockchain;
 
+import java.util.List;
+
 import io.yope.payment.domain.Transaction;
 
 /**
@@ -9,6 +11,14 @@ public interface BlockChainService {
 
     String send(Transaction transaction) throws BlockchainException;
 
+    /**
+     * sends several withdrawals in a single blockchain transaction, one output each.
+     * @param transactions the withdrawals
+     * @return the hash of the blockchain transaction, shared by all the withdrawals
+     * @throws BlockchainException
+     */
+    String send(List<Transaction> transactions) throws BlockchainException;
+
     /**
      * generated a new hash value from the central wallet.
      * @return
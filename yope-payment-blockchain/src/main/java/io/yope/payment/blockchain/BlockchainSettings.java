@@ -33,4 +33,49 @@ public class BlockchainSettings {
     private String adminUsername;
 
     private String adminPassword;
+
+    /**
+     * folder of the wallet blob store, walletFolder/blobs when not set.
+     */
+    private String walletBlobFolder;
+
+    /**
+     * versions of the central wallet kept in the blob store.
+     */
+    private int walletBlobVersions = 3;
+
+    /**
+     * threads handling the wallet events, each keeping the events of a transaction in order.
+     */
+    private int eventWorkers = 4;
+
+    /**
+     * events each worker queues before blocking the bitcoinj user thread.
+     */
+    private int eventQueueCapacity = 1000;
+
+    /**
+     * the SPV block store file, tbtc_blockstore or main_blockstore when not set.
+     */
+    private String blockStore;
+
+    /**
+     * a block store copied from a synced node, seeding the block store when it does not exist.
+     */
+    private String blockStoreSnapshot;
+
+    /**
+     * starts a new block store from the last checkpoint before the wallet keys.
+     */
+    private boolean checkpoints = true;
+
+    /**
+     * the checkpoints file, the one of bitcoinj for the network when not set.
+     */
+    private String checkpointFile;
+
+    /**
+     * the creation of the oldest wallet key, in seconds; read from the wallet file when 0.
+     */
+    private long checkpointTime;
 }
@@ -1,11 +1,13 @@
 package io.yope.payment.db.services;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.yope.payment.domain.Transaction;
 import io.yope.payment.domain.Transaction.Direction;
 import io.yope.payment.domain.Transaction.Status;
 import io.yope.payment.domain.Transaction.Type;
+import io.yope.payment.domain.Wallet;
 import io.yope.payment.exceptions.IllegalTransactionStateException;
 import io.yope.payment.exceptions.InsufficientFundsException;
 import io.yope.payment.exceptions.ObjectNotFoundException;
@@ -30,6 +32,17 @@ public interface TransactionDbService {
      */
     Transaction save(Long transactionId, Transaction transaction) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException;
 
+    /**
+     * updates the wallets and creates or updates the transactions in a single database transaction,
+     * as a transfer or a change of state needs.
+     * A transaction without id is created; its wallets are taken from {@code wallets} when there.
+     * @param wallets the wallet modifications, with their ids
+     * @param transactions the transactions to be created or updated
+     * @return the transactions, the new ones with an id, in the same order
+     * @throws ObjectNotFoundException if a wallet or a transaction is not found; nothing is saved then
+     */
+    List<Transaction> applyBatch(Collection<Wallet> wallets, List<Transaction> transactions) throws ObjectNotFoundException;
+
     /**
      * retrieves a transaction with the given id.
      * @param id the id of the transactions;
@@ -37,15 +50,23 @@ public interface TransactionDbService {
      */
     Transaction get(Long id);
 
+    /**
+     * retrieves a transaction about to be written, from the primary database.
+     * {@link #get(Long)} may be served by a read replica lagging behind it.
+     * @param id the id of the transactions;
+     * @return a transaction of {@literal null} if none found
+     */
+    Transaction getForUpdate(Long id);
+
     /**
      * retrieves a list of transactions according to different filters.
      * @param walletHash the hash of the wallet to whom the transaction belong to - Mandatory
-     * @param reference the text contained into the reference field -m optional
+     * @param reference a regular expression the whole reference must match, e.g. order-.* - optional
      * @param direction the direction of the transaction - optional
      *          - OUT for all the transactions going out of the given wallet
      *          - IN for all the transactions going in to the given wallet
      *          - BOTH or null for all the transactions
-     * @return a list of transactions from/to the given wallet
+     * @return a list of transactions from/to the given wallet; their wallets only carry id, name and hash
      * @throws ObjectNotFoundException if no wallet with {@code walletHash} found
      */
     List<Transaction> getForWallet(Long walledId, String reference, Direction direction, Status status, Type type) throws ObjectNotFoundException;
@@ -53,12 +74,12 @@ public interface TransactionDbService {
     /**
      * retrieves a list of transactions from all the wallets owned by an account, according to different filters.
      * @param accountId the id of the account to whom the transaction refers to - Mandatory
-     * @param reference the text contained into the reference field -m optional
+     * @param reference a regular expression the whole reference must match, e.g. order-.* - optional
      * @param direction the direction of the transaction - optional
      *          - OUT to get the transactions going out of the given wallet
      *          - IN to get the transactions going in to the given wallet
      *          - BOTH or null for all the transactions
-     * @return a list of transactions from/to the given account
+     * @return a list of transactions from/to the given account; their wallets only carry id, name and hash
      * @throws ObjectNotFoundException if no account with {@code accountId} found
      */
     List<Transaction> getForAccount(Long accountId, String reference, Direction direction, Status status, Type type) throws ObjectNotFoundException;
@@ -77,6 +98,14 @@ public interface TransactionDbService {
      */
     Transaction getByTransactionHash(String hash);
 
+    /**
+     * Retrieves all the transactions sharing the hash generated in blockchain,
+     * as happens for withdrawals sent together.
+     * @param hash
+     * @return
+     */
+    List<Transaction> getAllByTransactionHash(String hash);
+
     List<Transaction> getTransaction(int delay, Transaction.Status status);
 
     Transaction getBySenderHash(String hash);
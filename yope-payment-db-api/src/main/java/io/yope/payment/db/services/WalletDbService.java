@@ -3,6 +3,7 @@
  */
 package io.yope.payment.db.services;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.yope.payment.domain.Wallet;
@@ -37,6 +38,14 @@ public interface WalletDbService {
      */
     Wallet getById(Long id);
 
+    /**
+     * retrieves a wallet about to be written, from the primary database.
+     * {@link #getById(Long)} may be served by a read replica lagging behind it.
+     * @param id the id of the wallet
+     * @return a wallet or {@literal null} if none found
+     */
+    Wallet getByIdForUpdate(Long id);
+
     /**
      * retrieves a wallet by the hash
      * @param hash the hash of the wallet
@@ -44,6 +53,13 @@ public interface WalletDbService {
      */
     Wallet getByWalletHash(String hash);
 
+    /**
+     * retrieves the wallets with the given hashes in a single lookup.
+     * @param hashes the hashes of the wallets
+     * @return the wallets found, in no particular order
+     */
+    List<Wallet> getByWalletHashes(Collection<String> hashes);
+
     /**
      * retrieves a wallet by the name for a given wallet.
      * it assumes that a wallet has a unique name for a given account.
@@ -61,6 +77,15 @@ public interface WalletDbService {
      */
     Wallet save(Long id, Wallet wallet) throws ObjectNotFoundException;
 
+    /**
+     * updates the balances of several wallets in a single database transaction;
+     * the other fields, content and keys among them, are left as stored.
+     * @param wallets the wallets with their ids and new balances; when one is listed twice the last balances win
+     * @return the stored wallets, in the same order
+     * @throws ObjectNotFoundException if one of the wallets is not found; none is updated then
+     */
+    List<Wallet> saveAll(Collection<Wallet> wallets) throws ObjectNotFoundException;
+
     /**
      * deletes a wallet by id
      * @param id the id of the wallet
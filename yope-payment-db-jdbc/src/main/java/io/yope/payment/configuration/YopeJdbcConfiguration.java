@@ -0,0 +1,114 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.yope.payment.jdbc.support.IdAllocator;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * relational implementation of the db services, enabled by jdbc.enabled=true
+ * in place of the Neo4j one.
+ * @author massi
+ *
+ */
+@Configuration
+@EnableTransactionManagement
+@EnableConfigurationProperties
+@ConditionalOnProperty(prefix = "jdbc", name = "enabled")
+@ComponentScan(basePackages = {"io.yope.payment.jdbc.services"})
+public class YopeJdbcConfiguration {
+
+    @Getter
+    @Setter
+    public static class JdbcSettings {
+        private String url = "jdbc:h2:mem:yope;DB_CLOSE_DELAY=-1";
+        private String username = "sa";
+        private String password = "";
+        private String driverClassName;
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+        private long connectionTimeout = 30000;
+        private long idleTimeout = 600000;
+        private boolean initializeSchema = true;
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "jdbc")
+    public JdbcSettings jdbcSettings() {
+        return new JdbcSettings();
+    }
+
+    @Bean(destroyMethod = "close")
+    public DataSource jdbcDataSource(final JdbcSettings settings) {
+        final HikariConfig config = new HikariConfig();
+        config.setPoolName("yope");
+        config.setJdbcUrl(settings.getUrl());
+        config.setUsername(settings.getUsername());
+        config.setPassword(settings.getPassword());
+        if (settings.getDriverClassName() != null) {
+            config.setDriverClassName(settings.getDriverClassName());
+        }
+        config.setMaximumPoolSize(settings.getMaximumPoolSize());
+        config.setMinimumIdle(settings.getMinimumIdle());
+        config.setConnectionTimeout(settings.getConnectionTimeout());
+        config.setIdleTimeout(settings.getIdleTimeout());
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    public DataSourceInitializer jdbcDataSourceInitializer(final DataSource jdbcDataSource, final JdbcSettings settings) {
+        final DataSourceInitializer initializer = new DataSourceInitializer();
+        initializer.setDataSource(jdbcDataSource);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("yope-schema.sql")));
+        initializer.setEnabled(settings.isInitializeSchema());
+        return initializer;
+    }
+
+    /**
+     * the services only get the database through the templates, which wait for the schema.
+     */
+    @Bean
+    @DependsOn("jdbcDataSourceInitializer")
+    public JdbcTemplate jdbcTemplate(final DataSource jdbcDataSource) {
+        return new JdbcTemplate(jdbcDataSource);
+    }
+
+    @Bean
+    public NamedParameterJdbcTemplate namedParameterJdbcTemplate(final JdbcTemplate jdbcTemplate) {
+        return new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Bean
+    public PlatformTransactionManager jdbcTransactionManager(final DataSource jdbcDataSource) {
+        return new DataSourceTransactionManager(jdbcDataSource);
+    }
+
+    @Bean
+    public IdAllocator idAllocator(final JdbcTemplate jdbcTemplate) {
+        return new IdAllocator(jdbcTemplate);
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.mappers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import io.yope.payment.domain.Account;
+
+/**
+ * maps an account row, without wallets.
+ * @author massi
+ *
+ */
+public class AccountRowMapper implements RowMapper<Account> {
+
+    public static final String COLUMNS = "id, email, type, first_name, last_name, status, registration_date, modification_date";
+
+    @Override
+    public Account mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+        return Account.builder()
+                .id(rs.getLong("id"))
+                .email(rs.getString("email"))
+                .type(Columns.getEnum(rs, "type", Account.Type.class))
+                .firstName(rs.getString("first_name"))
+                .lastName(rs.getString("last_name"))
+                .status(Columns.getEnum(rs, "status", Account.Status.class))
+                .registrationDate(Columns.getLong(rs, "registration_date"))
+                .modificationDate(Columns.getLong(rs, "modification_date"))
+                .build();
+    }
+
+    /**
+     * @param account an account
+     * @return the values of the columns following {@link #COLUMNS}, but the id.
+     */
+    public static Object[] values(final Account account) {
+        return new Object[] {
+                account.getEmail(),
+                Columns.name(account.getType()),
+                account.getFirstName(),
+                account.getLastName(),
+                Columns.name(account.getStatus()),
+                account.getRegistrationDate(),
+                account.getModificationDate()
+        };
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.mappers;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * null-safe conversions between columns and domain values.
+ * @author massi
+ *
+ */
+final class Columns {
+
+    private Columns() {
+    }
+
+    static Long getLong(final ResultSet rs, final String column) throws SQLException {
+        final long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * amounts are stored with a fixed scale; trailing zeros are dropped
+     * so that they read back as they have been written.
+     */
+    static BigDecimal getDecimal(final ResultSet rs, final String column) throws SQLException {
+        final BigDecimal value = rs.getBigDecimal(column);
+        if (value == null) {
+            return null;
+        }
+        final BigDecimal stripped = value.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    static <E extends Enum<E>> E getEnum(final ResultSet rs, final String column, final Class<E> type) throws SQLException {
+        final String value = rs.getString(column);
+        return value == null ? null : Enum.valueOf(type, value);
+    }
+
+    static String name(final Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.mappers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+
+/**
+ * maps a transaction row joined to its source and destination wallets, see {@link #SELECT} and {@link #SUMMARY}.
+ * @author massi
+ *
+ */
+public class TransactionRowMapper implements RowMapper<Transaction> {
+
+    public static final String COLUMNS = "id, source_id, destination_id, transaction_hash, sender_hash, receiver_hash, type, reference, status, description, "
+            + "amount, balance, blockchain_fees, fees, creation_date, accepted_date, failed_date, denied_date, expired_date, completed_date, qr";
+
+    /**
+     * selects transactions and their wallets in a single query; t is the transaction table.
+     */
+    public static final String SELECT = "SELECT t.*, " + WalletRowMapper.columns("s", "s_") + ", " + WalletRowMapper.columns("d", "d_")
+            + " FROM payment_transaction t JOIN wallet s ON s.id = t.source_id JOIN wallet d ON d.id = t.destination_id";
+
+    /**
+     * selects transactions with only id, name and hash of their wallets, for the histories.
+     */
+    public static final String SUMMARY = "SELECT t.*, s.name AS s_name, s.wallet_hash AS s_wallet_hash, d.name AS d_name, d.wallet_hash AS d_wallet_hash"
+            + " FROM payment_transaction t JOIN wallet s ON s.id = t.source_id JOIN wallet d ON d.id = t.destination_id";
+
+    private final boolean summary;
+
+    private final WalletRowMapper sourceMapper = new WalletRowMapper("s_");
+
+    private final WalletRowMapper destinationMapper = new WalletRowMapper("d_");
+
+    public TransactionRowMapper() {
+        this(false);
+    }
+
+    /**
+     * @param summary true to map the rows selected by {@link #SUMMARY}
+     */
+    public TransactionRowMapper(final boolean summary) {
+        this.summary = summary;
+    }
+
+    @Override
+    public Transaction mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+        return Transaction.builder()
+                .id(rs.getLong("id"))
+                .source(this.summary ? summary(rs, "source_id", "s_") : this.sourceMapper.mapRow(rs, rowNum))
+                .destination(this.summary ? summary(rs, "destination_id", "d_") : this.destinationMapper.mapRow(rs, rowNum))
+                .transactionHash(rs.getString("transaction_hash"))
+                .senderHash(rs.getString("sender_hash"))
+                .receiverHash(rs.getString("receiver_hash"))
+                .type(Columns.getEnum(rs, "type", Transaction.Type.class))
+                .reference(rs.getString("reference"))
+                .status(Columns.getEnum(rs, "status", Transaction.Status.class))
+                .description(rs.getString("description"))
+                .amount(Columns.getDecimal(rs, "amount"))
+                .balance(Columns.getDecimal(rs, "balance"))
+                .blockchainFees(Columns.getDecimal(rs, "blockchain_fees"))
+                .fees(Columns.getDecimal(rs, "fees"))
+                .creationDate(Columns.getLong(rs, "creation_date"))
+                .acceptedDate(Columns.getLong(rs, "accepted_date"))
+                .failedDate(Columns.getLong(rs, "failed_date"))
+                .deniedDate(Columns.getLong(rs, "denied_date"))
+                .expiredDate(Columns.getLong(rs, "expired_date"))
+                .completedDate(Columns.getLong(rs, "completed_date"))
+                .QR(rs.getString("qr"))
+                .build();
+    }
+
+    private static Wallet summary(final ResultSet rs, final String id, final String prefix) throws SQLException {
+        return Wallet.builder().id(rs.getLong(id)).name(rs.getString(prefix + "name")).walletHash(rs.getString(prefix + "wallet_hash")).build();
+    }
+
+    /**
+     * @param transaction a transaction
+     * @return the values of the columns following {@link #COLUMNS}, but the id.
+     */
+    public static Object[] values(final Transaction transaction) {
+        return new Object[] {
+                transaction.getSource().getId(),
+                transaction.getDestination().getId(),
+                transaction.getTransactionHash(),
+                transaction.getSenderHash(),
+                transaction.getReceiverHash(),
+                Columns.name(transaction.getType()),
+                transaction.getReference(),
+                Columns.name(transaction.getStatus()),
+                transaction.getDescription(),
+                transaction.getAmount(),
+                transaction.getBalance(),
+                transaction.getBlockchainFees(),
+                transaction.getFees(),
+                transaction.getCreationDate(),
+                transaction.getAcceptedDate(),
+                transaction.getFailedDate(),
+                transaction.getDeniedDate(),
+                transaction.getExpiredDate(),
+                transaction.getCompletedDate(),
+                transaction.getQR()
+        };
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.mappers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import io.yope.payment.domain.Wallet;
+
+/**
+ * maps a wallet row; the prefix allows reading wallets joined to other tables.
+ * @author massi
+ *
+ */
+public class WalletRowMapper implements RowMapper<Wallet> {
+
+    public static final String COLUMNS = "id, account_id, wallet_hash, name, balance, available_balance, status, description, creation_date, modification_date, type, content, private_key";
+
+    private final String prefix;
+
+    public WalletRowMapper() {
+        this("");
+    }
+
+    public WalletRowMapper(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param alias the alias of the wallet table in the query
+     * @param prefix the prefix to give to each column
+     * @return the wallet columns, aliased with the given prefix.
+     */
+    public static String columns(final String alias, final String prefix) {
+        final StringBuilder builder = new StringBuilder();
+        for (final String column : COLUMNS.split(", ")) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(alias).append('.').append(column).append(" AS ").append(prefix).append(column);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public Wallet mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+        return Wallet.builder()
+                .id(rs.getLong(this.prefix + "id"))
+                .walletHash(rs.getString(this.prefix + "wallet_hash"))
+                .name(rs.getString(this.prefix + "name"))
+                .balance(Columns.getDecimal(rs, this.prefix + "balance"))
+                .availableBalance(Columns.getDecimal(rs, this.prefix + "available_balance"))
+                .status(Columns.getEnum(rs, this.prefix + "status", Wallet.Status.class))
+                .description(rs.getString(this.prefix + "description"))
+                .creationDate(Columns.getLong(rs, this.prefix + "creation_date"))
+                .modificationDate(Columns.getLong(rs, this.prefix + "modification_date"))
+                .type(Columns.getEnum(rs, this.prefix + "type", Wallet.Type.class))
+                .content(rs.getString(this.prefix + "content"))
+                .privateKey(rs.getString(this.prefix + "private_key"))
+                .build();
+    }
+
+    /**
+     * @param wallet a wallet
+     * @return the values of the columns following {@link #COLUMNS}, but the first two.
+     */
+    public static Object[] values(final Wallet wallet) {
+        return new Object[] {
+                wallet.getWalletHash(),
+                wallet.getName(),
+                wallet.getBalance(),
+                wallet.getAvailableBalance(),
+                Columns.name(wallet.getStatus()),
+                wallet.getDescription(),
+                wallet.getCreationDate(),
+                wallet.getModificationDate(),
+                Columns.name(wallet.getType()),
+                wallet.getContent(),
+                wallet.getPrivateKey()
+        };
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.services;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Account.Status;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.jdbc.mappers.AccountRowMapper;
+import io.yope.payment.jdbc.mappers.WalletRowMapper;
+import io.yope.payment.jdbc.support.IdAllocator;
+import io.yope.payment.jdbc.support.Statements;
+
+/**
+ * @author massi
+ *
+ */
+@Service
+@Transactional(value="jdbcTransactionManager")
+public class JdbcAccountService implements AccountDbService {
+
+    private static final String INSERT = Statements.insert("account", AccountRowMapper.COLUMNS);
+
+    private static final String UPDATE = Statements.update("account", AccountRowMapper.COLUMNS, 1);
+
+    private static final String SELECT = "SELECT " + AccountRowMapper.COLUMNS + " FROM account";
+
+    private static final String SELECT_WALLETS = "SELECT " + WalletRowMapper.COLUMNS + " FROM wallet";
+
+    private static final AccountRowMapper MAPPER = new AccountRowMapper();
+
+    private static final WalletRowMapper WALLET_MAPPER = new WalletRowMapper();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#create(io.yope.payment.domain.Account, io.yope.payment.domain.Wallet[])
+     */
+    @Override
+    public Account create(final Account account, final Wallet... wallets) {
+        final long now = System.currentTimeMillis();
+        final Account toSave = account.toBuilder().id(this.idAllocator.next()).registrationDate(now).build();
+        this.jdbcTemplate.update(INSERT, Statements.withIds(AccountRowMapper.values(toSave), toSave.getId()));
+        final List<Wallet> owned = Lists.newArrayList();
+        if (account.getWallets() != null && !account.getWallets().isEmpty()) {
+            owned.addAll(account.getWallets());
+            this.batchLink(toSave.getId(), owned);
+        }
+        final List<Wallet> created = Lists.newArrayList();
+        for (final Wallet wallet: wallets) {
+            if (wallet == null) {
+                continue;
+            }
+            created.add(wallet.toBuilder().id(this.idAllocator.next()).creationDate(now).build());
+        }
+        // the wallets of a new account go in a single round trip
+        this.jdbcTemplate.batchUpdate(JdbcWalletService.INSERT, created.stream()
+                .map(w -> Statements.withIds(WalletRowMapper.values(w), w.getId(), toSave.getId()))
+                .collect(Collectors.toList()));
+        owned.addAll(created);
+        return toSave.toBuilder().wallets(owned).build();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getById(java.lang.Long)
+     */
+    @Override
+    public Account getById(final Long id) {
+        return this.withWallets(JdbcWalletService.first(this.jdbcTemplate.query(SELECT + " WHERE id = ?", MAPPER, id)));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getByEmail(java.lang.String)
+     */
+    @Override
+    public Account getByEmail(final String email) {
+        return this.withWallets(JdbcWalletService.first(this.jdbcTemplate.query(SELECT + " WHERE email = ?", MAPPER, email)));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#update(java.lang.Long, io.yope.payment.domain.Account)
+     */
+    @Override
+    public Account update(final Long id, final Account account) throws ObjectNotFoundException {
+        final Account toSave = account.toBuilder().id(id).modificationDate(System.currentTimeMillis()).build();
+        if (this.jdbcTemplate.update(UPDATE, Statements.withId(AccountRowMapper.values(toSave), id)) == 0) {
+            throw new ObjectNotFoundException(id, Account.class);
+        }
+        if (toSave.getWallets() != null) {
+            this.link(id, toSave.getWallets());
+        }
+        return toSave;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#delete(java.lang.Long)
+     */
+    @Override
+    public Account delete(final Long id) throws ObjectNotFoundException {
+        final Account account = this.getById(id);
+        if (account == null) {
+            throw new ObjectNotFoundException(id, Account.class);
+        }
+        return this.update(id, account.toBuilder().status(Status.DEACTIVATED).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getAccounts()
+     */
+    @Override
+    public List<Account> getAccounts() {
+        return this.jdbcTemplate.query(SELECT, MAPPER).stream()
+                .map(a -> a.toBuilder().wallets(Lists.newArrayList()).build()).collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getByType(io.yope.payment.domain.Account.Type)
+     */
+    @Override
+    public List<Account> getByType(final Account.Type type) {
+        final List<Account> accounts = this.jdbcTemplate.query(SELECT + " WHERE type = ?", MAPPER, type.name());
+        if (accounts.isEmpty()) {
+            return accounts;
+        }
+        // one query for the wallets of all the accounts, rather than one per account
+        final List<Long> ids = accounts.stream().map(Account::getId).collect(Collectors.toList());
+        final Map<Long, List<Wallet>> wallets = Maps.newHashMap();
+        this.namedJdbcTemplate.query(SELECT_WALLETS + " WHERE account_id IN (:ids)", ImmutableMap.of("ids", ids), (RowCallbackHandler) rs ->
+            wallets.computeIfAbsent(rs.getLong("account_id"), id -> Lists.newArrayList()).add(WALLET_MAPPER.mapRow(rs, 0)));
+        return accounts.stream().map(a -> a.toBuilder().wallets(wallets.getOrDefault(a.getId(), Lists.newArrayList())).build())
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#exists(java.lang.Long)
+     */
+    @Override
+    public boolean exists(final Long accountId) {
+        return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account WHERE id = ?", Integer.class, accountId) > 0;
+    }
+
+    private Account withWallets(final Account account) {
+        if (account == null) {
+            return null;
+        }
+        return account.toBuilder().wallets(this.jdbcTemplate.query(SELECT_WALLETS + " WHERE account_id = ?", WALLET_MAPPER, account.getId())).build();
+    }
+
+    /**
+     * makes the account the owner of exactly the given wallets.
+     */
+    private void link(final Long accountId, final List<Wallet> wallets) {
+        this.jdbcTemplate.update("UPDATE wallet SET account_id = NULL WHERE account_id = ?", accountId);
+        this.batchLink(accountId, wallets);
+    }
+
+    private void batchLink(final Long accountId, final List<Wallet> wallets) {
+        this.jdbcTemplate.batchUpdate("UPDATE wallet SET account_id = ? WHERE id = ?", wallets.stream()
+                .map(Wallet::getId).filter(Objects::nonNull)
+                .map(id -> new Object[] {accountId, id}).collect(Collectors.toList()));
+    }
+
+}
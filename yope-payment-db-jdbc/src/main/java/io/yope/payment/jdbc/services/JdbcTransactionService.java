@@ -0,0 +1,278 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Direction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.domain.Transaction.Type;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.IllegalTransactionStateException;
+import io.yope.payment.exceptions.InsufficientFundsException;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.jdbc.mappers.TransactionRowMapper;
+import io.yope.payment.jdbc.support.IdAllocator;
+import io.yope.payment.jdbc.support.Statements;
+
+/**
+ * @author massi
+ *
+ */
+@Service
+@Transactional(value="jdbcTransactionManager")
+public class JdbcTransactionService implements TransactionDbService {
+
+    private static final String INSERT = Statements.insert("payment_transaction", TransactionRowMapper.COLUMNS);
+
+    private static final String UPDATE = Statements.update("payment_transaction", TransactionRowMapper.COLUMNS, 1);
+
+    private static final String ACCOUNT_WALLETS = "SELECT id FROM wallet WHERE account_id = ?";
+
+    private static final TransactionRowMapper MAPPER = new TransactionRowMapper();
+
+    private static final TransactionRowMapper SUMMARY_MAPPER = new TransactionRowMapper(true);
+
+    private static final Pattern METACHARACTERS = Pattern.compile("[\\\\.\\[\\]{}()*+?^$|]");
+
+    @Autowired
+    private WalletDbService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#create(io.yope.payment.domain.Transaction)
+     */
+    @Override
+    public Transaction create(final Transaction transaction) throws ObjectNotFoundException {
+        final Wallet source = this.walletService.getById(transaction.getSource().getId());
+        if (source == null) {
+            throw new ObjectNotFoundException(transaction.getSource().getId(), Wallet.class);
+        }
+        final Wallet destination = this.walletService.getById(transaction.getDestination().getId());
+        if (destination == null) {
+            throw new ObjectNotFoundException(transaction.getDestination().getId(), Wallet.class);
+        }
+        final Transaction toSave = transaction.toBuilder().id(this.idAllocator.next()).source(source).destination(destination)
+                .creationDate(System.currentTimeMillis()).build();
+        this.jdbcTemplate.update(INSERT, Statements.withIds(TransactionRowMapper.values(toSave), toSave.getId()));
+        return toSave;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#save(java.lang.Long, io.yope.payment.domain.Transaction)
+     */
+    @Override
+    public Transaction save(final Long transactionId, final Transaction transaction) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
+        final Transaction toSave = transaction.withId(transactionId);
+        if (this.jdbcTemplate.update(UPDATE, Statements.withId(TransactionRowMapper.values(toSave), transactionId)) == 0) {
+            throw new ObjectNotFoundException(transactionId, Transaction.class);
+        }
+        return toSave;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#applyBatch(java.util.Collection, java.util.List)
+     */
+    @Override
+    @Transactional(value="jdbcTransactionManager", rollbackFor = ObjectNotFoundException.class)
+    public List<Transaction> applyBatch(final Collection<Wallet> wallets, final List<Transaction> transactions) throws ObjectNotFoundException {
+        // a wallet listed twice is saved with its last balances
+        final Map<Long, Wallet> saved = this.walletService.saveAll(wallets).stream()
+                .collect(Collectors.toMap(Wallet::getId, Function.identity(), (a, b) -> b));
+        final Long now = System.currentTimeMillis();
+        final List<Transaction> applied = Lists.newArrayListWithCapacity(transactions.size());
+        final List<Object[]> inserts = Lists.newArrayList();
+        final List<Transaction> updated = Lists.newArrayList();
+        for (final Transaction transaction : transactions) {
+            if (transaction.getId() == null) {
+                final Transaction toSave = transaction.toBuilder().id(this.idAllocator.next())
+                        .source(this.getWallet(transaction.getSource(), saved))
+                        .destination(this.getWallet(transaction.getDestination(), saved))
+                        .creationDate(now).build();
+                inserts.add(Statements.withIds(TransactionRowMapper.values(toSave), toSave.getId()));
+                applied.add(toSave);
+            } else {
+                updated.add(transaction);
+                applied.add(transaction);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(INSERT, inserts);
+        }
+        if (!updated.isEmpty()) {
+            final int missing = Statements.firstMissing(this.jdbcTemplate.batchUpdate(UPDATE, updated.stream()
+                    .map(t -> Statements.withId(TransactionRowMapper.values(t), t.getId())).collect(Collectors.toList())));
+            if (missing >= 0) {
+                throw new ObjectNotFoundException(updated.get(missing).getId(), Transaction.class);
+            }
+        }
+        return applied;
+    }
+
+    private Wallet getWallet(final Wallet wallet, final Map<Long, Wallet> saved) throws ObjectNotFoundException {
+        final Wallet found = saved.containsKey(wallet.getId()) ? saved.get(wallet.getId()) : this.walletService.getById(wallet.getId());
+        if (found == null) {
+            throw new ObjectNotFoundException(wallet.getId(), Wallet.class);
+        }
+        return found;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#get(java.lang.Long)
+     */
+    @Override
+    public Transaction get(final Long id) {
+        return JdbcWalletService.first(this.jdbcTemplate.query(TransactionRowMapper.SELECT + " WHERE t.id = ?", MAPPER, id));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForUpdate(java.lang.Long)
+     */
+    @Override
+    public Transaction getForUpdate(final Long id) {
+        return this.get(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForWallet(java.lang.Long, java.lang.String, io.yope.payment.domain.Transaction.Direction, io.yope.payment.domain.Transaction.Status, io.yope.payment.domain.Transaction.Type)
+     */
+    @Override
+    public List<Transaction> getForWallet(final Long walledId, final String reference, final Direction direction, final Status status, final Type type)
+            throws ObjectNotFoundException {
+        final List<Object> args = Lists.newArrayList();
+        final String wallet = this.direction(direction, "= ?", walledId, args);
+        return this.query(wallet, reference, status, type, args);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForAccount(java.lang.Long, java.lang.String, io.yope.payment.domain.Transaction.Direction, io.yope.payment.domain.Transaction.Status, io.yope.payment.domain.Transaction.Type)
+     */
+    @Override
+    public List<Transaction> getForAccount(final Long accountId, final String reference, final Direction direction, final Status status, final Type type)
+            throws ObjectNotFoundException {
+        final List<Object> args = Lists.newArrayList();
+        final String account = this.direction(direction, "IN (" + ACCOUNT_WALLETS + ")", accountId, args);
+        return this.query(account, reference, status, type, args);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getByReceiverHash(java.lang.String)
+     */
+    @Override
+    public Transaction getByReceiverHash(final String hash) {
+        return JdbcWalletService.first(this.jdbcTemplate.query(TransactionRowMapper.SELECT + " WHERE t.receiver_hash = ?", MAPPER, hash));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getByTransactionHash(java.lang.String)
+     */
+    @Override
+    public Transaction getByTransactionHash(final String hash) {
+        return JdbcWalletService.first(this.getAllByTransactionHash(hash));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getAllByTransactionHash(java.lang.String)
+     */
+    @Override
+    public List<Transaction> getAllByTransactionHash(final String hash) {
+        return this.jdbcTemplate.query(TransactionRowMapper.SELECT + " WHERE t.transaction_hash = ?", MAPPER, hash);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getTransaction(int, io.yope.payment.domain.Transaction.Status)
+     */
+    @Override
+    public List<Transaction> getTransaction(final int delay, final Status status) {
+        return this.jdbcTemplate.query(TransactionRowMapper.SELECT + " WHERE t.status = ? AND t.creation_date < ?", MAPPER,
+                status.name(), System.currentTimeMillis() - delay);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getBySenderHash(java.lang.String)
+     */
+    @Override
+    public Transaction getBySenderHash(final String hash) {
+        return JdbcWalletService.first(this.jdbcTemplate.query(TransactionRowMapper.SELECT + " WHERE t.sender_hash = ?", MAPPER, hash));
+    }
+
+    /**
+     * @param wallets the condition on a wallet id, with a placeholder for the given id
+     * @return the condition on the transaction wallets, BOTH being the default.
+     */
+    private String direction(final Direction direction, final String wallets, final Long id, final List<Object> args) {
+        if (Direction.IN.equals(direction)) {
+            args.add(id);
+            return "t.destination_id " + wallets;
+        }
+        if (Direction.OUT.equals(direction)) {
+            args.add(id);
+            return "t.source_id " + wallets;
+        }
+        args.add(id);
+        args.add(id);
+        return "(t.source_id " + wallets + " OR t.destination_id " + wallets + ")";
+    }
+
+    private List<Transaction> query(final String wallets, final String reference, final Status status, final Type type, final List<Object> args) {
+        final StringBuilder sql = new StringBuilder(TransactionRowMapper.SUMMARY).append(" WHERE ").append(wallets);
+        // the reference is a regular expression, as in the graph; the databases do not share a syntax for it,
+        // so only a plain text goes to the query and a pattern filters the rows
+        final boolean pattern = StringUtils.isNotBlank(reference) && METACHARACTERS.matcher(reference).find();
+        if (StringUtils.isNotBlank(reference) && !pattern) {
+            sql.append(" AND t.reference = ?");
+            args.add(reference);
+        }
+        if (status != null) {
+            sql.append(" AND t.status = ?");
+            args.add(status.name());
+        }
+        if (type != null) {
+            sql.append(" AND t.type = ?");
+            args.add(type.name());
+        }
+        final List<Transaction> transactions = this.jdbcTemplate.query(sql.toString(), SUMMARY_MAPPER, args.toArray());
+        if (!pattern) {
+            return transactions;
+        }
+        final Pattern matcher = Pattern.compile(reference);
+        return transactions.stream()
+                .filter(t -> t.getReference() != null && matcher.matcher(t.getReference()).matches())
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,189 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.domain.Wallet.Status;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.jdbc.mappers.WalletRowMapper;
+import io.yope.payment.jdbc.support.IdAllocator;
+import io.yope.payment.jdbc.support.Statements;
+
+/**
+ * @author massi
+ *
+ */
+@Service
+@Transactional(value="jdbcTransactionManager")
+public class JdbcWalletService implements WalletDbService {
+
+    static final String INSERT = Statements.insert("wallet", WalletRowMapper.COLUMNS);
+
+    private static final String UPDATE = Statements.update("wallet", WalletRowMapper.COLUMNS, 2);
+
+    private static final String UPDATE_BALANCES = "UPDATE wallet SET balance = ?, available_balance = ?, modification_date = ? WHERE id = ?";
+
+    private static final String SELECT = "SELECT " + WalletRowMapper.COLUMNS + " FROM wallet";
+
+    private static final WalletRowMapper MAPPER = new WalletRowMapper();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#create(io.yope.payment.domain.Wallet)
+     */
+    @Override
+    public Wallet create(final Wallet wallet) {
+        final Wallet toSave = wallet.toBuilder().id(this.idAllocator.next()).creationDate(System.currentTimeMillis()).build();
+        this.jdbcTemplate.update(INSERT, Statements.withIds(WalletRowMapper.values(toSave), toSave.getId(), null));
+        return toSave;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#exists(java.lang.Long)
+     */
+    @Override
+    public boolean exists(final Long id) {
+        return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet WHERE id = ?", Integer.class, id) > 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getById(java.lang.Long)
+     */
+    @Override
+    public Wallet getById(final Long id) {
+        return first(this.jdbcTemplate.query(SELECT + " WHERE id = ?", MAPPER, id));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByIdForUpdate(java.lang.Long)
+     */
+    @Override
+    public Wallet getByIdForUpdate(final Long id) {
+        return this.getById(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByWalletHash(java.lang.String)
+     */
+    @Override
+    public Wallet getByWalletHash(final String hash) {
+        return first(this.jdbcTemplate.query(SELECT + " WHERE wallet_hash = ?", MAPPER, hash));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByWalletHashes(java.util.Collection)
+     */
+    @Override
+    public List<Wallet> getByWalletHashes(final Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        return this.namedJdbcTemplate.query(SELECT + " WHERE wallet_hash IN (:hashes)", ImmutableMap.of("hashes", hashes), MAPPER);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByName(java.lang.Long, java.lang.String)
+     */
+    @Override
+    public Wallet getByName(final Long accountId, final String name) {
+        return first(this.jdbcTemplate.query(SELECT + " WHERE account_id = ? AND name = ?", MAPPER, accountId, name));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#save(java.lang.Long, io.yope.payment.domain.Wallet)
+     */
+    @Override
+    public Wallet save(final Long id, final Wallet wallet) throws ObjectNotFoundException {
+        final Wallet toSave = wallet.toBuilder().id(id).modificationDate(System.currentTimeMillis()).build();
+        if (this.jdbcTemplate.update(UPDATE, Statements.withId(WalletRowMapper.values(toSave), id)) == 0) {
+            throw new ObjectNotFoundException(id, Wallet.class);
+        }
+        return toSave;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#saveAll(java.util.Collection)
+     */
+    @Override
+    @Transactional(value="jdbcTransactionManager", rollbackFor = ObjectNotFoundException.class)
+    public List<Wallet> saveAll(final Collection<Wallet> wallets) throws ObjectNotFoundException {
+        if (wallets.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        final Long now = System.currentTimeMillis();
+        final List<Wallet> toSave = Lists.newArrayList(wallets);
+        final int missing = Statements.firstMissing(this.jdbcTemplate.batchUpdate(UPDATE_BALANCES, toSave.stream()
+                .map(w -> new Object[] {w.getBalance(), w.getAvailableBalance(), now, w.getId()}).collect(Collectors.toList())));
+        if (missing >= 0) {
+            throw new ObjectNotFoundException(toSave.get(missing).getId(), Wallet.class);
+        }
+        final Map<Long, Wallet> saved = this.namedJdbcTemplate.query(SELECT + " WHERE id IN (:ids)",
+                ImmutableMap.of("ids", toSave.stream().map(Wallet::getId).collect(Collectors.toSet())), MAPPER).stream()
+                .collect(Collectors.toMap(Wallet::getId, Function.identity()));
+        return toSave.stream().map(w -> saved.get(w.getId())).collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#delete(java.lang.Long)
+     */
+    @Override
+    public Wallet delete(final Long id) throws ObjectNotFoundException {
+        final Wallet wallet = this.getById(id);
+        if (wallet == null) {
+            throw new ObjectNotFoundException(id, Wallet.class);
+        }
+        return this.save(id, wallet.toBuilder().status(Status.DELETED).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getWalletsByAccountId(java.lang.Long, io.yope.payment.domain.Wallet.Status)
+     */
+    @Override
+    public List<Wallet> getWalletsByAccountId(final Long accountId, final Status status) {
+        if (status == null) {
+            return this.jdbcTemplate.query(SELECT + " WHERE account_id = ?", MAPPER, accountId);
+        }
+        return this.jdbcTemplate.query(SELECT + " WHERE account_id = ? AND status = ?", MAPPER, accountId, status.name());
+    }
+
+    static <T> T first(final List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+}
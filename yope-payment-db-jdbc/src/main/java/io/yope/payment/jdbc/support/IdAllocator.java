@@ -0,0 +1,42 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * hands out ids from blocks reserved on the database sequence,
+ * so that a single round trip covers {@link #BLOCK_SIZE} inserts.
+ * The block size must match the increment of the sequence.
+ * @author massi
+ *
+ */
+public class IdAllocator {
+
+    public static final int BLOCK_SIZE = 100;
+
+    private static final String NEXT_BLOCK = "SELECT NEXTVAL('yope_id_seq')";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long next;
+
+    private long last;
+
+    public IdAllocator(final JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return a new id, never handed out before.
+     */
+    public synchronized long next() {
+        if (this.next >= this.last) {
+            this.next = this.jdbcTemplate.queryForObject(NEXT_BLOCK, Long.class);
+            this.last = this.next + BLOCK_SIZE;
+        }
+        return this.next++;
+    }
+
+}
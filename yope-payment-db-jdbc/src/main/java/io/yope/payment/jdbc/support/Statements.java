@@ -0,0 +1,78 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+/**
+ * builds the insert and update statements from a comma separated list of columns.
+ * @author massi
+ *
+ */
+public final class Statements {
+
+    private Statements() {
+    }
+
+    /**
+     * @param table the table name
+     * @param columns all the columns, comma separated
+     * @return an insert with a placeholder for each column
+     */
+    public static String insert(final String table, final String columns) {
+        final int count = columns.split(", ").length;
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    /**
+     * @param table the table name
+     * @param columns all the columns, comma separated
+     * @param skip the number of leading columns not to update, e.g. the id
+     * @return an update of the remaining columns, by id; the id is the last placeholder
+     */
+    public static String update(final String table, final String columns, final int skip) {
+        return "UPDATE " + table + " SET "
+                + Arrays.stream(columns.split(", ")).skip(skip).map(c -> c + " = ?").collect(Collectors.joining(", "))
+                + " WHERE id = ?";
+    }
+
+    /**
+     * @param values the values of the statement
+     * @param id the value of the last placeholder
+     * @return the values followed by the id
+     */
+    public static Object[] withId(final Object[] values, final Long id) {
+        final Object[] args = Arrays.copyOf(values, values.length + 1);
+        args[values.length] = id;
+        return args;
+    }
+
+    /**
+     * @param values the values of the statement
+     * @param ids the values of the leading placeholders
+     * @return the ids followed by the values
+     */
+    public static Object[] withIds(final Object[] values, final Object... ids) {
+        final Object[] args = new Object[ids.length + values.length];
+        System.arraycopy(ids, 0, args, 0, ids.length);
+        System.arraycopy(values, 0, args, ids.length, values.length);
+        return args;
+    }
+
+    /**
+     * @param counts the update counts of a batch
+     * @return the position of the first statement which updated no row, -1 if none
+     */
+    public static int firstMissing(final int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
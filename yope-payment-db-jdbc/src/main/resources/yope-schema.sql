@@ -0,0 +1,67 @@
+-- ids are handed out in blocks of 100 by the IdAllocator, so that
+-- rows can be inserted in batches without reading generated keys back
+CREATE SEQUENCE IF NOT EXISTS yope_id_seq START WITH 1 INCREMENT BY 100;
+
+CREATE TABLE IF NOT EXISTS account (
+    id BIGINT PRIMARY KEY,
+    email VARCHAR(255) NOT NULL,
+    type VARCHAR(16),
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    status VARCHAR(16),
+    registration_date BIGINT,
+    modification_date BIGINT,
+    CONSTRAINT account_email_uk UNIQUE (email)
+);
+
+CREATE INDEX IF NOT EXISTS account_type_idx ON account (type);
+
+CREATE TABLE IF NOT EXISTS wallet (
+    id BIGINT PRIMARY KEY,
+    account_id BIGINT REFERENCES account (id),
+    wallet_hash VARCHAR(64),
+    name VARCHAR(255),
+    balance NUMERIC(30, 10),
+    available_balance NUMERIC(30, 10),
+    status VARCHAR(16),
+    description VARCHAR(1024),
+    creation_date BIGINT,
+    modification_date BIGINT,
+    type VARCHAR(16),
+    content TEXT,
+    private_key VARCHAR(1024)
+);
+
+CREATE INDEX IF NOT EXISTS wallet_hash_idx ON wallet (wallet_hash);
+CREATE INDEX IF NOT EXISTS wallet_account_idx ON wallet (account_id, name);
+
+CREATE TABLE IF NOT EXISTS payment_transaction (
+    id BIGINT PRIMARY KEY,
+    source_id BIGINT NOT NULL REFERENCES wallet (id),
+    destination_id BIGINT NOT NULL REFERENCES wallet (id),
+    transaction_hash VARCHAR(128),
+    sender_hash VARCHAR(64),
+    receiver_hash VARCHAR(64),
+    type VARCHAR(16),
+    reference VARCHAR(255),
+    status VARCHAR(16),
+    description VARCHAR(1024),
+    amount NUMERIC(30, 10),
+    balance NUMERIC(30, 10),
+    blockchain_fees NUMERIC(30, 10),
+    fees NUMERIC(30, 10),
+    creation_date BIGINT,
+    accepted_date BIGINT,
+    failed_date BIGINT,
+    denied_date BIGINT,
+    expired_date BIGINT,
+    completed_date BIGINT,
+    qr TEXT
+);
+
+CREATE INDEX IF NOT EXISTS transaction_hash_idx ON payment_transaction (transaction_hash);
+CREATE INDEX IF NOT EXISTS transaction_receiver_idx ON payment_transaction (receiver_hash);
+CREATE INDEX IF NOT EXISTS transaction_sender_idx ON payment_transaction (sender_hash);
+CREATE INDEX IF NOT EXISTS transaction_status_idx ON payment_transaction (status, creation_date);
+CREATE INDEX IF NOT EXISTS transaction_source_idx ON payment_transaction (source_id, creation_date);
+CREATE INDEX IF NOT EXISTS transaction_destination_idx ON payment_transaction (destination_id, creation_date);
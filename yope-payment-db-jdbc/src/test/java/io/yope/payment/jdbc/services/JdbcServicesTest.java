@@ -0,0 +1,152 @@
+/**
+ *
+ */
+package io.yope.payment.jdbc.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.configuration.YopeJdbcConfiguration;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Direction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+
+/**
+ * @author massi
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = YopeJdbcConfiguration.class)
+@TestPropertySource(properties = {"jdbc.enabled=true", "jdbc.url=jdbc:h2:mem:services;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"})
+public class JdbcServicesTest {
+
+    @Autowired
+    private AccountDbService accountService;
+
+    @Autowired
+    private WalletDbService walletService;
+
+    @Autowired
+    private TransactionDbService transactionService;
+
+    private Account account;
+
+    private Wallet source;
+
+    private Wallet destination;
+
+    @Before
+    public void setUp() {
+        this.account = this.accountService.create(Account.builder()
+                .email(System.nanoTime() + "@yope.io").firstName("first").lastName("last")
+                .type(Account.Type.SELLER).status(Account.Status.ACTIVE)
+                .wallets(Lists.newArrayList()).build(),
+                wallet("source", "hash-" + System.nanoTime()), wallet("destination", "hash-" + System.nanoTime()));
+        this.source = this.account.getWallets().get(0);
+        this.destination = this.account.getWallets().get(1);
+    }
+
+    @Test
+    public void testAccountWithWallets() throws Exception {
+        final Account loaded = this.accountService.getByEmail(this.account.getEmail());
+        assertEquals(this.account.getId(), loaded.getId());
+        assertEquals(2, loaded.getWallets().size());
+        assertEquals(this.source.getId(), this.walletService.getByName(this.account.getId(), "source").getId());
+        assertEquals(new BigDecimal("10.5"), this.walletService.getByWalletHash(this.source.getWalletHash()).getBalance());
+        assertEquals(2, this.walletService.getByWalletHashes(Arrays.asList(this.source.getWalletHash(), this.destination.getWalletHash())).size());
+        assertTrue(this.accountService.getByType(Account.Type.SELLER).stream()
+                .anyMatch(a -> a.getId().equals(this.account.getId()) && a.getWallets().size() == 2));
+
+        final Wallet added = this.walletService.create(wallet("added", "hash-" + System.nanoTime()));
+        loaded.getWallets().add(added);
+        this.accountService.update(loaded.getId(), loaded);
+        assertEquals(3, this.walletService.getWalletsByAccountId(loaded.getId(), Wallet.Status.ACTIVE).size());
+
+        this.walletService.delete(added.getId());
+        assertEquals(2, this.walletService.getWalletsByAccountId(loaded.getId(), Wallet.Status.ACTIVE).size());
+    }
+
+    @Test
+    public void testTransactions() throws Exception {
+        final Transaction created = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING)
+                .reference("ref").receiverHash("receiver-" + System.nanoTime()).amount(new BigDecimal("1.25")).build());
+        assertNotNull(created.getId());
+
+        final Transaction loaded = this.transactionService.getByReceiverHash(created.getReceiverHash());
+        assertEquals(created.getId(), loaded.getId());
+        assertEquals(this.source.getWalletHash(), loaded.getSource().getWalletHash());
+        assertEquals(new BigDecimal("1.25"), loaded.getAmount());
+
+        final List<Transaction> out = this.transactionService.getForWallet(this.source.getId(), null, Direction.OUT, null, null);
+        assertEquals(1, out.size());
+        assertEquals(this.source.getWalletHash(), out.get(0).getSource().getWalletHash());
+        assertNull(out.get(0).getSource().getBalance());
+        assertEquals(0, this.transactionService.getForWallet(this.source.getId(), null, Direction.IN, null, null).size());
+        assertEquals(1, this.transactionService.getForAccount(this.account.getId(), "ref", Direction.IN, null, null).size());
+        assertEquals(1, this.transactionService.getForAccount(this.account.getId(), null, Direction.BOTH, Transaction.Status.PENDING, null).size());
+        assertEquals(0, this.transactionService.getForAccount(this.account.getId(), "other", Direction.BOTH, null, null).size());
+        // the reference is a regular expression matching the whole of it, as in the graph
+        assertEquals(1, this.transactionService.getForAccount(this.account.getId(), "r.f", Direction.BOTH, null, null).size());
+        assertEquals(1, this.transactionService.getForWallet(this.source.getId(), "re.*", Direction.OUT, null, null).size());
+        assertEquals(0, this.transactionService.getForAccount(this.account.getId(), "re", Direction.BOTH, null, null).size());
+        assertTrue(this.transactionService.getTransaction(-1000, Transaction.Status.PENDING).stream().anyMatch(t -> t.getId().equals(created.getId())));
+
+        this.transactionService.save(created.getId(), loaded.withStatus(Transaction.Status.COMPLETED).withTransactionHash("tx"));
+        final List<Transaction> completed = this.transactionService.getAllByTransactionHash("tx");
+        assertTrue(completed.stream().anyMatch(t -> t.getId().equals(created.getId()) && Transaction.Status.COMPLETED.equals(t.getStatus())));
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        final List<Transaction> created = this.transactionService.applyBatch(
+                Arrays.asList(this.source.toBuilder().balance(new BigDecimal("9.5")).build(), this.destination.toBuilder().balance(new BigDecimal("11.5")).build()),
+                Arrays.asList(Transaction.builder().source(this.source).destination(this.destination)
+                        .type(Transaction.Type.TRANSFER).status(Transaction.Status.COMPLETED).amount(BigDecimal.ONE).build()));
+        assertNotNull(created.get(0).getId());
+        assertEquals(new BigDecimal("9.5"), created.get(0).getSource().getBalance());
+        assertEquals(new BigDecimal("11.5"), this.walletService.getById(this.destination.getId()).getBalance());
+        try {
+            this.transactionService.applyBatch(Arrays.asList(this.source.toBuilder().balance(BigDecimal.ZERO).build(), this.destination.toBuilder().id(-1L).build()),
+                    Lists.newArrayList());
+        } catch (final ObjectNotFoundException e) {
+            assertEquals(new BigDecimal("9.5"), this.walletService.getById(this.source.getId()).getBalance());
+            return;
+        }
+        throw new AssertionError("missing wallet saved");
+    }
+
+    @Test(expected = ObjectNotFoundException.class)
+    public void testSaveMissing() throws Exception {
+        assertNull(this.transactionService.get(-1L));
+        this.transactionService.save(-1L, Transaction.builder().source(this.source).destination(this.destination).build());
+    }
+
+    private Wallet wallet(final String name, final String hash) {
+        return Wallet.builder().name(name).walletHash(hash).type(Wallet.Type.INTERNAL).status(Wallet.Status.ACTIVE)
+                .balance(new BigDecimal("10.5")).availableBalance(new BigDecimal("10.5")).build();
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+
+import io.yope.payment.memory.store.MemoryStore;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * in-memory implementation of the db services, enabled by memory.enabled=true
+ * in place of the Neo4j one.
+ * @author massi
+ *
+ */
+@Configuration
+@EnableConfigurationProperties
+@ConditionalOnProperty(prefix = "memory", name = "enabled")
+@ComponentScan(basePackages = {"io.yope.payment.memory.services"})
+public class YopeMemoryConfiguration {
+
+    @Getter
+    @Setter
+    public static class MemorySettings {
+        /**
+         * the write-ahead log; nothing survives a restart when not set.
+         */
+        private String walFile;
+        /**
+         * sync the log to disk on every write, rather than leaving it to the OS.
+         */
+        private boolean walSync;
+        /**
+         * the entries after which the log is rewritten with the content of the store, 0 to let it grow.
+         */
+        private long walCompactEntries = 100000;
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "memory")
+    public MemorySettings memorySettings() {
+        return new MemorySettings();
+    }
+
+    @Bean(destroyMethod = "close")
+    public MemoryStore memoryStore(final MemorySettings settings) throws IOException {
+        if (settings.getWalFile() == null) {
+            return new MemoryStore();
+        }
+        return new MemoryStore(new File(settings.getWalFile()), settings.isWalSync(), settings.getWalCompactEntries());
+    }
+
+}
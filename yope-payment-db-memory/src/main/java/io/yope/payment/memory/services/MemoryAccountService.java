@@ -0,0 +1,135 @@
+/**
+ *
+ */
+package io.yope.payment.memory.services;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Account.Status;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.memory.store.MemoryStore;
+
+/**
+ * @author massi
+ *
+ */
+@Service
+public class MemoryAccountService implements AccountDbService {
+
+    @Autowired
+    private MemoryStore store;
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#create(io.yope.payment.domain.Account, io.yope.payment.domain.Wallet[])
+     */
+    @Override
+    public Account create(final Account account, final Wallet... wallets) {
+        final long now = System.currentTimeMillis();
+        final Account saved = this.store.putAccount(account.toBuilder().id(this.store.nextId()).registrationDate(now).build());
+        final List<Wallet> owned = Lists.newArrayList();
+        if (account.getWallets() != null) {
+            owned.addAll(account.getWallets());
+        }
+        for (final Wallet wallet: wallets) {
+            if (wallet == null) {
+                continue;
+            }
+            owned.add(this.store.putWallet(wallet.toBuilder().id(this.store.nextId()).creationDate(now).build()));
+        }
+        owned.forEach(w -> this.store.setOwner(w.getId(), saved.getId()));
+        return saved.toBuilder().wallets(owned).build();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getById(java.lang.Long)
+     */
+    @Override
+    public Account getById(final Long id) {
+        return this.withWallets(this.store.getAccount(id));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getByEmail(java.lang.String)
+     */
+    @Override
+    public Account getByEmail(final String email) {
+        return this.withWallets(this.store.getAccountByEmail(email));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#update(java.lang.Long, io.yope.payment.domain.Account)
+     */
+    @Override
+    public Account update(final Long id, final Account account) throws ObjectNotFoundException {
+        if (!this.exists(id)) {
+            throw new ObjectNotFoundException(id, Account.class);
+        }
+        final Account saved = this.store.putAccount(account.toBuilder().id(id).modificationDate(System.currentTimeMillis()).build());
+        if (account.getWallets() == null) {
+            return this.withWallets(saved);
+        }
+        final List<Long> owned = account.getWallets().stream().map(Wallet::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        this.store.getWallets(id).stream().filter(w -> !owned.contains(w.getId())).forEach(w -> this.store.setOwner(w.getId(), null));
+        owned.forEach(w -> this.store.setOwner(w, id));
+        return saved.toBuilder().wallets(account.getWallets()).build();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#delete(java.lang.Long)
+     */
+    @Override
+    public Account delete(final Long id) throws ObjectNotFoundException {
+        final Account account = this.getById(id);
+        if (account == null) {
+            throw new ObjectNotFoundException(id, Account.class);
+        }
+        return this.update(id, account.toBuilder().status(Status.DEACTIVATED).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getAccounts()
+     */
+    @Override
+    public List<Account> getAccounts() {
+        return this.store.getAccounts().stream().map(a -> a.toBuilder().wallets(Lists.newArrayList()).build()).collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#getByType(io.yope.payment.domain.Account.Type)
+     */
+    @Override
+    public List<Account> getByType(final Account.Type type) {
+        return this.store.getAccounts().stream().filter(a -> type.equals(a.getType())).map(this::withWallets).collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.AccountDbService#exists(java.lang.Long)
+     */
+    @Override
+    public boolean exists(final Long accountId) {
+        return this.store.getAccount(accountId) != null;
+    }
+
+    private Account withWallets(final Account account) {
+        return account == null ? null : account.toBuilder().wallets(Lists.newArrayList(this.store.getWallets(account.getId()))).build();
+    }
+
+}
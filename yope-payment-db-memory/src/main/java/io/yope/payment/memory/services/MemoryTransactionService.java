@@ -0,0 +1,233 @@
+/**
+ *
+ */
+package io.yope.payment.memory.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Direction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.domain.Transaction.Type;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.IllegalTransactionStateException;
+import io.yope.payment.exceptions.InsufficientFundsException;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.memory.store.MemoryStore;
+
+/**
+ * @author massi
+ *
+ */
+@Service
+public class MemoryTransactionService implements TransactionDbService {
+
+    @Autowired
+    private MemoryStore store;
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#create(io.yope.payment.domain.Transaction)
+     */
+    @Override
+    public Transaction create(final Transaction transaction) throws ObjectNotFoundException {
+        final Wallet source = this.store.getWallet(transaction.getSource().getId());
+        if (source == null) {
+            throw new ObjectNotFoundException(transaction.getSource().getId(), Wallet.class);
+        }
+        final Wallet destination = this.store.getWallet(transaction.getDestination().getId());
+        if (destination == null) {
+            throw new ObjectNotFoundException(transaction.getDestination().getId(), Wallet.class);
+        }
+        return this.store.putTransaction(transaction.toBuilder().id(this.store.nextId()).source(source).destination(destination)
+                .creationDate(System.currentTimeMillis()).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#save(java.lang.Long, io.yope.payment.domain.Transaction)
+     */
+    @Override
+    public Transaction save(final Long transactionId, final Transaction transaction) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
+        if (this.store.getTransaction(transactionId) == null) {
+            throw new ObjectNotFoundException(transactionId, Transaction.class);
+        }
+        return this.store.putTransaction(transaction.withId(transactionId));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#applyBatch(java.util.Collection, java.util.List)
+     */
+    @Override
+    public List<Transaction> applyBatch(final Collection<Wallet> wallets, final List<Transaction> transactions) throws ObjectNotFoundException {
+        // everything is checked before the first write, the store having no rollback
+        final Map<Long, Wallet> saved = Maps.newHashMap();
+        final Long now = System.currentTimeMillis();
+        for (final Wallet wallet : wallets) {
+            final Wallet stored = this.store.getWallet(wallet.getId());
+            if (stored == null) {
+                throw new ObjectNotFoundException(wallet.getId(), Wallet.class);
+            }
+            // only the balances move, a wallet listed twice keeps the last ones
+            saved.put(wallet.getId(), stored.toBuilder().balance(wallet.getBalance())
+                    .availableBalance(wallet.getAvailableBalance()).modificationDate(now).build());
+        }
+        final List<Transaction> toSave = Lists.newArrayListWithCapacity(transactions.size());
+        for (final Transaction transaction : transactions) {
+            if (transaction.getId() == null) {
+                toSave.add(transaction.toBuilder().id(this.store.nextId())
+                        .source(this.getWallet(transaction.getSource(), saved))
+                        .destination(this.getWallet(transaction.getDestination(), saved))
+                        .creationDate(now).build());
+            } else if (this.store.getTransaction(transaction.getId()) == null) {
+                throw new ObjectNotFoundException(transaction.getId(), Transaction.class);
+            } else {
+                toSave.add(transaction);
+            }
+        }
+        saved.values().forEach(this.store::putWallet);
+        return toSave.stream().map(this.store::putTransaction).collect(Collectors.toList());
+    }
+
+    private Wallet getWallet(final Wallet wallet, final Map<Long, Wallet> saved) throws ObjectNotFoundException {
+        final Wallet found = saved.containsKey(wallet.getId()) ? saved.get(wallet.getId()) : this.store.getWallet(wallet.getId());
+        if (found == null) {
+            throw new ObjectNotFoundException(wallet.getId(), Wallet.class);
+        }
+        return found;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#get(java.lang.Long)
+     */
+    @Override
+    public Transaction get(final Long id) {
+        return this.store.getTransaction(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForUpdate(java.lang.Long)
+     */
+    @Override
+    public Transaction getForUpdate(final Long id) {
+        return this.get(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForWallet(java.lang.Long, java.lang.String, io.yope.payment.domain.Transaction.Direction, io.yope.payment.domain.Transaction.Status, io.yope.payment.domain.Transaction.Type)
+     */
+    @Override
+    public List<Transaction> getForWallet(final Long walledId, final String reference, final Direction direction, final Status status, final Type type)
+            throws ObjectNotFoundException {
+        return this.filter(this.store.getTransactionsByWallet(walledId).stream(), walledId::equals, direction, reference, status, type);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForAccount(java.lang.Long, java.lang.String, io.yope.payment.domain.Transaction.Direction, io.yope.payment.domain.Transaction.Status, io.yope.payment.domain.Transaction.Type)
+     */
+    @Override
+    public List<Transaction> getForAccount(final Long accountId, final String reference, final Direction direction, final Status status, final Type type)
+            throws ObjectNotFoundException {
+        final List<Long> wallets = this.store.getWallets(accountId).stream().map(Wallet::getId).collect(Collectors.toList());
+        // a transfer between two wallets of the account shows up once
+        final Stream<Transaction> transactions = wallets.stream().flatMap(w -> this.store.getTransactionsByWallet(w).stream())
+                .filter(distinct());
+        return this.filter(transactions, wallets::contains, direction, reference, status, type);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getByReceiverHash(java.lang.String)
+     */
+    @Override
+    public Transaction getByReceiverHash(final String hash) {
+        return this.store.getTransactionByReceiver(hash);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getByTransactionHash(java.lang.String)
+     */
+    @Override
+    public Transaction getByTransactionHash(final String hash) {
+        return this.getAllByTransactionHash(hash).stream().findFirst().orElse(null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getAllByTransactionHash(java.lang.String)
+     */
+    @Override
+    public List<Transaction> getAllByTransactionHash(final String hash) {
+        return this.store.getTransactionsByHash(hash);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getTransaction(int, io.yope.payment.domain.Transaction.Status)
+     */
+    @Override
+    public List<Transaction> getTransaction(final int delay, final Status status) {
+        return this.store.getTransactionsBefore(status, System.currentTimeMillis() - delay);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getBySenderHash(java.lang.String)
+     */
+    @Override
+    public Transaction getBySenderHash(final String hash) {
+        return this.store.getTransactionBySender(hash);
+    }
+
+    /**
+     * @param wallets matches the ids of the wallets being looked at
+     */
+    private List<Transaction> filter(final Stream<Transaction> transactions, final Predicate<Long> wallets, final Direction direction,
+            final String reference, final Status status, final Type type) {
+        // the reference is a regular expression, as in the graph
+        final Pattern references = StringUtils.isBlank(reference) ? null : Pattern.compile(reference);
+        return transactions
+                .filter(t -> !Direction.IN.equals(direction) || wallets.test(t.getDestination().getId()))
+                .filter(t -> !Direction.OUT.equals(direction) || wallets.test(t.getSource().getId()))
+                .filter(t -> references == null || t.getReference() != null && references.matcher(t.getReference()).matches())
+                .filter(t -> status == null || status.equals(t.getStatus()))
+                .filter(t -> type == null || type.equals(t.getType()))
+                .map(t -> t.withSource(summary(t.getSource())).withDestination(summary(t.getDestination())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * the histories only carry id, name and hash of the wallets.
+     */
+    private static Wallet summary(final Wallet wallet) {
+        return Wallet.builder().id(wallet.getId()).name(wallet.getName()).walletHash(wallet.getWalletHash()).build();
+    }
+
+    private static Predicate<Transaction> distinct() {
+        final Set<Long> seen = Sets.newHashSet();
+        return t -> seen.add(t.getId());
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ */
+package io.yope.payment.memory.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.domain.Wallet.Status;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.memory.store.MemoryStore;
+
+/**
+ * @author massi
+ *
+ */
+@Service
+public class MemoryWalletService implements WalletDbService {
+
+    @Autowired
+    private MemoryStore store;
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#create(io.yope.payment.domain.Wallet)
+     */
+    @Override
+    public Wallet create(final Wallet wallet) {
+        return this.store.putWallet(wallet.toBuilder().id(this.store.nextId()).creationDate(System.currentTimeMillis()).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#exists(java.lang.Long)
+     */
+    @Override
+    public boolean exists(final Long id) {
+        return this.store.getWallet(id) != null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getById(java.lang.Long)
+     */
+    @Override
+    public Wallet getById(final Long id) {
+        return this.store.getWallet(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByIdForUpdate(java.lang.Long)
+     */
+    @Override
+    public Wallet getByIdForUpdate(final Long id) {
+        return this.getById(id);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByWalletHash(java.lang.String)
+     */
+    @Override
+    public Wallet getByWalletHash(final String hash) {
+        return this.store.getWalletByHash(hash);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByWalletHashes(java.util.Collection)
+     */
+    @Override
+    public List<Wallet> getByWalletHashes(final Collection<String> hashes) {
+        return hashes.stream().distinct().map(this.store::getWalletByHash).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByName(java.lang.Long, java.lang.String)
+     */
+    @Override
+    public Wallet getByName(final Long accountId, final String name) {
+        return this.store.getWalletByName(accountId, name);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#save(java.lang.Long, io.yope.payment.domain.Wallet)
+     */
+    @Override
+    public Wallet save(final Long id, final Wallet wallet) throws ObjectNotFoundException {
+        if (!this.exists(id)) {
+            throw new ObjectNotFoundException(id, Wallet.class);
+        }
+        return this.store.putWallet(wallet.toBuilder().id(id).modificationDate(System.currentTimeMillis()).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#saveAll(java.util.Collection)
+     */
+    @Override
+    public List<Wallet> saveAll(final Collection<Wallet> wallets) throws ObjectNotFoundException {
+        for (final Wallet wallet : wallets) {
+            if (!this.exists(wallet.getId())) {
+                throw new ObjectNotFoundException(wallet.getId(), Wallet.class);
+            }
+        }
+        final Long now = System.currentTimeMillis();
+        return wallets.stream().map(w -> this.store.putWallet(this.store.getWallet(w.getId()).toBuilder()
+                .balance(w.getBalance()).availableBalance(w.getAvailableBalance()).modificationDate(now).build()))
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#delete(java.lang.Long)
+     */
+    @Override
+    public Wallet delete(final Long id) throws ObjectNotFoundException {
+        final Wallet wallet = this.getById(id);
+        if (wallet == null) {
+            throw new ObjectNotFoundException(id, Wallet.class);
+        }
+        return this.save(id, wallet.toBuilder().status(Status.DELETED).build());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getWalletsByAccountId(java.lang.Long, io.yope.payment.domain.Wallet.Status)
+     */
+    @Override
+    public List<Wallet> getWalletsByAccountId(final Long accountId, final Status status) {
+        return this.store.getWallets(accountId).stream()
+                .filter(w -> status == null || status.equals(w.getStatus())).collect(Collectors.toList());
+    }
+
+}
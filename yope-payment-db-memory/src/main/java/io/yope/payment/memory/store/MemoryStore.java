@@ -0,0 +1,416 @@
+/**
+ *
+ */
+package io.yope.payment.memory.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.memory.store.WriteAheadLog.Entry;
+import io.yope.payment.memory.store.WriteAheadLog.Kind;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * accounts, wallets and transactions held in concurrent maps, with secondary indexes
+ * on the fields the db services look up by.
+ * Reads never lock; writes to the same entity are serialized by the map,
+ * which keeps its indexes consistent. Every write can be appended to a {@link WriteAheadLog},
+ * replayed when the store is created; the entry is appended while the map holds the entity,
+ * so the log has the writes to an entity in the order they were applied.
+ * Once the log holds enough entries it is compacted to the current content of the store.
+ * @author massi
+ *
+ */
+@Slf4j
+public class MemoryStore implements Closeable {
+
+    @AllArgsConstructor
+    private static class Timed {
+        private final long creationDate;
+        private final long id;
+    }
+
+    private static final Comparator<Timed> BY_DATE = Comparator.<Timed>comparingLong(t -> t.creationDate).thenComparingLong(t -> t.id);
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final ConcurrentMap<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> accountsByEmail = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Wallet> wallets = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Long> walletOwners = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Set<Long>> walletsByAccount = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> walletsByHash = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> walletsByName = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Transaction> transactions = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> transactionsBySender = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> transactionsByReceiver = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<Long>> transactionsByHash = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Set<Long>> transactionsByWallet = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Transaction.Status, ConcurrentSkipListSet<Timed>> transactionsByStatus = new ConcurrentHashMap<>();
+
+    private final WriteAheadLog wal;
+
+    /**
+     * the log entries after which it is compacted, 0 never.
+     */
+    private final long compactAfter;
+
+    /**
+     * shared by the writes, exclusive to the compaction, which must see no write half done.
+     */
+    private final ReadWriteLock compaction = new ReentrantReadWriteLock();
+
+    /**
+     * a store without durability.
+     */
+    public MemoryStore() {
+        this.wal = null;
+        this.compactAfter = 0;
+    }
+
+    /**
+     * a store that replays and then appends to the given log, never compacted.
+     * @param file the log file
+     * @param sync true to sync the log to disk on every write
+     * @throws IOException if the log can't be read or opened
+     */
+    public MemoryStore(final File file, final boolean sync) throws IOException {
+        this(file, sync, 0);
+    }
+
+    /**
+     * a store that replays and then appends to the given log.
+     * @param file the log file
+     * @param sync true to sync the log to disk on every write
+     * @param compactAfter the entries in the log after which it is compacted, 0 never
+     * @throws IOException if the log can't be read or opened
+     */
+    public MemoryStore(final File file, final boolean sync, final long compactAfter) throws IOException {
+        final WriteAheadLog replayed = new WriteAheadLog(file, sync);
+        final List<Entry> entries = replayed.read();
+        entries.forEach(this::apply);
+        log.info("replayed {} entries from {}", entries.size(), file);
+        this.wal = replayed;
+        this.compactAfter = compactAfter;
+    }
+
+    /**
+     * @return a new id, unique across accounts, wallets and transactions.
+     */
+    public long nextId() {
+        return this.ids.incrementAndGet();
+    }
+
+    public Account putAccount(final Account account) {
+        final Account stored = account.toBuilder().wallets(null).build();
+        this.write(() -> this.accounts.compute(stored.getId(), (id, previous) -> {
+            if (previous != null && !Objects.equals(previous.getEmail(), stored.getEmail())) {
+                this.accountsByEmail.remove(previous.getEmail(), id);
+            }
+            if (stored.getEmail() != null) {
+                this.accountsByEmail.put(stored.getEmail(), id);
+            }
+            this.append(new Entry(Kind.ACCOUNT, stored, null, null, null, null));
+            return stored;
+        }));
+        return stored;
+    }
+
+    /**
+     * @return the account, without wallets, or {@literal null}
+     */
+    public Account getAccount(final Long id) {
+        return id == null ? null : this.accounts.get(id);
+    }
+
+    public Account getAccountByEmail(final String email) {
+        return this.getAccount(this.accountsByEmail.get(email));
+    }
+
+    public Collection<Account> getAccounts() {
+        return Collections.unmodifiableCollection(this.accounts.values());
+    }
+
+    public Wallet putWallet(final Wallet wallet) {
+        this.write(() -> this.wallets.compute(wallet.getId(), (id, previous) -> {
+            final Long owner = this.walletOwners.get(id);
+            if (previous != null) {
+                this.unindex(this.walletsByHash, previous.getWalletHash(), id);
+                if (owner != null) {
+                    this.unindex(this.walletsByName, name(owner, previous.getName()), id);
+                }
+            }
+            this.index(this.walletsByHash, wallet.getWalletHash(), id);
+            if (owner != null) {
+                this.index(this.walletsByName, name(owner, wallet.getName()), id);
+            }
+            this.append(new Entry(Kind.WALLET, null, wallet, null, null, null));
+            return wallet;
+        }));
+        return wallet;
+    }
+
+    /**
+     * makes an account the owner of a wallet.
+     * @param walletId the wallet
+     * @param accountId the new owner, or {@literal null} to leave the wallet without owner
+     */
+    public void setOwner(final Long walletId, final Long accountId) {
+        this.write(() -> this.wallets.computeIfPresent(walletId, (id, wallet) -> {
+            final Long previous = accountId == null ? this.walletOwners.remove(id) : this.walletOwners.put(id, accountId);
+            if (previous != null) {
+                this.walletsByAccount.getOrDefault(previous, Collections.emptySet()).remove(id);
+                this.unindex(this.walletsByName, name(previous, wallet.getName()), id);
+            }
+            if (accountId != null) {
+                this.walletsByAccount.computeIfAbsent(accountId, a -> ConcurrentHashMap.newKeySet()).add(id);
+                this.index(this.walletsByName, name(accountId, wallet.getName()), id);
+            }
+            this.append(new Entry(Kind.OWNER, null, null, null, walletId, accountId));
+            return wallet;
+        }));
+    }
+
+    public Wallet getWallet(final Long id) {
+        return id == null ? null : this.wallets.get(id);
+    }
+
+    public Wallet getWalletByHash(final String hash) {
+        return hash == null ? null : this.getWallet(this.walletsByHash.get(hash));
+    }
+
+    public Wallet getWalletByName(final Long accountId, final String name) {
+        return this.getWallet(this.walletsByName.get(name(accountId, name)));
+    }
+
+    public List<Wallet> getWallets(final Long accountId) {
+        return this.walletsByAccount.getOrDefault(accountId, Collections.emptySet()).stream()
+                .map(this::getWallet).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * stores a transaction; source and destination are kept by id, so that reads
+     * always return the current wallets.
+     */
+    public Transaction putTransaction(final Transaction transaction) {
+        final Transaction stored = transaction
+                .withSource(Wallet.builder().id(transaction.getSource().getId()).build())
+                .withDestination(Wallet.builder().id(transaction.getDestination().getId()).build());
+        this.write(() -> this.transactions.compute(stored.getId(), (id, previous) -> {
+            if (previous != null) {
+                this.unindex(this.transactionsBySender, previous.getSenderHash(), id);
+                this.unindex(this.transactionsByReceiver, previous.getReceiverHash(), id);
+                if (previous.getTransactionHash() != null) {
+                    this.transactionsByHash.getOrDefault(previous.getTransactionHash(), Collections.emptySet()).remove(id);
+                }
+                final Set<Timed> status = previous.getStatus() == null ? null : this.transactionsByStatus.get(previous.getStatus());
+                if (status != null) {
+                    status.remove(timed(previous));
+                }
+            }
+            this.index(this.transactionsBySender, stored.getSenderHash(), id);
+            this.index(this.transactionsByReceiver, stored.getReceiverHash(), id);
+            if (stored.getTransactionHash() != null) {
+                this.transactionsByHash.computeIfAbsent(stored.getTransactionHash(), h -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            this.transactionsByWallet.computeIfAbsent(stored.getSource().getId(), w -> ConcurrentHashMap.newKeySet()).add(id);
+            this.transactionsByWallet.computeIfAbsent(stored.getDestination().getId(), w -> ConcurrentHashMap.newKeySet()).add(id);
+            if (stored.getStatus() != null) {
+                this.transactionsByStatus.computeIfAbsent(stored.getStatus(), s -> new ConcurrentSkipListSet<>(BY_DATE)).add(timed(stored));
+            }
+            this.append(new Entry(Kind.TRANSACTION, null, null, stored, null, null));
+            return stored;
+        }));
+        return this.hydrate(stored);
+    }
+
+    public Transaction getTransaction(final Long id) {
+        return id == null ? null : this.hydrate(this.transactions.get(id));
+    }
+
+    public Transaction getTransactionBySender(final String hash) {
+        return hash == null ? null : this.getTransaction(this.transactionsBySender.get(hash));
+    }
+
+    public Transaction getTransactionByReceiver(final String hash) {
+        return hash == null ? null : this.getTransaction(this.transactionsByReceiver.get(hash));
+    }
+
+    public List<Transaction> getTransactionsByHash(final String hash) {
+        return this.getTransactions(hash == null ? Collections.emptySet() : this.transactionsByHash.getOrDefault(hash, Collections.emptySet()));
+    }
+
+    /**
+     * @return the transactions from or to the wallet, in no particular order.
+     */
+    public List<Transaction> getTransactionsByWallet(final Long walletId) {
+        return this.getTransactions(this.transactionsByWallet.getOrDefault(walletId, Collections.emptySet()));
+    }
+
+    /**
+     * @return the transactions with the given status created before the given time.
+     */
+    public List<Transaction> getTransactionsBefore(final Transaction.Status status, final long creationDate) {
+        final ConcurrentSkipListSet<Timed> timed = this.transactionsByStatus.get(status);
+        if (timed == null) {
+            return Collections.emptyList();
+        }
+        return timed.headSet(new Timed(creationDate, Long.MIN_VALUE)).stream()
+                .map(t -> this.getTransaction(t.id)).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * rewrites the log with one entry per account, wallet, owner and transaction, blocking the writes meanwhile.
+     * @throws IOException if the log can't be rewritten; it is left as it was
+     */
+    public void compact() throws IOException {
+        if (this.wal == null) {
+            return;
+        }
+        this.compaction.writeLock().lock();
+        try {
+            final long size = this.wal.size();
+            final List<Entry> entries = Lists.newArrayList();
+            this.accounts.values().forEach(a -> entries.add(new Entry(Kind.ACCOUNT, a, null, null, null, null)));
+            this.wallets.values().forEach(w -> entries.add(new Entry(Kind.WALLET, null, w, null, null, null)));
+            this.walletOwners.forEach((w, a) -> entries.add(new Entry(Kind.OWNER, null, null, null, w, a)));
+            this.transactions.values().forEach(t -> entries.add(new Entry(Kind.TRANSACTION, null, null, t, null, null)));
+            this.wal.rewrite(entries);
+            log.info("compacted the log from {} to {} entries", size, entries.size());
+        } finally {
+            this.compaction.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.wal != null) {
+            this.wal.close();
+        }
+    }
+
+    private void apply(final Entry entry) {
+        switch (entry.getKind()) {
+            case ACCOUNT:
+                this.putAccount(entry.getAccount());
+                this.ids.accumulateAndGet(entry.getAccount().getId(), Math::max);
+                break;
+            case WALLET:
+                this.putWallet(entry.getWallet());
+                this.ids.accumulateAndGet(entry.getWallet().getId(), Math::max);
+                break;
+            case OWNER:
+                this.setOwner(entry.getWalletId(), entry.getAccountId());
+                break;
+            case TRANSACTION:
+                this.putTransaction(entry.getTransaction());
+                this.ids.accumulateAndGet(entry.getTransaction().getId(), Math::max);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void write(final Runnable write) {
+        if (this.wal == null) {
+            write.run();
+            return;
+        }
+        this.compaction.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            this.compaction.readLock().unlock();
+        }
+        if (this.compactAfter > 0 && this.wal.size() >= this.compactAfter) {
+            this.compactIfGrown();
+        }
+    }
+
+    /**
+     * compacts unless another write did it meanwhile; a failure leaves the log growing, and is retried by the next write.
+     */
+    private void compactIfGrown() {
+        this.compaction.writeLock().lock();
+        try {
+            if (this.wal.size() >= this.compactAfter) {
+                this.compact();
+            }
+        } catch (final IOException e) {
+            log.error("unable to compact the log", e);
+        } finally {
+            this.compaction.writeLock().unlock();
+        }
+    }
+
+    private void append(final Entry entry) {
+        if (this.wal != null) {
+            this.wal.append(entry);
+        }
+    }
+
+    private List<Transaction> getTransactions(final Set<Long> ids) {
+        return ids.stream().map(this::getTransaction).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private Transaction hydrate(final Transaction stored) {
+        if (stored == null) {
+            return null;
+        }
+        return stored.withSource(this.wallets.getOrDefault(stored.getSource().getId(), stored.getSource()))
+                .withDestination(this.wallets.getOrDefault(stored.getDestination().getId(), stored.getDestination()));
+    }
+
+    private void index(final ConcurrentMap<String, Long> index, final String key, final Long id) {
+        if (key != null) {
+            index.put(key, id);
+        }
+    }
+
+    private void unindex(final ConcurrentMap<String, Long> index, final String key, final Long id) {
+        if (key != null) {
+            index.remove(key, id);
+        }
+    }
+
+    private static Timed timed(final Transaction transaction) {
+        return new Timed(transaction.getCreationDate() == null ? 0 : transaction.getCreationDate(), transaction.getId());
+    }
+
+    private static String name(final Long accountId, final String name) {
+        return accountId + ":" + name;
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package io.yope.payment.memory.store;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * append-only log of the writes to the memory store, one json entry per line.
+ * Entries are full snapshots, so replaying them in order rebuilds the store,
+ * and the log can be rewritten with the last entry of each entity only.
+ * @author massi
+ *
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    public enum Kind {
+        ACCOUNT, WALLET, OWNER, TRANSACTION
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Entry {
+        private Kind kind;
+        private Account account;
+        private Wallet wallet;
+        private Transaction transaction;
+        private Long walletId;
+        private Long accountId;
+    }
+
+    /*
+     * the domain hides some fields from the api, e.g. wallet content and private key;
+     * the log needs all of them, so it reads and writes fields ignoring the annotations.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(MapperFeature.USE_ANNOTATIONS, false)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .setVisibility(PropertyAccessor.ALL, Visibility.NONE)
+            .setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+
+    private final File file;
+
+    private final boolean sync;
+
+    private FileOutputStream stream;
+
+    private Writer writer;
+
+    /**
+     * the entries in the file.
+     */
+    private long size;
+
+    public WriteAheadLog(final File file, final boolean sync) throws IOException {
+        this.file = file;
+        this.sync = sync;
+        this.stream = new FileOutputStream(file, true);
+        this.writer = new OutputStreamWriter(this.stream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * reads the entries written so far.
+     * A truncated last line, left by a crash in the middle of a write, is skipped.
+     * @return the entries in order
+     * @throws IOException if the log can't be read
+     */
+    public synchronized List<Entry> read() throws IOException {
+        final List<Entry> entries = Lists.newArrayList();
+        this.size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                this.size++;
+                try {
+                    entries.add(MAPPER.readValue(line, Entry.class));
+                } catch (final IOException e) {
+                    log.warn("skipping unreadable entry {} of {}: {}", entries.size(), this.file, e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * appends an entry; when sync is on it returns only once the entry is on disk.
+     * @param entry the entry
+     */
+    public synchronized void append(final Entry entry) {
+        try {
+            this.writer.write(MAPPER.writeValueAsString(entry));
+            this.writer.write('\n');
+            this.writer.flush();
+            if (this.sync) {
+                this.stream.getFD().sync();
+            }
+            this.size++;
+        } catch (final IOException e) {
+            throw new IllegalStateException("unable to write to " + this.file, e);
+        }
+    }
+
+    /**
+     * @return the entries in the log, read or appended since it was last rewritten
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * replaces the content of the log with the given entries: they are written and synced to a new file,
+     * which is then moved over the log, so that a crash leaves either the old or the new one.
+     * @param entries the entries replacing the current ones
+     * @throws IOException if the new log can't be written; the current one is kept
+     */
+    public synchronized void rewrite(final List<Entry> entries) throws IOException {
+        final File next = new File(this.file.getPath() + ".next");
+        try (FileOutputStream nextStream = new FileOutputStream(next);
+                Writer nextWriter = new OutputStreamWriter(nextStream, StandardCharsets.UTF_8)) {
+            for (final Entry entry : entries) {
+                nextWriter.write(MAPPER.writeValueAsString(entry));
+                nextWriter.write('\n');
+            }
+            nextWriter.flush();
+            nextStream.getFD().sync();
+        }
+        this.writer.close();
+        try {
+            Files.move(next.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.size = entries.size();
+        } finally {
+            this.stream = new FileOutputStream(this.file, true);
+            this.writer = new OutputStreamWriter(this.stream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+}
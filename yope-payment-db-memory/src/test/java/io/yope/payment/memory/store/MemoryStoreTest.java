@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package io.yope.payment.memory.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+
+/**
+ * @author massi
+ *
+ */
+public class MemoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexesFollowUpdates() throws Exception {
+        try (MemoryStore store = new MemoryStore()) {
+            final Wallet source = wallet(store, "source", "hash1");
+            final Wallet destination = wallet(store, "destination", "hash2");
+            store.putAccount(Account.builder().id(store.nextId()).email("a@yope.io").build());
+            final Long accountId = store.getAccountByEmail("a@yope.io").getId();
+            store.setOwner(source.getId(), accountId);
+            assertEquals(source.getId(), store.getWalletByName(accountId, "source").getId());
+
+            store.putWallet(source.toBuilder().name("renamed").walletHash("hash3").build());
+            assertNull(store.getWalletByName(accountId, "source"));
+            assertNull(store.getWalletByHash("hash1"));
+            assertEquals(source.getId(), store.getWalletByHash("hash3").getId());
+
+            final Transaction pending = store.putTransaction(Transaction.builder().id(store.nextId())
+                    .source(source).destination(destination).status(Transaction.Status.PENDING)
+                    .creationDate(1000L).amount(BigDecimal.ONE).build());
+            assertEquals(1, store.getTransactionsBefore(Transaction.Status.PENDING, 2000L).size());
+            assertEquals(0, store.getTransactionsBefore(Transaction.Status.PENDING, 1000L).size());
+
+            store.putTransaction(pending.withStatus(Transaction.Status.COMPLETED).withTransactionHash("tx"));
+            assertEquals(0, store.getTransactionsBefore(Transaction.Status.PENDING, 2000L).size());
+            assertEquals(1, store.getTransactionsBefore(Transaction.Status.COMPLETED, 2000L).size());
+            assertEquals("renamed", store.getTransactionsByHash("tx").get(0).getSource().getName());
+            assertEquals(1, store.getTransactionsByWallet(destination.getId()).size());
+        }
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        final File file = this.folder.newFile("store.wal");
+        final Long transactionId;
+        try (MemoryStore store = new MemoryStore(file, true)) {
+            final Wallet source = wallet(store, "source", "hash1").withPrivateKey("key");
+            store.putWallet(source);
+            final Wallet destination = wallet(store, "destination", "hash2");
+            final Account account = store.putAccount(Account.builder().id(store.nextId()).email("a@yope.io").build());
+            store.setOwner(source.getId(), account.getId());
+            transactionId = store.putTransaction(Transaction.builder().id(store.nextId())
+                    .source(source).destination(destination).status(Transaction.Status.PENDING)
+                    .receiverHash("receiver").amount(new BigDecimal("0.5")).build()).getId();
+        }
+        try (MemoryStore store = new MemoryStore(file, true)) {
+            final Transaction transaction = store.getTransactionByReceiver("receiver");
+            assertEquals(transactionId, transaction.getId());
+            assertEquals(new BigDecimal("0.5"), transaction.getAmount());
+            assertEquals("key", transaction.getSource().getPrivateKey());
+            assertEquals(1, store.getWallets(store.getAccountByEmail("a@yope.io").getId()).size());
+            assertTrue(store.nextId() > transactionId);
+        }
+    }
+
+    @Test
+    public void testLogFollowsTheOrderOfConcurrentWrites() throws Exception {
+        final File file = this.folder.newFile("concurrent.wal");
+        final Wallet last;
+        try (MemoryStore store = new MemoryStore(file, false)) {
+            final Wallet wallet = wallet(store, "shared", "hash1");
+            final ExecutorService executor = Executors.newFixedThreadPool(8);
+            final List<Future<?>> writes = Lists.newArrayList();
+            for (int thread = 0; thread < 8; thread++) {
+                final int offset = thread * 1000;
+                writes.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        store.putWallet(wallet.toBuilder().balance(new BigDecimal(offset + i)).build());
+                    }
+                }));
+            }
+            for (final Future<?> write : writes) {
+                write.get();
+            }
+            executor.shutdown();
+            last = store.getWallet(wallet.getId());
+        }
+        try (MemoryStore store = new MemoryStore(file, false)) {
+            assertEquals(last.getBalance(), store.getWallet(last.getId()).getBalance());
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        final File file = this.folder.newFile("compacted.wal");
+        final Long accountId;
+        final Long transactionId;
+        try (MemoryStore store = new MemoryStore(file, false, 10)) {
+            final Wallet source = wallet(store, "source", "hash1");
+            final Wallet destination = wallet(store, "destination", "hash2");
+            accountId = store.putAccount(Account.builder().id(store.nextId()).email("a@yope.io").build()).getId();
+            store.setOwner(source.getId(), accountId);
+            for (int i = 0; i < 50; i++) {
+                store.putWallet(source.toBuilder().balance(new BigDecimal(i)).build());
+            }
+            transactionId = store.putTransaction(Transaction.builder().id(store.nextId())
+                    .source(source).destination(destination).status(Transaction.Status.PENDING)
+                    .receiverHash("receiver").amount(BigDecimal.ONE).build()).getId();
+        }
+        assertTrue(Files.readAllLines(file.toPath()).size() < 10);
+        assertFalse(new File(file.getPath() + ".next").exists());
+        try (MemoryStore store = new MemoryStore(file, false)) {
+            assertEquals(new BigDecimal(49), store.getWalletByName(accountId, "source").getBalance());
+            assertEquals(transactionId, store.getTransactionByReceiver("receiver").getId());
+            assertEquals(1, store.getWallets(accountId).size());
+            assertTrue(store.nextId() > transactionId);
+
+            store.compact();
+            assertEquals(5, Files.readAllLines(file.toPath()).size());
+        }
+    }
+
+    private static Wallet wallet(final MemoryStore store, final String name, final String hash) {
+        return store.putWallet(Wallet.builder().id(store.nextId()).name(name).walletHash(hash)
+                .type(Wallet.Type.INTERNAL).status(Wallet.Status.ACTIVE).balance(BigDecimal.TEN).build());
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.neo4j.core.GraphDatabase;
+import org.springframework.data.neo4j.repository.GraphRepositoryFactory;
+import org.springframework.data.neo4j.rest.SpringRestGraphDatabase;
+import org.springframework.data.neo4j.support.MappingInfrastructureFactoryBean;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+import org.springframework.data.neo4j.support.mapping.Neo4jMappingContext;
+import org.springframework.data.neo4j.support.typerepresentation.NoopRelationshipTypeRepresentationStrategy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.configuration.YopeNeo4jConfiguration.Neo4jSettings;
+import io.yope.payment.neo4j.repositories.AccountRepository;
+import io.yope.payment.neo4j.repositories.TransactionRepository;
+import io.yope.payment.neo4j.repositories.WalletRepository;
+import io.yope.payment.neo4j.routing.ReadRouter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * the repositories injected in the services: without replicas they are the repositories of the primary,
+ * otherwise they route the read only transactions to the replicas through {@link ReadRouter}.
+ * @author massi
+ *
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression(YopeNeo4jConfiguration.ENABLED)
+public class Neo4jReplicaConfiguration {
+
+    @Autowired
+    private Neo4jSettings settings;
+
+    @Autowired
+    private Neo4jTemplate template;
+
+    @Autowired
+    private Neo4jMappingContext mappingContext;
+
+    @Autowired
+    @Qualifier("neo4jTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    private List<Neo4jTemplate> replicas;
+
+    @Bean
+    public ReadRouter readRouter() throws Exception {
+        return new ReadRouter(this.replicas().size(), this.settings.getReadConsistency(), this.settings.getReadYourWritesMillis());
+    }
+
+    @Bean
+    @Primary
+    public AccountRepository routedAccountRepository(@Qualifier("accountRepository") final AccountRepository primary) throws Exception {
+        return this.readRouter().route(AccountRepository.class, primary, this.replicaRepositories(AccountRepository.class));
+    }
+
+    @Bean
+    @Primary
+    public WalletRepository routedWalletRepository(@Qualifier("walletRepository") final WalletRepository primary) throws Exception {
+        return this.readRouter().route(WalletRepository.class, primary, this.replicaRepositories(WalletRepository.class));
+    }
+
+    @Bean
+    @Primary
+    public TransactionRepository routedTransactionRepository(@Qualifier("transactionRepository") final TransactionRepository primary) throws Exception {
+        return this.readRouter().route(TransactionRepository.class, primary, this.replicaRepositories(TransactionRepository.class));
+    }
+
+    /**
+     * the replicas are Neo4j servers, read over REST with the credentials of the primary.
+     */
+    private synchronized List<Neo4jTemplate> replicas() throws Exception {
+        if (this.replicas == null) {
+            this.replicas = Lists.newArrayList();
+            for (final String url : this.settings.getReplicaUrls()) {
+                this.replicas.add(this.replica(new SpringRestGraphDatabase(url, this.settings.getNeo4jUsername(), this.settings.getNeo4jPassword())));
+            }
+            if (!this.replicas.isEmpty()) {
+                log.info("reading from {} replicas, consistency {}", this.replicas.size(), this.settings.getReadConsistency());
+            }
+        }
+        return this.replicas;
+    }
+
+    /**
+     * @return a template on the replica sharing the mapping of the primary
+     */
+    Neo4jTemplate replica(final GraphDatabase replica) throws Exception {
+        final MappingInfrastructureFactoryBean infrastructure = new MappingInfrastructureFactoryBean(replica, this.transactionManager);
+        infrastructure.setMappingContext(this.mappingContext);
+        infrastructure.setConversionService(this.template.getConversionService());
+        infrastructure.setRelationshipTypeRepresentationStrategy(new NoopRelationshipTypeRepresentationStrategy());
+        infrastructure.afterPropertiesSet();
+        return new Neo4jTemplate(infrastructure.getObject());
+    }
+
+    private <T> List<T> replicaRepositories(final Class<T> type) throws Exception {
+        return this.replicas().stream().map(replica -> new GraphRepositoryFactory(replica, this.mappingContext).getRepository(type))
+                .collect(Collectors.toList());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.replicas != null) {
+            this.replicas.forEach(replica -> replica.getGraphDatabase().shutdown());
+        }
+    }
+
+}
@@ -3,6 +3,7 @@
  */
 package io.yope.payment.configuration;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.data.rest.SpringBootRepositoryRestMvcConfiguration;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.rest.core.config.RepositoryRestConfiguration;
@@ -16,6 +17,7 @@ import io.yope.payment.neo4j.domain.Neo4JWallet;
  *
  */
 @Configuration
+@ConditionalOnExpression(YopeNeo4jConfiguration.ENABLED)
 public class RestDataConfiguration extends SpringBootRepositoryRestMvcConfiguration {
 
     @Override
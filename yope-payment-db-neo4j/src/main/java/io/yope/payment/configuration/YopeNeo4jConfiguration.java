@@ -1,8 +1,13 @@
 package io.yope.payment.configuration;
 
+import java.io.File;
+import java.util.List;
+
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -17,25 +22,81 @@ import org.springframework.data.neo4j.support.typerepresentation.NoopRelationshi
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import com.google.common.collect.Lists;
+
+import io.yope.payment.neo4j.archive.TransactionArchive;
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * the Neo4j implementation of the db services, the default one;
+ * memory.enabled=true or jdbc.enabled=true replaces it.
+ */
 @EnableTransactionManagement
 @Configuration
+@ConditionalOnExpression(YopeNeo4jConfiguration.ENABLED)
 @EnableScheduling
 @EnableAutoConfiguration
 @EnableConfigurationProperties
-@ComponentScan(basePackages = {"io.yope.payment.neo4j.services"})
+@ComponentScan(basePackages = {"io.yope.payment.neo4j.services", "io.yope.payment.neo4j.schema", "io.yope.payment.neo4j.archive"})
 @EnableNeo4jRepositories(basePackages = "io.yope.payment.neo4j.repositories")
-@Import(RestDataConfiguration.class)
+@Import({RestDataConfiguration.class, Neo4jReplicaConfiguration.class})
 public class YopeNeo4jConfiguration extends Neo4jConfiguration {
 
+    /**
+     * the condition of the configurations of this module, which the application also finds by scanning.
+     */
+    public static final String ENABLED = "!${memory.enabled:false} and !${jdbc.enabled:false}";
+
+    /**
+     * REST talks to a Neo4j server over HTTP;
+     * EMBEDDED runs the database in-process, for tests and single-node setups.
+     */
+    public enum Mode {
+        REST, EMBEDDED
+    }
+
+    /**
+     * what to do at startup with the repository queries starting from a scan,
+     * see GraphSchemaMigration.
+     */
+    public enum PlanCheck {
+        OFF, WARN, FAIL
+    }
+
+    /**
+     * what the replicas serve: EVENTUAL sends every read only transaction to them,
+     * SESSION keeps on the primary the sessions that wrote recently, so that a client reads its own writes.
+     */
+    public enum ReadConsistency {
+        EVENTUAL, SESSION
+    }
+
     @ConfigurationProperties(prefix = "neo4j") @Getter
     @Setter
     public class Neo4jSettings {
+        private Mode mode = Mode.REST;
         private String neo4jUrl;
         private String neo4jUsername;
         private String neo4jPassword;
+        private String storeDir = "graph.db";
+        private PlanCheck planCheck = PlanCheck.WARN;
+        /**
+         * the REST endpoints of the read replicas, none to read from the primary.
+         */
+        private List<String> replicaUrls = Lists.newArrayList();
+        private ReadConsistency readConsistency = ReadConsistency.SESSION;
+        private long readYourWritesMillis = 5000;
+        /**
+         * the age in days after which the completed, expired and failed transactions
+         * move from the graph to the archive, 0 to keep them in the graph.
+         */
+        private int archiveAfterDays;
+        /**
+         * the archive chunks; with several nodes, a folder they all mount, the graph electing the one writing it.
+         */
+        private String archiveFolder = "archive";
+        private int archiveBatch = 1000;
     }
 
     public YopeNeo4jConfiguration() {
@@ -47,9 +108,22 @@ public class YopeNeo4jConfiguration extends Neo4jConfiguration {
         return new Neo4jSettings();
     }
 
+    /**
+     * the archive is read whether or not this node archives, to find the transactions archived earlier;
+     * its folder is only created when a chunk is written.
+     */
     @Bean
+    public TransactionArchive transactionArchive(final Neo4jSettings settings) {
+        return new TransactionArchive(new File(settings.getArchiveFolder()));
+    }
+
+    @Bean(destroyMethod = "shutdown")
     public GraphDatabaseService graphDatabaseService(
             final Neo4jSettings settings) {
+        if (Mode.EMBEDDED.equals(settings.getMode())) {
+            return new GraphDatabaseFactory().newEmbeddedDatabase(settings.getStoreDir());
+        }
+        // the timeouts and the keep-alive pool of the rest binding are JVM wide, set at launch, see the README
         return new SpringRestGraphDatabase(settings.getNeo4jUrl(), settings.getNeo4jUsername(), settings.getNeo4jPassword());
     }
 
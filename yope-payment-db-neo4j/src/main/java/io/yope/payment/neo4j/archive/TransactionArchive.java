@@ -0,0 +1,355 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * append only store of the transactions moved out of the graph.
+ * Every archiving run writes one immutable chunk, {@code chunk-<n>.bin}: a header with the ids
+ * of the wallets involved, the ids of the transactions and the hash codes of their hashes,
+ * then the gzipped transactions as history summaries.
+ * Only the headers are kept in memory; a lookup decodes the chunks its header matches and nothing else.
+ * With several nodes the folder is shared storage: one node writes, see {@link TransactionArchiver},
+ * and every node picks up the new chunks when the folder changes.
+ * The folder is only created by the first chunk, so that a node not archiving leaves no trace of it.
+ * @author massi
+ *
+ */
+@Slf4j
+public class TransactionArchive {
+
+    private static final int MAGIC = 0x59545832;
+
+    private static final String PREFIX = "chunk-";
+
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * a chunk file with the sorted ids of its wallets and transactions, and the sorted hash codes of their hashes.
+     */
+    private static class Chunk {
+        private final File file;
+        private final long[] wallets;
+        private final long[] ids;
+        private final int[] hashes;
+
+        Chunk(final File file, final long[] wallets, final long[] ids, final int[] hashes) {
+            this.file = file;
+            this.wallets = wallets;
+            this.ids = ids;
+            this.hashes = hashes;
+        }
+
+        boolean involves(final Collection<Long> walletIds) {
+            return walletIds.stream().anyMatch(id -> Arrays.binarySearch(this.wallets, id) >= 0);
+        }
+
+        boolean holds(final long id) {
+            return Arrays.binarySearch(this.ids, id) >= 0;
+        }
+
+        boolean mayHold(final String hash) {
+            return Arrays.binarySearch(this.hashes, hash.hashCode()) >= 0;
+        }
+    }
+
+    private final File folder;
+
+    private final List<Chunk> chunks = new CopyOnWriteArrayList<>();
+
+    private long sequence;
+
+    /**
+     * the modification time of the folder when its chunks were last listed.
+     */
+    private volatile long listed = -1;
+
+    public TransactionArchive(final File folder) {
+        this.folder = folder;
+        this.refresh();
+        log.info("transaction archive {} opened with {} chunks", folder, this.chunks.size());
+    }
+
+    /**
+     * adds the chunks written since the last listing, by another node sharing the folder.
+     */
+    private synchronized void refresh() {
+        final long modified = this.folder.lastModified();
+        if (modified == this.listed) {
+            return;
+        }
+        final File[] files = this.folder.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(EXTENSION)
+                && sequence(name) > this.sequence);
+        if (files == null) {
+            // not created yet
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(sequence(a.getName()), sequence(b.getName())));
+        for (final File file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                this.chunks.add(readHeader(file, in));
+            } catch (final IOException e) {
+                throw new UncheckedIOException("cannot read archive chunk " + file, e);
+            }
+            this.sequence = sequence(file.getName());
+        }
+        // a chunk written in the same tick as the listing would not change the time again
+        this.listed = System.currentTimeMillis() - modified > 1000 ? modified : -1;
+    }
+
+    /**
+     * writes the transactions in a new chunk, synced before it becomes visible.
+     * @param transactions the transactions, with id, name and hash of their wallets
+     */
+    public synchronized void append(final List<Transaction> transactions) throws IOException {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        FileUtils.forceMkdir(this.folder);
+        this.refresh();
+        final long[] wallets = transactions.stream()
+                .flatMap(t -> Arrays.asList(t.getSource().getId(), t.getDestination().getId()).stream())
+                .mapToLong(Long::longValue).distinct().sorted().toArray();
+        final long[] ids = transactions.stream().mapToLong(Transaction::getId).distinct().sorted().toArray();
+        final int[] hashes = transactions.stream()
+                .flatMap(t -> Arrays.asList(t.getTransactionHash(), t.getSenderHash(), t.getReceiverHash()).stream())
+                .filter(hash -> hash != null).mapToInt(String::hashCode).distinct().sorted().toArray();
+        final File file = new File(this.folder, PREFIX + (this.sequence + 1) + EXTENSION);
+        final File temp = new File(this.folder, file.getName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            final DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeInt(wallets.length);
+            for (final long wallet : wallets) {
+                header.writeLong(wallet);
+            }
+            header.writeInt(ids.length);
+            for (final long id : ids) {
+                header.writeLong(id);
+            }
+            header.writeInt(hashes.length);
+            for (final int hash : hashes) {
+                header.writeInt(hash);
+            }
+            header.flush();
+            final GZIPOutputStream zip = new GZIPOutputStream(new BufferedOutputStream(stream));
+            final DataOutputStream out = new DataOutputStream(zip);
+            out.writeInt(transactions.size());
+            for (final Transaction transaction : transactions) {
+                write(out, transaction);
+            }
+            out.flush();
+            zip.finish();
+            zip.flush();
+            stream.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        this.sequence++;
+        this.chunks.add(new Chunk(file, wallets, ids, hashes));
+    }
+
+    public boolean isEmpty() {
+        this.refresh();
+        return this.chunks.isEmpty();
+    }
+
+    /**
+     * @param walletIds the wallets looked at
+     * @param filter the transactions to return
+     * @return the archived transactions involving one of the wallets and accepted by the filter
+     */
+    public List<Transaction> find(final Collection<Long> walletIds, final Predicate<Transaction> filter) {
+        this.refresh();
+        final List<Transaction> found = Lists.newArrayList();
+        this.chunks.stream().filter(chunk -> chunk.involves(walletIds)).forEach(chunk -> read(chunk, filter, found));
+        return found;
+    }
+
+    /**
+     * @param id the id of a transaction
+     * @return the archived transaction with the id, the latest when the graph gave the id twice, null if none
+     */
+    public Transaction get(final long id) {
+        this.refresh();
+        final List<Transaction> found = Lists.newArrayList();
+        this.chunks.stream().filter(chunk -> chunk.holds(id)).forEach(chunk -> read(chunk, t -> t.getId() == id, found));
+        return found.stream().max((a, b) -> Long.compare(a.getCreationDate(), b.getCreationDate())).orElse(null);
+    }
+
+    /**
+     * @return the highest id of the archived transactions, 0 if none
+     */
+    public long lastId() {
+        this.refresh();
+        return this.chunks.stream().filter(chunk -> chunk.ids.length > 0)
+                .mapToLong(chunk -> chunk.ids[chunk.ids.length - 1]).max().orElse(0);
+    }
+
+    /**
+     * @param hash a transaction, sender or receiver hash
+     * @param filter the transactions to return, the ones with the hash in the expected field
+     * @return the archived transactions accepted by the filter among the ones with the hash
+     */
+    public List<Transaction> findByHash(final String hash, final Predicate<Transaction> filter) {
+        this.refresh();
+        final List<Transaction> found = Lists.newArrayList();
+        this.chunks.stream().filter(chunk -> chunk.mayHold(hash)).forEach(chunk -> read(chunk, filter, found));
+        return found;
+    }
+
+    private static void read(final Chunk chunk, final Predicate<Transaction> filter, final List<Transaction> found) {
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(chunk.file)))) {
+            readHeader(chunk.file, header);
+            final DataInputStream in = new DataInputStream(new GZIPInputStream(header));
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Transaction transaction = read(in);
+                if (filter.test(transaction)) {
+                    found.add(transaction);
+                }
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("cannot read archive chunk " + chunk.file, e);
+        }
+    }
+
+    private static Chunk readHeader(final File file, final DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not an archive chunk");
+        }
+        final long[] wallets = new long[in.readInt()];
+        for (int i = 0; i < wallets.length; i++) {
+            wallets[i] = in.readLong();
+        }
+        final long[] ids = new long[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readLong();
+        }
+        final int[] hashes = new int[in.readInt()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = in.readInt();
+        }
+        return new Chunk(file, wallets, ids, hashes);
+    }
+
+    private static void write(final DataOutputStream out, final Transaction transaction) throws IOException {
+        out.writeLong(transaction.getId());
+        writeWallet(out, transaction.getSource());
+        writeWallet(out, transaction.getDestination());
+        writeString(out, transaction.getTransactionHash());
+        writeString(out, transaction.getSenderHash());
+        writeString(out, transaction.getReceiverHash());
+        writeString(out, transaction.getType() == null ? null : transaction.getType().name());
+        writeString(out, transaction.getReference());
+        writeString(out, transaction.getStatus() == null ? null : transaction.getStatus().name());
+        writeString(out, transaction.getDescription());
+        writeString(out, transaction.getAmount() == null ? null : transaction.getAmount().toString());
+        writeString(out, transaction.getBalance() == null ? null : transaction.getBalance().toString());
+        writeString(out, transaction.getBlockchainFees() == null ? null : transaction.getBlockchainFees().toString());
+        writeString(out, transaction.getFees() == null ? null : transaction.getFees().toString());
+        writeLong(out, transaction.getCreationDate());
+        writeLong(out, transaction.getAcceptedDate());
+        writeLong(out, transaction.getDeniedDate());
+        writeLong(out, transaction.getFailedDate());
+        writeLong(out, transaction.getExpiredDate());
+        writeLong(out, transaction.getCompletedDate());
+        writeString(out, transaction.getQR());
+    }
+
+    private static Transaction read(final DataInputStream in) throws IOException {
+        final Transaction.Builder builder = Transaction.builder().id(in.readLong()).source(readWallet(in)).destination(readWallet(in))
+                .transactionHash(readString(in)).senderHash(readString(in)).receiverHash(readString(in));
+        final String type = readString(in);
+        builder.type(type == null ? null : Transaction.Type.valueOf(type)).reference(readString(in));
+        final String status = readString(in);
+        builder.status(status == null ? null : Transaction.Status.valueOf(status)).description(readString(in))
+                .amount(readDecimal(in)).balance(readDecimal(in)).blockchainFees(readDecimal(in)).fees(readDecimal(in))
+                .creationDate(readLong(in)).acceptedDate(readLong(in)).deniedDate(readLong(in)).failedDate(readLong(in))
+                .expiredDate(readLong(in)).completedDate(readLong(in)).QR(readString(in));
+        return builder.build();
+    }
+
+    private static void writeWallet(final DataOutputStream out, final Wallet wallet) throws IOException {
+        out.writeLong(wallet.getId());
+        writeString(out, wallet.getName());
+        writeString(out, wallet.getWalletHash());
+    }
+
+    private static Wallet readWallet(final DataInputStream in) throws IOException {
+        return Wallet.builder().id(in.readLong()).name(readString(in)).walletHash(readString(in)).build();
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal readDecimal(final DataInputStream in) throws IOException {
+        final String value = readString(in);
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private static void writeLong(final DataOutputStream out, final Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static long sequence(final String fileName) {
+        try {
+            return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - EXTENSION.length()));
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+}
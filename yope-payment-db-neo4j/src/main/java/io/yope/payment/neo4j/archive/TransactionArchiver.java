@@ -0,0 +1,133 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.archive;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import io.yope.payment.configuration.YopeNeo4jConfiguration.Neo4jSettings;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.neo4j.domain.Neo4JTransactionSummary;
+import io.yope.payment.neo4j.repositories.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * moves the old transactions in a final status from the graph to the {@link TransactionArchive},
+ * a batch at a time: the batch is written to a chunk, then its relationships are deleted.
+ * A failure in between leaves a transaction in both stores, the histories keep the graph copy.
+ * When several nodes share the graph and the archive folder, the one holding the lease stored in the graph archives,
+ * the others skip their runs; the lease of a node that stopped expires after two runs.
+ * @author massi
+ *
+ */
+@Slf4j
+@Component
+public class TransactionArchiver {
+
+    private static final int HOUR = 60 * 60 * 1000;
+
+    /**
+     * the final statuses; the transactions of the other statuses stay in the graph.
+     */
+    public static final List<Status> ARCHIVED = ImmutableList.of(Status.COMPLETED, Status.EXPIRED, Status.FAILED);
+
+    private static final String DELETE = "START t=relationship({ids}) DELETE t";
+
+    /**
+     * takes or renews the lease when free, expired or already held: setting the lock property first
+     * makes concurrent nodes wait for each other before reading the owner.
+     */
+    private static final String LEASE = "MERGE (l:ArchiveLease {name: 'archiver'}) SET l.lock = true"
+            + " WITH l WHERE l.owner IS NULL OR l.owner = {owner} OR l.until < {now}"
+            + " SET l.owner = {owner}, l.until = {until} RETURN l.owner";
+
+    private final String owner = UUID.randomUUID().toString();
+
+    @Autowired
+    private Neo4jSettings settings;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    private TransactionRepository repository;
+
+    @Autowired
+    private Neo4jTemplate template;
+
+    @Autowired
+    @Qualifier("neo4jTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Scheduled(fixedDelay = HOUR)
+    public void archiveTransactions() {
+        if (this.settings.getArchiveAfterDays() <= 0 || !this.lease()) {
+            return;
+        }
+        final long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(this.settings.getArchiveAfterDays());
+        for (final Status status : ARCHIVED) {
+            try {
+                final int archived = this.archive(status, before);
+                if (archived > 0) {
+                    log.info("archived {} {} transactions", archived, status);
+                }
+            } catch (final IOException | RuntimeException e) {
+                log.error("Failed to archive {} transactions", status, e);
+            }
+        }
+    }
+
+    /**
+     * @return true if this node holds the lease until the next run has started
+     */
+    boolean lease() {
+        final long now = System.currentTimeMillis();
+        final Map<String, Object> params = Maps.newHashMap();
+        params.put("owner", this.owner);
+        params.put("now", now);
+        params.put("until", now + 2 * HOUR);
+        return new TransactionTemplate(this.transactionManager).execute(tx ->
+                this.template.query(LEASE, params).iterator().hasNext());
+    }
+
+    /**
+     * @return the number of transactions archived
+     */
+    int archive(final Status status, final long before) throws IOException {
+        final TransactionTemplate transactions = new TransactionTemplate(this.transactionManager);
+        final int limit = this.settings.getArchiveBatch();
+        int count = 0;
+        while (true) {
+            final List<Neo4JTransactionSummary> batch = transactions.execute(tx -> this.repository.findCreatedBefore(status.name(), before, limit));
+            if (batch.isEmpty()) {
+                return count;
+            }
+            this.archive.append(batch.stream().map(t -> t.toTransaction()).collect(Collectors.toList()));
+            // the relationships are deleted by their own ids, the transaction ids being properties
+            final List<Long> ids = batch.stream().map(Neo4JTransactionSummary::getGraphId).collect(Collectors.toList());
+            transactions.execute(tx -> this.template.query(DELETE, Collections.singletonMap("ids", ids)));
+            count += batch.size();
+            if (batch.size() < limit) {
+                return count;
+            }
+        }
+    }
+
+}
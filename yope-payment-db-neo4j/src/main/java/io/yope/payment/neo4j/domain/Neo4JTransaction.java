@@ -4,6 +4,8 @@
 package io.yope.payment.neo4j.domain;
 
 import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
 
 import org.springframework.data.neo4j.annotation.EndNode;
 import org.springframework.data.neo4j.annotation.Fetch;
@@ -12,6 +14,8 @@ import org.springframework.data.neo4j.annotation.Indexed;
 import org.springframework.data.neo4j.annotation.RelationshipEntity;
 import org.springframework.data.neo4j.annotation.StartNode;
 
+import com.google.common.collect.Maps;
+
 import io.yope.payment.domain.Transaction;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -34,6 +38,11 @@ public class Neo4JTransaction {
     @GraphId
     private Long id;
 
+    /**
+     * the id of the transaction, see TransactionIdSequence; the relationship id is only the graph's.
+     */
+    private Long transactionId;
+
     @Fetch
     @StartNode
     private Neo4JWallet source;
@@ -94,7 +103,7 @@ public class Neo4JTransaction {
                 .source(Neo4JWallet.from(transaction.getSource()).build())
                 .status(transaction.getStatus())
                 .reference(transaction.getReference())
-                .id(transaction.getId())
+                .transactionId(transaction.getId())
                 .QR(transaction.getQR())
                 .transactionHash(transaction.getTransactionHash())
                 .senderHash(transaction.getSenderHash())
@@ -119,7 +128,7 @@ public class Neo4JTransaction {
                 .source(getSource().toWallet())
                 .status(getStatus())
                 .reference(getReference())
-                .id(getId())
+                .id(getTransactionId())
                 .QR(getQR())
                 .transactionHash(getTransactionHash())
                 .senderHash(getSenderHash())
@@ -130,4 +139,30 @@ public class Neo4JTransaction {
                 .deniedDate(getDeniedDate())
                 .completedDate(getCompletedDate()).build();
     }
+
+    /**
+     * @return the properties of the relationship as the mapping stores them, for the Cypher updates.
+     */
+    public Map<String, Object> toProperties() {
+        final Map<String, Object> properties = Maps.newHashMap();
+        properties.put("transactionHash", getTransactionHash());
+        properties.put("senderHash", getSenderHash());
+        properties.put("receiverHash", getReceiverHash());
+        properties.put("type", getType() == null ? null : getType().name());
+        properties.put("reference", getReference());
+        properties.put("status", getStatus() == null ? null : getStatus().name());
+        properties.put("description", getDescription());
+        properties.put("amount", Objects.toString(getAmount(), null));
+        properties.put("balance", Objects.toString(getBalance(), null));
+        properties.put("blockchainFees", Objects.toString(getBlockchainFees(), null));
+        properties.put("fees", Objects.toString(getFees(), null));
+        properties.put("creationDate", getCreationDate());
+        properties.put("acceptedDate", getAcceptedDate());
+        properties.put("deniedDate", getDeniedDate());
+        properties.put("failedDate", getFailedDate());
+        properties.put("expiredDate", getExpiredDate());
+        properties.put("completedDate", getCompletedDate());
+        properties.put("QR", getQR());
+        return properties;
+    }
 }
@@ -0,0 +1,137 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.domain;
+
+import java.math.BigDecimal;
+
+import org.springframework.data.neo4j.annotation.QueryResult;
+import org.springframework.data.neo4j.annotation.ResultColumn;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * a transaction as listed in the histories: its own properties,
+ * but only id, name and hash of the wallets, see TransactionRepository#SUMMARY.
+ * The full wallets are loaded on demand by id.
+ * SDN fills the columns through the setters.
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@QueryResult
+public class Neo4JTransactionSummary {
+
+    @ResultColumn("id")
+    private Long id;
+
+    /**
+     * the id of the relationship, for the statements the archiver runs on the graph.
+     */
+    @ResultColumn("graphId")
+    private Long graphId;
+
+    @ResultColumn("sourceId")
+    private Long sourceId;
+
+    @ResultColumn("sourceName")
+    private String sourceName;
+
+    @ResultColumn("sourceHash")
+    private String sourceHash;
+
+    @ResultColumn("destinationId")
+    private Long destinationId;
+
+    @ResultColumn("destinationName")
+    private String destinationName;
+
+    @ResultColumn("destinationHash")
+    private String destinationHash;
+
+    @ResultColumn("transactionHash")
+    private String transactionHash;
+
+    @ResultColumn("senderHash")
+    private String senderHash;
+
+    @ResultColumn("receiverHash")
+    private String receiverHash;
+
+    @ResultColumn("type")
+    private Transaction.Type type;
+
+    @ResultColumn("reference")
+    private String reference;
+
+    @ResultColumn("status")
+    private Transaction.Status status;
+
+    @ResultColumn("description")
+    private String description;
+
+    @ResultColumn("amount")
+    private BigDecimal amount;
+
+    @ResultColumn("balance")
+    private BigDecimal balance;
+
+    @ResultColumn("blockchainFees")
+    private BigDecimal blockchainFees;
+
+    @ResultColumn("fees")
+    private BigDecimal fees;
+
+    @ResultColumn("creationDate")
+    private Long creationDate;
+
+    @ResultColumn("acceptedDate")
+    private Long acceptedDate;
+
+    @ResultColumn("deniedDate")
+    private Long deniedDate;
+
+    @ResultColumn("failedDate")
+    private Long failedDate;
+
+    @ResultColumn("expiredDate")
+    private Long expiredDate;
+
+    @ResultColumn("completedDate")
+    private Long completedDate;
+
+    @ResultColumn("QR")
+    private String QR;
+
+    public Transaction toTransaction() {
+        return Transaction.builder()
+                .type(getType())
+                .amount(getAmount())
+                .balance(getBalance())
+                .blockchainFees(getBlockchainFees())
+                .fees(getFees())
+                .creationDate(getCreationDate())
+                .description(getDescription())
+                .source(Wallet.builder().id(getSourceId()).name(getSourceName()).walletHash(getSourceHash()).build())
+                .destination(Wallet.builder().id(getDestinationId()).name(getDestinationName()).walletHash(getDestinationHash()).build())
+                .status(getStatus())
+                .reference(getReference())
+                .id(getId())
+                .QR(getQR())
+                .transactionHash(getTransactionHash())
+                .senderHash(getSenderHash())
+                .receiverHash(getReceiverHash())
+                .acceptedDate(getAcceptedDate())
+                .failedDate(getFailedDate())
+                .expiredDate(getExpiredDate())
+                .deniedDate(getDeniedDate())
+                .completedDate(getCompletedDate()).build();
+    }
+
+}
@@ -4,11 +4,15 @@
 package io.yope.payment.neo4j.domain;
 
 import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
 
 import org.springframework.data.neo4j.annotation.GraphId;
 import org.springframework.data.neo4j.annotation.Indexed;
 import org.springframework.data.neo4j.annotation.NodeEntity;
 
+import com.google.common.collect.Maps;
+
 import io.yope.payment.domain.Wallet;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -86,4 +90,23 @@ public class Neo4JWallet {
                 .content(getContent()).build();
     }
 
+    /**
+     * @return the properties of the node as the mapping stores them, for the Cypher updates.
+     */
+    public Map<String, Object> toProperties() {
+        final Map<String, Object> properties = Maps.newHashMap();
+        properties.put("name", getName());
+        properties.put("walletHash", getWalletHash());
+        properties.put("balance", Objects.toString(getBalance(), null));
+        properties.put("availableBalance", Objects.toString(getAvailableBalance(), null));
+        properties.put("status", getStatus() == null ? null : getStatus().name());
+        properties.put("description", getDescription());
+        properties.put("creationDate", getCreationDate());
+        properties.put("modificationDate", getModificationDate());
+        properties.put("type", getType() == null ? null : getType().name());
+        properties.put("content", getContent());
+        properties.put("privateKey", getPrivateKey());
+        return properties;
+    }
+
 }
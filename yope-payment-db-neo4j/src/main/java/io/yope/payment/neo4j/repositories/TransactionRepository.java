@@ -10,6 +10,7 @@ import org.springframework.data.neo4j.repository.GraphRepository;
 import org.springframework.data.repository.query.Param;
 
 import io.yope.payment.neo4j.domain.Neo4JTransaction;
+import io.yope.payment.neo4j.domain.Neo4JTransactionSummary;
 
 /**
  * @author massi
@@ -18,38 +19,70 @@ import io.yope.payment.neo4j.domain.Neo4JTransaction;
 public interface TransactionRepository extends GraphRepository<Neo4JTransaction> {
 
     /*
+     * x = the wallet looked at
+     * y = the other wallet
      * s = source
      * d = destination
      */
 
-    @Query("MATCH (s)-[t:PAY]->(d) where id(s) = {id} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type} return t")
-    List<Neo4JTransaction> findWalletTransactionsOut(@Param("id") Long id, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+    /**
+     * the columns of a {@link Neo4JTransactionSummary}; the wallets go no further than id, name and hash,
+     * so the histories don't load their content and keys.
+     */
+    String SUMMARY = " WITH DISTINCT t, startNode(t) AS s, endNode(t) AS d RETURN t.transactionId AS id, id(t) AS graphId,"
+            + " id(s) AS sourceId, s.name AS sourceName, s.walletHash AS sourceHash,"
+            + " id(d) AS destinationId, d.name AS destinationName, d.walletHash AS destinationHash,"
+            + " t.transactionHash AS transactionHash, t.senderHash AS senderHash, t.receiverHash AS receiverHash,"
+            + " t.type AS type, t.reference AS reference, t.status AS status, t.description AS description,"
+            + " t.amount AS amount, t.balance AS balance, t.blockchainFees AS blockchainFees, t.fees AS fees,"
+            + " t.creationDate AS creationDate, t.acceptedDate AS acceptedDate, t.deniedDate AS deniedDate, t.failedDate AS failedDate,"
+            + " t.expiredDate AS expiredDate, t.completedDate AS completedDate, t.QR AS QR";
+
+    @Query("MATCH (x)-[t:PAY]->(y) where id(x) = {id} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type}" + SUMMARY)
+    List<Neo4JTransactionSummary> findWalletTransactionsOut(@Param("id") Long id, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+
+    @Query("MATCH (x)-[t:PAY]->(y) where id(y) = {id} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type}" + SUMMARY)
+    List<Neo4JTransactionSummary> findWalletTransactionsIn(@Param("id") Long id, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
 
-    @Query("MATCH (s)-[t:PAY]->(d) where id(d) = {id} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type} return t")
-    List<Neo4JTransaction> findWalletTransactionsIn(@Param("id") Long id, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+    @Query("MATCH (x)-[t:PAY]-(y) where id(x) = {id} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type}" + SUMMARY)
+    List<Neo4JTransactionSummary> findWalletTransactions(@Param("id") Long id, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
 
-    @Query("MATCH (s)-[t:PAY]-(d) where id(s) = {id} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type} return t")
-    List<Neo4JTransaction> findWalletTransactions(@Param("id") Long id, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+    @Query("MATCH (a)-[:OWN]->(x)<-[t:PAY]-(y) where id(a) = {accountId} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type}" + SUMMARY)
+    List<Neo4JTransactionSummary> findAccountTransactionsIn(@Param("accountId") Long accountId, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
 
-    @Query("MATCH (a)-[:OWN]->(s)<-[t:PAY]-(d) where id(a) = {accountId} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type} return t")
-    List<Neo4JTransaction> findAccountTransactionsIn(@Param("accountId") Long accountId, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+    @Query("MATCH (a)-[:OWN]->(x)-[t:PAY]->(y) where id(a) = {accountId} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type}" + SUMMARY)
+    List<Neo4JTransactionSummary> findAccountTransactionsOut(@Param("accountId") Long accountId, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
 
-    @Query("MATCH (a)-[:OWN]->(s)-[t:PAY]->(d) where id(a) = {accountId} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type} return t")
-    List<Neo4JTransaction> findAccountTransactionsOut(@Param("accountId") Long accountId, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+    @Query("MATCH (a)-[:OWN]->(x)-[t:PAY]-(y) where id(a) = {accountId} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type}" + SUMMARY)
+    List<Neo4JTransactionSummary> findAccountTransactions(@Param("accountId") Long accountId, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
 
-    @Query("MATCH (a)-[:OWN]->(s)-[t:PAY]-(d) where id(a) = {accountId} AND t.reference=~{reference} AND t.status=~{status} AND t.type=~{type} return t")
-    List<Neo4JTransaction> findAccountTransactions(@Param("accountId") Long accountId, @Param("reference") String reference, @Param("status") String status, @Param("type") String type);
+    /*
+     * the lookups below start from the relationship auto index,
+     * see GraphSchemaMigration#TRANSACTION_INDEX
+     */
 
-    @Query("MATCH (a)-[t:PAY {status: {status}}]->(b) where timestamp() - t.creationDate > {delay} return t ")
+    @Query("START t=relationship:relationship_auto_index(transactionId={id}) RETURN t")
+    Neo4JTransaction findByTransactionId(@Param("id") Long id);
+
+    @Query("START t=relationship:relationship_auto_index(status={status}) WHERE timestamp() - t.creationDate > {delay} RETURN t")
     List<Neo4JTransaction> findOlderThan(@Param("delay") int delay, @Param("status") String status);
 
-    @Query("MATCH (a)-[t:PAY {senderHash: {senderHash}}]->(b) return t ")
+    /**
+     * the transactions of a status created before a date, in history form, see TransactionArchiver.
+     */
+    @Query("START t=relationship:relationship_auto_index(status={status}) WHERE t.creationDate < {before} WITH t LIMIT {limit}" + SUMMARY)
+    List<Neo4JTransactionSummary> findCreatedBefore(@Param("status") String status, @Param("before") long before, @Param("limit") int limit);
+
+    @Query("START t=relationship:relationship_auto_index(senderHash={senderHash}) RETURN t")
     Neo4JTransaction findBySenderHash(@Param("senderHash") String hash);
 
-    @Query("MATCH (a)-[t:PAY {transactionHash: {transactionHash}}]->(b) return t ")
+    @Query("START t=relationship:relationship_auto_index(transactionHash={transactionHash}) RETURN t")
     Neo4JTransaction findByTransactionHash(@Param("transactionHash") String hash);
 
-    @Query("MATCH (a)-[t:PAY {receiverHash: {receiverHash}}]->(b) return t ")
+    @Query("START t=relationship:relationship_auto_index(transactionHash={transactionHash}) RETURN t")
+    List<Neo4JTransaction> findAllByTransactionHash(@Param("transactionHash") String hash);
+
+    @Query("START t=relationship:relationship_auto_index(receiverHash={receiverHash}) RETURN t")
     Neo4JTransaction findByReceiverHash(@Param("receiverHash") String hash);
 
 }
@@ -3,6 +3,7 @@
  */
 package io.yope.payment.neo4j.repositories;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.neo4j.annotation.Query;
@@ -25,4 +26,7 @@ public interface WalletRepository extends GraphRepository<Neo4JWallet> {
 
     Neo4JWallet findByWalletHash(@Param("0") String hash);
 
+    @Query("MATCH (w:Neo4JWallet) WHERE w.walletHash IN {hashes} RETURN w")
+    List<Neo4JWallet> findByWalletHashes(@Param("hashes") Collection<String> hashes);
+
 }
@@ -0,0 +1,132 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.routing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.yope.payment.configuration.YopeNeo4jConfiguration.ReadConsistency;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * sends the repository calls of read only transactions to the replicas, round robin,
+ * and everything else to the primary.
+ * With {@link ReadConsistency#SESSION} a session that wrote recently reads from the primary,
+ * so that a client always reads its own writes.
+ * The reads of a request that writes go to the primary as well, as what they read is written back.
+ * @author massi
+ *
+ */
+@Slf4j
+public class ReadRouter {
+
+    private static final ThreadLocal<String> SESSION = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> WRITING = new ThreadLocal<>();
+
+    private final int replicas;
+
+    private final ReadConsistency consistency;
+
+    private final Cache<String, Boolean> writers;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param replicas the number of replicas
+     * @param consistency what a session reads after writing
+     * @param stickyMillis how long a session reads from the primary after a write, covering the replication lag
+     */
+    public ReadRouter(final int replicas, final ReadConsistency consistency, final long stickyMillis) {
+        this.replicas = replicas;
+        this.consistency = consistency;
+        this.writers = CacheBuilder.newBuilder().expireAfterWrite(stickyMillis, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * binds the current thread to a session, until {@link #release()}.
+     * @param session the client, null for none
+     * @param writing true if the thread is about to write, all its reads then go to the primary
+     */
+    public void bind(final String session, final boolean writing) {
+        if (session == null) {
+            SESSION.remove();
+        } else {
+            SESSION.set(session);
+        }
+        if (writing) {
+            WRITING.set(Boolean.TRUE);
+        } else {
+            WRITING.remove();
+        }
+    }
+
+    /**
+     * records a write of the current session.
+     */
+    public void written() {
+        final String session = SESSION.get();
+        if (session != null && ReadConsistency.SESSION.equals(this.consistency)) {
+            this.writers.put(session, Boolean.TRUE);
+        }
+    }
+
+    public void release() {
+        SESSION.remove();
+        WRITING.remove();
+    }
+
+    /**
+     * @return the replica for the current call, -1 for the primary
+     */
+    int select() {
+        if (this.replicas == 0 || !TransactionSynchronizationManager.isCurrentTransactionReadOnly() || WRITING.get() != null) {
+            return -1;
+        }
+        final String session = SESSION.get();
+        if (session != null && this.writers.getIfPresent(session) != null) {
+            return -1;
+        }
+        return Math.floorMod(this.next.getAndIncrement(), this.replicas);
+    }
+
+    /**
+     * @param type the repository interface
+     * @param primary the repository on the primary
+     * @param replicas the same repository on each replica
+     * @return a repository routing each call
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T route(final Class<T> type, final T primary, final List<T> replicas) {
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            final int replica = this.select();
+            final Object target = replica < 0 ? primary : replicas.get(replica);
+            if (log.isTraceEnabled()) {
+                log.trace("{}.{} on {}", type.getSimpleName(), method.getName(), replica < 0 ? "primary" : "replica " + replica);
+            }
+            return invoke(target, method, args);
+        });
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.schema;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.annotation.PostConstruct;
+
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.neo4j.cypher.javacompat.PlanDescription;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.index.AutoIndexer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.neo4j.annotation.Query;
+import org.springframework.data.neo4j.rest.SpringRestGraphDatabase;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.yope.payment.configuration.YopeNeo4jConfiguration.Neo4jSettings;
+import io.yope.payment.configuration.YopeNeo4jConfiguration.PlanCheck;
+import io.yope.payment.neo4j.archive.TransactionArchive;
+import io.yope.payment.neo4j.repositories.AccountRepository;
+import io.yope.payment.neo4j.repositories.TransactionRepository;
+import io.yope.payment.neo4j.repositories.WalletRepository;
+import io.yope.payment.neo4j.services.TransactionIdSequence;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * creates at startup the indexes and constraints the repositories rely on,
+ * then profiles every repository {@link Query} and reports the ones that start from a scan.
+ * @author massi
+ *
+ */
+@Slf4j
+@Component
+public class GraphSchemaMigration {
+
+    /**
+     * the schema indexes of the labelled lookups, derived finders included.
+     */
+    static final List<String> SCHEMA = Lists.newArrayList(
+            "CREATE CONSTRAINT ON (a:Neo4JAccount) ASSERT a.email IS UNIQUE",
+            "CREATE INDEX ON :Neo4JAccount(type)",
+            "CREATE INDEX ON :Neo4JWallet(walletHash)",
+            "CREATE INDEX ON :Neo4JWallet(name)",
+            "CREATE CONSTRAINT ON (s:" + TransactionIdSequence.SEQUENCE + ") ASSERT s.name IS UNIQUE");
+
+    /**
+     * relationships have no schema indexes, and SDN does not index the fields of relationship entities:
+     * the PAY lookups start from the relationship auto index, which the database keeps up to date.
+     */
+    public static final String TRANSACTION_INDEX = "relationship_auto_index";
+
+    static final List<String> TRANSACTION_INDEXED_FIELDS = Lists.newArrayList("transactionId", "transactionHash", "senderHash", "receiverHash", "status");
+
+    /**
+     * the node recording that the relationships written before the auto index have been added to it.
+     */
+    static final String MIGRATION = "GraphMigration";
+
+    static final String TRANSACTION_INDEX_MIGRATION = "transaction-index";
+
+    static final String TRANSACTION_ID_MIGRATION = "transaction-id";
+
+    static final List<Class<?>> REPOSITORIES = Lists.newArrayList(AccountRepository.class, WalletRepository.class, TransactionRepository.class);
+
+    /**
+     * operators reading every node, or every node of a label, of the rule planner and of the cost planner.
+     */
+    static final Set<String> SCANS = ImmutableSet.of("AllNodes", "NodeByLabel", "AllNodesScan", "NodeByLabelScan");
+
+    /**
+     * runs a query on the cost planner, whose plans name the start of the pattern.
+     */
+    private static final String PROFILED = "CYPHER 2.1.experimental ";
+
+    @Autowired
+    private Neo4jTemplate template;
+
+    @Autowired
+    private Neo4jSettings settings;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    @Qualifier("neo4jTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void migrate() {
+        for (final String statement : SCHEMA) {
+            try {
+                this.template.query(statement, Collections.emptyMap());
+            } catch (final RuntimeException e) {
+                log.warn("schema statement failed: {}", statement, e);
+            }
+        }
+        this.autoIndex();
+        new TransactionTemplate(this.transactionManager).execute(status -> this.reindexOnce());
+        new TransactionTemplate(this.transactionManager).execute(status -> this.identifyOnce());
+        if (PlanCheck.OFF.equals(this.settings.getPlanCheck())) {
+            return;
+        }
+        final GraphDatabaseService graph = this.template.getGraphDatabaseService();
+        if (graph instanceof SpringRestGraphDatabase) {
+            log.info("query plans are only checked on the embedded database");
+            return;
+        }
+        final List<String> scans = this.checkPlans(graph);
+        if (scans.isEmpty()) {
+            return;
+        }
+        if (PlanCheck.FAIL.equals(this.settings.getPlanCheck())) {
+            throw new IllegalStateException("queries starting from a scan: " + scans);
+        }
+        scans.forEach(scan -> log.warn("query starting from a scan: {}", scan));
+    }
+
+    /**
+     * the auto indexer settings do not survive a restart, they are applied at every startup.
+     * A server may refuse them through REST, then they belong to its neo4j.properties:
+     * relationship_auto_indexing=true and relationship_keys_indexable.
+     * The PAY lookups find nothing without the index, so the startup fails when neither way enabled it.
+     */
+    private void autoIndex() {
+        final AutoIndexer<Relationship> indexer = this.template.getGraphDatabaseService().index().getRelationshipAutoIndexer();
+        try (org.neo4j.graphdb.Transaction tx = this.template.getGraphDatabaseService().beginTx()) {
+            indexer.setEnabled(true);
+            TRANSACTION_INDEXED_FIELDS.forEach(indexer::startAutoIndexingProperty);
+            indexer.getAutoIndex();
+            tx.success();
+        } catch (final RuntimeException e) {
+            log.warn("cannot enable the relationship auto index on {}, checking the server settings", TRANSACTION_INDEXED_FIELDS, e);
+        }
+        try (org.neo4j.graphdb.Transaction tx = this.template.getGraphDatabaseService().beginTx()) {
+            if (!indexer.isEnabled() || !indexer.getAutoIndexedProperties().containsAll(TRANSACTION_INDEXED_FIELDS)) {
+                throw new IllegalStateException("the relationship auto index is not enabled on " + TRANSACTION_INDEXED_FIELDS
+                        + ": set relationship_auto_indexing=true and relationship_keys_indexable in neo4j.properties");
+            }
+            tx.success();
+        }
+    }
+
+    /**
+     * adds the PAY relationships written before the auto index was enabled, by setting their fields again,
+     * then records it on a {@link #MIGRATION} node so that the next startups skip it.
+     * Two nodes starting together may both run it, which only sets the same fields twice.
+     */
+    private int reindexOnce() {
+        final Map<String, Object> migration = Collections.singletonMap("name", TRANSACTION_INDEX_MIGRATION);
+        final Number done = (Number) this.template.query("MATCH (m:" + MIGRATION + " {name: {name}}) RETURN count(m) AS count", migration)
+                .single().get("count");
+        if (done.intValue() > 0) {
+            return 0;
+        }
+        int count = 0;
+        for (final String field : TRANSACTION_INDEXED_FIELDS) {
+            final String statement = "MATCH ()-[t:PAY]->() WHERE has(t." + field + ") SET t." + field + " = t." + field + " RETURN count(t) AS count";
+            final Number indexed = (Number) this.template.query(statement, Collections.emptyMap()).single().get("count");
+            count = Math.max(count, indexed.intValue());
+        }
+        this.template.query("CREATE (m:" + MIGRATION + " {name: {name}, date: timestamp()})", migration);
+        log.info("reindexed {} transactions", count);
+        return count;
+    }
+
+    /**
+     * gives the PAY relationships written before the transaction ids their relationship id, the id they were known by,
+     * then creates the {@link TransactionIdSequence} above every id given, archived ones included,
+     * and records it on a {@link #MIGRATION} node. Two nodes starting together may both run it,
+     * the sequence being created once; the nodes still writing transactions without ids are to be stopped first.
+     */
+    private int identifyOnce() {
+        final Map<String, Object> migration = Collections.singletonMap("name", TRANSACTION_ID_MIGRATION);
+        final Number done = (Number) this.template.query("MATCH (m:" + MIGRATION + " {name: {name}}) RETURN count(m) AS count", migration)
+                .single().get("count");
+        if (done.intValue() > 0) {
+            return 0;
+        }
+        final Number count = (Number) this.template.query("MATCH ()-[t:PAY]->() WHERE NOT has(t.transactionId)"
+                + " SET t.transactionId = id(t) RETURN count(t) AS count", Collections.emptyMap()).single().get("count");
+        final Number last = (Number) this.template.query("MATCH ()-[t:PAY]->() RETURN max(t.transactionId) AS last", Collections.emptyMap())
+                .single().get("last");
+        final Map<String, Object> sequence = Maps.newHashMap();
+        sequence.put("name", TransactionIdSequence.NAME);
+        sequence.put("next", Math.max(last == null ? 0 : last.longValue(), this.archive.lastId()) + 1);
+        this.template.query("MERGE (s:" + TransactionIdSequence.SEQUENCE + " {name: {name}}) ON CREATE SET s.next = {next}", sequence);
+        this.template.query("CREATE (m:" + MIGRATION + " {name: {name}, date: timestamp()})", migration);
+        log.info("identified {} transactions", count);
+        return count.intValue();
+    }
+
+    /**
+     * profiles the queries; they are all reads, run here against the bound parameters' zero values.
+     * @return the methods whose query starts from a scan, with the operator
+     */
+    List<String> checkPlans(final GraphDatabaseService graph) {
+        try (org.neo4j.graphdb.Transaction tx = graph.beginTx()) {
+            graph.schema().awaitIndexesOnline(30, TimeUnit.SECONDS);
+            tx.success();
+        }
+        final ExecutionEngine engine = new ExecutionEngine(graph);
+        final List<String> scans = Lists.newArrayList();
+        for (final Class<?> repository : REPOSITORIES) {
+            for (final Method method : repository.getDeclaredMethods()) {
+                final Query query = method.getAnnotation(Query.class);
+                if (query == null) {
+                    continue;
+                }
+                final Map<String, Object> parameters = parameters(method);
+                final PlanDescription plan = profile(graph, engine, query.value(), parameters);
+                String scan = find(plan, name -> name.contains("Index") || SCANS.contains(name));
+                if (scan == null) {
+                    // the rule planner shows neither id seeks nor all nodes scans under its TraversalMatcher
+                    scan = find(profile(graph, engine, PROFILED + query.value(), parameters), SCANS::contains);
+                }
+                if (scan != null && SCANS.contains(scan)) {
+                    scans.add(repository.getSimpleName() + "." + method.getName() + ": " + scan);
+                }
+            }
+        }
+        return scans;
+    }
+
+    private static PlanDescription profile(final GraphDatabaseService graph, final ExecutionEngine engine,
+            final String query, final Map<String, Object> parameters) {
+        try (org.neo4j.graphdb.Transaction tx = graph.beginTx()) {
+            final ExecutionResult result = engine.profile(query, parameters);
+            try (ResourceIterator<Map<String, Object>> rows = result.iterator()) {
+                while (rows.hasNext()) {
+                    rows.next();
+                }
+            }
+            return result.executionPlanDescription();
+        }
+    }
+
+    /**
+     * @return the name of the first operator of the plan matching the predicate, depth first
+     */
+    private static String find(final PlanDescription plan, final Predicate<String> predicate) {
+        if (predicate.test(plan.getName())) {
+            return plan.getName();
+        }
+        final List<PlanDescription> children;
+        try {
+            children = plan.getChildren();
+        } catch (final Throwable e) {
+            // the 2.1 cost planner cannot describe the whole plan of some projections, WITH DISTINCT among them
+            log.debug("plan not described below {}", plan.getName());
+            return null;
+        }
+        for (final PlanDescription child : children) {
+            final String name = find(child, predicate);
+            if (name != null) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> parameters(final Method method) {
+        final Map<String, Object> parameters = Maps.newHashMap();
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            final Param param = method.getParameters()[i].getAnnotation(Param.class);
+            if (param == null) {
+                continue;
+            }
+            final Class<?> type = method.getParameterTypes()[i];
+            if (Collection.class.isAssignableFrom(type)) {
+                parameters.put(param.value(), Collections.emptyList());
+            } else if (Number.class.isAssignableFrom(type) || type.isPrimitive()) {
+                parameters.put(param.value(), 0L);
+            } else {
+                parameters.put(param.value(), "");
+            }
+        }
+        return parameters;
+    }
+
+}
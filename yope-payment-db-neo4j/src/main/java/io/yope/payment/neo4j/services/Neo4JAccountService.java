@@ -9,6 +9,7 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.data.neo4j.support.Neo4jTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -68,6 +69,7 @@ public class Neo4JAccountService implements AccountDbService, InitializingBean {
      * @see io.yope.payment.services.AccountService#getById(java.lang.Long)
      */
     @Override
+    @Transactional(value="neo4jTransactionManager", readOnly = true)
     public Account getById(final Long id) {
         final Neo4JAccount account =  this.accountRepository.findOne(id);
         return account == null? null : account.toAccount();
@@ -78,11 +80,14 @@ public class Neo4JAccountService implements AccountDbService, InitializingBean {
      * @see io.yope.payment.services.AccountService#update(java.lang.Long, io.yope.payment.domain.Account)
      */
     @Override
+    @Transactional(value="neo4jTransactionManager", propagation = Propagation.REQUIRED, rollbackFor = ObjectNotFoundException.class)
     public Account update(final Long id, final Account account) throws ObjectNotFoundException {
-        if (!this.exists(id)) {
+        try {
+            // the account node is loaded before anything is written, a missing one fails the save itself
+            return this.accountRepository.save(Neo4JAccount.from(account).modificationDate(System.currentTimeMillis()).id(id).build()).toAccount();
+        } catch (final DataRetrievalFailureException e) {
             throw new ObjectNotFoundException(id, Account.class);
         }
-        return this.accountRepository.save(Neo4JAccount.from(account).modificationDate(System.currentTimeMillis()).id(id).build()).toAccount();
     }
 
     /*
@@ -104,6 +109,7 @@ public class Neo4JAccountService implements AccountDbService, InitializingBean {
      * @see io.yope.payment.services.AccountService#getAccounts()
      */
     @Override
+    @Transactional(value="neo4jTransactionManager", readOnly = true)
     public List<Account> getAccounts() {
         return Lists.newArrayList(this.accountRepository.findAll()).stream().map(a -> a.withWallets(Sets.newHashSet()).toAccount()).collect(Collectors.toList());
     }
@@ -123,6 +129,7 @@ public class Neo4JAccountService implements AccountDbService, InitializingBean {
      * @see io.yope.payment.services.AccountService#getByEmail(java.lang.String)
      */
     @Override
+    @Transactional(value="neo4jTransactionManager", readOnly = true)
     public Account getByEmail(final String email) {
         final Neo4JAccount account = this.accountRepository.findByEmail(email);
         return account == null? null : account.toAccount();
@@ -130,11 +137,13 @@ public class Neo4JAccountService implements AccountDbService, InitializingBean {
 
 
     @Override
+    @Transactional(value="neo4jTransactionManager", readOnly = true)
     public List<Account> getByType(final Account.Type type) {
         return this.accountRepository.findByType(type.name()).stream().map(a -> a.toAccount()).collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(value="neo4jTransactionManager", readOnly = true)
     public boolean exists(final Long accountId) {
         return this.accountRepository.exists(accountId);
     }
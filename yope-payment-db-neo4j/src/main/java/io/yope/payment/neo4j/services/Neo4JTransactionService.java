@@ -3,15 +3,22 @@
  */
 package io.yope.payment.neo4j.services;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import io.yope.payment.db.services.TransactionDbService;
 import io.yope.payment.db.services.WalletDbService;
@@ -23,7 +30,10 @@ import io.yope.payment.domain.Wallet;
 import io.yope.payment.exceptions.IllegalTransactionStateException;
 import io.yope.payment.exceptions.InsufficientFundsException;
 import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.neo4j.archive.TransactionArchive;
+import io.yope.payment.neo4j.archive.TransactionArchiver;
 import io.yope.payment.neo4j.domain.Neo4JTransaction;
+import io.yope.payment.neo4j.domain.Neo4JTransactionSummary;
 import io.yope.payment.neo4j.repositories.TransactionRepository;
 
 /**
@@ -37,9 +47,49 @@ public class Neo4JTransactionService implements TransactionDbService {
     @Autowired
     private WalletDbService walletService;
 
+    /**
+     * sets the properties of a transaction, returning it if found.
+     */
+    private static final String UPDATE = "MATCH (s)-[t:PAY]->() WHERE id(s) = {sourceId} AND t.transactionId = {id} SET t += {properties} RETURN t";
+
+    /**
+     * saves the balances of the wallets and creates or updates the transactions in a single statement,
+     * which writes nothing unless it finds every wallet and every updated transaction.
+     * A statement is a transaction of the database of its own, the REST one included:
+     * over REST the surrounding transaction cannot roll back more calls, one call can.
+     * The rows of the wallets have the wallet key, those of the transactions the others;
+     * a transaction is updated if it has the updated key, the id found from the source, else created.
+     * The relationship auto index follows the statement.
+     */
+    private static final String BATCH = "UNWIND {rows} AS row"
+            + " OPTIONAL MATCH (w:Neo4JWallet) WHERE id(w) = coalesce(row.wallet.id, -1)"
+            + " OPTIONAL MATCH (s:Neo4JWallet) WHERE id(s) = coalesce(row.sourceId, -1)"
+            + " OPTIONAL MATCH (d:Neo4JWallet) WHERE id(d) = coalesce(row.destinationId, -1)"
+            + " OPTIONAL MATCH (s)-[u:PAY]->() WHERE u.transactionId = row.updated"
+            + " WITH collect({row: row, w: w, s: s, d: d, u: u}) AS found"
+            + " WHERE all(f IN found WHERE (f.row.wallet IS NULL OR f.w IS NOT NULL) AND (f.row.sourceId IS NULL OR f.s IS NOT NULL)"
+            + " AND (f.row.destinationId IS NULL OR f.d IS NOT NULL) AND (f.row.updated IS NULL OR f.u IS NOT NULL))"
+            + " UNWIND found AS f WITH f.row AS row, f.w AS w, f.s AS s, f.d AS d, f.u AS u"
+            + " FOREACH (n IN CASE WHEN w IS NULL THEN [] ELSE [w] END | SET n.balance = row.wallet.balance,"
+            + " n.availableBalance = row.wallet.availableBalance, n.modificationDate = row.wallet.modificationDate)"
+            + " FOREACH (t IN CASE WHEN u IS NULL THEN [] ELSE [u] END | SET t += row.properties)"
+            + " FOREACH (x IN CASE WHEN d IS NULL THEN [] ELSE [d] END | CREATE (s)-[t:PAY]->(x) SET t = row.properties)"
+            + " WITH collect({row: row, s: s}) AS written UNWIND written AS x WITH x.row AS row, x.s AS s WHERE s IS NOT NULL"
+            + " MATCH (s)-[t:PAY]->() WHERE t.transactionId = row.transactionId"
+            + " WITH t, row ORDER BY row.index RETURN t";
+
     @Autowired
     private TransactionRepository repository;
 
+    @Autowired
+    private Neo4jTemplate template;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    private TransactionIdSequence ids;
+
     /*
      * (non-Javadoc)
      *
@@ -49,16 +99,108 @@ public class Neo4JTransactionService implements TransactionDbService {
      */
     @Override
     public Transaction create(final Transaction transaction) throws ObjectNotFoundException {
-        final Transaction toSave = this.createTransaction(transaction);
+        final Transaction toSave = this.createTransaction(transaction).withId(this.ids.next());
         return this.repository.save(Neo4JTransaction.from(toSave).build()).toTransaction();
     }
 
     @Override
     public Transaction save(final Long transactionId, final Transaction transaction) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
-        if (!this.repository.exists(transactionId)) {
-            throw new ObjectNotFoundException(transactionId, Transaction.class);
+        return this.update(transaction.withId(transactionId));
+    }
+
+    /**
+     * updates the properties of an existing transaction in a single statement;
+     * the relationship is matched from its source, the transaction id being a property.
+     * @return the transaction as stored after the update
+     * @throws ObjectNotFoundException if the statement matched no transaction
+     */
+    private Transaction update(final Transaction transaction) throws ObjectNotFoundException {
+        final Map<String, Object> params = Maps.newHashMap();
+        params.put("id", transaction.getId());
+        params.put("sourceId", transaction.getSource().getId());
+        params.put("properties", Neo4JTransaction.from(transaction).build().toProperties());
+        final Neo4JTransaction saved = this.template.query(UPDATE, params).to(Neo4JTransaction.class).singleOrNull();
+        if (saved == null) {
+            throw new ObjectNotFoundException(transaction.getId(), Transaction.class);
         }
-        return this.repository.save(Neo4JTransaction.from(transaction).build()).toTransaction();
+        return saved.toTransaction();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#applyBatch(java.util.Collection, java.util.List)
+     */
+    @Override
+    @Transactional(rollbackFor = ObjectNotFoundException.class)
+    public List<Transaction> applyBatch(final Collection<Wallet> wallets, final List<Transaction> transactions) throws ObjectNotFoundException {
+        if (transactions.isEmpty()) {
+            this.walletService.saveAll(wallets);
+            return Lists.newArrayList();
+        }
+        final Long now = System.currentTimeMillis();
+        // a wallet listed twice is saved with its last balances
+        final Map<Long, Map<String, Object>> balances = Maps.newLinkedHashMap();
+        wallets.forEach(w -> balances.put(w.getId(), Neo4JWalletService.balances(w, now)));
+        final List<Map<String, Object>> rows = Lists.newArrayListWithCapacity(balances.size() + transactions.size());
+        balances.values().forEach(b -> rows.add(Collections.singletonMap("wallet", b)));
+        for (int i = 0; i < transactions.size(); i++) {
+            rows.add(this.row(i, transactions.get(i), now));
+        }
+        final Map<String, Object> params = Maps.newHashMap();
+        params.put("rows", rows);
+        final List<Transaction> result = Lists.newArrayList(this.template.query(BATCH, params).to(Neo4JTransaction.class)).stream()
+                .map(Neo4JTransaction::toTransaction).collect(Collectors.toList());
+        if (result.size() != transactions.size()) {
+            throw this.notFound(wallets, transactions);
+        }
+        return result;
+    }
+
+    /**
+     * @return the row of BATCH writing the transaction, a new one getting its id and creation date
+     */
+    private Map<String, Object> row(final int index, final Transaction transaction, final Long now) {
+        final Map<String, Object> row = Maps.newHashMap();
+        final Transaction toSave;
+        if (transaction.getId() == null) {
+            toSave = transaction.toBuilder().id(this.ids.next()).creationDate(now).build();
+            row.put("destinationId", transaction.getDestination().getId());
+        } else {
+            toSave = transaction;
+            row.put("updated", transaction.getId());
+        }
+        final Map<String, Object> properties = Neo4JTransaction.from(toSave).build().toProperties();
+        properties.put("transactionId", toSave.getId());
+        row.put("index", index);
+        row.put("transactionId", toSave.getId());
+        row.put("sourceId", transaction.getSource().getId());
+        row.put("properties", properties);
+        return row;
+    }
+
+    /**
+     * looks up what BATCH did not find; it has written nothing then.
+     */
+    private ObjectNotFoundException notFound(final Collection<Wallet> wallets, final List<Transaction> transactions) {
+        final List<Long> walletIds = Lists.newArrayList();
+        wallets.forEach(w -> walletIds.add(w.getId()));
+        for (final Transaction transaction : transactions) {
+            if (transaction.getId() == null) {
+                walletIds.add(transaction.getSource().getId());
+                walletIds.add(transaction.getDestination().getId());
+                continue;
+            }
+            final Neo4JTransaction found = this.repository.findByTransactionId(transaction.getId());
+            if (found == null || !found.getSource().getId().equals(transaction.getSource().getId())) {
+                return new ObjectNotFoundException(transaction.getId(), Transaction.class);
+            }
+        }
+        for (final Long walletId : walletIds) {
+            if (this.walletService.getById(walletId) == null) {
+                return new ObjectNotFoundException(walletId, Wallet.class);
+            }
+        }
+        return new ObjectNotFoundException(null, Transaction.class);
     }
 
     private Transaction createTransaction(final Transaction transaction) throws ObjectNotFoundException {
@@ -80,9 +222,28 @@ public class Neo4JTransactionService implements TransactionDbService {
      * @see io.yope.payment.services.TransactionService#get(java.lang.Long)
      */
     @Override
+    @Transactional(readOnly = true)
     public Transaction get(final Long id) {
-        final Neo4JTransaction transaction = this.repository.findOne(id);
-        return transaction == null? null : transaction.toTransaction();
+        final Neo4JTransaction transaction = this.repository.findByTransactionId(id);
+        return transaction == null? this.archived(id) : transaction.toTransaction();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.TransactionDbService#getForUpdate(java.lang.Long)
+     */
+    @Override
+    public Transaction getForUpdate(final Long id) {
+        // not read only: the router keeps the call on the primary
+        final Neo4JTransaction transaction = this.repository.findByTransactionId(id);
+        return transaction == null? this.archived(id) : transaction.toTransaction();
+    }
+
+    /**
+     * the transaction ids are never given twice, an archived transaction keeps its own.
+     */
+    private Transaction archived(final Long id) {
+        return id == null || this.archive.isEmpty() ? null : this.archive.get(id);
     }
 
     /*
@@ -92,6 +253,7 @@ public class Neo4JTransactionService implements TransactionDbService {
      * String, java.lang.String, io.yope.payment.domain.Transaction.Direction)
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Transaction> getForWallet(final Long walledId, final String reference, final Direction direction, final Status status, final Type type)
             throws ObjectNotFoundException {
         final String referenceParam = StringUtils.defaultIfBlank(reference, ".*");
@@ -99,13 +261,16 @@ public class Neo4JTransactionService implements TransactionDbService {
         final String typeParam = StringUtils.defaultIfBlank(type==null?null:type.name(), ".*");
         switch (direction) {
             case IN:
-                return Lists.newArrayList(this.repository.findWalletTransactionsIn(walledId, referenceParam, statusParam, typeParam)).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+                return this.withArchived(this.repository.findWalletTransactionsIn(walledId, referenceParam, statusParam, typeParam),
+                        Collections.singletonList(walledId), direction, referenceParam, status, typeParam);
             case OUT:
-                return Lists.newArrayList(this.repository.findWalletTransactionsOut(walledId, referenceParam, statusParam, typeParam)).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+                return this.withArchived(this.repository.findWalletTransactionsOut(walledId, referenceParam, statusParam, typeParam),
+                        Collections.singletonList(walledId), direction, referenceParam, status, typeParam);
             default:
                 break;
         }
-        return Lists.newArrayList(this.repository.findWalletTransactions(walledId, referenceParam, statusParam, typeParam)).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+        return this.withArchived(this.repository.findWalletTransactions(walledId, referenceParam, statusParam, typeParam),
+                Collections.singletonList(walledId), direction, referenceParam, status, typeParam);
     }
 
     /*
@@ -116,6 +281,7 @@ public class Neo4JTransactionService implements TransactionDbService {
      * java.lang.String, io.yope.payment.domain.Transaction.Direction)
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Transaction> getForAccount(final Long accountId, final String reference,
             final Direction direction, final Status status, final Type type)
             throws ObjectNotFoundException {
@@ -124,37 +290,125 @@ public class Neo4JTransactionService implements TransactionDbService {
         final String typeParam = StringUtils.defaultIfBlank(type==null?null:type.name(), ".*");
         switch (direction) {
             case IN:
-                return Lists.newArrayList(this.repository.findAccountTransactionsIn(accountId, referenceParam, statusParam, typeParam)).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+                return this.withArchived(this.repository.findAccountTransactionsIn(accountId, referenceParam, statusParam, typeParam),
+                        this.accountWallets(accountId), direction, referenceParam, status, typeParam);
             case OUT:
-                return Lists.newArrayList(this.repository.findAccountTransactionsOut(accountId, referenceParam, statusParam, typeParam)).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+                return this.withArchived(this.repository.findAccountTransactionsOut(accountId, referenceParam, statusParam, typeParam),
+                        this.accountWallets(accountId), direction, referenceParam, status, typeParam);
             default:
                 break;
         }
-        return Lists.newArrayList(this.repository.findAccountTransactions(accountId, referenceParam, statusParam, typeParam)).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+        return this.withArchived(this.repository.findAccountTransactions(accountId, referenceParam, statusParam, typeParam),
+                this.accountWallets(accountId), direction, referenceParam, status, typeParam);
+    }
+
+    /**
+     * the account wallets are only looked up when there is an archive to read.
+     */
+    private Collection<Long> accountWallets(final Long accountId) {
+        if (this.archive.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return this.walletService.getWalletsByAccountId(accountId, null).stream().map(Wallet::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * adds to the history read from the graph the archived transactions of the same wallets matching the same filters.
+     * A transaction in both stores, archived but not yet deleted, is listed once from the graph;
+     * the chunks written while the relationship ids were the transaction ids may hold an id a newer transaction got again,
+     * the creation date tells them apart.
+     */
+    private List<Transaction> withArchived(final List<Neo4JTransactionSummary> summaries, final Collection<Long> walletIds,
+            final Direction direction, final String reference, final Status status, final String type) {
+        final List<Transaction> live = summaries.stream().map(t -> t.toTransaction()).collect(Collectors.toList());
+        if (walletIds.isEmpty() || this.archive.isEmpty() || status != null && !TransactionArchiver.ARCHIVED.contains(status)) {
+            return live;
+        }
+        final Pattern referencePattern = Pattern.compile(reference);
+        final Pattern typePattern = Pattern.compile(type);
+        final List<Transaction> archived = this.archive.find(walletIds, t ->
+                involves(t, walletIds, direction)
+                && (status == null || status.equals(t.getStatus()))
+                && matches(referencePattern, t.getReference())
+                && matches(typePattern, t.getType() == null ? null : t.getType().name()));
+        final Map<String, Transaction> merged = Maps.newLinkedHashMap();
+        live.forEach(t -> merged.put(t.getId() + ":" + t.getCreationDate(), t));
+        archived.forEach(t -> merged.putIfAbsent(t.getId() + ":" + t.getCreationDate(), t));
+        return Lists.newArrayList(merged.values());
+    }
+
+    private static boolean involves(final Transaction transaction, final Collection<Long> walletIds, final Direction direction) {
+        final boolean out = walletIds.contains(transaction.getSource().getId());
+        final boolean in = walletIds.contains(transaction.getDestination().getId());
+        switch (direction) {
+            case IN:
+                return in;
+            case OUT:
+                return out;
+            default:
+                return in || out;
+        }
+    }
+
+    /**
+     * a missing property does not match in Cypher either.
+     */
+    private static boolean matches(final Pattern pattern, final String value) {
+        return value != null && pattern.matcher(value).matches();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Transaction getBySenderHash(final String hash) {
         final Neo4JTransaction transaction = this.repository.findBySenderHash(hash);
-        return transaction == null? null : transaction.toTransaction();
+        return transaction == null? this.archived(hash, Transaction::getSenderHash) : transaction.toTransaction();
 
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Transaction getByReceiverHash(final String hash) {
         final Neo4JTransaction transaction = this.repository.findByReceiverHash(hash);
-        return transaction == null? null : transaction.toTransaction();
+        return transaction == null? this.archived(hash, Transaction::getReceiverHash) : transaction.toTransaction();
 
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Transaction getByTransactionHash(final String hash) {
         final Neo4JTransaction transaction = this.repository.findByTransactionHash(hash);
-        return transaction == null? null : transaction.toTransaction();
+        return transaction == null? this.archived(hash, Transaction::getTransactionHash) : transaction.toTransaction();
 
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Transaction> getAllByTransactionHash(final String hash) {
+        final List<Transaction> live = Lists.newArrayList(this.repository.findAllByTransactionHash(hash)).stream()
+                .map(t -> t.toTransaction()).collect(Collectors.toList());
+        if (hash == null || this.archive.isEmpty()) {
+            return live;
+        }
+        final Map<String, Transaction> merged = Maps.newLinkedHashMap();
+        live.forEach(t -> merged.put(t.getId() + ":" + t.getCreationDate(), t));
+        this.archive.findByHash(hash, t -> hash.equals(t.getTransactionHash()))
+                .forEach(t -> merged.putIfAbsent(t.getId() + ":" + t.getCreationDate(), t));
+        return Lists.newArrayList(merged.values());
+    }
+
+    /**
+     * @return the latest archived transaction with the hash in the given field, null if none
+     */
+    private Transaction archived(final String hash, final Function<Transaction, String> field) {
+        if (hash == null || this.archive.isEmpty()) {
+            return null;
+        }
+        return this.archive.findByHash(hash, t -> hash.equals(field.apply(t))).stream()
+                .max((a, b) -> Long.compare(a.getCreationDate(), b.getCreationDate())).orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Transaction> getTransaction(final int delay, final Transaction.Status status) {
         return Lists.newArrayList(this.repository.findOlderThan(delay, status.name())).stream().map(t -> t.toTransaction()).collect(Collectors.toList());
     }
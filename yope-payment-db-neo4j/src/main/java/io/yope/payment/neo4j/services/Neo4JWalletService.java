@@ -1,14 +1,19 @@
 package io.yope.payment.neo4j.services;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import io.yope.payment.db.services.WalletDbService;
 import io.yope.payment.domain.Wallet;
@@ -21,9 +26,24 @@ import io.yope.payment.neo4j.repositories.WalletRepository;
 @Transactional
 public class Neo4JWalletService implements WalletDbService {
 
+    /**
+     * writes a wallet, returning it as stored when found.
+     */
+    private static final String SAVE = "MATCH (n:Neo4JWallet) WHERE id(n) = {id} SET n += {properties} RETURN n";
+
+    /**
+     * writes the balances of a list of wallets in a single statement, returning the wallets found;
+     * the content and the keys are left as they are.
+     */
+    private static final String SAVE_BALANCES = "UNWIND {wallets} AS w MATCH (n:Neo4JWallet) WHERE id(n) = w.id"
+            + " SET n.balance = w.balance, n.availableBalance = w.availableBalance, n.modificationDate = w.modificationDate RETURN n";
+
     @Autowired
     private WalletRepository repository;
 
+    @Autowired
+    private Neo4jTemplate template;
+
     /*
      * (non-Javadoc)
      * @see io.yope.payment.services.WalletService#create(io.yope.payment.domain.Wallet)
@@ -38,31 +58,102 @@ public class Neo4JWalletService implements WalletDbService {
      * @see io.yope.payment.services.WalletService#getById(java.lang.Long)
      */
     @Override
+    @Transactional(readOnly = true)
     public Wallet getById(final Long id) {
         final Neo4JWallet wallet = this.repository.findOne(id);
         return wallet == null? null : wallet.toWallet();
     }
 
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByIdForUpdate(java.lang.Long)
+     */
+    @Override
+    public Wallet getByIdForUpdate(final Long id) {
+        // not read only: the router keeps the call on the primary
+        final Neo4JWallet wallet = this.repository.findOne(id);
+        return wallet == null? null : wallet.toWallet();
+    }
+
     /*
      * (non-Javadoc)
      * @see io.yope.payment.services.WalletService#getByHash(java.lang.String)
      */
     @Override
+    @Transactional(readOnly = true)
     public Wallet getByWalletHash(final String hash) {
         final Neo4JWallet wallet = this.repository.findByWalletHash(hash);
         return wallet == null? null : wallet.toWallet();
     }
 
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#getByWalletHashes(java.util.Collection)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Wallet> getByWalletHashes(final Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        return this.repository.findByWalletHashes(hashes).stream().map(t -> t.toWallet()).collect(Collectors.toList());
+    }
+
     /*
      * (non-Javadoc)
      * @see io.yope.payment.services.WalletService#update(java.lang.Long, io.yope.payment.domain.Wallet)
      */
     @Override
     public Wallet save(final Long id, final Wallet wallet) throws ObjectNotFoundException {
-        if (!this.repository.exists(id)) {
+        // a missing wallet is reported by the update itself, without a lookup first
+        final Wallet toSave = wallet.toBuilder().id(id).modificationDate(System.currentTimeMillis()).build();
+        final Map<String, Object> params = Maps.newHashMap();
+        params.put("id", id);
+        params.put("properties", Neo4JWallet.from(toSave).build().toProperties());
+        final Neo4JWallet saved = this.template.query(SAVE, params).to(Neo4JWallet.class).singleOrNull();
+        if (saved == null) {
             throw new ObjectNotFoundException(id, Wallet.class);
         }
-        return this.repository.save(Neo4JWallet.from(wallet).modificationDate(System.currentTimeMillis()).build()).toWallet();
+        return saved.toWallet();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.db.services.WalletDbService#saveAll(java.util.Collection)
+     */
+    @Override
+    @Transactional(rollbackFor = ObjectNotFoundException.class)
+    public List<Wallet> saveAll(final Collection<Wallet> wallets) throws ObjectNotFoundException {
+        if (wallets.isEmpty()) {
+            return Lists.newArrayList();
+        }
+        final Long now = System.currentTimeMillis();
+        final Map<String, Object> params = Maps.newHashMap();
+        params.put("wallets", wallets.stream().map(w -> balances(w, now)).collect(Collectors.toList()));
+        // a wallet listed twice is written twice, the last balances win
+        final Map<Long, Wallet> saved = Lists.newArrayList(this.template.query(SAVE_BALANCES, params).to(Neo4JWallet.class)).stream()
+                .map(Neo4JWallet::toWallet).collect(Collectors.toMap(Wallet::getId, Function.identity(), (a, b) -> b));
+        final List<Wallet> result = Lists.newArrayListWithCapacity(wallets.size());
+        for (final Wallet wallet : wallets) {
+            if (!saved.containsKey(wallet.getId())) {
+                throw new ObjectNotFoundException(wallet.getId(), Wallet.class);
+            }
+            result.add(saved.get(wallet.getId()));
+        }
+        return result;
+    }
+
+    /**
+     * @return the balances of the wallet as SAVE_BALANCES and the batches of the transaction service write them
+     */
+    static Map<String, Object> balances(final Wallet wallet, final Long now) {
+        final Map<String, Object> properties = Neo4JWallet.from(wallet).modificationDate(now).build().toProperties();
+        final Map<String, Object> row = Maps.newHashMap();
+        row.put("id", wallet.getId());
+        row.put("balance", properties.get("balance"));
+        row.put("availableBalance", properties.get("availableBalance"));
+        row.put("modificationDate", now);
+        return row;
     }
 
     /*
@@ -83,6 +174,7 @@ public class Neo4JWalletService implements WalletDbService {
      * @see io.yope.payment.services.WalletService#get(java.lang.Long)
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Wallet> getWalletsByAccountId(final Long accountId, final Status status) {
         final String statusParam = StringUtils.defaultIfBlank(status==null? null: status.name(), ".*");
         return Lists.newArrayList(this.repository.findAllByOwner(accountId, statusParam)).stream().map(t -> t.toWallet()).collect(Collectors.toList());
@@ -93,12 +185,14 @@ public class Neo4JWalletService implements WalletDbService {
      * @see io.yope.payment.services.WalletService#getByName(java.lang.Long, java.lang.String)
      */
     @Override
+    @Transactional(readOnly = true)
     public Wallet getByName(final Long accountId, final String name) {
         final Neo4JWallet wallet = this.repository.findByName(accountId, name);
         return wallet == null? null : wallet.toWallet();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean exists(final Long id) {
         return this.repository.exists(id);
     }
@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.services;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Maps;
+
+/**
+ * hands out the ids of the transactions, the transactionId property of the PAY relationships.
+ * Neo4j gives the id of a deleted relationship to a newer one, and the archived transactions are deleted from the graph,
+ * so the relationship ids cannot identify a transaction; these ids are never given twice.
+ * They come from a {@link #SEQUENCE} node, a block at a time taken in a transaction of its own,
+ * so that a rolled back write does not give the block back while this node hands it out.
+ * The nodes sharing the graph take blocks of their own: ids grow, but not in creation order across nodes.
+ * @author massi
+ *
+ */
+@Component
+public class TransactionIdSequence {
+
+    /**
+     * the label of the sequence node, created by GraphSchemaMigration above the ids already given.
+     */
+    public static final String SEQUENCE = "Sequence";
+
+    public static final String NAME = "transaction";
+
+    static final int BLOCK = 100;
+
+    /**
+     * setting the lock property first makes concurrent nodes wait for each other before reading the next id.
+     */
+    private static final String TAKE = "MATCH (s:" + SEQUENCE + " {name: {name}}) SET s.lock = true"
+            + " WITH s SET s.next = s.next + {block} RETURN s.next AS next";
+
+    @Autowired
+    private Neo4jTemplate template;
+
+    @Autowired
+    @Qualifier("neo4jTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    private long next;
+
+    private long limit;
+
+    public synchronized long next() {
+        if (this.next == this.limit) {
+            this.limit = this.take();
+            this.next = this.limit - BLOCK;
+        }
+        return this.next++;
+    }
+
+    /**
+     * @return the end of the block taken
+     */
+    private long take() {
+        final Map<String, Object> params = Maps.newHashMap();
+        params.put("name", NAME);
+        params.put("block", BLOCK);
+        final TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        final Map<String, Object> taken = transaction.execute(tx -> this.template.query(TAKE, params).singleOrNull());
+        if (taken == null) {
+            throw new IllegalStateException("no " + NAME + " sequence: the graph migration has not run");
+        }
+        return ((Number) taken.get("next")).longValue();
+    }
+
+}
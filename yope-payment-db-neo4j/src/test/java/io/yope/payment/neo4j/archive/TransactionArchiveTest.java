@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+
+/**
+ * @author massi
+ *
+ */
+public class TransactionArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Transaction full = Transaction.builder().id(7L)
+                .source(wallet(1L, "source", "hash-1")).destination(wallet(2L, "destination", null))
+                .transactionHash("tx").senderHash("sender").receiverHash("receiver")
+                .type(Transaction.Type.DEPOSIT).reference("order-1").status(Transaction.Status.COMPLETED).description("description")
+                .amount(new BigDecimal("1.25")).balance(new BigDecimal("1.24")).blockchainFees(new BigDecimal("0.0001")).fees(BigDecimal.ZERO)
+                .creationDate(1L).acceptedDate(2L).deniedDate(3L).failedDate(4L).expiredDate(5L).completedDate(6L).QR("qr").build();
+        final Transaction empty = Transaction.builder().id(8L)
+                .source(wallet(1L, null, null)).destination(wallet(3L, null, null)).build();
+        new TransactionArchive(this.folder.getRoot()).append(Arrays.asList(full, empty));
+
+        // read back by a new instance, from the files only
+        final List<Transaction> found = new TransactionArchive(this.folder.getRoot()).find(Collections.singleton(1L), t -> true);
+        assertEquals(2, found.size());
+        final Transaction read = found.get(0);
+        assertEquals(full.getId(), read.getId());
+        assertEquals("source", read.getSource().getName());
+        assertEquals("hash-1", read.getSource().getWalletHash());
+        assertEquals(full.getDestination().getId(), read.getDestination().getId());
+        assertEquals("tx", read.getTransactionHash());
+        assertEquals("sender", read.getSenderHash());
+        assertEquals("receiver", read.getReceiverHash());
+        assertEquals(Transaction.Type.DEPOSIT, read.getType());
+        assertEquals("order-1", read.getReference());
+        assertEquals(Transaction.Status.COMPLETED, read.getStatus());
+        assertEquals("description", read.getDescription());
+        assertEquals(full.getAmount(), read.getAmount());
+        assertEquals(full.getBalance(), read.getBalance());
+        assertEquals(full.getBlockchainFees(), read.getBlockchainFees());
+        assertEquals(full.getFees(), read.getFees());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), Arrays.asList(read.getCreationDate(), read.getAcceptedDate(),
+                read.getDeniedDate(), read.getFailedDate(), read.getExpiredDate(), read.getCompletedDate()));
+        assertEquals("qr", read.getQR());
+        assertEquals(empty.getId(), found.get(1).getId());
+        assertNull(found.get(1).getStatus());
+        assertNull(found.get(1).getAmount());
+        assertNull(found.get(1).getCreationDate());
+        assertNull(found.get(1).getReference());
+        assertNull(found.get(1).getSource().getName());
+        assertNull(read.getDestination().getWalletHash());
+    }
+
+    @Test
+    public void testHistoriesReadTheChunksOfTheirWallets() throws Exception {
+        final TransactionArchive archive = new TransactionArchive(this.folder.getRoot());
+        assertTrue(archive.isEmpty());
+        archive.append(Arrays.asList(transaction(1L, 1L, 2L, "a"), transaction(2L, 2L, 3L, "b")));
+        archive.append(Arrays.asList(transaction(3L, 4L, 5L, "c")));
+
+        assertEquals(2, archive.find(Collections.singleton(2L), t -> true).size());
+        assertEquals(1, archive.find(Collections.singleton(5L), t -> true).size());
+        assertEquals(0, archive.find(Collections.singleton(6L), t -> true).size());
+        assertEquals(1, archive.find(Arrays.asList(1L, 3L), t -> t.getSource().getId() == 1L).size());
+    }
+
+    @Test
+    public void testFolderCreatedByTheFirstChunk() throws Exception {
+        final File folder = new File(this.folder.getRoot(), "archive");
+        final TransactionArchive archive = new TransactionArchive(folder);
+        assertTrue(archive.isEmpty());
+        assertEquals(0, archive.lastId());
+        assertFalse(folder.exists());
+
+        archive.append(Arrays.asList(transaction(4L, 1L, 2L, "a"), transaction(2L, 2L, 3L, "b")));
+        assertTrue(folder.isDirectory());
+        assertEquals(4, new TransactionArchive(folder).lastId());
+    }
+
+    @Test
+    public void testLookupsByIdAndHash() throws Exception {
+        final TransactionArchive archive = new TransactionArchive(this.folder.getRoot());
+        archive.append(Arrays.asList(transaction(1L, 1L, 2L, "a"), transaction(2L, 2L, 3L, "b")));
+        // the graph gave the id 1 to a newer transaction, archived later, before the transaction ids
+        archive.append(Arrays.asList(transaction(1L, 4L, 5L, "c").toBuilder().creationDate(2000L).build()));
+
+        assertEquals("b", archive.get(2L).getTransactionHash());
+        assertEquals("c", archive.get(1L).getTransactionHash());
+        assertNull(archive.get(9L));
+        assertEquals(2L, archive.findByHash("b", t -> "b".equals(t.getTransactionHash())).get(0).getId().longValue());
+        assertEquals(0, archive.findByHash("b", t -> "b".equals(t.getSenderHash())).size());
+        assertEquals(0, archive.findByHash("z", t -> true).size());
+    }
+
+    @Test
+    public void testNodesSharingTheFolderSeeEachOtherChunks() throws Exception {
+        final TransactionArchive writer = new TransactionArchive(this.folder.getRoot());
+        final TransactionArchive reader = new TransactionArchive(this.folder.getRoot());
+        assertTrue(reader.isEmpty());
+        writer.append(Arrays.asList(transaction(1L, 1L, 2L, "a")));
+        assertEquals("a", reader.get(1L).getTransactionHash());
+        // the next chunk written through the other instance does not overwrite the first
+        reader.append(Arrays.asList(transaction(2L, 1L, 2L, "b")));
+        assertEquals(2, writer.find(Collections.singleton(1L), t -> true).size());
+    }
+
+    private static Transaction transaction(final Long id, final Long source, final Long destination, final String hash) {
+        return Transaction.builder().id(id).source(wallet(source, "s", null)).destination(wallet(destination, "d", null))
+                .transactionHash(hash).status(Transaction.Status.COMPLETED).creationDate(1000L).build();
+    }
+
+    private static Wallet wallet(final Long id, final String name, final String hash) {
+        return Wallet.builder().id(id).name(name).walletHash(hash).build();
+    }
+
+}
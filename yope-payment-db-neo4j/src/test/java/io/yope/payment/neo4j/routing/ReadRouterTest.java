@@ -0,0 +1,102 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.yope.payment.configuration.YopeNeo4jConfiguration.ReadConsistency;
+
+/**
+ * @author massi
+ *
+ */
+public class ReadRouterTest {
+
+    /**
+     * a repository telling where it runs.
+     */
+    interface Repository {
+        String get();
+    }
+
+    private final ReadRouter router = new ReadRouter(2, ReadConsistency.SESSION, 200);
+
+    private final Repository routed = this.router.route(Repository.class, () -> "primary",
+            Arrays.<Repository>asList(() -> "replica-0", () -> "replica-1"));
+
+    @Before
+    public void setUp() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        this.router.release();
+    }
+
+    @Test
+    public void testReadOnlyCallsGoRoundRobinToTheReplicas() {
+        assertEquals("replica-0", this.routed.get());
+        assertEquals("replica-1", this.routed.get());
+        assertEquals("replica-0", this.routed.get());
+    }
+
+    @Test
+    public void testWriteTransactionsStayOnThePrimary() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        assertEquals("primary", this.routed.get());
+    }
+
+    @Test
+    public void testReadsOfAWriteGoToThePrimary() {
+        this.router.bind("alice", true);
+        assertEquals("primary", this.routed.get());
+        this.router.release();
+        assertEquals("replica-0", this.routed.get());
+    }
+
+    @Test
+    public void testSessionReadsItsWritesFromThePrimaryForAWhile() throws Exception {
+        this.router.bind("alice", false);
+        this.router.written();
+        assertEquals("primary", this.routed.get());
+
+        // other sessions and threads without a session keep reading from the replicas
+        this.router.bind("bob", false);
+        assertEquals("replica-0", this.routed.get());
+        this.router.release();
+        assertEquals("replica-1", this.routed.get());
+
+        this.router.bind("alice", false);
+        Thread.sleep(300);
+        assertEquals("replica-0", this.routed.get());
+    }
+
+    @Test
+    public void testEventualConsistencyIgnoresTheWrites() {
+        final ReadRouter eventual = new ReadRouter(1, ReadConsistency.EVENTUAL, 60000);
+        final Repository routed = eventual.route(Repository.class, () -> "primary", Arrays.<Repository>asList(() -> "replica"));
+        eventual.bind("alice", false);
+        eventual.written();
+        assertEquals("replica", routed.get());
+        eventual.release();
+    }
+
+    @Test
+    public void testNoReplicasGivesThePrimary() {
+        final Repository primary = () -> "primary";
+        assertSame(primary, new ReadRouter(0, ReadConsistency.SESSION, 0).route(Repository.class, primary, Collections.<Repository>emptyList()));
+    }
+
+}
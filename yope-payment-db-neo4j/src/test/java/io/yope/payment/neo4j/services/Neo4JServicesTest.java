@@ -0,0 +1,279 @@
+/**
+ *
+ */
+package io.yope.payment.neo4j.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.AutoIndexer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.configuration.YopeNeo4jConfiguration;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Direction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.neo4j.archive.TransactionArchive;
+import io.yope.payment.neo4j.schema.GraphSchemaMigration;
+
+/**
+ * the db services on an embedded graph.
+ * @author massi
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = YopeNeo4jConfiguration.class)
+@TestPropertySource(properties = {"neo4j.mode=EMBEDDED", "neo4j.storeDir=" + Neo4JServicesTest.STORE,
+        "neo4j.archiveFolder=" + Neo4JServicesTest.STORE + "/archive"})
+public class Neo4JServicesTest {
+
+    static final String STORE = "target/neo4j-services-test";
+
+    @Autowired
+    private AccountDbService accountService;
+
+    @Autowired
+    private TransactionDbService transactionService;
+
+    @Autowired
+    private WalletDbService walletService;
+
+    @Autowired
+    private GraphSchemaMigration migration;
+
+    @Autowired
+    private Neo4jTemplate template;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    private Account account;
+
+    private Wallet source;
+
+    private Wallet destination;
+
+    @BeforeClass
+    public static void clean() {
+        FileUtils.deleteQuietly(new File(STORE));
+    }
+
+    @Before
+    public void setUp() {
+        this.account = this.accountService.create(Account.builder()
+                .email(System.nanoTime() + "@yope.io").firstName("first").lastName("last")
+                .type(Account.Type.SELLER).status(Account.Status.ACTIVE)
+                .wallets(Lists.newArrayList()).build(),
+                wallet("source", "hash-" + System.nanoTime()), wallet("destination", "hash-" + System.nanoTime()));
+        // the graph returns the wallets of an account in no particular order
+        this.source = this.account.getWallets().stream().filter(w -> "source".equals(w.getName())).findFirst().get();
+        this.destination = this.account.getWallets().stream().filter(w -> "destination".equals(w.getName())).findFirst().get();
+    }
+
+    @Test
+    public void testHistoriesListWalletSummaries() throws Exception {
+        final Transaction created = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING)
+                .reference("ref").receiverHash("receiver-" + System.nanoTime()).transactionHash("tx-" + System.nanoTime())
+                .amount(new BigDecimal("1.25")).fees(new BigDecimal("0.01")).description("summary").build());
+
+        final List<Transaction> out = this.transactionService.getForWallet(this.source.getId(), null, Direction.OUT, null, null);
+        assertEquals(1, out.size());
+        final Transaction summary = out.get(0);
+        assertEquals(created.getId(), summary.getId());
+        assertEquals(Transaction.Type.TRANSFER, summary.getType());
+        assertEquals(Transaction.Status.PENDING, summary.getStatus());
+        assertEquals("ref", summary.getReference());
+        assertEquals("summary", summary.getDescription());
+        assertEquals(0, new BigDecimal("1.25").compareTo(summary.getAmount()));
+        assertEquals(0, new BigDecimal("0.01").compareTo(summary.getFees()));
+        assertEquals(created.getReceiverHash(), summary.getReceiverHash());
+        assertEquals(created.getTransactionHash(), summary.getTransactionHash());
+        assertEquals(created.getCreationDate(), summary.getCreationDate());
+        // the wallets go no further than id, name and hash
+        assertEquals(this.source.getId(), summary.getSource().getId());
+        assertEquals("source", summary.getSource().getName());
+        assertEquals(this.source.getWalletHash(), summary.getSource().getWalletHash());
+        assertNull(summary.getSource().getBalance());
+        assertNull(summary.getSource().getContent());
+        assertNull(summary.getSource().getPrivateKey());
+        assertEquals(this.destination.getId(), summary.getDestination().getId());
+        assertEquals("destination", summary.getDestination().getName());
+        assertNull(summary.getDestination().getAvailableBalance());
+
+        assertEquals(0, this.transactionService.getForWallet(this.source.getId(), null, Direction.IN, null, null).size());
+        // a transfer between two wallets of the account is listed once
+        assertEquals(1, this.transactionService.getForAccount(this.account.getId(), null, Direction.BOTH, null, null).size());
+        assertEquals(1, this.transactionService.getForAccount(this.account.getId(), "r.f", Direction.BOTH, Transaction.Status.PENDING, null).size());
+        assertEquals(0, this.transactionService.getForAccount(this.account.getId(), "re", Direction.BOTH, null, null).size());
+    }
+
+    @Test
+    public void testTransactionsWrittenBeforeTheIndexAreBackfilledOnce() throws Exception {
+        final AutoIndexer<Relationship> indexer = this.template.getGraphDatabaseService().index().getRelationshipAutoIndexer();
+        try (org.neo4j.graphdb.Transaction tx = this.template.getGraphDatabaseService().beginTx()) {
+            assertTrue(indexer.isEnabled());
+            indexer.stopAutoIndexingProperty("transactionHash");
+            tx.success();
+        }
+        final String hash = "tx-" + System.nanoTime();
+        this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING)
+                .reference("ref").transactionHash(hash).amount(BigDecimal.ONE).build());
+        assertNull(this.transactionService.getByTransactionHash(hash));
+
+        // the backfill of the first startup is recorded, a restart does not repeat it
+        assertEquals(1, this.migrations());
+        this.migration.migrate();
+        assertNull(this.transactionService.getByTransactionHash(hash));
+
+        this.template.query("MATCH (m:GraphMigration) DELETE m", Collections.emptyMap());
+        this.migration.migrate();
+        assertEquals(hash, this.transactionService.getByTransactionHash(hash).getTransactionHash());
+        assertEquals(1, this.migrations());
+    }
+
+    @Test
+    public void testApplyBatchMovesTheBalancesOnly() throws Exception {
+        final Transaction pending = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING)
+                .reference("ref").amount(BigDecimal.ONE).build());
+        final Wallet debited = this.source.toBuilder().balance(new BigDecimal("9.5")).availableBalance(new BigDecimal("9.5"))
+                .content("stale").privateKey(null).build();
+        final Wallet credited = this.destination.toBuilder().balance(new BigDecimal("11.5")).availableBalance(new BigDecimal("11.5")).build();
+        final Wallet debitedAgain = debited.toBuilder().balance(new BigDecimal("8.5")).availableBalance(new BigDecimal("8.5")).build();
+
+        final List<Transaction> applied = this.transactionService.applyBatch(Arrays.asList(debited, credited, debitedAgain), Arrays.asList(
+                pending.withStatus(Transaction.Status.ACCEPTED),
+                Transaction.builder().source(this.source).destination(this.destination)
+                        .type(Transaction.Type.TRANSFER).status(Transaction.Status.COMPLETED)
+                        .reference("ref").amount(BigDecimal.ONE).build()));
+
+        assertEquals(2, applied.size());
+        assertEquals(Transaction.Status.ACCEPTED, this.transactionService.get(pending.getId()).getStatus());
+        assertEquals(Transaction.Status.COMPLETED, this.transactionService.get(applied.get(1).getId()).getStatus());
+        // a wallet listed twice gets its last balances, the content and the key stay as stored
+        final Wallet source = this.walletService.getById(this.source.getId());
+        assertEquals(0, new BigDecimal("8.5").compareTo(source.getBalance()));
+        assertEquals(0, new BigDecimal("8.5").compareTo(source.getAvailableBalance()));
+        assertEquals("content", source.getContent());
+        assertEquals("key", source.getPrivateKey());
+        assertEquals(0, new BigDecimal("11.5").compareTo(this.walletService.getById(this.destination.getId()).getBalance()));
+        assertEquals("content", applied.get(1).getSource().getContent());
+    }
+
+    @Test
+    public void testApplyBatchWritesNothingIfATransactionIsMissing() throws Exception {
+        final Transaction pending = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING)
+                .reference("ref").amount(BigDecimal.ONE).build());
+        final Wallet debited = this.source.toBuilder().balance(new BigDecimal("9.5")).availableBalance(new BigDecimal("9.5")).build();
+
+        try {
+            this.transactionService.applyBatch(Arrays.asList(debited), Arrays.asList(
+                    Transaction.builder().source(this.source).destination(this.destination)
+                            .type(Transaction.Type.TRANSFER).status(Transaction.Status.COMPLETED)
+                            .reference("ref").amount(BigDecimal.ONE).build(),
+                    pending.toBuilder().id(Long.MAX_VALUE).status(Transaction.Status.ACCEPTED).build()));
+            fail("the missing transaction is not reported");
+        } catch (final ObjectNotFoundException e) {
+            assertTrue(e.getMessage().contains(Transaction.class.getName()));
+        }
+        assertEquals(0, new BigDecimal("10.5").compareTo(this.walletService.getById(this.source.getId()).getBalance()));
+        assertEquals(1, this.transactionService.getForWallet(this.source.getId(), null, Direction.BOTH, null, null).size());
+    }
+
+    @Test
+    public void testSavesReturnTheStoredState() throws Exception {
+        final Transaction pending = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING)
+                .reference("ref").amount(BigDecimal.ONE).build());
+        // the caller sends the wallets by id only
+        final Transaction saved = this.transactionService.save(pending.getId(), pending.toBuilder()
+                .source(Wallet.builder().id(this.source.getId()).build())
+                .destination(Wallet.builder().id(this.destination.getId()).build())
+                .status(Transaction.Status.ACCEPTED).acceptedDate(System.currentTimeMillis()).build());
+        assertEquals(Transaction.Status.ACCEPTED, saved.getStatus());
+        assertEquals(this.transactionService.get(pending.getId()).getAcceptedDate(), saved.getAcceptedDate());
+        assertEquals("source", saved.getSource().getName());
+        assertEquals("destination", saved.getDestination().getName());
+
+        final Wallet wallet = this.walletService.save(this.source.getId(), this.source.toBuilder().description("renamed").build());
+        assertEquals("renamed", wallet.getDescription());
+        assertEquals(this.walletService.getById(this.source.getId()).getModificationDate(), wallet.getModificationDate());
+        assertEquals("content", wallet.getContent());
+    }
+
+    @Test
+    public void testArchivedTransactionsAreListedOnceAndStillFound() throws Exception {
+        final String hash = "tx-" + System.nanoTime();
+        final Transaction completed = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.COMPLETED)
+                .reference("archived").transactionHash(hash).senderHash("sender-" + hash).amount(BigDecimal.ONE).build());
+        final Transaction summary = this.transactionService.getForWallet(this.source.getId(), "archived", Direction.OUT, null, null).get(0);
+
+        // archived, the graph copy not deleted yet
+        this.archive.append(Collections.singletonList(summary));
+        assertEquals(1, this.transactionService.getForWallet(this.source.getId(), "archived", Direction.BOTH, null, null).size());
+        assertEquals(1, this.transactionService.getAllByTransactionHash(hash).size());
+
+        this.template.query("START t=relationship:relationship_auto_index(transactionId={id}) DELETE t", Collections.singletonMap("id", completed.getId()));
+        assertEquals(1, this.transactionService.getForAccount(this.account.getId(), "archived", Direction.BOTH, Transaction.Status.COMPLETED, null).size());
+        assertEquals(hash, this.transactionService.get(completed.getId()).getTransactionHash());
+        // a newer transaction does not take the id of the archived one
+        final Transaction newer = this.transactionService.create(Transaction.builder()
+                .source(this.source).destination(this.destination)
+                .type(Transaction.Type.TRANSFER).status(Transaction.Status.PENDING).reference("newer").amount(BigDecimal.ONE).build());
+        assertTrue(newer.getId() > completed.getId());
+        assertEquals(hash, this.transactionService.getForUpdate(completed.getId()).getTransactionHash());
+        assertEquals("newer", this.transactionService.getForUpdate(newer.getId()).getReference());
+        assertEquals(completed.getId(), this.transactionService.getByTransactionHash(hash).getId());
+        assertEquals(completed.getId(), this.transactionService.getBySenderHash("sender-" + hash).getId());
+        assertNull(this.transactionService.getByReceiverHash(hash));
+        assertEquals(1, this.transactionService.getAllByTransactionHash(hash).size());
+    }
+
+    private int migrations() {
+        return ((Number) this.template.query("MATCH (m:GraphMigration {name: 'transaction-index'}) RETURN count(m) AS count", Collections.emptyMap())
+                .single().get("count")).intValue();
+    }
+
+    private static Wallet wallet(final String name, final String hash) {
+        return Wallet.builder().name(name).walletHash(hash)
+                .type(Wallet.Type.INTERNAL).status(Wallet.Status.ACTIVE)
+                .balance(new BigDecimal("10.5")).availableBalance(new BigDecimal("10.5"))
+                .content("content").privateKey("key").build();
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package io.yope.payment.loadtest;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * the latencies of the operations, in microseconds, and their failures by status code.
+ * The users record without locking; {@link #reset()} drops what was recorded so far, as the warmup.
+ * @author massi
+ *
+ */
+public class LatencyRecorder {
+
+    private static final int DIGITS = 3;
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, Map<Integer, AtomicLong>> failures = new EnumMap<>(Operation.class);
+
+    private volatile long started = System.nanoTime();
+
+    public LatencyRecorder() {
+        for (final Operation operation : Operation.values()) {
+            this.recorders.put(operation, new Recorder(DIGITS));
+            this.failures.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @param status the HTTP status, 0 if no response
+     */
+    public void record(final Operation operation, final long startNanos, final int status) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        if (status >= 200 && status < 300) {
+            this.recorders.get(operation).recordValue(micros);
+        } else {
+            this.failures.get(operation).computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public void reset() {
+        this.recorders.values().forEach(Recorder::getIntervalHistogram);
+        this.failures.values().forEach(Map::clear);
+        this.started = System.nanoTime();
+    }
+
+    /**
+     * prints throughput and percentiles since the last reset, in milliseconds.
+     * @param folder receives the full distribution of every operation, if not null
+     */
+    public void report(final PrintStream out, final File folder) throws FileNotFoundException {
+        final double seconds = (System.nanoTime() - this.started) / 1e9;
+        final Histogram total = new Histogram(DIGITS);
+        out.printf("%-14s %9s %8s %9s %9s %9s %9s %9s %9s  %s%n",
+                "operation", "ok", "ok/s", "mean", "p50", "p90", "p99", "p99.9", "max", "failures");
+        for (final Operation operation : Operation.values()) {
+            final Histogram histogram = this.recorders.get(operation).getIntervalHistogram();
+            final Map<Integer, AtomicLong> failed = this.failures.get(operation);
+            if (histogram.getTotalCount() == 0 && failed.isEmpty()) {
+                continue;
+            }
+            total.add(histogram);
+            this.print(out, operation.name(), histogram, seconds, failed.toString());
+            if (folder != null) {
+                try (PrintStream hgrm = new PrintStream(new File(folder, operation.name().toLowerCase() + ".hgrm"))) {
+                    histogram.outputPercentileDistribution(hgrm, MICROS_PER_MILLI);
+                }
+            }
+        }
+        this.print(out, "TOTAL", total, seconds, "");
+    }
+
+    private void print(final PrintStream out, final String name, final Histogram histogram, final double seconds, final String failed) {
+        out.printf("%-14s %9d %8.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                name, histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                histogram.getMean() / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI, failed);
+    }
+
+}
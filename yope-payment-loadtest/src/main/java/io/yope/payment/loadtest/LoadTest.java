@@ -0,0 +1,127 @@
+/**
+ *
+ */
+package io.yope.payment.loadtest;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.bind.PropertySourcesPropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.yope.payment.rest.YopePaymentApplication;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * drives the payment flow through the REST resources with concurrent users and reports
+ * throughput and latency percentiles per operation, e.g.
+ * <pre>
+ * java -jar yope-payment-loadtest.jar --loadtest.users=32 --loadtest.durationSeconds=120
+ * </pre>
+ * Without loadtest.baseUrl the application is started in-process, on an embedded graph and the simulated chain;
+ * the users are still kept in Redis. The users run in a closed loop, the next request leaving when the previous
+ * returns: compare runs with the same settings rather than reading the latencies as those of an open system.
+ * @author massi
+ *
+ */
+@Slf4j
+public class LoadTest {
+
+    private final LoadTestSettings settings;
+
+    public LoadTest(final LoadTestSettings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final LoadTestSettings settings = settings(args);
+        ConfigurableApplicationContext server = null;
+        String baseUrl = settings.getBaseUrl();
+        if (baseUrl == null) {
+            server = start(settings, args);
+            baseUrl = "http://localhost:" + settings.getPort();
+        }
+        try {
+            new LoadTest(settings).run(baseUrl);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    public void run(final String baseUrl) throws Exception {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final CountDownLatch ready = new CountDownLatch(this.settings.getUsers());
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final String run = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+        final ExecutorService users = Executors.newFixedThreadPool(this.settings.getUsers(),
+                new ThreadFactoryBuilder().setNameFormat("load-user-%d").build());
+        for (int i = 0; i < this.settings.getUsers(); i++) {
+            users.execute(new VirtualUser(i, run, this.settings, new PaymentClient(baseUrl, recorder), ready, running));
+        }
+        ready.await();
+        log.info("{} users ready, warming up for {} s", this.settings.getUsers(), this.settings.getWarmupSeconds());
+        TimeUnit.SECONDS.sleep(this.settings.getWarmupSeconds());
+        recorder.reset();
+        log.info("measuring for {} s", this.settings.getDurationSeconds());
+        TimeUnit.SECONDS.sleep(this.settings.getDurationSeconds());
+        File folder = null;
+        if (this.settings.getReportFolder() != null) {
+            folder = new File(this.settings.getReportFolder());
+            folder.mkdirs();
+        }
+        recorder.report(System.out, folder);
+        running.set(false);
+        users.shutdown();
+        users.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * binds loadtest.* from the command line and the system properties.
+     */
+    private static LoadTestSettings settings(final String[] args) {
+        final StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        final LoadTestSettings settings = new LoadTestSettings();
+        new RelaxedDataBinder(settings, "loadtest").bind(new PropertySourcesPropertyValues(environment.getPropertySources()));
+        return settings;
+    }
+
+    /**
+     * starts the application on the server configuration; the overrides are system properties,
+     * so that they win over the configuration file but not over the command line.
+     */
+    private static ConfigurableApplicationContext start(final LoadTestSettings settings, final String[] args) {
+        final Map<String, String> overrides = ImmutableMap.<String, String>builder()
+                .put("spring.config.location", settings.getServerConfig())
+                .put("server.port", String.valueOf(settings.getPort()))
+                .put("neo4j.mode", "EMBEDDED")
+                .put("neo4j.storeDir", "target/loadtest/graph.db")
+                .put("neo4j.archiveFolder", "target/loadtest/archive")
+                .put("blockchain.simulation.enabled", "true")
+                .put("blockchain.simulation.autoPayDelayMillis", "100")
+                .put("login.enabled", "false")
+                .put("ratelimit.merchant.enabled", "false")
+                .build();
+        overrides.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+        return SpringApplication.run(YopePaymentApplication.class, args);
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ *
+ */
+package io.yope.payment.loadtest;
+
+import java.math.BigDecimal;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * the load test, under loadtest.
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class LoadTestSettings {
+
+    /**
+     * the server under test; an in-process one is started when not set.
+     */
+    private String baseUrl;
+
+    /**
+     * the port of the in-process server.
+     */
+    private int port = 18080;
+
+    /**
+     * the configuration of the in-process server; an embedded graph and the simulated chain replace
+     * the Neo4j server and the bitcoin network.
+     */
+    private String serverConfig = "../yope-payment-rest/application.yml";
+
+    /**
+     * the concurrent users, each with its own account and wallets.
+     */
+    private int users = 16;
+
+    /**
+     * the time not recorded, while the server warms up.
+     */
+    private int warmupSeconds = 10;
+
+    private int durationSeconds = 60;
+
+    /*
+     * the mix of operations, as relative weights
+     */
+
+    private int deposits = 2;
+
+    private int transfers = 3;
+
+    private int withdrawals = 1;
+
+    private int histories = 4;
+
+    /**
+     * the amount of every operation.
+     */
+    private BigDecimal amount = new BigDecimal("0.01");
+
+    /**
+     * deposited by every user before the test, so that transfers and withdrawals can pay.
+     */
+    private BigDecimal funding = BigDecimal.TEN;
+
+    /**
+     * how long a user waits for its funding to be available.
+     */
+    private int fundingTimeoutSeconds = 60;
+
+    /**
+     * the folder of the latency distributions, one .hgrm file per operation; none when not set.
+     */
+    private String reportFolder;
+
+}
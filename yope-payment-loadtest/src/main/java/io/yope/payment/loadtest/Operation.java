@@ -0,0 +1,30 @@
+/**
+ *
+ */
+package io.yope.payment.loadtest;
+
+/**
+ * the requests timed by the load test.
+ * @author massi
+ *
+ */
+public enum Operation {
+
+    REGISTER,
+
+    AUTHENTICATE,
+
+    CREATE_WALLET,
+
+    DEPOSIT,
+
+    TRANSFER,
+
+    WITHDRAW,
+
+    /**
+     * the transactions of the account and of a wallet.
+     */
+    HISTORY
+
+}
@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package io.yope.payment.loadtest;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.requests.RegistrationRequest;
+
+/**
+ * the REST calls of a user, each timed into the recorder.
+ * @author massi
+ *
+ */
+public class PaymentClient {
+
+    /**
+     * where AuthenticationFilter issues the tokens.
+     */
+    private static final String AUTHENTICATE_URL = "/authenticate";
+
+    private static final RestTemplate REST = new RestTemplate();
+
+    static {
+        // the failures are recorded by status, not thrown
+        REST.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(final ClientHttpResponse response) throws IOException {
+                return false;
+            }
+        });
+    }
+
+    private final String baseUrl;
+
+    private final LatencyRecorder recorder;
+
+    private String token;
+
+    public PaymentClient(final String baseUrl, final LatencyRecorder recorder) {
+        this.baseUrl = baseUrl;
+        this.recorder = recorder;
+    }
+
+    /**
+     * @return the account, null if failed
+     */
+    public JsonNode register(final RegistrationRequest registration) {
+        return this.call(Operation.REGISTER, HttpMethod.POST, "/accounts", registration);
+    }
+
+    /**
+     * @return true if a token was issued
+     */
+    public boolean authenticate(final String username, final String password) {
+        final String path = UriComponentsBuilder.fromPath(AUTHENTICATE_URL)
+                .queryParam("username", username).queryParam("password", password).build().toUriString();
+        final JsonNode response = this.exchange(Operation.AUTHENTICATE, HttpMethod.POST, path, null);
+        this.token = response != null ? response.path("token").asText(null) : null;
+        return this.token != null;
+    }
+
+    public JsonNode createWallet(final Wallet wallet) {
+        return this.call(Operation.CREATE_WALLET, HttpMethod.POST, "/wallets", wallet);
+    }
+
+    public JsonNode getWallet(final long walletId) {
+        return this.call(Operation.HISTORY, HttpMethod.GET, "/wallets/" + walletId, null);
+    }
+
+    public JsonNode create(final Operation operation, final Transaction transaction) {
+        return this.call(operation, HttpMethod.POST, "/transactions", transaction);
+    }
+
+    public JsonNode getTransactions(final long walletId) {
+        return this.call(Operation.HISTORY, HttpMethod.GET, "/wallets/" + walletId + "/transactions", null);
+    }
+
+    public JsonNode getTransactions() {
+        return this.call(Operation.HISTORY, HttpMethod.GET, "/transactions", null);
+    }
+
+    /**
+     * @return the body of the payment response, null if failed
+     */
+    private JsonNode call(final Operation operation, final HttpMethod method, final String path, final Object body) {
+        final JsonNode response = this.exchange(operation, method, path, body);
+        return response != null ? response.path("body") : null;
+    }
+
+    private JsonNode exchange(final Operation operation, final HttpMethod method, final String path, final Object body) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (this.token != null) {
+            headers.set(HttpHeaders.AUTHORIZATION, this.token);
+        }
+        final long start = System.nanoTime();
+        try {
+            final ResponseEntity<JsonNode> response = REST.exchange(this.baseUrl + path, method,
+                    new HttpEntity<Object>(body, headers), JsonNode.class);
+            final int status = response.getStatusCode().value();
+            this.recorder.record(operation, start, status);
+            return status >= 200 && status < 300 ? response.getBody() : null;
+        } catch (final RestClientException e) {
+            this.recorder.record(operation, start, 0);
+            return null;
+        }
+    }
+
+}
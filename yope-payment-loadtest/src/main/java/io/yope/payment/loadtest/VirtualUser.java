@@ -0,0 +1,168 @@
+/**
+ *
+ */
+package io.yope.payment.loadtest;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.yope.payment.domain.Account;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.requests.RegistrationRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * a seller running the payment flow in a closed loop: it registers, authenticates, creates two wallets,
+ * funds the first with a deposit and then picks the next operation from the mix until stopped.
+ * @author massi
+ *
+ */
+@Slf4j
+public class VirtualUser implements Runnable {
+
+    private static final long FUNDING_POLL_MILLIS = 500;
+
+    private static final String SPEND = "spend";
+
+    private static final String SAVE = "save";
+
+    private final int index;
+
+    private final LoadTestSettings settings;
+
+    private final PaymentClient client;
+
+    private final CountDownLatch ready;
+
+    private final AtomicBoolean running;
+
+    private final Random random;
+
+    /**
+     * makes the names of this run unique.
+     */
+    private final String run;
+
+    private long spendId;
+
+    private long saveId;
+
+    private int payments;
+
+    public VirtualUser(final int index, final String run, final LoadTestSettings settings, final PaymentClient client,
+            final CountDownLatch ready, final AtomicBoolean running) {
+        this.index = index;
+        this.run = run;
+        this.settings = settings;
+        this.client = client;
+        this.ready = ready;
+        this.running = running;
+        this.random = new Random(index);
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!this.setUp() || !this.fund()) {
+                log.error("user {} not ready", this.index);
+                return;
+            }
+        } finally {
+            this.ready.countDown();
+        }
+        final int total = this.settings.getDeposits() + this.settings.getTransfers() + this.settings.getWithdrawals() + this.settings.getHistories();
+        while (this.running.get()) {
+            int pick = this.random.nextInt(total);
+            if ((pick -= this.settings.getDeposits()) < 0) {
+                this.deposit(this.settings.getAmount());
+            } else if ((pick -= this.settings.getTransfers()) < 0) {
+                this.transfer();
+            } else if ((pick -= this.settings.getWithdrawals()) < 0) {
+                this.withdraw();
+            } else {
+                this.history();
+            }
+        }
+    }
+
+    private boolean setUp() {
+        final String name = "load" + this.run + "u" + this.index;
+        final String password = "pwd" + this.run + this.index;
+        final JsonNode account = this.client.register(RegistrationRequest.builder()
+                .email(name + "@yope.io").password(password)
+                .firstName("Load").lastName("User" + this.index)
+                .name("main").type(Account.Type.SELLER).build());
+        if (account == null || !this.client.authenticate(name + "@yope.io", password)) {
+            return false;
+        }
+        final JsonNode spend = this.client.createWallet(Wallet.builder().name(SPEND).description("load test").build());
+        final JsonNode save = this.client.createWallet(Wallet.builder().name(SAVE).description("load test").build());
+        if (spend == null || save == null) {
+            return false;
+        }
+        this.spendId = spend.path("id").asLong();
+        this.saveId = save.path("id").asLong();
+        return true;
+    }
+
+    /**
+     * deposits the funding and waits until it can be spent.
+     */
+    private boolean fund() {
+        if (this.deposit(this.settings.getFunding()) == null) {
+            return false;
+        }
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.settings.getFundingTimeoutSeconds());
+        while (System.currentTimeMillis() < deadline) {
+            final JsonNode wallet = this.client.getWallet(this.spendId);
+            if (wallet != null && wallet.path("availableBalance").decimalValue().compareTo(this.settings.getFunding()) >= 0) {
+                return true;
+            }
+            try {
+                Thread.sleep(FUNDING_POLL_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private JsonNode deposit(final BigDecimal amount) {
+        // a payer wallet is created with every deposit
+        return this.client.create(Operation.DEPOSIT, Transaction.builder()
+                .source(Wallet.builder().name("payer" + this.index + "n" + this.payments++).build())
+                .destination(Wallet.builder().name(SPEND).build())
+                .amount(amount).reference("load test").build());
+    }
+
+    private void transfer() {
+        final boolean back = this.random.nextBoolean();
+        this.client.create(Operation.TRANSFER, Transaction.builder()
+                .source(Wallet.builder().name(back ? SAVE : SPEND).build())
+                .destination(Wallet.builder().name(back ? SPEND : SAVE).build())
+                .amount(this.settings.getAmount()).reference("load test").build());
+    }
+
+    private void withdraw() {
+        this.client.create(Operation.WITHDRAW, Transaction.builder()
+                .source(Wallet.builder().name(SPEND).build())
+                .destination(Wallet.builder().name("out").walletHash("ext" + this.run + "u" + this.index).build())
+                .amount(this.settings.getAmount()).reference("load test").build());
+    }
+
+    private void history() {
+        if (this.random.nextBoolean()) {
+            this.client.getTransactions();
+        } else {
+            this.client.getTransactions(this.random.nextBoolean() ? this.spendId : this.saveId);
+        }
+    }
+
+}
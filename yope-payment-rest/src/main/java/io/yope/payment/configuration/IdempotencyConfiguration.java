@@ -0,0 +1,56 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import org.redisson.Redisson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.embedded.FilterRegistrationBean;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.yope.payment.rest.idempotency.IdempotencySettings;
+import io.yope.payment.rest.idempotency.IdempotencyStore;
+import io.yope.payment.rest.idempotency.LocalIdempotencyStore;
+import io.yope.payment.rest.idempotency.RedisIdempotencyStore;
+import io.yope.payment.rest.resources.filters.IdempotencyFilter;
+
+/**
+ * @author massi
+ *
+ */
+@Configuration
+public class IdempotencyConfiguration {
+
+    @Autowired
+    private Redisson redisson;
+
+    @Bean
+    @ConfigurationProperties(prefix = "idempotency")
+    public IdempotencySettings idempotencySettings() {
+        return new IdempotencySettings();
+    }
+
+    @Bean
+    public IdempotencyStore idempotencyStore() {
+        final IdempotencySettings settings = idempotencySettings();
+        if (settings.getMode() == IdempotencySettings.Mode.REDIS) {
+            return new RedisIdempotencyStore(redisson, settings.getTtlSeconds());
+        }
+        return new LocalIdempotencyStore(settings.getMaximumKeys(), settings.getTtlSeconds());
+    }
+
+    /**
+     * registered after the security filter chain, so that keys can be scoped by user.
+     */
+    @Bean
+    public FilterRegistrationBean idempotencyFilter() {
+        final FilterRegistrationBean registration = new FilterRegistrationBean(new IdempotencyFilter(idempotencyStore()));
+        registration.addUrlPatterns("/transactions", "/transactions/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        registration.setEnabled(idempotencySettings().isEnabled());
+        return registration;
+    }
+}
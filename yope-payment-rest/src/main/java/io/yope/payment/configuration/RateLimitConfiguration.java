@@ -0,0 +1,40 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import io.yope.payment.rest.resources.interceptors.MerchantRateLimitInterceptor;
+import io.yope.payment.rest.resources.interceptors.MerchantRateLimitSettings;
+
+/**
+ * @author massi
+ *
+ */
+@Configuration
+public class RateLimitConfiguration extends WebMvcConfigurerAdapter {
+
+    @Bean
+    @ConfigurationProperties(prefix = "ratelimit.merchant")
+    public MerchantRateLimitSettings merchantRateLimitSettings() {
+        return new MerchantRateLimitSettings();
+    }
+
+    @Bean
+    public MerchantRateLimitInterceptor merchantRateLimitInterceptor() {
+        return new MerchantRateLimitInterceptor(merchantRateLimitSettings());
+    }
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        if (merchantRateLimitSettings().isEnabled()) {
+            registry.addInterceptor(merchantRateLimitInterceptor()).addPathPatterns("/transactions/**", "/wallets/**");
+        }
+        super.addInterceptors(registry);
+    }
+}
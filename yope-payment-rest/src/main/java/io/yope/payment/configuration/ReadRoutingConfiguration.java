@@ -0,0 +1,31 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import io.yope.payment.neo4j.routing.ReadRouter;
+import io.yope.payment.rest.resources.interceptors.ReadRoutingInterceptor;
+
+/**
+ * @author massi
+ *
+ */
+@Configuration
+public class ReadRoutingConfiguration extends WebMvcConfigurerAdapter {
+
+    @Autowired(required = false)
+    private ReadRouter readRouter;
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        if (readRouter != null) {
+            registry.addInterceptor(new ReadRoutingInterceptor(readRouter));
+        }
+        super.addInterceptors(registry);
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ *
+ */
+package io.yope.payment.rest.idempotency;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class IdempotencySettings {
+
+    public enum Mode {
+        LOCAL, REDIS
+    }
+
+    private boolean enabled = true;
+
+    private Mode mode = Mode.LOCAL;
+
+    private long ttlSeconds = 86400;
+
+    private long maximumKeys = 100000;
+
+}
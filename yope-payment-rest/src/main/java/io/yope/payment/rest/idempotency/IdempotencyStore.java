@@ -0,0 +1,33 @@
+/**
+ *
+ */
+package io.yope.payment.rest.idempotency;
+
+/**
+ * @author massi
+ *
+ */
+public interface IdempotencyStore {
+
+    /**
+     * claims a key for processing.
+     * @param key the idempotency key
+     * @param requestHash the hash of the body of the request
+     * @return null if the key has been claimed by the caller, the existing response otherwise
+     */
+    IdempotentResponse claim(String key, String requestHash);
+
+    /**
+     * records the response for a claimed key.
+     * @param key the idempotency key
+     * @param response the response
+     */
+    void complete(String key, IdempotentResponse response);
+
+    /**
+     * releases a claimed key without a response, so that it can be retried.
+     * @param key the idempotency key
+     */
+    void release(String key);
+
+}
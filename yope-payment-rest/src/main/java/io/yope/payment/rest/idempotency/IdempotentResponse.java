@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package io.yope.payment.rest.idempotency;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Response recorded for an idempotency key, with the hash of the request that produced it.
+ * A response without status is a request still being processed.
+ * @author massi
+ *
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotentResponse {
+
+    public static final IdempotentResponse IN_PROGRESS = new IdempotentResponse();
+
+    private int status;
+
+    private String contentType;
+
+    private String body;
+
+    /**
+     * the hash of the body of the request, null if unknown.
+     */
+    private String requestHash;
+
+    /**
+     * @return the claim of a request still being processed
+     */
+    public static IdempotentResponse inProgress(final String requestHash) {
+        return IdempotentResponse.builder().requestHash(requestHash).build();
+    }
+
+    /**
+     * @return false if the response was produced by a request with a different body
+     */
+    @JsonIgnore
+    public boolean isFor(final String otherHash) {
+        return requestHash == null || requestHash.equals(otherHash);
+    }
+
+    @JsonIgnore
+    public boolean isCompleted() {
+        return status > 0;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ */
+package io.yope.payment.rest.idempotency;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Node-local store, bounded in size and time.
+ * @author massi
+ *
+ */
+public class LocalIdempotencyStore implements IdempotencyStore {
+
+    private final ConcurrentMap<String, IdempotentResponse> responses;
+
+    public LocalIdempotencyStore(final long maximumKeys, final long ttlSeconds) {
+        this.responses = CacheBuilder.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .<String, IdempotentResponse>build()
+                .asMap();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.rest.idempotency.IdempotencyStore#claim(java.lang.String, java.lang.String)
+     */
+    @Override
+    public IdempotentResponse claim(final String key, final String requestHash) {
+        return responses.putIfAbsent(key, IdempotentResponse.inProgress(requestHash));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.rest.idempotency.IdempotencyStore#complete(java.lang.String, io.yope.payment.rest.idempotency.IdempotentResponse)
+     */
+    @Override
+    public void complete(final String key, final IdempotentResponse response) {
+        responses.put(key, response);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.rest.idempotency.IdempotencyStore#release(java.lang.String)
+     */
+    @Override
+    public void release(final String key) {
+        responses.computeIfPresent(key, (k, response) -> response.isCompleted() ? response : null);
+    }
+
+}
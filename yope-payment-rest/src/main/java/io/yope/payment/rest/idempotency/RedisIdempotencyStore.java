@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package io.yope.payment.rest.idempotency;
+
+import java.util.concurrent.TimeUnit;
+
+import org.redisson.RedissonClient;
+import org.redisson.core.RAtomicLong;
+import org.redisson.core.RBucket;
+
+/**
+ * Cluster-wide store: an atomic counter claims the key, a bucket holds the response,
+ * or the claim with the request hash while the request is processed.
+ * Both expire after the configured time.
+ * @author massi
+ *
+ */
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final String PREFIX = "idempotency:";
+
+    private final RedissonClient redisson;
+
+    private final long ttlSeconds;
+
+    public RedisIdempotencyStore(final RedissonClient redisson, final long ttlSeconds) {
+        this.redisson = redisson;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.rest.idempotency.IdempotencyStore#claim(java.lang.String, java.lang.String)
+     */
+    @Override
+    public IdempotentResponse claim(final String key, final String requestHash) {
+        final RAtomicLong claim = counter(key);
+        if (claim.incrementAndGet() == 1) {
+            claim.expire(ttlSeconds, TimeUnit.SECONDS);
+            response(key).set(IdempotentResponse.inProgress(requestHash), ttlSeconds, TimeUnit.SECONDS);
+            return null;
+        }
+        final IdempotentResponse response = response(key).get();
+        return response == null ? IdempotentResponse.IN_PROGRESS : response;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.rest.idempotency.IdempotencyStore#complete(java.lang.String, io.yope.payment.rest.idempotency.IdempotentResponse)
+     */
+    @Override
+    public void complete(final String key, final IdempotentResponse response) {
+        response(key).set(response, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.rest.idempotency.IdempotencyStore#release(java.lang.String)
+     */
+    @Override
+    public void release(final String key) {
+        response(key).delete();
+        counter(key).delete();
+    }
+
+    private RAtomicLong counter(final String key) {
+        return redisson.getAtomicLong(PREFIX + "claim:" + key);
+    }
+
+    private RBucket<IdempotentResponse> response(final String key) {
+        return redisson.getBucket(PREFIX + "response:" + key);
+    }
+
+}
@@ -2,10 +2,12 @@ package io.yope.payment.rest.resources;
 
 import java.text.MessageFormat;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Response;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -24,6 +26,9 @@ import io.yope.payment.exceptions.AuthorizationException;
 import io.yope.payment.exceptions.IllegalTransactionStateException;
 import io.yope.payment.exceptions.InsufficientFundsException;
 import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.metrics.Latency;
+import io.yope.payment.metrics.LifecycleLatencies;
+import io.yope.payment.metrics.LifecycleLatencies.Stage;
 
 //@Controller
 //@EnableAutoConfiguration
@@ -32,6 +37,9 @@ import io.yope.payment.exceptions.ObjectNotFoundException;
 @PreAuthorize("hasAuthority('ROLE_BACKEND_ADMIN')")
 public class AdminResource extends BaseResource {
 
+    @Autowired
+    private LifecycleLatencies latencies;
+
     /**
      * List of existing accounts.
      * @param accountId
@@ -79,6 +87,17 @@ public class AdminResource extends BaseResource {
         }
     }
 
+    /**
+     * time to accept, to confirm and to complete the transactions, by type: counted since the start,
+     * the percentiles over the window of the timers. the times are in milliseconds.
+     * @return
+     */
+    @RequestMapping(value="/latencies", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody PaymentResponse<Map<Transaction.Type, Map<Stage, Latency>>> getLatencies() {
+        final ResponseHeader header = new ResponseHeader(true, Response.Status.OK.getStatusCode());
+        return new PaymentResponse<Map<Transaction.Type, Map<Stage, Latency>>>(header, this.latencies.getLatencies());
+    }
+
     /**
      * Update Account.
      * @param accountId
@@ -9,6 +9,8 @@ import io.yope.payment.domain.Transaction.Type;
 import io.yope.payment.exceptions.AuthorizationException;
 import io.yope.payment.exceptions.BadRequestException;
 import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.services.TransactionBatchResult;
+import com.google.common.collect.Lists;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -41,26 +43,67 @@ public class TransactionResource extends BaseResource {
         try {
             final Transaction saved = transactionService.create(transaction, loggedAccount.getId());
             response.setStatus(Response.Status.CREATED.getStatusCode());
-            final Transaction result = saved.toBuilder()
-                    .source(saved.getSource().toBuilder().availableBalance(null).balance(null).creationDate(null).build())
-                    .destination(saved.getDestination().toBuilder().availableBalance(null).balance(null).creationDate(null).build())
-                    .build();
-            return new PaymentResponse<Transaction>(header, result);
+            return new PaymentResponse<Transaction>(header, hideBalances(saved));
+        } catch (final Exception e) {
+            return error(response, e);
+        }
+    }
+
+    /**
+     * Create several Transactions at once.
+     * Each item of the body reports the outcome of the transaction in the same position.
+     *
+     * @param transactions
+     * @return
+     */
+    @RequestMapping(value = "/batch", method = RequestMethod.POST, consumes = "application/json", produces = "application/json")
+    public @ResponseBody PaymentResponse<List<PaymentResponse<Transaction>>> createBatch(final HttpServletResponse response,
+            @RequestBody(required = true) final List<Transaction> transactions) {
+        final Account loggedAccount = getLoggedAccount();
+        final List<PaymentResponse<Transaction>> items = Lists.newArrayListWithCapacity(transactions.size());
+        for (final TransactionBatchResult result : transactionService.createBatch(transactions, loggedAccount.getId())) {
+            if (result.isSuccess()) {
+                items.add(new PaymentResponse<Transaction>(new ResponseHeader(true, Response.Status.CREATED.getStatusCode()),
+                        hideBalances(result.getTransaction())));
+            } else {
+                items.add(error(null, result.getError()));
+            }
+        }
+        final ResponseHeader header = new ResponseHeader(true, Response.Status.OK.getStatusCode());
+        return new PaymentResponse<List<PaymentResponse<Transaction>>>(header, items);
+    }
+
+    private Transaction hideBalances(final Transaction saved) {
+        return saved.toBuilder()
+                .source(saved.getSource().toBuilder().availableBalance(null).balance(null).creationDate(null).build())
+                .destination(saved.getDestination().toBuilder().availableBalance(null).balance(null).creationDate(null).build())
+                .build();
+    }
+
+    private PaymentResponse<Transaction> error(final HttpServletResponse response, final Exception exception) {
+        try {
+            throw exception;
         } catch (final ObjectNotFoundException e) {
-            response.setStatus(Response.Status.BAD_REQUEST.getStatusCode());
+            setStatus(response, Response.Status.BAD_REQUEST);
             return serverError(e.getMessage());
         } catch (final BlockchainException e) {
-            response.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            setStatus(response, Response.Status.INTERNAL_SERVER_ERROR);
             return serverError("INTERNAL SERVER ERROR");
         } catch (final BadRequestException e) {
-            response.setStatus(Response.Status.BAD_REQUEST.getStatusCode());
+            setStatus(response, Response.Status.BAD_REQUEST);
             return badRequest(e.field(), e.getMessage());
         } catch (final Exception e) {
-            response.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            setStatus(response, Response.Status.INTERNAL_SERVER_ERROR);
             return serverError("INTERNAL SERVER ERROR");
         }
     }
 
+    private void setStatus(final HttpServletResponse response, final Response.Status status) {
+        if (response != null) {
+            response.setStatus(status.getStatusCode());
+        }
+    }
+
     @RequestMapping(value = "/{transactionId}", method = RequestMethod.GET, consumes = "application/json", produces = "application/json")
     public @ResponseBody PaymentResponse<Transaction> get(@PathVariable final Long transactionId) {
         final Transaction transaction = transactionService.getTransactionById(transactionId);
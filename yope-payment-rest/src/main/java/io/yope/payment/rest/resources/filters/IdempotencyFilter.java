@@ -0,0 +1,206 @@
+package io.yope.payment.rest.resources.filters;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+
+import io.yope.payment.domain.YopeUser;
+import io.yope.payment.rest.idempotency.IdempotencyStore;
+import io.yope.payment.rest.idempotency.IdempotentResponse;
+import io.yope.payment.rest.resources.Error;
+import io.yope.payment.rest.resources.PaymentResponse;
+import io.yope.payment.rest.resources.ResponseHeader;
+import io.yope.payment.rest.resources.interceptors.MerchantRateLimitInterceptor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Makes POST requests carrying an Idempotency-Key header safe to retry:
+ * the first response is recorded and replayed to every retry with the same key,
+ * a retry arriving while the first request is still running gets 409.
+ * Keys are scoped by user and path, and bound to the body of the first request:
+ * reusing a key with a different body gets 422.
+ * The body is read before the request is processed, so only JSON requests are supported.
+ * @author massi
+ *
+ */
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAY = "Idempotent-Replay";
+
+    public static final int UNPROCESSABLE_ENTITY = 422;
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public IdempotencyFilter(final IdempotencyStore store) {
+        this.store = store;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || StringUtils.isBlank(request.getHeader(IDEMPOTENCY_KEY));
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response, final FilterChain chain)
+            throws ServletException, IOException {
+        final String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY);
+        final String user = getUser();
+        if (user == null || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final String key = user + ":" + request.getRequestURI() + ":" + idempotencyKey;
+        final CachedBodyRequest cached = new CachedBodyRequest(request);
+        final String requestHash = Hashing.sha256().hashBytes(cached.body).toString();
+        final IdempotentResponse existing = store.claim(key, requestHash);
+        if (existing != null) {
+            if (existing.isFor(requestHash)) {
+                replay(response, existing);
+            } else {
+                log.info("idempotency key reused with a different request");
+                error(response, UNPROCESSABLE_ENTITY, "The key was used with a different request");
+            }
+            return;
+        }
+        final ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(cached, wrapper);
+            final byte[] content = wrapper.getContentAsByteArray();
+            // a throttled request did no work, the client must be able to retry it
+            if (wrapper.getStatusCode() != MerchantRateLimitInterceptor.TOO_MANY_REQUESTS) {
+                store.complete(key, IdempotentResponse.builder()
+                        .status(wrapper.getStatusCode())
+                        .contentType(wrapper.getContentType())
+                        .body(new String(content, StandardCharsets.UTF_8))
+                        .requestHash(requestHash)
+                        .build());
+                completed = true;
+            }
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
+        } finally {
+            if (!completed) {
+                store.release(key);
+            }
+        }
+    }
+
+    private void replay(final HttpServletResponse response, final IdempotentResponse existing) throws IOException {
+        if (!existing.isCompleted()) {
+            log.info("request with the same idempotency key still in progress");
+            error(response, HttpServletResponse.SC_CONFLICT, "A request with the same key is in progress");
+            return;
+        }
+        response.setStatus(existing.getStatus());
+        response.setHeader(IDEMPOTENT_REPLAY, "true");
+        if (existing.getContentType() != null) {
+            response.setContentType(existing.getContentType());
+        }
+        if (existing.getBody() != null) {
+            final byte[] content = existing.getBody().getBytes(StandardCharsets.UTF_8);
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
+        }
+    }
+
+    private void error(final HttpServletResponse response, final int status, final String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), new PaymentResponse<Object>(
+                new ResponseHeader(false, status),
+                Error.builder().field(IDEMPOTENCY_KEY).message(message).build()));
+    }
+
+    private String getUser() {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof YopeUser) {
+            return ((YopeUser) authentication.getPrincipal()).getUsername();
+        }
+        return authentication.getName();
+    }
+
+    /**
+     * a request whose body, read once to be hashed, can be read again by the resource.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(final HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = IOUtils.toByteArray(request.getInputStream());
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                @Override
+                public void setReadListener(final ReadListener listener) {
+                    // the body is in memory: it is all available at once
+                    try {
+                        if (!this.isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (final IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            final String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+
+}
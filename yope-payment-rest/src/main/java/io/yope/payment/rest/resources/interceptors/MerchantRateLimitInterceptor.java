@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package io.yope.payment.rest.resources.interceptors;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.yope.payment.domain.YopeUser;
+import io.yope.payment.ratelimit.LocalRateLimiter;
+import io.yope.payment.ratelimit.RateLimiter;
+import io.yope.payment.rest.resources.Error;
+import io.yope.payment.rest.resources.PaymentResponse;
+import io.yope.payment.rest.resources.ResponseHeader;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control per merchant: a request rate limit and a cap on the
+ * requests in flight. Runs before the resource, so a rejected request
+ * never reaches the database or the blockchain.
+ * @author massi
+ *
+ */
+@Slf4j
+public class MerchantRateLimitInterceptor extends HandlerInterceptorAdapter {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final String ACQUIRED = MerchantRateLimitInterceptor.class.getName() + ".ACQUIRED";
+
+    private final RateLimiter rateLimiter;
+
+    private final int maxConcurrent;
+
+    private final ConcurrentMap<String, Integer> inFlight = new ConcurrentHashMap<>();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public MerchantRateLimitInterceptor(final MerchantRateLimitSettings settings) {
+        this.rateLimiter = new LocalRateLimiter(settings.getRequestCapacity(), settings.getRequestRefillPerMinute(), settings.getMaximumKeys());
+        this.maxConcurrent = settings.getMaxConcurrent();
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) throws Exception {
+        final String merchant = getMerchant();
+        if (merchant == null) {
+            return true;
+        }
+        final long wait = rateLimiter.tryAcquire(merchant);
+        if (wait > 0) {
+            log.warn("merchant {} exceeded the request rate", merchant);
+            reject(response, wait, "Request rate exceeded");
+            return false;
+        }
+        if (!acquire(merchant)) {
+            log.warn("merchant {} exceeded {} concurrent requests", merchant, maxConcurrent);
+            reject(response, 1000, "Too many concurrent requests");
+            return false;
+        }
+        request.setAttribute(ACQUIRED, merchant);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        final String merchant = (String) request.getAttribute(ACQUIRED);
+        if (merchant != null) {
+            release(merchant);
+        }
+    }
+
+    private boolean acquire(final String merchant) {
+        final boolean[] acquired = {false};
+        inFlight.compute(merchant, (key, count) -> {
+            final int current = count == null ? 0 : count;
+            if (current >= maxConcurrent) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void release(final String merchant) {
+        inFlight.computeIfPresent(merchant, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private String getMerchant() {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof YopeUser) {
+            return ((YopeUser) authentication.getPrincipal()).getUsername();
+        }
+        return authentication.getName();
+    }
+
+    private void reject(final HttpServletResponse response, final long waitMillis, final String message) throws Exception {
+        response.setStatus(TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", String.valueOf((waitMillis + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        final PaymentResponse<Object> body = new PaymentResponse<Object>(new ResponseHeader(false, TOO_MANY_REQUESTS),
+                Error.builder().message(message).build());
+        mapper.writeValue(response.getOutputStream(), body);
+    }
+
+}
@@ -0,0 +1,27 @@
+/**
+ *
+ */
+package io.yope.payment.rest.resources.interceptors;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class MerchantRateLimitSettings {
+
+    private boolean enabled = true;
+
+    private int requestCapacity = 50;
+
+    private int requestRefillPerMinute = 600;
+
+    private int maxConcurrent = 4;
+
+    private long maximumKeys = 100000;
+
+}
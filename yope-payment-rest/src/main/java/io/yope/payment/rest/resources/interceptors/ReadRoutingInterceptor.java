@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package io.yope.payment.rest.resources.interceptors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import io.yope.payment.domain.YopeUser;
+import io.yope.payment.neo4j.routing.ReadRouter;
+
+/**
+ * binds each request to the session of its client for the read routing,
+ * and records the writes, any request but GET and HEAD, so that the client reads them back from the primary;
+ * the reads of a write are served by the primary too.
+ * @author massi
+ *
+ */
+public class ReadRoutingInterceptor extends HandlerInterceptorAdapter {
+
+    private final ReadRouter router;
+
+    public ReadRoutingInterceptor(final ReadRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) throws Exception {
+        router.bind(getSession(), isWrite(request));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+        if (isWrite(request)) {
+            router.written();
+        }
+        router.release();
+    }
+
+    private static boolean isWrite(final HttpServletRequest request) {
+        return !HttpMethod.GET.name().equals(request.getMethod()) && !HttpMethod.HEAD.name().equals(request.getMethod());
+    }
+
+    private String getSession() {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof YopeUser) {
+            return ((YopeUser) authentication.getPrincipal()).getUsername();
+        }
+        return authentication.getName();
+    }
+
+}
@@ -0,0 +1,38 @@
+package io.yope.payment.rest.helpers;
+
+import org.junit.Before;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.boot.test.WebIntegrationTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.jayway.restassured.RestAssured;
+
+import io.yope.payment.rest.YopePaymentApplication;
+
+/**
+ * starts the application on a random port with the in-memory db services and the simulated blockchain,
+ * so that the integration tests need neither Neo4j nor Redis nor the bitcoin network.
+ *
+ * @author massi
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = YopePaymentApplication.class)
+@WebIntegrationTest(randomPort = true, value = {"memory.enabled=true", "blockchain.simulation.enabled=true", "users.local=true",
+        "idempotency.mode=LOCAL", "tracing.enabled=false"})
+@Category(IntegrationTest.class)
+public abstract class ApplicationIntegrationTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Before
+    public void setUpPort() {
+        RestAssured.baseURI = IntegrationTestHelper.LOCALHOST;
+        RestAssured.port = this.port;
+    }
+
+}
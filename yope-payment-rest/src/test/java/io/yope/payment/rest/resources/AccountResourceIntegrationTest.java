@@ -1,21 +1,13 @@
 package io.yope.payment.rest.resources;
 
 import org.junit.Test;
-import org.junit.experimental.categories.Category;
 import org.springframework.util.Assert;
 
-import com.jayway.restassured.RestAssured;
-
-import io.yope.payment.rest.helpers.IntegrationTest;
+import io.yope.payment.rest.helpers.ApplicationIntegrationTest;
 import io.yope.payment.rest.helpers.IntegrationTestHelper;
 
 @lombok.extern.slf4j.Slf4j
-@Category(IntegrationTest.class)
-public class AccountResourceIntegrationTest {
-
-	{
-		RestAssured.baseURI = IntegrationTestHelper.LOCALHOST_GOLDRAKE;
-	}
+public class AccountResourceIntegrationTest extends ApplicationIntegrationTest {
 
 	@Test
 	public void shouldCreateAnAccountAngGetAnAccessTokenIntegrationTest() {
@@ -28,8 +20,8 @@ public class AccountResourceIntegrationTest {
 	    String accessToken = IntegrationTestHelper.requestAccountAndAccessToken();
         String accessToken2 = IntegrationTestHelper.requestAccountAndAccessToken();
         
-        System.err.println(accessToken);
-        System.err.println(accessToken2);
+        Assert.notNull(accessToken);
+        Assert.isTrue(!accessToken.equals(accessToken2));
 	}
 
 }
@@ -1,46 +1,117 @@
 package io.yope.payment.rest.resources;
 
-import static org.junit.Assert.*;
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 
-import org.junit.Ignore;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Before;
 import org.junit.Test;
-import org.junit.experimental.categories.Category;
 
-import io.yope.payment.rest.helpers.IntegrationTest;
+import com.google.common.collect.ImmutableMap;
+import com.jayway.restassured.specification.RequestSpecification;
+
+import io.yope.payment.rest.helpers.ApplicationIntegrationTest;
 import io.yope.payment.rest.helpers.IntegrationTestHelper;
 
-@Ignore
-@Category(IntegrationTest.class)
-public class WalletResourceIntegrationTest {
+public class WalletResourceIntegrationTest extends ApplicationIntegrationTest {
+
+	private static final int CREATED = 201;
+
+	private String accessToken;
+
+	@Before
+	public void setUp() {
+		accessToken = IntegrationTestHelper.requestAccountAndAccessToken();
+	}
 
 	@Test
 	public void shouldCreateWallet() {
-
+		final String name = RandomStringUtils.randomAlphabetic(8);
+		authenticated()
+			.contentType("application/json")
+			.body(ImmutableMap.of("name", name, "description", "created"))
+			.post("/wallets").then()
+			.assertThat()
+			.statusCode(CREATED)
+			.body("body.name", equalTo(name));
 	}
 
 	@Test
 	public void shouldUpdateWallet() {
-		fail("Not yet implemented");
+		final int walletId = createWallet();
+		authenticated()
+			.contentType("application/json")
+			.body(ImmutableMap.of("description", "updated"))
+			.put("/wallets/" + walletId).then()
+			.assertThat()
+			.statusCode(IntegrationTestHelper.OK)
+			.body("body.description", equalTo("updated"));
 	}
 
 	@Test
 	public void shouldGetWallets() {
-		fail("Not yet implemented");
+		final int walletId = createWallet();
+		authenticated()
+			.get("/wallets").then()
+			.assertThat()
+			.statusCode(IntegrationTestHelper.OK)
+			.body("body.id", hasItem(walletId));
 	}
 
 	@Test
 	public void testGetWallet() {
-		fail("Not yet implemented");
+		final int walletId = createWallet();
+		authenticated()
+			.get("/wallets/" + walletId).then()
+			.assertThat()
+			.statusCode(IntegrationTestHelper.OK)
+			.body("body.id", equalTo(walletId));
 	}
 
 	@Test
 	public void testGetTransactions() {
-		fail("Not yet implemented");
+		final int walletId = createWallet();
+		authenticated()
+			.get("/wallets/" + walletId + "/transactions").then()
+			.assertThat()
+			.statusCode(IntegrationTestHelper.OK)
+			.body("body.size()", equalTo(0));
 	}
 
 	@Test
 	public void testDeactivateWallet() {
-		fail("Not yet implemented");
+		final int walletId = createWallet();
+		authenticated()
+			.delete("/wallets/" + walletId);
+		authenticated()
+			.get("/wallets").then()
+			.assertThat()
+			.statusCode(IntegrationTestHelper.OK)
+			.body("body.id", not(hasItem(walletId)));
+	}
+
+	@Test
+	public void walletsOfOtherAccountsAreNotVisible() {
+		final int walletId = createWallet();
+		given()
+			.header("Authorization", "Bearer " + IntegrationTestHelper.requestAccountAndAccessToken())
+			.get("/wallets/" + walletId).then()
+			.assertThat()
+			.statusCode(IntegrationTestHelper.NOT_AUTHORIZED);
+	}
+
+	private int createWallet() {
+		return authenticated()
+			.contentType("application/json")
+			.body(ImmutableMap.of("name", RandomStringUtils.randomAlphabetic(8)))
+			.post("/wallets")
+			.jsonPath().getInt("body.id");
+	}
+
+	private RequestSpecification authenticated() {
+		return given().header("Authorization", "Bearer " + accessToken);
 	}
 
 }
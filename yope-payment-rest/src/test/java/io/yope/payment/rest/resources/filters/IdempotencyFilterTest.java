@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package io.yope.payment.rest.resources.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import io.yope.payment.rest.idempotency.IdempotentResponse;
+import io.yope.payment.rest.idempotency.LocalIdempotencyStore;
+import io.yope.payment.rest.resources.interceptors.MerchantRateLimitInterceptor;
+
+/**
+ * @author massi
+ *
+ */
+public class IdempotencyFilterTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final LocalIdempotencyStore store = new LocalIdempotencyStore(100, 60);
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(this.store);
+
+    private int status = HttpServletResponse.SC_CREATED;
+
+    /**
+     * answers with the body of the request, as read by the resource.
+     */
+    private final FilterChain chain = (request, response) -> {
+        this.calls.incrementAndGet();
+        ((HttpServletResponse) response).setStatus(this.status);
+        response.setContentType("application/json");
+        response.getOutputStream().write(IOUtils.toByteArray(request.getInputStream()));
+    };
+
+    @Before
+    public void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", null));
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testRetryGetsTheRecordedResponse() throws Exception {
+        final MockHttpServletResponse first = this.post("k1", "{\"amount\":1}");
+        assertEquals(HttpServletResponse.SC_CREATED, first.getStatus());
+        assertEquals("{\"amount\":1}", first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAY));
+
+        final MockHttpServletResponse retry = this.post("k1", "{\"amount\":1}");
+        assertEquals(HttpServletResponse.SC_CREATED, retry.getStatus());
+        assertEquals("{\"amount\":1}", retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.IDEMPOTENT_REPLAY));
+        assertEquals(1, this.calls.get());
+    }
+
+    @Test
+    public void testKeyReusedWithAnotherBodyIsRejected() throws Exception {
+        this.post("k1", "{\"amount\":1}");
+        final MockHttpServletResponse reused = this.post("k1", "{\"amount\":2}");
+        assertEquals(IdempotencyFilter.UNPROCESSABLE_ENTITY, reused.getStatus());
+        assertTrue(reused.getContentAsString().contains(IdempotencyFilter.IDEMPOTENCY_KEY));
+        assertEquals(1, this.calls.get());
+
+        this.post("k2", "{\"amount\":2}");
+        assertEquals(2, this.calls.get());
+    }
+
+    @Test
+    public void testRetryWhileInProgressGetsConflict() throws Exception {
+        this.store.claim("alice:/transactions:k1", null);
+        assertEquals(HttpServletResponse.SC_CONFLICT, this.post("k1", "{}").getStatus());
+        assertEquals(0, this.calls.get());
+    }
+
+    @Test
+    public void testThrottledRequestCanBeRetried() throws Exception {
+        this.status = MerchantRateLimitInterceptor.TOO_MANY_REQUESTS;
+        this.post("k1", "{}");
+        this.status = HttpServletResponse.SC_CREATED;
+        assertEquals(HttpServletResponse.SC_CREATED, this.post("k1", "{}").getStatus());
+        assertEquals(2, this.calls.get());
+    }
+
+    @Test
+    public void testBodyCanBeReadAsynchronously() throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transactions");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, "k1");
+        request.setContent("{\"amount\":1}".getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        final AtomicInteger done = new AtomicInteger();
+        this.filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            final ServletInputStream input = req.getInputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (input.isReady() && !input.isFinished()) {
+                        read.write(input.read());
+                    }
+                }
+                @Override
+                public void onAllDataRead() {
+                    done.incrementAndGet();
+                }
+                @Override
+                public void onError(final Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            });
+        });
+        assertEquals("{\"amount\":1}", read.toString("UTF-8"));
+        assertEquals(1, done.get());
+    }
+
+    @Test
+    public void testReleaseKeepsCompletedResponses() {
+        assertNull(this.store.claim("key", "hash"));
+        this.store.complete("key", IdempotentResponse.builder().status(201).requestHash("hash").build());
+        this.store.release("key");
+        assertEquals(201, this.store.claim("key", "hash").getStatus());
+    }
+
+    private MockHttpServletResponse post(final String key, final String body) throws Exception {
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/transactions");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        this.filter.doFilter(request, response, this.chain);
+        return response;
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package io.yope.payment.rest.resources.interceptors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * @author massi
+ *
+ */
+public class MerchantRateLimitInterceptorTest {
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testRequestRateIsLimitedPerMerchant() throws Exception {
+        final MerchantRateLimitInterceptor interceptor = new MerchantRateLimitInterceptor(settings(2, 10));
+        login("alice");
+        assertTrue(this.handle(interceptor, new MockHttpServletResponse()));
+        assertTrue(this.handle(interceptor, new MockHttpServletResponse()));
+        final MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(this.handle(interceptor, rejected));
+        assertEquals(MerchantRateLimitInterceptor.TOO_MANY_REQUESTS, rejected.getStatus());
+        assertTrue(Integer.parseInt(rejected.getHeader("Retry-After")) >= 1);
+        assertTrue(rejected.getContentAsString().contains("Request rate exceeded"));
+
+        login("bob");
+        assertTrue(this.handle(interceptor, new MockHttpServletResponse()));
+    }
+
+    @Test
+    public void testRequestsInFlightAreCapped() throws Exception {
+        final MerchantRateLimitInterceptor interceptor = new MerchantRateLimitInterceptor(settings(100, 1));
+        login("alice");
+        final MockHttpServletRequest first = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+        final MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(this.handle(interceptor, rejected));
+        assertEquals(MerchantRateLimitInterceptor.TOO_MANY_REQUESTS, rejected.getStatus());
+        assertTrue(rejected.getContentAsString().contains("Too many concurrent requests"));
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), null, null);
+        assertTrue(this.handle(interceptor, new MockHttpServletResponse()));
+    }
+
+    @Test
+    public void testAnonymousRequestsAreNotLimited() throws Exception {
+        final MerchantRateLimitInterceptor interceptor = new MerchantRateLimitInterceptor(settings(1, 1));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), null));
+        }
+    }
+
+    private boolean handle(final MerchantRateLimitInterceptor interceptor, final MockHttpServletResponse response) throws Exception {
+        return interceptor.preHandle(new MockHttpServletRequest(), response, null);
+    }
+
+    private static void login(final String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null));
+    }
+
+    private static MerchantRateLimitSettings settings(final int requestCapacity, final int maxConcurrent) {
+        final MerchantRateLimitSettings settings = new MerchantRateLimitSettings();
+        settings.setRequestCapacity(requestCapacity);
+        settings.setRequestRefillPerMinute(1);
+        settings.setMaxConcurrent(maxConcurrent);
+        return settings;
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.yope.payment.blockchain.BlockChainService;
+import io.yope.payment.db.services.AccountDbService;
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.metrics.MethodTimers;
+import io.yope.payment.qr.QRHelper;
+import io.yope.payment.services.TransactionService;
+
+/**
+ * times the layers a request goes through, on the metrics endpoint as timer.[layer].[method].
+ * @author massi
+ *
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "metrics.timers", name = "enabled", matchIfMissing = true)
+public class MetricsConfiguration {
+
+    @Bean
+    public static MethodTimers methodTimers() {
+        return new MethodTimers()
+                .time(TransactionService.class, "service.transaction")
+                .time(TransactionDbService.class, "db.transaction")
+                .time(WalletDbService.class, "db.wallet")
+                .time(AccountDbService.class, "db.account")
+                .time(BlockChainService.class, "blockchain", "send", "generateCentralWalletHash")
+                .time(QRHelper.class, "qr", "getQRImage");
+    }
+
+}
@@ -0,0 +1,34 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+import io.yope.payment.blockchain.BlockChainService;
+import io.yope.payment.qr.QRHelper;
+import io.yope.payment.services.TransactionService;
+import io.yope.payment.tracing.MethodSpans;
+
+/**
+ * the spans of the layers a request goes through, children of the one AuthenticationFilter opens.
+ * @author massi
+ *
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "tracing", name = "enabled")
+public class TracingConfiguration {
+
+    @Bean
+    public static MethodSpans methodSpans() {
+        return new MethodSpans()
+                .trace(TransactionService.class)
+                .trace(Repository.class)
+                .trace(BlockChainService.class)
+                .trace(QRHelper.class, "getQRImage");
+    }
+
+}
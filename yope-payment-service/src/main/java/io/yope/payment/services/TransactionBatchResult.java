@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package io.yope.payment.services;
+
+import io.yope.payment.domain.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a single item of a transaction batch:
+ * either the created transaction or the reason it was rejected.
+ * @author massi
+ *
+ */
+@Getter
+@AllArgsConstructor
+public class TransactionBatchResult {
+
+    private final Transaction transaction;
+
+    private final Exception error;
+
+    public static TransactionBatchResult success(final Transaction transaction) {
+        return new TransactionBatchResult(transaction, null);
+    }
+
+    public static TransactionBatchResult failure(final Exception error) {
+        return new TransactionBatchResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ *
+ */
+package io.yope.payment.services;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.PrimitiveSink;
+
+import io.yope.payment.domain.Transaction;
+
+/**
+ * the hashes of the transactions that never reach the blockchain.
+ * @author massi
+ *
+ */
+public final class TransactionHashes {
+
+    private TransactionHashes() {
+    }
+
+    /**
+     * @return the SHA-1 of an internal transfer or withdrawal
+     */
+    public static String internal(final Transaction transaction) {
+        return Hashing.sha1().hashObject(transaction, new Funnel<Transaction>() {
+
+            private static final long serialVersionUID = 9193015056720554840L;
+
+            @Override
+            public void funnel(final Transaction from, final PrimitiveSink into) {
+                into.putUnencodedChars(from.getReference())
+                    .putUnencodedChars(from.getSource().getName())
+                    .putUnencodedChars(from.getDestination().getName())
+                    .putFloat(from.getAmount().floatValue())
+                    .putLong(from.getCreationDate());
+
+            }
+        }).toString();
+    }
+
+}
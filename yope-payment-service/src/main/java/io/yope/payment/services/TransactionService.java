@@ -6,15 +6,20 @@ package io.yope.payment.services;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.google.common.hash.Funnel;
-import com.google.common.hash.Hashing;
-import com.google.common.hash.PrimitiveSink;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import io.yope.payment.blockchain.BlockChainService;
 import io.yope.payment.blockchain.BlockchainException;
@@ -84,9 +89,224 @@ public class TransactionService {
         throw new BadRequestException("Transaction type not recognized "+transaction.getType()).field("type");
     }
 
+    /**
+     * Creates several transactions for the same seller.
+     * The wallets are resolved once for the whole batch and every transfer or withdrawal
+     * is checked against the combined debit of its source wallet;
+     * transfers and withdrawals are persisted in a single database transaction
+     * and the withdrawals are sent to the blockchain together.
+     * The batch is not atomic past the database: once the withdrawals are sent they are accepted one at a time,
+     * so one whose acceptance fails stays PENDING, with the hash of the blockchain transaction that paid it,
+     * and is reported as failed while the others succeed; it must be reconciled by hand.
+     * @param transactions the transactions details
+     * @param accountId the id of the seller
+     * @return one result per transaction, in the same order
+     */
+    public List<TransactionBatchResult> createBatch(final List<Transaction> transactions, final Long accountId) {
+        final TransactionBatchResult[] results = new TransactionBatchResult[transactions.size()];
+        final List<Wallet> owned = walletService.getWalletsByAccountId(accountId, null);
+        final Map<String, Wallet> byName = owned.stream()
+                .filter(w -> w.getName() != null)
+                .collect(Collectors.toMap(Wallet::getName, Function.identity(), (a, b) -> a));
+        final Map<String, Wallet> byHash = getWalletsByHash(transactions, owned);
+        final Map<Long, Wallet> touched = Maps.newLinkedHashMap();
+        final Map<Long, BigDecimal> spendable = Maps.newHashMap();
+        final List<Transaction> toCreate = Lists.newArrayList();
+        final List<Integer> positions = Lists.newArrayList();
+        for (int i = 0; i < transactions.size(); i++) {
+            final Transaction transaction = transactions.get(i);
+            try {
+                final Wallet source = getWallet(transaction.getSource(), byName, byHash);
+                final Wallet destination = getWallet(transaction.getDestination(), byName, byHash);
+                switch (getType(source, destination)) {
+                    case DEPOSIT:
+                        results[i] = TransactionBatchResult.success(doDeposit(transaction.toBuilder().type(Type.DEPOSIT).build(), accountId));
+                        break;
+                    case TRANSFER:
+                        toCreate.add(planTransfer(transaction.toBuilder().type(Type.TRANSFER).build(), byName, touched, spendable));
+                        positions.add(i);
+                        break;
+                    case WITHDRAW:
+                        toCreate.add(planWithdraw(transaction.toBuilder().type(Type.WITHDRAW).build(), accountId, byName, byHash, spendable));
+                        positions.add(i);
+                        break;
+                    default:
+                        throw new BadRequestException("Transaction type not recognized "+transaction.getType()).field("type");
+                }
+            } catch (final Exception e) {
+                results[i] = TransactionBatchResult.failure(e);
+            }
+        }
+        if (!toCreate.isEmpty()) {
+            writeBatch(toCreate, positions, touched, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    private Map<String, Wallet> getWalletsByHash(final List<Transaction> transactions, final List<Wallet> owned) {
+        final Map<String, Wallet> byHash = owned.stream()
+                .filter(w -> StringUtils.isNotBlank(w.getWalletHash()))
+                .collect(Collectors.toMap(Wallet::getWalletHash, Function.identity(), (a, b) -> a));
+        final Set<String> missing = transactions.stream()
+                .flatMap(t -> Lists.newArrayList(t.getSource(), t.getDestination()).stream())
+                .filter(w -> w != null && StringUtils.isNotBlank(w.getWalletHash()) && !byHash.containsKey(w.getWalletHash()))
+                .map(Wallet::getWalletHash)
+                .collect(Collectors.toSet());
+        walletService.getByWalletHashes(missing).forEach(w -> byHash.put(w.getWalletHash(), w));
+        return byHash;
+    }
+
+    private Wallet getWallet(final Wallet wallet, final Map<String, Wallet> byName, final Map<String, Wallet> byHash) {
+        if (wallet == null) {
+            return null;
+        }
+        if (StringUtils.isNotBlank(wallet.getWalletHash())) {
+            return byHash.get(wallet.getWalletHash());
+        }
+        return byName.get(wallet.getName());
+    }
+
+    private Transaction planTransfer(final Transaction transaction, final Map<String, Wallet> byName,
+            final Map<Long, Wallet> touched, final Map<Long, BigDecimal> spendable) throws ObjectNotFoundException, InsufficientFundsException {
+        final BigDecimal correctedAmount = transaction.getAmount().setScale(SCALE, RoundingMode.FLOOR);
+        final Wallet source = byName.get(transaction.getSource().getName());
+        if (source == null) {
+            throw new ObjectNotFoundException(transaction.getSource().getId(), Wallet.class);
+        }
+        final Wallet destination = byName.get(transaction.getDestination().getName());
+        if (destination == null) {
+            throw new ObjectNotFoundException(transaction.getDestination().getId(), Wallet.class);
+        }
+        debit(source, correctedAmount, spendable, "not enough funds in the wallet with name "+source.getName());
+        spendable.put(destination.getId(), getSpendable(destination, spendable).add(correctedAmount));
+        final Wallet currentSource = touched.getOrDefault(source.getId(), source);
+        touched.put(source.getId(), currentSource.toBuilder()
+                .balance(currentSource.getBalance().subtract(correctedAmount))
+                .availableBalance(currentSource.getAvailableBalance().subtract(correctedAmount))
+                .build());
+        final Wallet currentDestination = touched.getOrDefault(destination.getId(), destination);
+        touched.put(destination.getId(), currentDestination.toBuilder()
+                .balance(currentDestination.getBalance().add(correctedAmount))
+                .availableBalance(currentDestination.getAvailableBalance().add(correctedAmount))
+                .build());
+        final Long now = System.currentTimeMillis();
+        final Transaction.Builder transferBuilder = transaction.toBuilder()
+                .creationDate(now)
+                .acceptedDate(now)
+                .completedDate(now)
+                .amount(correctedAmount)
+                .balance(correctedAmount).blockchainFees(BigDecimal.ZERO).fees(BigDecimal.ZERO)
+                .source(source).destination(destination).status(Status.COMPLETED);
+        return transferBuilder.transactionHash(TransactionHashes.internal(transferBuilder.build())).build();
+    }
+
+    private Transaction planWithdraw(final Transaction transaction, final Long accountId, final Map<String, Wallet> byName,
+            final Map<String, Wallet> byHash, final Map<Long, BigDecimal> spendable) throws ObjectNotFoundException, BadRequestException, InsufficientFundsException {
+        final BigDecimal correctedAmount = transaction.getAmount().setScale(SCALE, RoundingMode.FLOOR);
+        final Wallet source = byName.get(transaction.getSource().getName());
+        if (source == null) {
+            throw new ObjectNotFoundException(transaction.getSource().getId(), Wallet.class);
+        }
+        Wallet destination = getWallet(transaction.getDestination(), byName, byHash);
+        if (destination == null || destination.getWalletHash() == null) {
+            destination = getWalletForWithdraw(transaction, accountId);
+        }
+        debit(source, correctedAmount, spendable, MessageFormat.format("Insufficient Funds Exception in Wallet {0}", transaction.getSource()));
+        return transaction.toBuilder()
+                .amount(correctedAmount)
+                .fees(BigDecimal.ZERO)
+                .source(source)
+                .destination(destination).status(Status.PENDING).build();
+    }
+
+    private void debit(final Wallet wallet, final BigDecimal amount, final Map<Long, BigDecimal> spendable, final String message) throws InsufficientFundsException {
+        final BigDecimal available = getSpendable(wallet, spendable);
+        if (available.compareTo(amount) <= 0) {
+            throw new InsufficientFundsException(message);
+        }
+        spendable.put(wallet.getId(), available.subtract(amount));
+    }
+
+    private BigDecimal getSpendable(final Wallet wallet, final Map<Long, BigDecimal> spendable) {
+        return spendable.getOrDefault(wallet.getId(), wallet.getAvailableBalance());
+    }
+
+    private void writeBatch(final List<Transaction> toCreate, final List<Integer> positions,
+            final Map<Long, Wallet> touched, final TransactionBatchResult[] results) {
+        final List<Transaction> created;
+        try {
+            created = transactionService.applyBatch(touched.values(), toCreate);
+        } catch (final Exception e) {
+            log.error("batch of {} transactions not saved", toCreate.size(), e);
+            positions.forEach(i -> results[i] = TransactionBatchResult.failure(e));
+            return;
+        }
+        final Map<Integer, Transaction> withdrawals = new LinkedHashMap<>();
+        for (int i = 0; i < created.size(); i++) {
+            final Transaction transaction = created.get(i);
+            if (Type.WITHDRAW.equals(transaction.getType())) {
+                withdrawals.put(positions.get(i), transaction);
+            } else {
+                results[positions.get(i)] = TransactionBatchResult.success(transaction);
+            }
+        }
+        if (!withdrawals.isEmpty()) {
+            sendWithdrawals(withdrawals, results);
+        }
+    }
+
+    private void sendWithdrawals(final Map<Integer, Transaction> withdrawals, final TransactionBatchResult[] results) {
+        final String transactionHash;
+        try {
+            transactionHash = blockChainService.send(Lists.newArrayList(withdrawals.values()));
+        } catch (final BlockchainException e) {
+            log.error("Withdrawals "+withdrawals.values().stream().map(Transaction::getId).collect(Collectors.toList()), e);
+            for (final Map.Entry<Integer, Transaction> entry : withdrawals.entrySet()) {
+                final Transaction withdraw = entry.getValue();
+                try {
+                    transactionService.save(withdraw.getId(), withdraw.toBuilder()
+                            .failedDate(System.currentTimeMillis())
+                            .status(Status.FAILED)
+                            .transactionHash(TransactionHashes.internal(withdraw)).build());
+                } catch (final Exception saveError) {
+                    log.error("Transaction "+withdraw.getId(), saveError);
+                }
+                results[entry.getKey()] = TransactionBatchResult.failure(e);
+            }
+            return;
+        }
+        for (final Map.Entry<Integer, Transaction> entry : withdrawals.entrySet()) {
+            final Transaction withdraw = entry.getValue();
+            try {
+                transactionStateService.save(withdraw.getId(), withdraw.toBuilder().transactionHash(transactionHash).status(Status.ACCEPTED).build());
+                results[entry.getKey()] = TransactionBatchResult.success(withdraw);
+            } catch (final Exception e) {
+                log.error("Transaction "+withdraw.getId()+" sent in "+transactionHash+" but not accepted", e);
+                recordSent(withdraw, transactionHash);
+                results[entry.getKey()] = TransactionBatchResult.failure(e);
+            }
+        }
+    }
+
+    /**
+     * keeps the blockchain transaction on a withdrawal that was paid but could not be accepted,
+     * so that it can be found for the reconciliation.
+     */
+    private void recordSent(final Transaction withdraw, final String transactionHash) {
+        try {
+            transactionService.save(withdraw.getId(), withdraw.toBuilder().transactionHash(transactionHash).build());
+        } catch (final Exception e) {
+            log.error("Transaction "+withdraw.getId(), e);
+        }
+    }
+
     private Type getType(final Transaction transaction, final Long accountId) throws BadRequestException {
         final Wallet source = getWallet(transaction.getSource(), accountId);
         final Wallet destination = getWallet(transaction.getDestination(), accountId);
+        return getType(source, destination);
+    }
+
+    private Type getType(final Wallet source, final Wallet destination) throws BadRequestException {
         if (source != null && Wallet.Type.INTERNAL.equals(source.getType()) &&
             destination != null && Wallet.Type.INTERNAL.equals(destination.getType())) {
             return Transaction.Type.TRANSFER;
@@ -125,14 +345,15 @@ public class TransactionService {
         if (destination == null) {
             throw new ObjectNotFoundException(transaction.getDestination().getId(), Wallet.class);
         }
-        walletService.save(source.getId(), source.toBuilder()
-                .balance(source.getBalance().subtract(correctedAmount))
-                .availableBalance(source.getAvailableBalance().subtract(correctedAmount))
-                .build());
-        walletService.save(destination.getId(), destination.toBuilder()
-                .balance(destination.getBalance().add(correctedAmount))
-                .availableBalance(destination.getAvailableBalance().add(correctedAmount))
-                .build());
+        final List<Wallet> wallets = Arrays.asList(
+                source.toBuilder()
+                        .balance(source.getBalance().subtract(correctedAmount))
+                        .availableBalance(source.getAvailableBalance().subtract(correctedAmount))
+                        .build(),
+                destination.toBuilder()
+                        .balance(destination.getBalance().add(correctedAmount))
+                        .availableBalance(destination.getAvailableBalance().add(correctedAmount))
+                        .build());
         final Long now = System.currentTimeMillis();
         final Transaction.Builder pendingTransactionBuilder = transaction.toBuilder()
                 .creationDate(now)
@@ -141,25 +362,8 @@ public class TransactionService {
                 .amount(correctedAmount)
                 .balance(correctedAmount).blockchainFees(BigDecimal.ZERO).fees(BigDecimal.ZERO)
                 .source(source).destination(destination).status(Status.COMPLETED);
-        pendingTransactionBuilder.transactionHash(getInternalTransactionHash(pendingTransactionBuilder.build()));
-        return transactionService.create(pendingTransactionBuilder.build());
-    }
-
-    private String getInternalTransactionHash(final Transaction transaction) {
-        return Hashing.sha1().hashObject(transaction, new Funnel<Transaction>() {
-
-            private static final long serialVersionUID = 9193015056720554840L;
-
-            @Override
-            public void funnel(final Transaction from, final PrimitiveSink into) {
-                into.putUnencodedChars(from.getReference())
-                    .putUnencodedChars(from.getSource().getName())
-                    .putUnencodedChars(from.getDestination().getName())
-                    .putFloat(from.getAmount().floatValue())
-                    .putLong(from.getCreationDate());
-
-            }
-        }).toString();
+        pendingTransactionBuilder.transactionHash(TransactionHashes.internal(pendingTransactionBuilder.build()));
+        return transactionService.applyBatch(wallets, Arrays.asList(pendingTransactionBuilder.build())).get(0);
     }
 
     /**
@@ -184,7 +388,7 @@ public class TransactionService {
         }
         final QRImage qr = qrHelper.getQRImage(amountWithFee, blockChainService.generateCentralWalletHash());
         pendingTransactionBuilder.QR(qr.getImageUrl()).receiverHash(qr.getHash());
-        return transactionService.create(pendingTransactionBuilder.amount(correctedAmount).build());
+        return transactionStateService.create(pendingTransactionBuilder.amount(correctedAmount).build());
     }
 
     private Wallet getWalletForDeposit(final Transaction transaction, final Long accountId) throws ObjectNotFoundException, BadRequestException {
@@ -232,7 +436,7 @@ public class TransactionService {
             transactionService.save(withdraw.getId(), withdraw.toBuilder()
                     .failedDate(System.currentTimeMillis())
                     .status(Status.FAILED)
-                    .transactionHash(getInternalTransactionHash(withdraw)).build());
+                    .transactionHash(TransactionHashes.internal(withdraw)).build());
             throw e;
         }
         return withdraw;
@@ -296,7 +500,7 @@ public class TransactionService {
     }
 
     public Transaction save(final Long transactionId, final Status status) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
-        final Transaction transaction = transactionService.get(transactionId);
+        final Transaction transaction = transactionService.getForUpdate(transactionId);
         return transactionStateService.save(transactionId, transaction.toBuilder().status(status).build());
     }
 
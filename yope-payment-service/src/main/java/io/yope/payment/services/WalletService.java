@@ -33,7 +33,7 @@ public class WalletService {
     }
 
     public Wallet update(final Long walletId, final Wallet wallet) throws ObjectNotFoundException {
-        final Wallet current = this.getById(walletId);
+        final Wallet current = this.walletService.getByIdForUpdate(walletId);
         if (current == null) {
             throw new ObjectNotFoundException(walletId, Wallet.class);
         }
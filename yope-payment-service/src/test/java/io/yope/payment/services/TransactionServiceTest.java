@@ -0,0 +1,215 @@
+/**
+ *
+ */
+package io.yope.payment.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.yope.payment.blockchain.BlockChainService;
+import io.yope.payment.blockchain.BlockchainException;
+import io.yope.payment.blockchain.BlockchainSettings;
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.db.services.WalletDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.domain.Transaction.Type;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.exceptions.InsufficientFundsException;
+import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.qr.QRHelper;
+import io.yope.payment.transaction.services.TransactionStateService;
+
+/**
+ * @author massi
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TransactionServiceTest {
+
+    private static final Long ACCOUNT = 1L;
+
+    @Mock
+    private AccountService accountHelper;
+
+    @Mock
+    private WalletService walletHelper;
+
+    @Mock
+    private TransactionDbService transactionService;
+
+    @Mock
+    private TransactionStateService transactionStateService;
+
+    @Mock
+    private WalletDbService walletService;
+
+    @Mock
+    private BlockChainService blockChainService;
+
+    @Mock
+    private BlockchainSettings blockchainSettings;
+
+    @Mock
+    private QRHelper qrHelper;
+
+    @InjectMocks
+    private TransactionService service;
+
+    private final AtomicLong ids = new AtomicLong(100);
+
+    private final Wallet main = wallet(1L, "main", Wallet.Type.INTERNAL, null, 10);
+
+    private final Wallet savings = wallet(2L, "savings", Wallet.Type.INTERNAL, null, 0);
+
+    private final Wallet external = wallet(3L, "external", Wallet.Type.EXTERNAL, "hash-ext", 0);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() throws Exception {
+        when(this.walletService.getWalletsByAccountId(ACCOUNT, null)).thenReturn(Arrays.asList(this.main, this.savings));
+        when(this.walletService.getByWalletHashes(anyCollectionOf(String.class))).thenReturn(Arrays.asList(this.external));
+        when(this.transactionService.applyBatch(anyCollectionOf(Wallet.class), anyListOf(Transaction.class))).thenAnswer(invocation ->
+            ((List<Transaction>) invocation.getArguments()[1]).stream()
+                    .map(t -> t.toBuilder().id(this.ids.incrementAndGet()).creationDate(System.currentTimeMillis()).build())
+                    .collect(Collectors.toList()));
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testTransfersAreCheckedAgainstTheCombinedDebit() throws Exception {
+        final List<TransactionBatchResult> results = this.service.createBatch(Arrays.asList(
+                transfer(4), transfer(4), transfer(4)), ACCOUNT);
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(2).getError() instanceof InsufficientFundsException);
+        assertEquals(Status.COMPLETED, results.get(0).getTransaction().getStatus());
+
+        final ArgumentCaptor<Collection> wallets = ArgumentCaptor.forClass(Collection.class);
+        final ArgumentCaptor<List> transactions = ArgumentCaptor.forClass(List.class);
+        verify(this.transactionService).applyBatch(wallets.capture(), transactions.capture());
+        assertEquals(2, transactions.getValue().size());
+        final Map<String, Wallet> written = ((Collection<Wallet>) wallets.getValue()).stream()
+                .collect(Collectors.toMap(Wallet::getName, w -> w));
+        assertEquals(0, new BigDecimal(2).compareTo(written.get("main").getBalance()));
+        assertEquals(0, new BigDecimal(8).compareTo(written.get("savings").getAvailableBalance()));
+        verify(this.blockChainService, never()).send(anyListOf(Transaction.class));
+    }
+
+    @Test
+    public void testFailedWriteFailsThePlannedTransactions() throws Exception {
+        when(this.transactionService.applyBatch(anyCollectionOf(Wallet.class), anyListOf(Transaction.class)))
+                .thenThrow(new ObjectNotFoundException(2L, Wallet.class));
+
+        final List<TransactionBatchResult> results = this.service.createBatch(Arrays.asList(transfer(1), withdraw(1)), ACCOUNT);
+
+        assertTrue(results.get(0).getError() instanceof ObjectNotFoundException);
+        assertTrue(results.get(1).getError() instanceof ObjectNotFoundException);
+        verify(this.blockChainService, never()).send(anyListOf(Transaction.class));
+    }
+
+    @Test
+    public void testWithdrawalsAreSentTogether() throws Exception {
+        when(this.blockChainService.send(anyListOf(Transaction.class))).thenReturn("hash-1");
+
+        final List<TransactionBatchResult> results = this.service.createBatch(Arrays.asList(withdraw(2), withdraw(3)), ACCOUNT);
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        verify(this.blockChainService).send(anyListOf(Transaction.class));
+        final ArgumentCaptor<Transaction> accepted = ArgumentCaptor.forClass(Transaction.class);
+        verify(this.transactionStateService).save(eq(101L), accepted.capture());
+        assertEquals(Status.ACCEPTED, accepted.getValue().getStatus());
+        assertEquals("hash-1", accepted.getValue().getTransactionHash());
+    }
+
+    @Test
+    public void testFailedSendFailsTheWithdrawals() throws Exception {
+        when(this.blockChainService.send(anyListOf(Transaction.class))).thenThrow(new BlockchainException("offline"));
+
+        final List<TransactionBatchResult> results = this.service.createBatch(Arrays.asList(withdraw(2), transfer(1)), ACCOUNT);
+
+        assertTrue(results.get(0).getError() instanceof BlockchainException);
+        assertTrue(results.get(1).isSuccess());
+        final ArgumentCaptor<Transaction> failed = ArgumentCaptor.forClass(Transaction.class);
+        verify(this.transactionService).save(eq(101L), failed.capture());
+        assertEquals(Status.FAILED, failed.getValue().getStatus());
+    }
+
+    @Test
+    public void testWithdrawalNotAcceptedAfterTheSendKeepsTheBlockchainHash() throws Exception {
+        when(this.blockChainService.send(anyListOf(Transaction.class))).thenReturn("hash-1");
+        when(this.transactionStateService.save(eq(102L), any(Transaction.class)))
+                .thenThrow(new InsufficientFundsException("balance moved"));
+
+        final List<TransactionBatchResult> results = this.service.createBatch(Arrays.asList(withdraw(2), withdraw(3)), ACCOUNT);
+
+        // the batch is half applied: the first withdrawal is accepted, the second stays pending
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).getError() instanceof InsufficientFundsException);
+        final ArgumentCaptor<Transaction> pending = ArgumentCaptor.forClass(Transaction.class);
+        verify(this.transactionService).save(eq(102L), pending.capture());
+        assertEquals(Status.PENDING, pending.getValue().getStatus());
+        assertEquals("hash-1", pending.getValue().getTransactionHash());
+        verify(this.transactionService, never()).save(eq(101L), any(Transaction.class));
+    }
+
+    @Test
+    public void testUnknownWalletFailsOnlyItsTransaction() throws Exception {
+        final Transaction unknown = Transaction.builder().reference("r").amount(BigDecimal.ONE)
+                .source(Wallet.builder().name("main").build())
+                .destination(Wallet.builder().name("nowhere").build()).build();
+
+        final List<TransactionBatchResult> results = this.service.createBatch(Arrays.asList(unknown, transfer(1)), ACCOUNT);
+
+        assertFalse(results.get(0).isSuccess());
+        assertNull(results.get(0).getTransaction());
+        assertTrue(results.get(1).isSuccess());
+        assertEquals(Type.TRANSFER, results.get(1).getTransaction().getType());
+    }
+
+    private static Transaction transfer(final int amount) {
+        return Transaction.builder().reference("transfer").amount(new BigDecimal(amount))
+                .source(Wallet.builder().name("main").build())
+                .destination(Wallet.builder().name("savings").build()).build();
+    }
+
+    private static Transaction withdraw(final int amount) {
+        return Transaction.builder().reference("withdraw").amount(new BigDecimal(amount))
+                .source(Wallet.builder().name("main").build())
+                .destination(Wallet.builder().walletHash("hash-ext").build()).build();
+    }
+
+    private static Wallet wallet(final Long id, final String name, final Wallet.Type type, final String hash, final int balance) {
+        return Wallet.builder().id(id).name(name).type(type).walletHash(hash)
+                .balance(new BigDecimal(balance)).availableBalance(new BigDecimal(balance)).build();
+    }
+
+}
@@ -4,12 +4,23 @@ import io.yope.payment.db.services.UserSecurityService;
 import io.yope.payment.domain.YopeUser;
 import io.yope.payment.filters.AuthenticationFilter;
 import io.yope.payment.filters.ManagementEndpointAuthenticationFilter;
+import io.yope.payment.ratelimit.LocalRateLimiter;
+import io.yope.payment.ratelimit.LoginThrottle;
+import io.yope.payment.ratelimit.LoginThrottleSettings;
+import io.yope.payment.ratelimit.RateLimiter;
+import io.yope.payment.ratelimit.RedisRateLimiter;
 import io.yope.payment.repository.RedisUserRepository;
+import io.yope.payment.repository.UserNearCache;
 import io.yope.payment.repository.UserRepository;
 import io.yope.payment.services.*;
+import io.yope.payment.tracing.Tracer;
 import org.redisson.Redisson;
 import org.redisson.core.RMap;
+import org.redisson.core.RTopic;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -25,6 +36,7 @@ import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @Configuration
@@ -36,6 +48,21 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Value("${backend.admin.role}")
     private String backendAdminRole;
 
+    @Value("${users.cache.maximumSize:10000}")
+    private long usersCacheMaximumSize;
+
+    @Value("${users.cache.expireAfterWriteSeconds:300}")
+    private long usersCacheExpireAfterWriteSeconds;
+
+    /**
+     * keeps the users in this node rather than in redis, for the tests and a single node.
+     */
+    @Value("${users.local:false}")
+    private boolean usersLocal;
+
+    @Autowired
+    private Tracer tracer;
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.
@@ -77,7 +104,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 anonymous().disable().
                 exceptionHandling().authenticationEntryPoint(unauthorizedEntryPoint());
 
-        http.addFilterBefore(new AuthenticationFilter(authenticationManager()), BasicAuthenticationFilter.class).
+        http.addFilterBefore(new AuthenticationFilter(authenticationManager(),
+                loginThrottleSettings().isEnabled() ? loginThrottle() : null, tracer), BasicAuthenticationFilter.class).
                 addFilterBefore(new ManagementEndpointAuthenticationFilter(authenticationManager()), BasicAuthenticationFilter.class);
     }
 
@@ -106,8 +134,42 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public UserRepository redisUserRepository(final Redisson redisson) {
+        if (usersLocal) {
+            return new RedisUserRepository(new ConcurrentHashMap<>(), null);
+        }
         final RMap<String, YopeUser> users = redisson.getMap("users");
-        return new RedisUserRepository(users);
+        return new RedisUserRepository(users, userNearCache(redisson));
+    }
+
+    /**
+     * subscribes to the invalidations of the other nodes, so it is only made for the users kept in redis.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "users.local", havingValue = "false", matchIfMissing = true)
+    public UserNearCache userNearCache(final Redisson redisson) {
+        final RTopic<String> invalidations = redisson.getTopic("users:invalidations");
+        return new UserNearCache(usersCacheMaximumSize, usersCacheExpireAfterWriteSeconds, invalidations);
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "login")
+    public LoginThrottleSettings loginThrottleSettings() {
+        return new LoginThrottleSettings();
+    }
+
+    @Bean
+    public LoginThrottle loginThrottle() {
+        final LoginThrottleSettings settings = loginThrottleSettings();
+        return new LoginThrottle(
+                rateLimiter(settings, "login:username", settings.getUsernameCapacity(), settings.getUsernameRefillPerMinute()),
+                rateLimiter(settings, "login:ip", settings.getIpCapacity(), settings.getIpRefillPerMinute()));
+    }
+
+    private RateLimiter rateLimiter(final LoginThrottleSettings settings, final String prefix, final int capacity, final int refillPerMinute) {
+        if (settings.getMode() == LoginThrottleSettings.Mode.REDIS) {
+            return new RedisRateLimiter(redisson(), prefix, capacity, refillPerMinute);
+        }
+        return new LocalRateLimiter(capacity, refillPerMinute, settings.getMaximumKeys());
     }
 
     @Bean
@@ -3,7 +3,10 @@ package io.yope.payment.filters;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
+import io.yope.payment.ratelimit.LoginThrottle;
 import io.yope.payment.services.TokenResponse;
+import io.yope.payment.tracing.Span;
+import io.yope.payment.tracing.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -31,11 +34,29 @@ public class AuthenticationFilter extends GenericFilterBean {
     private final static Logger logger = LoggerFactory.getLogger(AuthenticationFilter.class);
     public static final String TOKEN_SESSION_KEY = "token";
     public static final String USER_SESSION_KEY = "user";
+    public static final String TRACE_SESSION_KEY = "trace";
+    private static final String TRACEPARENT_HEADER = "traceparent";
     private static final String AUTHENTICATE_URL = "/authenticate";
+    private static final int SC_TOO_MANY_REQUESTS = 429;
     private AuthenticationManager authenticationManager;
+    private LoginThrottle loginThrottle;
+    private Tracer tracer;
 
     public AuthenticationFilter(AuthenticationManager authenticationManager) {
+        this(authenticationManager, null);
+    }
+
+    public AuthenticationFilter(AuthenticationManager authenticationManager, LoginThrottle loginThrottle) {
+        this(authenticationManager, loginThrottle, null);
+    }
+
+    /**
+     * @param tracer starts the trace of every request, may be null
+     */
+    public AuthenticationFilter(AuthenticationManager authenticationManager, LoginThrottle loginThrottle, Tracer tracer) {
         this.authenticationManager = authenticationManager;
+        this.loginThrottle = loginThrottle;
+        this.tracer = tracer;
     }
 
     @Override
@@ -48,9 +69,13 @@ public class AuthenticationFilter extends GenericFilterBean {
         Optional<String> token = Optional.fromNullable(httpRequest.getHeader("Authorization"));
 
         String resourcePath = new UrlPathHelper().getPathWithinApplication(httpRequest);
+        Span span = startTrace(httpRequest, resourcePath);
 
         try {
             if (postToAuthenticate(httpRequest, resourcePath)) {
+                if (throttled(httpRequest, httpResponse, username)) {
+                    return;
+                }
                 logger.debug("Trying to authenticate user {} by Username method", username);
                 processUsernamePasswordAuthentication(httpResponse, username, password);
                 return;
@@ -71,12 +96,36 @@ public class AuthenticationFilter extends GenericFilterBean {
         } catch (AuthenticationException authenticationException) {
             SecurityContextHolder.clearContext();
             httpResponse.sendError(HttpServletResponse.SC_UNAUTHORIZED, authenticationException.getMessage());
+        } catch (IOException | ServletException | RuntimeException e) {
+            if (span != null) {
+                span.error(e);
+            }
+            throw e;
         } finally {
             MDC.remove(TOKEN_SESSION_KEY);
             MDC.remove(USER_SESSION_KEY);
+            if (span != null) {
+                span.attribute("http.status_code", httpResponse.getStatus());
+                span.close();
+                MDC.remove(TRACE_SESSION_KEY);
+            }
         }
     }
 
+    /**
+     * starts the trace of the request, continuing the one of the caller if any, and puts its id in the logging context.
+     */
+    private Span startTrace(HttpServletRequest httpRequest, String resourcePath) {
+        if (tracer == null) {
+            return null;
+        }
+        Span span = tracer.startTrace("http " + httpRequest.getMethod(), httpRequest.getHeader(TRACEPARENT_HEADER))
+                .attribute("http.method", httpRequest.getMethod())
+                .attribute("http.target", resourcePath);
+        MDC.put(TRACE_SESSION_KEY, span.getTraceId());
+        return span;
+    }
+
     private void addSessionContextToLogging() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String tokenValue = "EMPTY";
@@ -105,6 +154,20 @@ public class AuthenticationFilter extends GenericFilterBean {
         return AUTHENTICATE_URL.equalsIgnoreCase(resourcePath) && httpRequest.getMethod().equals("POST");
     }
 
+    private boolean throttled(HttpServletRequest httpRequest, HttpServletResponse httpResponse, Optional<String> username) {
+        if (loginThrottle == null) {
+            return false;
+        }
+        long wait = loginThrottle.tryAcquire(username.orNull(), httpRequest.getRemoteAddr());
+        if (wait == 0) {
+            return false;
+        }
+        logger.warn("Too many login attempts for user {} from {}", username.orNull(), httpRequest.getRemoteAddr());
+        httpResponse.setStatus(SC_TOO_MANY_REQUESTS);
+        httpResponse.setHeader("Retry-After", String.valueOf((wait + 999) / 1000));
+        return true;
+    }
+
     private void processUsernamePasswordAuthentication(HttpServletResponse httpResponse, Optional<String> username, Optional<String> password) throws IOException {
         Authentication resultOfAuthentication = tryToAuthenticateWithUsernameAndPassword(username, password);
         SecurityContextHolder.getContext().setAuthentication(resultOfAuthentication);
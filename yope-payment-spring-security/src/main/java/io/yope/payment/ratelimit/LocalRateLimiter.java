@@ -0,0 +1,43 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local limiter keeping one {@link TokenBucket} per key.
+ * Buckets of idle keys are evicted, so memory stays bounded under key-spraying.
+ * @author massi
+ *
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private final LoadingCache<String, TokenBucket> buckets;
+
+    public LocalRateLimiter(final int capacity, final int refillPerMinute, final long maximumKeys) {
+        this.buckets = CacheBuilder.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(Math.max(1, capacity * 60L / refillPerMinute), TimeUnit.SECONDS)
+                .build(new CacheLoader<String, TokenBucket>() {
+                    @Override
+                    public TokenBucket load(final String key) {
+                        return new TokenBucket(capacity, refillPerMinute);
+                    }
+                });
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.ratelimit.RateLimiter#tryAcquire(java.lang.String)
+     */
+    @Override
+    public long tryAcquire(final String key) {
+        return buckets.getUnchecked(key).tryAcquire();
+    }
+
+}
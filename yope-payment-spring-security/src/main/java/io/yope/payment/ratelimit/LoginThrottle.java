@@ -0,0 +1,67 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throttles login attempts by username and by client address.
+ * Rejections are exposed on the metrics endpoint.
+ * @author massi
+ *
+ */
+public class LoginThrottle implements PublicMetrics {
+
+    private final RateLimiter usernameLimiter;
+
+    private final RateLimiter ipLimiter;
+
+    private final AtomicLong rejectedByUsername = new AtomicLong();
+
+    private final AtomicLong rejectedByIp = new AtomicLong();
+
+    public LoginThrottle(final RateLimiter usernameLimiter, final RateLimiter ipLimiter) {
+        this.usernameLimiter = usernameLimiter;
+        this.ipLimiter = ipLimiter;
+    }
+
+    /**
+     * records a login attempt.
+     * @param username the username, may be null
+     * @param ip the client address
+     * @return 0 if the attempt may proceed, the milliseconds to wait otherwise
+     */
+    public long tryAcquire(final String username, final String ip) {
+        final long ipWait = ipLimiter.tryAcquire(ip);
+        if (ipWait > 0) {
+            rejectedByIp.incrementAndGet();
+            return ipWait;
+        }
+        if (username == null) {
+            return 0;
+        }
+        final long usernameWait = usernameLimiter.tryAcquire(username.toLowerCase());
+        if (usernameWait > 0) {
+            rejectedByUsername.incrementAndGet();
+        }
+        return usernameWait;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<Long>("login.rejected.username", rejectedByUsername.get()),
+                new Metric<Long>("login.rejected.ip", rejectedByIp.get()));
+    }
+
+}
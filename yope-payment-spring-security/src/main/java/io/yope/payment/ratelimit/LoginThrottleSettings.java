@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class LoginThrottleSettings {
+
+    public enum Mode {
+        LOCAL, REDIS
+    }
+
+    private boolean enabled = true;
+
+    private Mode mode = Mode.LOCAL;
+
+    private int usernameCapacity = 5;
+
+    private int usernameRefillPerMinute = 5;
+
+    private int ipCapacity = 20;
+
+    private int ipRefillPerMinute = 60;
+
+    private long maximumKeys = 100000;
+
+}
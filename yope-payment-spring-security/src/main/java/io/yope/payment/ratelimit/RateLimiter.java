@@ -0,0 +1,19 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+/**
+ * @author massi
+ *
+ */
+public interface RateLimiter {
+
+    /**
+     * takes a permit for the given key.
+     * @param key the key the limit applies to
+     * @return 0 if the permit was granted, the milliseconds to wait before retrying otherwise
+     */
+    long tryAcquire(String key);
+
+}
@@ -0,0 +1,54 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+import org.redisson.RedissonClient;
+import org.redisson.core.RAtomicLong;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster-wide limiter: a fixed-window counter per key, shared through redis.
+ * Costs one round-trip per request, so it is only used when limits must hold
+ * across nodes.
+ * @author massi
+ *
+ */
+public class RedisRateLimiter implements RateLimiter {
+
+    private final RedissonClient redisson;
+
+    private final String prefix;
+
+    private final int capacity;
+
+    private final long windowMillis;
+
+    public RedisRateLimiter(final RedissonClient redisson, final String prefix, final int capacity, final int refillPerMinute) {
+        this.redisson = redisson;
+        this.prefix = prefix;
+        this.capacity = capacity;
+        this.windowMillis = Math.max(1000, TimeUnit.MINUTES.toMillis(1) * capacity / refillPerMinute);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.ratelimit.RateLimiter#tryAcquire(java.lang.String)
+     */
+    @Override
+    public long tryAcquire(final String key) {
+        final long now = System.currentTimeMillis();
+        final long window = now / windowMillis;
+        final RAtomicLong counter = redisson.getAtomicLong(prefix + ":" + key + ":" + window);
+        final long count = counter.incrementAndGet();
+        if (count == 1) {
+            counter.expire(windowMillis, TimeUnit.MILLISECONDS);
+        }
+        if (count <= capacity) {
+            return 0;
+        }
+        return (window + 1) * windowMillis - now;
+    }
+
+}
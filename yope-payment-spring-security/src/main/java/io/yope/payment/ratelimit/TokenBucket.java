@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm:
+ * the only state is the theoretical arrival time of the next request,
+ * updated with a compare-and-set.
+ * @author massi
+ *
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+
+    private final long burstNanos;
+
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param capacity the number of requests that can be made in a burst
+     * @param refillPerMinute the number of tokens restored every minute
+     */
+    public TokenBucket(final int capacity, final int refillPerMinute) {
+        if (capacity <= 0 || refillPerMinute <= 0) {
+            throw new IllegalArgumentException("capacity and refill must be positive");
+        }
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        this.burstNanos = emissionIntervalNanos * capacity;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * takes a token if available.
+     * @return 0 if a token was taken, the milliseconds to wait for the next token otherwise
+     */
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    long tryAcquire(final long now) {
+        while (true) {
+            final long current = theoreticalArrival.get();
+            final long next = Math.max(current, now) + emissionIntervalNanos;
+            final long allowedAt = next - burstNanos;
+            if (allowedAt > now) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(allowedAt - now));
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+}
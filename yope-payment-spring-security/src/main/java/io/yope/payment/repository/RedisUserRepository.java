@@ -7,9 +7,11 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
@@ -19,8 +21,15 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class RedisUserRepository implements UserRepository {
 
+    /**
+     * authorities are shared between users with the same role.
+     */
+    private static final ConcurrentMap<String, Set<GrantedAuthority>> AUTHORITIES = new ConcurrentHashMap<>();
+
     Map<String, YopeUser> users;
 
+    UserNearCache nearCache;
+
     public RedisUserRepository() {
         final Set<GrantedAuthority> authorities = getGrantedAuthorities("ADMIN");
         createUser(new User("admin@yope.io", "Vit9uZ2S", authorities));
@@ -37,6 +46,7 @@ public class RedisUserRepository implements UserRepository {
                         .roles(authorities)
                         .password(user.getPassword())
                         .username(user.getUsername()).build());
+        invalidate(user.getUsername());
         return user;
     }
 
@@ -45,6 +55,13 @@ public class RedisUserRepository implements UserRepository {
      */
     @Override
     public User getUser(final String username) {
+        if (nearCache != null) {
+            return nearCache.get(username, this::loadUser);
+        }
+        return loadUser(username);
+    }
+
+    private User loadUser(final String username) {
         final YopeUser yopeUser = users.get(username);
         if (yopeUser != null) {
             return getUser(yopeUser);
@@ -54,14 +71,22 @@ public class RedisUserRepository implements UserRepository {
 
 
     private User getUser(final YopeUser user) {
+        if (user == null) {
+            return null;
+        }
         return new User(user.getUsername(), user.getPassword(),
                 getGrantedAuthorities(user.getRoles().iterator().next()) );
     }
 
     private Set<GrantedAuthority> getGrantedAuthorities(final String role) {
-        final Set<GrantedAuthority> authorities = new HashSet<GrantedAuthority>();
-        authorities.add(new SimpleGrantedAuthority(role));
-        return authorities;
+        return AUTHORITIES.computeIfAbsent(role,
+                r -> Collections.<GrantedAuthority>singleton(new SimpleGrantedAuthority(r)));
+    }
+
+    private void invalidate(final String username) {
+        if (nearCache != null) {
+            nearCache.invalidate(username);
+        }
     }
 
     private Collection<String> getAuthorities(final User user) {
@@ -72,7 +97,9 @@ public class RedisUserRepository implements UserRepository {
 
     @Override
     public User deleteUser(final String username) {
-        return getUser(users.remove(username));
+        final YopeUser removed = users.remove(username);
+        invalidate(username);
+        return getUser(removed);
     }
 
 }
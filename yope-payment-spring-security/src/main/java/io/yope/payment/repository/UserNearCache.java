@@ -0,0 +1,74 @@
+/**
+ *
+ */
+package io.yope.payment.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.core.RTopic;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded, node-local cache of users in front of the shared redis map.
+ * Every write or delete is published on a redis topic so that the other nodes
+ * drop their copy; the expiry bounds staleness if a message gets lost.
+ * @author massi
+ *
+ */
+@Slf4j
+public class UserNearCache {
+
+    private final Cache<String, User> users;
+
+    private final RTopic<String> invalidations;
+
+    public UserNearCache(final long maximumSize, final long expireAfterWriteSeconds, final RTopic<String> invalidations) {
+        this.users = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+        this.invalidations = invalidations;
+        if (invalidations != null) {
+            invalidations.addListener((channel, username) -> users.invalidate(username));
+        }
+    }
+
+    /**
+     * returns the cached user or loads it, caching only existing users.
+     * @param username the username
+     * @param loader loads the user on a miss
+     * @return the user or null
+     */
+    public User get(final String username, final Function<String, User> loader) {
+        final User cached = users.getIfPresent(username);
+        // a user whose credentials have been erased can't be used to authenticate
+        if (cached != null && cached.getPassword() != null) {
+            return cached;
+        }
+        final User loaded = loader.apply(username);
+        if (loaded != null) {
+            users.put(username, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * drops the user locally and on every other node.
+     * @param username the username
+     */
+    public void invalidate(final String username) {
+        users.invalidate(username);
+        if (invalidations != null) {
+            try {
+                invalidations.publish(username);
+            } catch (final RuntimeException e) {
+                log.warn("unable to publish invalidation for {}: {}", username, e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+/**
+ *
+ */
+package io.yope.payment.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author massi
+ *
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void testBurstThenRefill() {
+        final TokenBucket bucket = new TokenBucket(3, 60);
+        final long now = System.nanoTime();
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        final long wait = bucket.tryAcquire(now);
+        assertTrue("wait " + wait, wait > 0 && wait <= 1000);
+        assertEquals(0, bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1)));
+        assertTrue(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1)) > 0);
+    }
+
+    @Test
+    public void testLocalLimiterIsPerKey() {
+        final RateLimiter limiter = new LocalRateLimiter(1, 1, 100);
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("alice") > 0);
+        assertEquals(0, limiter.tryAcquire("bob"));
+    }
+}
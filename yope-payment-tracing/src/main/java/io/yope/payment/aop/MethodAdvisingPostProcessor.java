@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package io.yope.payment.aop;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.framework.ProxyProcessorSupport;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * advises the public methods of the beans of the registered types with the interceptor the subclass makes for the bean.
+ * The calls are proxied, a bean already proxied, e.g. for its transactions, getting the interceptor as its outermost
+ * advice; calls within a bean are not advised. Being post processors, the subclasses are declared by static bean
+ * methods and look up the beans their interceptors use on the first call, so that creating them does not create
+ * the settings before they are bound.
+ * @author massi
+ *
+ */
+public abstract class MethodAdvisingPostProcessor extends ProxyProcessorSupport implements BeanPostProcessor, BeanFactoryAware {
+
+    private static final long serialVersionUID = -6042216375313400577L;
+
+    private final Map<Class<?>, Set<String>> types = Maps.newLinkedHashMap();
+
+    private BeanFactory beanFactory;
+
+    /**
+     * advises the methods of a type, the first registered type of a bean making its interceptor.
+     * @param methods the names of the advised methods; all the public ones if none
+     */
+    protected void advise(final Class<?> type, final String... methods) {
+        this.types.put(type, ImmutableSet.copyOf(Arrays.asList(methods)));
+    }
+
+    /**
+     * @param type the registered type of the bean
+     * @param named the class of the bean or, for the repositories, their interface
+     * @return the interceptor of the advised methods of the bean
+     */
+    protected abstract MethodInterceptor interceptor(Class<?> type, Class<?> named);
+
+    /**
+     * @return true if the method of the registered type is advised, besides being public and not one of Object or of the proxy
+     */
+    protected boolean matches(final Class<?> type, final Method method) {
+        return true;
+    }
+
+    protected BeanFactory getBeanFactory() {
+        return this.beanFactory;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.beans.factory.BeanFactoryAware#setBeanFactory(org.springframework.beans.factory.BeanFactory)
+     */
+    @Override
+    public void setBeanFactory(final BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.beans.factory.config.BeanPostProcessor#postProcessBeforeInitialization(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, final String beanName) throws BeansException {
+        return bean;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.beans.factory.config.BeanPostProcessor#postProcessAfterInitialization(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+        if (bean instanceof AopInfrastructureBean) {
+            return bean;
+        }
+        final Class<?> targetClass = AopUtils.getTargetClass(bean);
+        for (final Map.Entry<Class<?>, Set<String>> type : this.types.entrySet()) {
+            final Class<?> named = named(bean, targetClass, type.getKey());
+            if (named == null) {
+                continue;
+            }
+            final DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(new AdvisedMethods(type.getKey(), type.getValue()),
+                    this.interceptor(type.getKey(), named));
+            if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+                ((Advised) bean).addAdvisor(0, advisor);
+                return bean;
+            }
+            final ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.copyFrom(this);
+            proxyFactory.addAdvisor(advisor);
+            return proxyFactory.getProxy(this.getProxyClassLoader());
+        }
+        return bean;
+    }
+
+    /**
+     * @return the class naming the advice of the bean, null if the bean is not of the type
+     */
+    private static Class<?> named(final Object bean, final Class<?> targetClass, final Class<?> type) {
+        if (type.isAssignableFrom(targetClass)) {
+            return ClassUtils.getUserClass(targetClass);
+        }
+        if (bean instanceof Advised) {
+            for (final Class<?> proxied : ((Advised) bean).getProxiedInterfaces()) {
+                if (type.isAssignableFrom(proxied)) {
+                    return proxied;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the public methods of the bean, but those of Object and of the proxy.
+     */
+    private class AdvisedMethods extends StaticMethodMatcherPointcut {
+
+        private final Class<?> type;
+
+        private final Set<String> methods;
+
+        AdvisedMethods(final Class<?> type, final Set<String> methods) {
+            this.type = type;
+            this.methods = methods;
+        }
+
+        @Override
+        public boolean matches(final Method method, final Class<?> targetClass) {
+            return Modifier.isPublic(method.getModifiers())
+                    && !ClassUtils.hasMethod(Object.class, method.getName(), method.getParameterTypes())
+                    && !method.getDeclaringClass().getName().startsWith("org.springframework.aop.")
+                    && (this.methods.isEmpty() || this.methods.contains(method.getName()))
+                    && MethodAdvisingPostProcessor.this.matches(this.type, method);
+        }
+    }
+
+}
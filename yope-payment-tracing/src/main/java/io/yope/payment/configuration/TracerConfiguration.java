@@ -0,0 +1,50 @@
+/**
+ *
+ */
+package io.yope.payment.configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.yope.payment.tracing.FileSpanExporter;
+import io.yope.payment.tracing.OtlpSpanExporter;
+import io.yope.payment.tracing.SpanExporter;
+import io.yope.payment.tracing.Tracer;
+import io.yope.payment.tracing.TracingSettings;
+
+/**
+ * @author massi
+ *
+ */
+@Configuration
+@EnableConfigurationProperties
+public class TracerConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "tracing")
+    public TracingSettings tracingSettings() {
+        return new TracingSettings();
+    }
+
+    @Bean(destroyMethod = "close")
+    public Tracer tracer(final TracingSettings tracingSettings) throws IOException {
+        return new Tracer(tracingSettings, tracingSettings.isEnabled() ? this.exporter(tracingSettings) : null);
+    }
+
+    private SpanExporter exporter(final TracingSettings settings) throws IOException {
+        switch (settings.getExporter()) {
+            case OTLP:
+                return new OtlpSpanExporter(new URL(settings.getEndpoint()), settings.getServiceName());
+            case FILE:
+            default:
+                return new FileSpanExporter(new File(settings.getFile()), settings.getServiceName());
+        }
+    }
+
+}
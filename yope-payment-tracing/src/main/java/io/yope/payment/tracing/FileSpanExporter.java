@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * appends a line of OTLP json per trace to a file, which a collector can read or be sent later.
+ * @author massi
+ *
+ */
+public class FileSpanExporter implements SpanExporter {
+
+    private final OtlpJson json;
+
+    private final Writer writer;
+
+    public FileSpanExporter(final File file, final String serviceName) throws IOException {
+        final File folder = file.getAbsoluteFile().getParentFile();
+        if (folder != null) {
+            folder.mkdirs();
+        }
+        this.json = new OtlpJson(serviceName);
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.tracing.SpanExporter#export(java.util.List)
+     */
+    @Override
+    public void export(final List<Span> spans) throws IOException {
+        this.writer.write(this.json.write(spans));
+        this.writer.write('\n');
+        this.writer.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.tracing.SpanExporter#close()
+     */
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import io.yope.payment.aop.MethodAdvisingPostProcessor;
+
+/**
+ * wraps the public methods of the beans of the registered types in spans named [type].[method], the type being
+ * the class of the bean or, for the repositories, their interface.
+ * @author massi
+ *
+ */
+public class MethodSpans extends MethodAdvisingPostProcessor {
+
+    private static final long serialVersionUID = 2410718829713395470L;
+
+    private volatile Tracer tracer;
+
+    /**
+     * traces the methods of a type.
+     * @param methods the names of the traced methods; all the public ones if none
+     */
+    public MethodSpans trace(final Class<?> type, final String... methods) {
+        this.advise(type, methods);
+        return this;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.aop.MethodAdvisingPostProcessor#interceptor(java.lang.Class, java.lang.Class)
+     */
+    @Override
+    protected MethodInterceptor interceptor(final Class<?> type, final Class<?> named) {
+        return new SpanInterceptor(named.getSimpleName());
+    }
+
+    private Tracer tracer() {
+        if (this.tracer == null) {
+            this.tracer = this.getBeanFactory().getBean(Tracer.class);
+        }
+        return this.tracer;
+    }
+
+    private class SpanInterceptor implements MethodInterceptor {
+
+        private final String name;
+
+        private final Map<Method, String> names = new ConcurrentHashMap<>();
+
+        SpanInterceptor(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable {
+            final String spanName = this.names.computeIfAbsent(invocation.getMethod(), method -> this.name + "." + method.getName());
+            try (Span span = MethodSpans.this.tracer().startSpan(spanName)) {
+                try {
+                    return invocation.proceed();
+                } catch (final Throwable e) {
+                    span.error(e);
+                    throw e;
+                }
+            }
+        }
+    }
+
+}
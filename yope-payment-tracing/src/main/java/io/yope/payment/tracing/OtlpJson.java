@@ -0,0 +1,73 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * writes a trace as an OTLP/HTTP json export request, the format the collectors accept on /v1/traces.
+ * @author massi
+ *
+ */
+public class OtlpJson {
+
+    private static final int KIND_INTERNAL = 1;
+
+    private static final int KIND_SERVER = 2;
+
+    private static final int STATUS_ERROR = 2;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final String serviceName;
+
+    public OtlpJson(final String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public String write(final List<Span> spans) throws JsonProcessingException {
+        final ObjectNode request = this.mapper.createObjectNode();
+        final ObjectNode resourceSpans = request.putArray("resourceSpans").addObject();
+        attribute(resourceSpans.putObject("resource").putArray("attributes"), "service.name", this.serviceName);
+        final ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", "io.yope.payment.tracing");
+        final ArrayNode nodes = scopeSpans.putArray("spans");
+        for (final Span span : spans) {
+            final ObjectNode node = nodes.addObject()
+                    .put("traceId", span.getTraceId())
+                    .put("spanId", span.getSpanId());
+            if (span.getParentSpanId() != null) {
+                node.put("parentSpanId", span.getParentSpanId());
+            }
+            node.put("name", span.getName())
+                    .put("kind", span.getParent() == null ? KIND_SERVER : KIND_INTERNAL)
+                    .put("startTimeUnixNano", Long.toString(span.getStartEpochNanos()))
+                    .put("endTimeUnixNano", Long.toString(span.getStartEpochNanos() + span.getDurationNanos()));
+            final ArrayNode attributes = node.putArray("attributes");
+            for (final Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+                attribute(attributes, attribute.getKey(), attribute.getValue());
+            }
+            if (span.getError() != null) {
+                node.putObject("status").put("code", STATUS_ERROR).put("message", span.getError());
+            }
+        }
+        return this.mapper.writeValueAsString(request);
+    }
+
+    private static void attribute(final ArrayNode attributes, final String key, final Object value) {
+        final ObjectNode attribute = attributes.addObject().put("key", key);
+        if (value instanceof Long || value instanceof Integer) {
+            attribute.putObject("value").put("intValue", value.toString());
+        } else {
+            attribute.putObject("value").put("stringValue", String.valueOf(value));
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * posts every trace as OTLP/HTTP json to a collector, e.g. http://localhost:4318/v1/traces.
+ * @author massi
+ *
+ */
+public class OtlpSpanExporter implements SpanExporter {
+
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final OtlpJson json;
+
+    private final URL endpoint;
+
+    public OtlpSpanExporter(final URL endpoint, final String serviceName) {
+        this.json = new OtlpJson(serviceName);
+        this.endpoint = endpoint;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.tracing.SpanExporter#export(java.util.List)
+     */
+    @Override
+    public void export(final List<Span> spans) throws IOException {
+        final byte[] body = this.json.write(spans).getBytes(StandardCharsets.UTF_8);
+        final HttpURLConnection connection = (HttpURLConnection) this.endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body);
+            }
+            final int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("collector answered " + status);
+            }
+            // the connection is kept alive once the response is read
+            try (InputStream input = connection.getInputStream()) {
+                while (input.read() >= 0) {
+                    continue;
+                }
+            }
+        } catch (final IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * a timed operation of a trace, closed by the thread that started it; the spans of an unsampled
+ * trace record nothing. A span is used as a resource:
+ * <pre>
+ * try (Span span = tracer.startSpan("wallet.save")) {
+ *     ...
+ * }
+ * </pre>
+ * @author massi
+ *
+ */
+public class Span implements AutoCloseable {
+
+    /**
+     * the spans of a trace, exported when its root is closed.
+     */
+    static class Trace {
+        private final String traceId;
+        private final boolean sampled;
+        private final List<Span> spans;
+
+        Trace(final String traceId, final boolean sampled) {
+            this.traceId = traceId;
+            this.sampled = sampled;
+            this.spans = sampled ? Collections.synchronizedList(Lists.newArrayList()) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * the child of an unsampled span.
+     */
+    static final Span NOOP = new Span(null, null, null, null, null, null) {
+        @Override
+        public Span attribute(final String key, final Object value) {
+            return this;
+        }
+        @Override
+        public void error(final Throwable error) {
+            // not recorded
+        }
+        @Override
+        public void close() {
+            // not current
+        }
+    };
+
+    private final Tracer tracer;
+
+    private final Trace trace;
+
+    private final Span parent;
+
+    private final String spanId;
+
+    private final String parentSpanId;
+
+    private final String name;
+
+    private final long startEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+    private final long startNanos = System.nanoTime();
+
+    private long durationNanos;
+
+    private Map<String, Object> attributes;
+
+    private String error;
+
+    Span(final Tracer tracer, final Trace trace, final Span parent, final String spanId, final String parentSpanId, final String name) {
+        this.tracer = tracer;
+        this.trace = trace;
+        this.parent = parent;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+    }
+
+    /**
+     * @return the id shared by the spans of the trace, null for the noop span
+     */
+    public String getTraceId() {
+        return this.trace == null ? null : this.trace.traceId;
+    }
+
+    public String getSpanId() {
+        return this.spanId;
+    }
+
+    public String getParentSpanId() {
+        return this.parentSpanId;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isSampled() {
+        return this.trace != null && this.trace.sampled;
+    }
+
+    public long getStartEpochNanos() {
+        return this.startEpochNanos;
+    }
+
+    public long getDurationNanos() {
+        return this.durationNanos;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return this.attributes == null ? Collections.emptyMap() : this.attributes;
+    }
+
+    /**
+     * @return the failure of the operation, null if it succeeded
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    Span getParent() {
+        return this.parent;
+    }
+
+    Trace getTrace() {
+        return this.trace;
+    }
+
+    public Span attribute(final String key, final Object value) {
+        if (this.isSampled()) {
+            if (this.attributes == null) {
+                this.attributes = Maps.newLinkedHashMap();
+            }
+            this.attributes.put(key, value);
+        }
+        return this;
+    }
+
+    public void error(final Throwable error) {
+        this.error = error.getClass().getName() + (error.getMessage() == null ? "" : ": " + error.getMessage());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() {
+        this.durationNanos = System.nanoTime() - this.startNanos;
+        if (this.isSampled()) {
+            this.trace.spans.add(this);
+        }
+        this.tracer.finish(this);
+    }
+
+    List<Span> spans() {
+        return this.trace.spans;
+    }
+
+}
@@ -0,0 +1,24 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * sends the finished traces out of the process, from the export thread of the tracer.
+ * @author massi
+ *
+ */
+public interface SpanExporter {
+
+    /**
+     * @param spans the spans of a trace, the root last
+     */
+    void export(List<Span> spans) throws IOException;
+
+    default void close() throws IOException {
+    }
+
+}
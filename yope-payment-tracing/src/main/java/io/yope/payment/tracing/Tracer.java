@@ -0,0 +1,181 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * starts the spans of the current thread: a trace begins with a request and its operations are the children
+ * of the span current when they start. The decision to sample is taken once per trace, the spans of the other
+ * traces costing a thread local lookup; the sampled traces are exported on a thread of their own, and dropped
+ * when the exporter falls behind.
+ * @author massi
+ *
+ */
+@Slf4j
+public class Tracer implements PublicMetrics, Closeable {
+
+    /**
+     * the W3C trace context: version, trace id, parent span id and flags.
+     */
+    private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+
+    private static final int SAMPLED = 1;
+
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+
+    private final TracingSettings settings;
+
+    private final SpanExporter exporter;
+
+    private final ThreadPoolExecutor export;
+
+    private final AtomicLong sampled = new AtomicLong();
+
+    private final AtomicLong exported = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param exporter null when disabled
+     */
+    public Tracer(final TracingSettings settings, final SpanExporter exporter) {
+        this.settings = settings;
+        this.exporter = settings.isEnabled() ? exporter : null;
+        this.export = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, settings.getQueueSize())),
+                new ThreadFactoryBuilder().setNameFormat("trace-export").setDaemon(true).build(),
+                (task, executor) -> this.dropped.incrementAndGet());
+    }
+
+    /**
+     * starts a trace as the current span, replacing any left by a previous request of the thread.
+     * @param traceparent the trace context of the caller, may be null
+     */
+    public Span startTrace(final String name, final String traceparent) {
+        final Matcher caller = traceparent == null ? null : TRACEPARENT.matcher(traceparent);
+        final Span span;
+        if (caller != null && caller.matches()) {
+            final boolean sampled = this.exporter != null && (Integer.parseInt(caller.group(3), 16) & SAMPLED) != 0;
+            span = new Span(this, new Span.Trace(caller.group(1), sampled), null, id(8), caller.group(2), name);
+        } else {
+            final boolean sampled = this.exporter != null && ThreadLocalRandom.current().nextDouble() < this.settings.getSampleRate();
+            span = new Span(this, new Span.Trace(id(16), sampled), null, id(8), null, name);
+        }
+        if (span.isSampled()) {
+            this.sampled.incrementAndGet();
+        }
+        this.current.set(span);
+        return span;
+    }
+
+    /**
+     * starts a child of the current span; outside a sampled trace the span records nothing.
+     */
+    public Span startSpan(final String name) {
+        final Span parent = this.current.get();
+        if (parent == null || !parent.isSampled()) {
+            return Span.NOOP;
+        }
+        final Span span = new Span(this, parent.getTrace(), parent, id(8), parent.getSpanId(), name);
+        this.current.set(span);
+        return span;
+    }
+
+    /**
+     * @return the current span, null outside a trace
+     */
+    public Span current() {
+        return this.current.get();
+    }
+
+    void finish(final Span span) {
+        if (this.current.get() == span) {
+            if (span.getParent() == null) {
+                this.current.remove();
+            } else {
+                this.current.set(span.getParent());
+            }
+        }
+        if (span.getParent() == null && span.isSampled()) {
+            final List<Span> spans = span.spans();
+            this.export.execute(() -> {
+                try {
+                    this.exporter.export(spans);
+                    this.exported.incrementAndGet();
+                } catch (final IOException | RuntimeException e) {
+                    this.dropped.incrementAndGet();
+                    log.warn("trace {} not exported: {}", span.getTraceId(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a random id of the given bytes, in hex
+     */
+    private static String id(final int bytes) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final StringBuilder id = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i += 8) {
+            long value = random.nextLong();
+            while (value == 0) {
+                value = random.nextLong();
+            }
+            final String hex = Long.toHexString(value);
+            for (int pad = hex.length(); pad < 16; pad++) {
+                id.append('0');
+            }
+            id.append(hex);
+        }
+        return id.substring(0, bytes * 2);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<Long>("tracing.traces.sampled", this.sampled.get()),
+                new Metric<Long>("tracing.traces.exported", this.exported.get()),
+                new Metric<Long>("tracing.traces.dropped", this.dropped.get()),
+                new Metric<Long>("tracing.traces.queued", (long) this.export.getQueue().size()));
+    }
+
+    /**
+     * exports the queued traces, waiting a few seconds at most.
+     */
+    @Override
+    public void close() throws IOException {
+        this.export.shutdown();
+        try {
+            this.export.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.exporter != null) {
+            this.exporter.close();
+        }
+    }
+
+}
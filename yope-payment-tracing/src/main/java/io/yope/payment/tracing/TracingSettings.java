@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * the tracing, under tracing.
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class TracingSettings {
+
+    public enum Exporter {
+        /**
+         * a line of OTLP json per trace.
+         */
+        FILE,
+        /**
+         * OTLP json over HTTP, to a collector.
+         */
+        OTLP
+    }
+
+    /**
+     * when disabled, the requests still get a trace id for the logs, but no span is recorded.
+     */
+    private boolean enabled;
+
+    /**
+     * the share of the requests traced, from 0 to 1; a request carrying a traceparent header follows the decision of the caller.
+     */
+    private double sampleRate = 0.01;
+
+    private Exporter exporter = Exporter.FILE;
+
+    private String file = "logs/traces.json";
+
+    private String endpoint = "http://localhost:4318/v1/traces";
+
+    private String serviceName = "yope-payment";
+
+    /**
+     * the traces waiting to be exported; beyond, they are dropped.
+     */
+    private int queueSize = 1000;
+
+}
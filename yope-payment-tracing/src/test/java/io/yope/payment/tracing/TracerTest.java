@@ -0,0 +1,104 @@
+/**
+ *
+ */
+package io.yope.payment.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author massi
+ *
+ */
+public class TracerTest {
+
+    private final BlockingQueue<List<Span>> traces = new LinkedBlockingQueue<>();
+
+    private Tracer tracer;
+
+    @Before
+    public void setUp() {
+        this.tracer = this.tracer(1.0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.tracer.close();
+    }
+
+    @Test
+    public void testChildSpansAreExportedWithTheirRoot() throws InterruptedException {
+        final Span root = this.tracer.startTrace("http POST", null);
+        try (Span child = this.tracer.startSpan("TransactionService.create")) {
+            try (Span grandChild = this.tracer.startSpan("wallet.save")) {
+                assertSame(grandChild, this.tracer.current());
+            }
+            assertSame(child, this.tracer.current());
+        }
+        root.close();
+        assertNull(this.tracer.current());
+
+        final List<Span> spans = this.traces.poll(5, TimeUnit.SECONDS);
+        assertEquals(3, spans.size());
+        assertEquals("wallet.save", spans.get(0).getName());
+        assertEquals(spans.get(1).getSpanId(), spans.get(0).getParentSpanId());
+        assertEquals(root.getSpanId(), spans.get(1).getParentSpanId());
+        assertSame(root, spans.get(2));
+        for (final Span span : spans) {
+            assertEquals(root.getTraceId(), span.getTraceId());
+        }
+    }
+
+    @Test
+    public void testCallerContextIsFollowed() throws InterruptedException {
+        final Span root = this.tracer.startTrace("http GET", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", root.getTraceId());
+        assertEquals("00f067aa0ba902b7", root.getParentSpanId());
+        root.close();
+        assertEquals(1, this.traces.poll(5, TimeUnit.SECONDS).size());
+
+        final Span unsampled = this.tracer.startTrace("http GET", "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00");
+        assertFalse(unsampled.isSampled());
+        unsampled.close();
+    }
+
+    @Test
+    public void testUnsampledTracesRecordNothing() throws IOException {
+        this.tracer.close();
+        this.tracer = this.tracer(0.0);
+        final Span root = this.tracer.startTrace("http GET", null);
+        assertFalse(root.isSampled());
+        final Span child = this.tracer.startSpan("QRHelper.getQRImage");
+        assertSame(Span.NOOP, child);
+        child.close();
+        root.close();
+        assertNull(this.tracer.current());
+        assertTrue(this.traces.isEmpty());
+    }
+
+    @Test
+    public void testSpansOutsideTracesRecordNothing() {
+        assertSame(Span.NOOP, this.tracer.startSpan("wallet.load"));
+    }
+
+    private Tracer tracer(final double sampleRate) {
+        final TracingSettings settings = new TracingSettings();
+        settings.setEnabled(true);
+        settings.setSampleRate(sampleRate);
+        return new Tracer(settings, this.traces::add);
+    }
+
+}
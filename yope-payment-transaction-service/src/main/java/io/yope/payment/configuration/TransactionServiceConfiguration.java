@@ -3,9 +3,16 @@
  */
 package io.yope.payment.configuration;
 
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import io.yope.payment.metrics.LifecycleLatencies;
+import io.yope.payment.metrics.TimerSettings;
+import io.yope.payment.metrics.Timers;
+
 /**
  * @author massi
  *
@@ -14,6 +21,23 @@ import org.springframework.context.annotation.Configuration;
         "io.yope.payment.transaction.services",
         })
 @Configuration
+@EnableConfigurationProperties
 public class TransactionServiceConfiguration {
 
+    @Bean
+    @ConfigurationProperties(prefix = "metrics.timers")
+    public TimerSettings timerSettings() {
+        return new TimerSettings();
+    }
+
+    @Bean
+    public Timers timers(final TimerSettings timerSettings) {
+        return new Timers(timerSettings);
+    }
+
+    @Bean
+    public LifecycleLatencies lifecycleLatencies(final Timers timers) {
+        return new LifecycleLatencies(timers);
+    }
+
 }
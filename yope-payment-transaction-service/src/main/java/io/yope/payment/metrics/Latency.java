@@ -0,0 +1,36 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * the distribution of the durations of a timer, the times in milliseconds.
+ * @author massi
+ *
+ */
+@Builder
+@Getter
+@AllArgsConstructor
+public class Latency {
+
+    private long count;
+
+    private long failures;
+
+    private double mean;
+
+    private double max;
+
+    private double p50;
+
+    private double p95;
+
+    private double p99;
+
+    private double p999;
+
+}
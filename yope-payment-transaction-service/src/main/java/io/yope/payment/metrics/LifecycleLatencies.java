@@ -0,0 +1,99 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Type;
+
+/**
+ * how long the transactions of each type take to be accepted and completed, from their dates, on the timers
+ * named lifecycle.[type].[stage].
+ * @author massi
+ *
+ */
+public class LifecycleLatencies {
+
+    public enum Stage {
+        /**
+         * from creation to acceptance.
+         */
+        ACCEPT,
+        /**
+         * from acceptance to completion, i.e. waiting for the confirmations.
+         */
+        CONFIRM,
+        /**
+         * from creation to completion.
+         */
+        COMPLETE
+    }
+
+    private static final String PREFIX = "lifecycle.";
+
+    private final Timers timers;
+
+    private final Map<Type, Map<Stage, String>> names = new EnumMap<>(Type.class);
+
+    public LifecycleLatencies(final Timers timers) {
+        this.timers = timers;
+        for (final Type type : Type.values()) {
+            final Map<Stage, String> names = new EnumMap<>(Stage.class);
+            for (final Stage stage : Stage.values()) {
+                names.put(stage, PREFIX + type.name().toLowerCase() + "." + stage.name().toLowerCase());
+            }
+            this.names.put(type, names);
+        }
+    }
+
+    /**
+     * records the stages a transaction just went through, by its status; the others are ignored.
+     */
+    public void record(final Transaction transaction) {
+        if (transaction.getType() == null || transaction.getStatus() == null) {
+            return;
+        }
+        switch (transaction.getStatus()) {
+            case ACCEPTED:
+                this.record(transaction.getType(), Stage.ACCEPT, transaction.getCreationDate(), transaction.getAcceptedDate());
+                break;
+            case COMPLETED:
+                this.record(transaction.getType(), Stage.CONFIRM, transaction.getAcceptedDate(), transaction.getCompletedDate());
+                this.record(transaction.getType(), Stage.COMPLETE, transaction.getCreationDate(), transaction.getCompletedDate());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void record(final Type type, final Stage stage, final Long from, final Long to) {
+        if (from != null && to != null) {
+            this.timers.timer(this.names.get(type).get(stage)).record(to - from, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the latencies by type and stage, those without transactions left out
+     */
+    public Map<Type, Map<Stage, Latency>> getLatencies() {
+        final Map<Type, Map<Stage, Latency>> latencies = new EnumMap<>(Type.class);
+        this.names.forEach((type, names) -> {
+            final Map<Stage, Latency> stages = new EnumMap<>(Stage.class);
+            names.forEach((stage, name) -> {
+                final Timer timer = this.timers.get(name);
+                if (timer != null) {
+                    stages.put(stage, timer.getLatency());
+                }
+            });
+            if (!stages.isEmpty()) {
+                latencies.put(type, stages);
+            }
+        });
+        return latencies;
+    }
+
+}
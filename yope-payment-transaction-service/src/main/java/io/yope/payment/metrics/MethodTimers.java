@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.util.ClassUtils;
+
+import com.google.common.collect.Maps;
+
+import io.yope.payment.aop.MethodAdvisingPostProcessor;
+
+/**
+ * times the public methods of the beans of the registered types, as [name].[method].
+ * Overloaded methods share their timer.
+ * @author massi
+ *
+ */
+public class MethodTimers extends MethodAdvisingPostProcessor {
+
+    private static final long serialVersionUID = -3150532413806528461L;
+
+    private final Map<Class<?>, String> names = Maps.newHashMap();
+
+    private volatile Timers timers;
+
+    /**
+     * times the methods of a type.
+     * @param methods the names of the timed methods; all the public ones if none
+     */
+    public MethodTimers time(final Class<?> type, final String name, final String... methods) {
+        this.names.put(type, name);
+        this.advise(type, methods);
+        return this;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.aop.MethodAdvisingPostProcessor#interceptor(java.lang.Class, java.lang.Class)
+     */
+    @Override
+    protected MethodInterceptor interceptor(final Class<?> type, final Class<?> named) {
+        return new TimerInterceptor(this.names.get(type));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see io.yope.payment.aop.MethodAdvisingPostProcessor#matches(java.lang.Class, java.lang.reflect.Method)
+     */
+    @Override
+    protected boolean matches(final Class<?> type, final Method method) {
+        return ClassUtils.hasMethod(type, method.getName(), method.getParameterTypes());
+    }
+
+    private Timers timers() {
+        if (this.timers == null) {
+            this.timers = this.getBeanFactory().getBean(Timers.class);
+        }
+        return this.timers;
+    }
+
+    /**
+     * the timers of the methods of a bean.
+     */
+    private class TimerInterceptor implements MethodInterceptor {
+
+        private final String name;
+
+        private final Map<Method, Timer> resolved = new ConcurrentHashMap<>();
+
+        TimerInterceptor(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable {
+            final Timer timer = this.resolved.computeIfAbsent(invocation.getMethod(),
+                    method -> MethodTimers.this.timers().timer(this.name + "." + method.getName()));
+            final long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                final Object result = invocation.proceed();
+                failed = false;
+                return result;
+            } finally {
+                timer.record(start, failed);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.google.common.collect.Lists;
+
+/**
+ * the calls of an operation: counted since the start, their durations kept as a histogram over the last window.
+ * Callers record without locking but for the call that finds the window over and rolls it, so that the
+ * percentiles do not depend on how often the metrics endpoint reads them.
+ * @author massi
+ *
+ */
+public class Timer {
+
+    private static final int DIGITS = 2;
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Recorder recorder = new Recorder(DIGITS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final long windowNanos;
+
+    /**
+     * what was recorded in the current window, and in the one before.
+     */
+    private Histogram current = new Histogram(DIGITS);
+
+    private Histogram previous = new Histogram(DIGITS);
+
+    private Histogram recycled;
+
+    private volatile long rolled = System.nanoTime();
+
+    /**
+     * @param windowSeconds the percentiles cover between one and two windows
+     */
+    public Timer(final long windowSeconds) {
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+    }
+
+    /**
+     * records a call started at startNanos, from System.nanoTime().
+     */
+    public void record(final long startNanos, final boolean failed) {
+        final long now = System.nanoTime();
+        this.record(now, now - startNanos, failed);
+    }
+
+    /**
+     * records a duration measured otherwise, e.g. between the dates of a transaction.
+     */
+    public void record(final long duration, final TimeUnit unit) {
+        this.record(System.nanoTime(), unit.toNanos(duration), false);
+    }
+
+    private void record(final long now, final long nanos, final boolean failed) {
+        if (now - this.rolled > this.windowNanos) {
+            this.roll(now);
+        }
+        this.recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        this.count.incrementAndGet();
+        if (failed) {
+            this.failures.incrementAndGet();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * @return count and failures since the start, mean, max and percentiles over the window, in milliseconds
+     */
+    public synchronized Latency getLatency() {
+        this.roll(System.nanoTime());
+        final Histogram window = this.previous.copy();
+        window.add(this.current);
+        return Latency.builder()
+                .count(this.count.get())
+                .failures(this.failures.get())
+                .mean(window.getMean() / MICROS_PER_MILLI)
+                .max(window.getMaxValue() / MICROS_PER_MILLI)
+                .p50(window.getValueAtPercentile(50) / MICROS_PER_MILLI)
+                .p95(window.getValueAtPercentile(95) / MICROS_PER_MILLI)
+                .p99(window.getValueAtPercentile(99) / MICROS_PER_MILLI)
+                .p999(window.getValueAtPercentile(99.9) / MICROS_PER_MILLI)
+                .build();
+    }
+
+    /**
+     * @return the latency, under the name
+     */
+    public List<Metric<?>> metrics(final String name) {
+        final Latency latency = this.getLatency();
+        final List<Metric<?>> metrics = Lists.newArrayList();
+        metrics.add(new Metric<Long>(name + ".count", latency.getCount()));
+        metrics.add(new Metric<Long>(name + ".failures", latency.getFailures()));
+        metrics.add(new Metric<Double>(name + ".mean", latency.getMean()));
+        metrics.add(new Metric<Double>(name + ".max", latency.getMax()));
+        metrics.add(new Metric<Double>(name + ".p50", latency.getP50()));
+        metrics.add(new Metric<Double>(name + ".p95", latency.getP95()));
+        metrics.add(new Metric<Double>(name + ".p99", latency.getP99()));
+        metrics.add(new Metric<Double>(name + ".p999", latency.getP999()));
+        return metrics;
+    }
+
+    /**
+     * moves what was recorded to the current window, starting a new one if it is over;
+     * a window without calls leaves nothing for the one before.
+     */
+    private synchronized void roll(final long now) {
+        this.recycled = this.recorder.getIntervalHistogram(this.recycled);
+        this.current.add(this.recycled);
+        final long windows = (now - this.rolled) / this.windowNanos;
+        if (windows > 0) {
+            final Histogram next = this.previous;
+            next.reset();
+            if (windows > 1) {
+                this.current.reset();
+            }
+            this.previous = this.current;
+            this.current = next;
+            this.rolled = now;
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * the timers, under metrics.timers.
+ * @author massi
+ *
+ */
+@Getter
+@Setter
+public class TimerSettings {
+
+    /**
+     * times the calls to the services, the db services and the blockchain; the transitions are always timed.
+     */
+    private boolean enabled = true;
+
+    /**
+     * the percentiles cover the last one to two windows.
+     */
+    private long windowSeconds = 60;
+
+}
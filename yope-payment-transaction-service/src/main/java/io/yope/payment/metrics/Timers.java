@@ -0,0 +1,57 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.google.common.collect.Lists;
+
+/**
+ * the timers of the application, created on first use and exposed on the metrics endpoint as
+ * timer.[name].count, .failures, .mean, .max, .p50, .p95, .p99 and .p999, the times in milliseconds.
+ * The names are dotted, the tags being parts of them, e.g. timer.transaction.transition.PENDING.ACCEPTED.
+ * @author massi
+ *
+ */
+public class Timers implements PublicMetrics {
+
+    private static final String PREFIX = "timer.";
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final TimerSettings settings;
+
+    public Timers(final TimerSettings settings) {
+        this.settings = settings;
+    }
+
+    public Timer timer(final String name) {
+        return this.timers.computeIfAbsent(name, n -> new Timer(this.settings.getWindowSeconds()));
+    }
+
+    /**
+     * @return the timer, null if never used
+     */
+    public Timer get(final String name) {
+        return this.timers.get(name);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.boot.actuate.endpoint.PublicMetrics#metrics()
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        final List<Metric<?>> metrics = Lists.newArrayList();
+        this.timers.forEach((name, timer) -> metrics.addAll(timer.metrics(PREFIX + name)));
+        return metrics;
+    }
+
+}
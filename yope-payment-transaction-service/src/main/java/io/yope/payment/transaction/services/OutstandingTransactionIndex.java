@@ -0,0 +1,167 @@
+/**
+ *
+ */
+package io.yope.payment.transaction.services;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * the transactions the blockchain events can refer to, so that the events are matched without the database:
+ * the PENDING ones by receiverHash, the address the deposit is paid to,
+ * and the ACCEPTED ones by transactionHash, whose confirmations are awaited.
+ * The index follows the writes of {@link TransactionStateService}; it is loaded at startup and
+ * reloaded periodically, picking up the transactions written by other instances and dropping the ones
+ * that left those statuses elsewhere. An entry is only a hint, the transaction is loaded by id and checked.
+ * @author massi
+ *
+ */
+@Slf4j
+@Component
+public class OutstandingTransactionIndex {
+
+    private static final int MINUTE = 60 * 1000;
+
+    private static final int RELOAD_DELAY = 5 * MINUTE;
+
+    /**
+     * getTransaction returns the transactions older than a delay; a negative one covers them all.
+     */
+    private static final int ALL = Integer.MIN_VALUE;
+
+    /**
+     * the hashes of an indexed transaction, and when they were indexed.
+     */
+    private static class Entry {
+        private final String receiverHash;
+        private final String transactionHash;
+        private final long indexed = System.currentTimeMillis();
+
+        Entry(final String receiverHash, final String transactionHash) {
+            this.receiverHash = receiverHash;
+            this.transactionHash = transactionHash;
+        }
+    }
+
+    private final TransactionDbService transactionService;
+
+    private final Map<String, Long> receivers = new ConcurrentHashMap<>();
+
+    /**
+     * withdrawals sent together share the blockchain transaction.
+     */
+    private final Map<String, Set<Long>> transactions = new ConcurrentHashMap<>();
+
+    private final Map<Long, Entry> entries = Maps.newHashMap();
+
+    @Autowired
+    public OutstandingTransactionIndex(final TransactionDbService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelay = RELOAD_DELAY, fixedDelay = RELOAD_DELAY)
+    public void reload() {
+        final long started = System.currentTimeMillis();
+        final Map<Long, Transaction> outstanding = Maps.newHashMap();
+        try {
+            this.transactionService.getTransaction(ALL, Status.PENDING).forEach(t -> outstanding.put(t.getId(), t));
+            this.transactionService.getTransaction(ALL, Status.ACCEPTED).forEach(t -> outstanding.put(t.getId(), t));
+        } catch (final RuntimeException e) {
+            log.error("outstanding transactions not loaded", e);
+            return;
+        }
+        synchronized (this) {
+            // the entries written while loading are newer than the database read, the others take the loaded state
+            for (final Long id : Sets.newHashSet(this.entries.keySet())) {
+                if (!outstanding.containsKey(id) && this.entries.get(id).indexed < started) {
+                    this.remove(id);
+                }
+            }
+            outstanding.values().stream().filter(t -> {
+                final Entry entry = this.entries.get(t.getId());
+                return entry == null || entry.indexed < started;
+            }).forEach(this::update);
+        }
+        log.info("{} receiver and {} transaction hashes outstanding", this.receivers.size(), this.transactions.size());
+    }
+
+    /**
+     * records the new state of a transaction.
+     */
+    public synchronized void update(final Transaction transaction) {
+        this.remove(transaction.getId());
+        this.put(transaction);
+    }
+
+    /**
+     * @return the id of the PENDING transaction paid to the address, null if none
+     */
+    public Long getByReceiverHash(final String receiverHash) {
+        return this.receivers.get(receiverHash);
+    }
+
+    /**
+     * @return the ids of the ACCEPTED transactions sent in the blockchain transaction
+     */
+    public Set<Long> getByTransactionHash(final String transactionHash) {
+        return this.transactions.getOrDefault(transactionHash, Collections.emptySet());
+    }
+
+    /**
+     * @return the blockchain transactions of the ACCEPTED transactions
+     */
+    public Set<String> getTransactionHashes() {
+        return ImmutableSet.copyOf(this.transactions.keySet());
+    }
+
+    private void put(final Transaction transaction) {
+        final String receiverHash = Status.PENDING.equals(transaction.getStatus()) ? transaction.getReceiverHash() : null;
+        final String transactionHash = Status.ACCEPTED.equals(transaction.getStatus()) ? transaction.getTransactionHash() : null;
+        if (receiverHash == null && transactionHash == null) {
+            return;
+        }
+        this.entries.put(transaction.getId(), new Entry(receiverHash, transactionHash));
+        if (receiverHash != null) {
+            this.receivers.put(receiverHash, transaction.getId());
+        }
+        if (transactionHash != null) {
+            this.transactions.merge(transactionHash, ImmutableSet.of(transaction.getId()),
+                    (ids, added) -> ImmutableSet.<Long>builder().addAll(ids).addAll(added).build());
+        }
+    }
+
+    private void remove(final Long id) {
+        final Entry entry = this.entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        if (entry.receiverHash != null) {
+            this.receivers.remove(entry.receiverHash, id);
+        }
+        if (entry.transactionHash != null) {
+            this.transactions.computeIfPresent(entry.transactionHash, (hash, ids) -> {
+                final Set<Long> left = ImmutableSet.copyOf(Sets.difference(ids, Collections.singleton(id)));
+                return left.isEmpty() ? null : left;
+            });
+        }
+    }
+
+}
@@ -3,17 +3,29 @@
  */
 package io.yope.payment.transaction.services;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import io.yope.payment.db.services.TransactionDbService;
-import io.yope.payment.db.services.WalletDbService;
 import io.yope.payment.domain.Transaction;
 import io.yope.payment.domain.Transaction.Status;
 import io.yope.payment.domain.Wallet;
 import io.yope.payment.exceptions.IllegalTransactionStateException;
 import io.yope.payment.exceptions.InsufficientFundsException;
 import io.yope.payment.exceptions.ObjectNotFoundException;
+import io.yope.payment.metrics.LifecycleLatencies;
+import io.yope.payment.metrics.Timer;
+import io.yope.payment.metrics.Timers;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -24,22 +36,90 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 public class TransactionStateService {
 
-    @Autowired
-    private TransactionDbService transactionService;
+    private final TransactionDbService transactionService;
+
+    private final OutstandingTransactionIndex index;
+
+    private final Timers timers;
+
+    private final LifecycleLatencies latencies;
 
     @Autowired
-    private WalletDbService walletService;
+    public TransactionStateService(final TransactionDbService transactionService, final OutstandingTransactionIndex index,
+            final Timers timers, final LifecycleLatencies latencies) {
+        this.transactionService = transactionService;
+        this.index = index;
+        this.timers = timers;
+        this.latencies = latencies;
+    }
+
+    public Transaction create(final Transaction transaction) throws ObjectNotFoundException {
+        final Transaction created = this.transactionService.create(transaction);
+        this.index.update(created);
+        return created;
+    }
 
     public Transaction getByTransactionHash(final String hash) {
         return this.transactionService.getByTransactionHash(hash);
     }
 
+    public List<Transaction> getAllByTransactionHash(final String hash) {
+        return this.transactionService.getAllByTransactionHash(hash);
+    }
+
     public Transaction getByReceiverHash(final String hash) {
         return this.transactionService.getByReceiverHash(hash);
     }
 
+    /**
+     * @return the PENDING transaction paid to the address, looked up in the index
+     */
+    public Transaction getPendingByReceiverHash(final String hash) {
+        final Long id = this.index.getByReceiverHash(hash);
+        if (id == null) {
+            return null;
+        }
+        final Transaction transaction = this.outstanding(id);
+        return transaction != null && Status.PENDING.equals(transaction.getStatus()) && hash.equals(transaction.getReceiverHash()) ? transaction : null;
+    }
+
+    /**
+     * @return true if ACCEPTED transactions wait for the confirmations of the blockchain transaction
+     */
+    public boolean isAwaitingConfirmation(final String hash) {
+        return !this.index.getByTransactionHash(hash).isEmpty();
+    }
+
+    /**
+     * @return the blockchain transactions whose confirmations ACCEPTED transactions wait for
+     */
+    public Set<String> getAwaitingConfirmation() {
+        return this.index.getTransactionHashes();
+    }
+
+    /**
+     * @return the ACCEPTED transactions sent in the blockchain transaction, looked up in the index
+     */
+    public List<Transaction> getAcceptedByTransactionHash(final String hash) {
+        return this.index.getByTransactionHash(hash).stream().map(this::outstanding)
+                .filter(t -> t != null && Status.ACCEPTED.equals(t.getStatus()) && hash.equals(t.getTransactionHash()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * loads an indexed transaction, correcting the index if it moved on meanwhile;
+     * the callers move it on, so it is read from the primary.
+     */
+    private Transaction outstanding(final Long id) {
+        final Transaction transaction = this.transactionService.getForUpdate(id);
+        if (transaction != null) {
+            this.index.update(transaction);
+        }
+        return transaction;
+    }
+
     public Transaction save(final Long id, final Transaction transaction) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException{
-        final Transaction current = this.transactionService.get(id);
+        final Transaction current = this.transactionService.getForUpdate(id);
         if (current == null) {
             throw new ObjectNotFoundException(id, Transaction.class);
         }
@@ -49,15 +129,79 @@ public class TransactionStateService {
                 .destination(transaction.getDestination())
                 .amount(transaction.getAmount())
                 .fees(transaction.getFees())
-                .creationDate(transaction.getCreationDate())
-                .acceptedDate(transaction.getAcceptedDate())
-                .completedDate(transaction.getCompletedDate())
-                .failedDate(transaction.getFailedDate())
-                .deniedDate(transaction.getDeniedDate())
+                .creationDate(current.getCreationDate())
+                .acceptedDate(current.getAcceptedDate())
+                .completedDate(current.getCompletedDate())
+                .failedDate(current.getFailedDate())
+                .deniedDate(current.getDeniedDate())
                 .transactionHash(transaction.getTransactionHash())
                 .type(transaction.getType())
                 .build();
-        return this.doSave(current, next);
+        if (current.getStatus().equals(next.getStatus())) {
+            return this.doSave(current, next);
+        }
+        // the transitions are timed by statuses, the rejected ones as failures
+        final Timer timer = this.timers.timer("transaction.transition." + current.getStatus() + "." + next.getStatus());
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Transaction saved = this.doSave(current, next);
+            failed = false;
+            this.latencies.record(saved);
+            return saved;
+        } finally {
+            timer.record(start, failed);
+        }
+    }
+
+    /**
+     * completes ACCEPTED transactions together: the wallets, their available balances moved by all of them,
+     * and the transactions are written in one batch. A transaction whose source has not the funds is left out
+     * and stays ACCEPTED, as are the ones no longer ACCEPTED.
+     * @param accepted the transactions, as loaded from the primary
+     * @return the completed transactions
+     * @throws ObjectNotFoundException if a wallet or a transaction is not found, none being completed
+     */
+    public List<Transaction> complete(final List<Transaction> accepted) throws ObjectNotFoundException {
+        final Map<Long, Wallet> touched = Maps.newLinkedHashMap();
+        final List<Transaction> completing = Lists.newArrayList();
+        final Long now = System.currentTimeMillis();
+        for (final Transaction transaction : accepted) {
+            if (!Status.ACCEPTED.equals(transaction.getStatus())) {
+                log.warn("transaction {} is {}, not completed", transaction.getId(), transaction.getStatus());
+                continue;
+            }
+            final Wallet source = touched.getOrDefault(transaction.getSource().getId(), transaction.getSource());
+            if (source.getAvailableBalance().compareTo(transaction.getAmount()) < 0) {
+                log.error("not enough funds to complete transaction {}", transaction.getId());
+                continue;
+            }
+            touched.put(source.getId(), source.toBuilder()
+                    .availableBalance(source.getAvailableBalance().subtract(transaction.getAmount()))
+                    .build());
+            final Wallet destination = touched.getOrDefault(transaction.getDestination().getId(), transaction.getDestination());
+            touched.put(destination.getId(), destination.toBuilder()
+                    .availableBalance(destination.getAvailableBalance().add(transaction.getAmount()))
+                    .build());
+            completing.add(transaction.toBuilder().status(Status.COMPLETED).completedDate(now).build());
+        }
+        if (completing.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Timer timer = this.timers.timer("transaction.transition." + Status.ACCEPTED + "." + Status.COMPLETED);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final List<Transaction> completed = this.transactionService.applyBatch(touched.values(), completing);
+            failed = false;
+            completed.forEach(t -> {
+                this.index.update(t);
+                this.latencies.record(t);
+            });
+            return completed;
+        } finally {
+            timer.record(start, failed);
+        }
     }
 
     /**
@@ -79,6 +223,7 @@ public class TransactionStateService {
      */
     private Transaction doSave(final Transaction current, final Transaction next) throws ObjectNotFoundException, InsufficientFundsException, IllegalTransactionStateException {
         final Transaction.Builder transaction = next.toBuilder();
+        List<Wallet> wallets = Collections.emptyList();
         final Long now = System.currentTimeMillis();
         if (!current.getStatus().equals(next.getStatus())) {
             this.checkStatus(current.getStatus(), next.getStatus());
@@ -86,7 +231,7 @@ public class TransactionStateService {
                 case PENDING:
                     if (Status.ACCEPTED.equals(next.getStatus())) {
                         transaction.acceptedDate(now);
-                        this.updateBalance(current);
+                        wallets = this.updateBalance(current);
                     } else if (Status.DENIED.equals(next.getStatus()) ||
                             Status.FAILED.equals(next.getStatus()) ||
                             Status.EXPIRED.equals(next.getStatus())) {
@@ -96,10 +241,10 @@ public class TransactionStateService {
                 case ACCEPTED:
                     if (Status.COMPLETED.equals(next.getStatus())) {
                         transaction.completedDate(now);
-                        this.updateAvailableBalance(current);
+                        wallets = this.updateAvailableBalance(current);
                     } else if (Status.FAILED.equals(next.getStatus()) || Status.EXPIRED.equals(next.getStatus())) {
                         transaction.failedDate(now).expiredDate(now);
-                        this.restoreBalance(current);
+                        wallets = this.restoreBalance(current);
                     }
                     break;
                 default:
@@ -107,7 +252,10 @@ public class TransactionStateService {
             }
         }
         transaction.amount(current.getAmount()).id(current.getId()).type(current.getType()).source(current.getSource()).destination(current.getDestination());
-        return this.transactionService.save(current.getId(), transaction.build());
+        // wallets and transaction are written together, in a single database transaction
+        final Transaction saved = this.transactionService.applyBatch(wallets, Collections.singletonList(transaction.build())).get(0);
+        this.index.update(saved);
+        return saved;
 
     }
 
@@ -147,57 +295,63 @@ public class TransactionStateService {
         throw new IllegalTransactionStateException().from(current).to(next);
     }
 
-    private void updateBalance(final Transaction transaction)
-            throws ObjectNotFoundException, InsufficientFundsException {
+    /**
+     * @return the source and destination wallets with their new balances
+     */
+    private List<Wallet> updateBalance(final Transaction transaction) throws InsufficientFundsException {
         final Wallet source = transaction.getSource();
         if (source.getAvailableBalance().floatValue() < transaction.getAmount().floatValue()) {
             throw new InsufficientFundsException("not enough funds to accept transaction '"+transaction+"'");
         }
         final Wallet destination = transaction.getDestination();
         log.info("** balance from {}:{} to {}:{} -> amount {}", source.getName(), source.getBalance(), destination.getName(), destination.getBalance(), transaction.getAmount());
-        final Wallet nextSource = this.walletService.save(source.getId(), source.toBuilder()
+        final Wallet nextSource = source.toBuilder()
                 .balance(source.getBalance().subtract(transaction.getAmount()))
-                .build());
-        final Wallet nextDestination = this.walletService.save(destination.getId(), destination.toBuilder()
+                .build();
+        final Wallet nextDestination = destination.toBuilder()
                 .balance(destination.getBalance().add(transaction.getAmount()))
-                .build());
+                .build();
         log.info("** new balance  {}:{}  {}:{} ", nextSource.getName(), nextSource.getBalance(), nextDestination.getName(), nextDestination.getBalance());
+        return Arrays.asList(nextSource, nextDestination);
     }
 
-    private void updateAvailableBalance(final Transaction transaction)
-            throws ObjectNotFoundException, InsufficientFundsException {
+    /**
+     * @return the source and destination wallets with their new balances
+     */
+    private List<Wallet> updateAvailableBalance(final Transaction transaction) throws InsufficientFundsException {
         final Wallet source = transaction.getSource();
         if (source.getAvailableBalance().floatValue() < transaction.getAmount().floatValue()) {
             throw new InsufficientFundsException("not enough funds to complete transaction '"+transaction+"'");
         }
         final Wallet destination = transaction.getDestination();
         log.info("** Available Balance from {}:{} to {}:{} -> amount {}", source.getName(), source.getBalance(), destination.getName(), destination.getBalance(), transaction.getAmount());
-        final Wallet nextSource = this.walletService.save(source.getId(), source.toBuilder()
+        final Wallet nextSource = source.toBuilder()
                 .availableBalance(source.getAvailableBalance().subtract(transaction.getAmount()))
-                .build());
-        final Wallet nextDestination = this.walletService.save(destination.getId(), destination.toBuilder()
+                .build();
+        final Wallet nextDestination = destination.toBuilder()
                 .availableBalance(destination.getAvailableBalance().add(transaction.getAmount()))
-                .build());
+                .build();
         log.info("** new Available Balance  {}:{}  {}:{} ", nextSource.getName(), nextSource.getBalance(), nextDestination.getName(), nextDestination.getBalance());
+        return Arrays.asList(nextSource, nextDestination);
     }
 
-    private void restoreBalance(final Transaction transaction)
-            throws ObjectNotFoundException, InsufficientFundsException {
+    /**
+     * @return the source and destination wallets with their new balances
+     */
+    private List<Wallet> restoreBalance(final Transaction transaction) throws InsufficientFundsException {
         final Wallet source = transaction.getSource();
         final Wallet destination = transaction.getDestination();
         if (destination.getBalance().compareTo(transaction.getAmount()) < 0) {
             throw new InsufficientFundsException("not enough funds to restore transaction '"+transaction+"'");
         }
         log.info("-- restore balance from {}:{} to {}:{} -> amount {}", source.getName(), source.getBalance(), destination.getName(), destination.getBalance(), transaction.getAmount());
-        final Wallet nextSource = this.walletService.save(source.getId(), source.toBuilder()
+        final Wallet nextSource = source.toBuilder()
                 .balance(source.getBalance().add(transaction.getAmount()))
-                .build());
-        final Wallet nextDestination = this.walletService.save(destination.getId(), destination.toBuilder()
+                .build();
+        final Wallet nextDestination = destination.toBuilder()
                 .balance(destination.getBalance().subtract(transaction.getAmount()))
-                .build());
+                .build();
         log.info("-- new balance  {}:{}  {}:{} ", nextSource.getName(), nextSource.getBalance(), nextDestination.getName(), nextDestination.getBalance());
+        return Arrays.asList(nextSource, nextDestination);
     }
-
-
-
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.domain.Transaction.Type;
+import io.yope.payment.metrics.LifecycleLatencies.Stage;
+
+/**
+ * @author massi
+ *
+ */
+public class LifecycleLatenciesTest {
+
+    private final LifecycleLatencies latencies = new LifecycleLatencies(new Timers(new TimerSettings()));
+
+    @Test
+    public void testStagesAreRecordedByType() {
+        this.latencies.record(transaction(Type.DEPOSIT, Status.ACCEPTED, 1000L, 3000L, null));
+        this.latencies.record(transaction(Type.DEPOSIT, Status.COMPLETED, 1000L, 3000L, 63000L));
+        this.latencies.record(transaction(Type.TRANSFER, Status.ACCEPTED, 1000L, 1500L, null));
+
+        final Map<Type, Map<Stage, Latency>> latencies = this.latencies.getLatencies();
+        assertEquals(2000.0, latencies.get(Type.DEPOSIT).get(Stage.ACCEPT).getP50(), 20.0);
+        assertEquals(60000.0, latencies.get(Type.DEPOSIT).get(Stage.CONFIRM).getP50(), 600.0);
+        assertEquals(62000.0, latencies.get(Type.DEPOSIT).get(Stage.COMPLETE).getP99(), 620.0);
+        assertEquals(1L, latencies.get(Type.TRANSFER).get(Stage.ACCEPT).getCount());
+        assertFalse(latencies.get(Type.TRANSFER).containsKey(Stage.COMPLETE));
+        assertFalse(latencies.containsKey(Type.WITHDRAW));
+    }
+
+    @Test
+    public void testReadsKeepWhatWasRecorded() {
+        this.latencies.record(transaction(Type.WITHDRAW, Status.ACCEPTED, 1000L, 2000L, null));
+        this.latencies.getLatencies();
+        this.latencies.record(transaction(Type.WITHDRAW, Status.ACCEPTED, 1000L, 4000L, null));
+        assertEquals(2L, this.latencies.getLatencies().get(Type.WITHDRAW).get(Stage.ACCEPT).getCount());
+    }
+
+    @Test
+    public void testOtherStatusesAreIgnored() {
+        this.latencies.record(transaction(Type.DEPOSIT, Status.EXPIRED, 1000L, null, null));
+        this.latencies.record(transaction(Type.DEPOSIT, Status.ACCEPTED, null, 2000L, null));
+        assertTrue(this.latencies.getLatencies().isEmpty());
+    }
+
+    private static Transaction transaction(final Type type, final Status status, final Long created, final Long accepted, final Long completed) {
+        return Transaction.builder().type(type).status(status).creationDate(created).acceptedDate(accepted).completedDate(completed).build();
+    }
+
+}
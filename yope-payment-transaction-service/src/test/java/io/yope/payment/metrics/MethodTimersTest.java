@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author massi
+ *
+ */
+public class MethodTimersTest {
+
+    public interface Ledger {
+        String post(String entry);
+        String fail();
+    }
+
+    public static class SimpleLedger implements Ledger {
+        @Override
+        public String post(final String entry) {
+            return entry;
+        }
+        @Override
+        public String fail() {
+            throw new IllegalStateException();
+        }
+    }
+
+    public static class AuditLedger extends SimpleLedger {
+    }
+
+    public static class Printer {
+        private final String prefix;
+        public Printer(final String prefix) {
+            this.prefix = prefix;
+        }
+        public String print(final String text) {
+            return this.prefix + text;
+        }
+        public String preview(final String text) {
+            return this.print(text);
+        }
+    }
+
+    @Configuration
+    static class Timed {
+        @Bean
+        public static MethodTimers methodTimers() {
+            return new MethodTimers().time(AuditLedger.class, "audit").time(Ledger.class, "ledger").time(Printer.class, "printer", "print");
+        }
+        @Bean
+        public Timers timers() {
+            return new Timers(new TimerSettings());
+        }
+        @Bean
+        public Ledger ledger() {
+            return new SimpleLedger();
+        }
+        @Bean
+        public Ledger auditLedger() {
+            return new AuditLedger();
+        }
+        @Bean
+        public Printer printer() {
+            return new Printer("> ");
+        }
+    }
+
+    private AnnotationConfigApplicationContext context;
+
+    @Before
+    public void setUp() {
+        this.context = new AnnotationConfigApplicationContext(Timed.class);
+    }
+
+    @After
+    public void tearDown() {
+        this.context.close();
+    }
+
+    @Test
+    public void testInterfaceMethodsAreTimed() {
+        final Ledger ledger = this.context.getBean("ledger", Ledger.class);
+        assertEquals("a", ledger.post("a"));
+        assertEquals("b", ledger.post("b"));
+        try {
+            ledger.fail();
+            fail();
+        } catch (final IllegalStateException e) {
+            // counted as failure
+        }
+        final Map<String, Number> metrics = this.metrics();
+        assertEquals(2L, metrics.get("timer.ledger.post.count"));
+        assertEquals(0L, metrics.get("timer.ledger.post.failures"));
+        assertEquals(1L, metrics.get("timer.ledger.fail.failures"));
+        assertTrue(metrics.containsKey("timer.ledger.post.p99"));
+    }
+
+    @Test
+    public void testImplementationsOfAMethodHaveTheirOwnTimer() {
+        this.context.getBean("ledger", Ledger.class).post("a");
+        this.context.getBean("auditLedger", Ledger.class).post("b");
+        this.context.getBean("auditLedger", Ledger.class).post("c");
+        final Map<String, Number> metrics = this.metrics();
+        assertEquals(1L, metrics.get("timer.ledger.post.count"));
+        assertEquals(2L, metrics.get("timer.audit.post.count"));
+    }
+
+    @Test
+    public void testOnlyListedMethodsOfClassesAreTimed() {
+        final Printer printer = this.context.getBean(Printer.class);
+        assertEquals("> x", printer.print("x"));
+        assertEquals("> y", printer.preview("y"));
+        final Map<String, Number> metrics = this.metrics();
+        assertEquals(1L, metrics.get("timer.printer.print.count"));
+        assertFalse(metrics.containsKey("timer.printer.preview.count"));
+    }
+
+    private Map<String, Number> metrics() {
+        return this.context.getBean(Timers.class).metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ *
+ */
+package io.yope.payment.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * @author massi
+ *
+ */
+public class TimerTest {
+
+    @Test
+    public void testWindowRollsWithoutBeingRead() throws Exception {
+        final Timer timer = new Timer(1);
+        // a slow call, then two windows later a fast one, the metrics never being read in between
+        timer.record(System.nanoTime() - TimeUnit.SECONDS.toNanos(10), false);
+        Thread.sleep(2100);
+        timer.record(System.nanoTime(), true);
+
+        final Map<String, Number> metrics = timer.metrics("call").stream().collect(Collectors.toMap(Metric::getName, Metric::getValue));
+        assertEquals(2L, metrics.get("call.count"));
+        assertEquals(1L, metrics.get("call.failures"));
+        assertTrue(metrics.get("call.max").doubleValue() < 1000);
+    }
+
+}
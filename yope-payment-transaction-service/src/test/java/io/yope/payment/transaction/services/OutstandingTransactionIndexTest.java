@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package io.yope.payment.transaction.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+
+/**
+ * @author massi
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OutstandingTransactionIndexTest {
+
+    @Mock
+    private TransactionDbService transactionService;
+
+    @InjectMocks
+    private OutstandingTransactionIndex index;
+
+    @Test
+    public void testLoadIndexesPendingAndAccepted() {
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenReturn(Arrays.asList(pending(1L, "r1")));
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.ACCEPTED)))
+                .thenReturn(Arrays.asList(accepted(2L, "r2", "tx"), accepted(3L, "r3", "tx")));
+
+        this.index.reload();
+
+        assertEquals(Long.valueOf(1L), this.index.getByReceiverHash("r1"));
+        assertNull(this.index.getByReceiverHash("r2"));
+        assertEquals(2, this.index.getByTransactionHash("tx").size());
+        assertEquals(Collections.singleton("tx"), this.index.getTransactionHashes());
+    }
+
+    @Test
+    public void testWriteDuringTheLoadWinsOverTheStaleRead() {
+        // the load reads the transaction PENDING while it is accepted meanwhile
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenAnswer(invocation -> {
+            this.index.update(accepted(1L, "r1", "tx"));
+            return Arrays.asList(pending(1L, "r1"));
+        });
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.ACCEPTED))).thenReturn(Collections.emptyList());
+
+        this.index.reload();
+
+        assertNull(this.index.getByReceiverHash("r1"));
+        assertEquals(Collections.singleton(1L), this.index.getByTransactionHash("tx"));
+    }
+
+    @Test
+    public void testStaleEntriesAreCorrected() throws Exception {
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenReturn(Arrays.asList(pending(1L, "r1"), pending(2L, "r2")));
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.ACCEPTED))).thenReturn(Collections.emptyList());
+        this.index.reload();
+
+        // accepted on another instance: the transaction loaded by id corrects the entry
+        this.index.update(accepted(1L, "r1", "tx"));
+        assertNull(this.index.getByReceiverHash("r1"));
+        assertTrue(this.index.getByTransactionHash("tx").contains(1L));
+
+        // expired on another instance: the next load, started after the entry was indexed, drops it
+        Thread.sleep(5);
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenReturn(Collections.emptyList());
+        this.index.reload();
+        assertNull(this.index.getByReceiverHash("r2"));
+        assertTrue(this.index.getTransactionHashes().isEmpty());
+    }
+
+    @Test
+    public void testTransactionsMovedOnElsewhereAreReindexed() throws Exception {
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenReturn(Arrays.asList(pending(1L, "r1")));
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.ACCEPTED))).thenReturn(Collections.emptyList());
+        this.index.reload();
+
+        // accepted on another instance, without any event here
+        Thread.sleep(5);
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenReturn(Collections.emptyList());
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.ACCEPTED))).thenReturn(Arrays.asList(accepted(1L, "r1", "tx")));
+        this.index.reload();
+
+        assertNull(this.index.getByReceiverHash("r1"));
+        assertEquals(Collections.singleton("tx"), this.index.getTransactionHashes());
+    }
+
+    @Test
+    public void testFailedLoadKeepsTheIndex() {
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenReturn(Arrays.asList(pending(1L, "r1")));
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.ACCEPTED))).thenReturn(Collections.emptyList());
+        this.index.reload();
+
+        when(this.transactionService.getTransaction(anyInt(), eq(Status.PENDING))).thenThrow(new IllegalStateException("offline"));
+        this.index.reload();
+        assertEquals(Long.valueOf(1L), this.index.getByReceiverHash("r1"));
+    }
+
+    private static Transaction pending(final Long id, final String receiverHash) {
+        return Transaction.builder().id(id).status(Status.PENDING).receiverHash(receiverHash).build();
+    }
+
+    private static Transaction accepted(final Long id, final String receiverHash, final String transactionHash) {
+        return Transaction.builder().id(id).status(Status.ACCEPTED).receiverHash(receiverHash).transactionHash(transactionHash).build();
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package io.yope.payment.transaction.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.Lists;
+
+import io.yope.payment.db.services.TransactionDbService;
+import io.yope.payment.domain.Transaction;
+import io.yope.payment.domain.Transaction.Status;
+import io.yope.payment.domain.Transaction.Type;
+import io.yope.payment.domain.Wallet;
+import io.yope.payment.metrics.LifecycleLatencies;
+import io.yope.payment.metrics.LifecycleLatencies.Stage;
+import io.yope.payment.metrics.Latency;
+import io.yope.payment.metrics.TimerSettings;
+import io.yope.payment.metrics.Timers;
+
+/**
+ * @author massi
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TransactionStateServiceTest {
+
+    private static final long CREATED = 1000L;
+
+    @Mock
+    private TransactionDbService transactionService;
+
+    @Mock
+    private OutstandingTransactionIndex index;
+
+    private LifecycleLatencies latencies;
+
+    private TransactionStateService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        final Timers timers = new Timers(new TimerSettings());
+        this.latencies = new LifecycleLatencies(timers);
+        this.service = new TransactionStateService(this.transactionService, this.index, timers, this.latencies);
+        when(this.transactionService.getForUpdate(1L)).thenReturn(Transaction.builder().id(1L)
+                .type(Type.DEPOSIT).status(Status.PENDING).amount(BigDecimal.ONE).creationDate(CREATED)
+                .source(wallet(2L)).destination(wallet(3L)).build());
+        when(this.transactionService.applyBatch(anyCollectionOf(Wallet.class), anyListOf(Transaction.class)))
+                .thenAnswer(invocation -> ((List<Transaction>) invocation.getArguments()[1]));
+    }
+
+    @Test
+    public void testDatesAreTheStoredOnes() throws Exception {
+        final long before = System.currentTimeMillis();
+        // the caller sends back the transaction with dates of its own
+        final Transaction saved = this.service.save(1L, Transaction.builder().status(Status.ACCEPTED)
+                .creationDate(before).acceptedDate(0L).completedDate(before).build());
+
+        assertEquals(Long.valueOf(CREATED), saved.getCreationDate());
+        assertTrue(saved.getAcceptedDate() >= before);
+        assertNull(saved.getCompletedDate());
+        final Latency accept = this.latencies.getLatencies().get(Type.DEPOSIT).get(Stage.ACCEPT);
+        assertEquals(1L, accept.getCount());
+        assertTrue(accept.getMax() >= before - CREATED - 10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompletedInOneBatch() throws Exception {
+        final Wallet hot = wallet(2L);
+        final List<Transaction> accepted = Arrays.asList(accepted(4L, hot, wallet(3L), BigDecimal.valueOf(6)),
+                accepted(5L, hot, wallet(3L), BigDecimal.valueOf(5)),
+                accepted(6L, hot, wallet(7L), BigDecimal.valueOf(4)));
+
+        final List<Transaction> completed = this.service.complete(accepted);
+
+        // the second one overdraws the wallet the first one has drawn on
+        assertEquals(2, completed.size());
+        assertEquals(Long.valueOf(4L), completed.get(0).getId());
+        assertEquals(Long.valueOf(6L), completed.get(1).getId());
+        assertTrue(completed.stream().allMatch(t -> Status.COMPLETED.equals(t.getStatus()) && t.getCompletedDate() != null));
+        final ArgumentCaptor<Collection> wallets = ArgumentCaptor.forClass(Collection.class);
+        verify(this.transactionService).applyBatch(wallets.capture(), anyListOf(Transaction.class));
+        final List<Wallet> touched = Lists.newArrayList((Collection<Wallet>) wallets.getValue());
+        assertEquals(3, touched.size());
+        assertEquals(0, BigDecimal.ZERO.compareTo(touched.get(0).getAvailableBalance()));
+        assertEquals(0, BigDecimal.valueOf(16).compareTo(touched.get(1).getAvailableBalance()));
+        assertEquals(0, BigDecimal.valueOf(14).compareTo(touched.get(2).getAvailableBalance()));
+    }
+
+    private static Transaction accepted(final Long id, final Wallet source, final Wallet destination, final BigDecimal amount) {
+        return Transaction.builder().id(id).type(Type.WITHDRAW).status(Status.ACCEPTED).amount(amount)
+                .creationDate(CREATED).acceptedDate(CREATED).source(source).destination(destination).build();
+    }
+
+    private static Wallet wallet(final Long id) {
+        return Wallet.builder().id(id).balance(BigDecimal.TEN).availableBalance(BigDecimal.TEN).build();
+    }
+
+}